@@ -1,12 +1,40 @@
-import React, { useState } from 'react';
+import React, { useEffect, useState } from 'react';
 import { Download, ShieldCheck } from 'lucide-react';
 import toast, { Toaster } from 'react-hot-toast';
 import axios from 'axios';
-import { downloadFile } from '../services/api';
+import { downloadFile, getAccessCodeFormat, type AccessCodeFormat } from '../services/api';
+
+// Used until the server's format arrives; matches the server default
+const DEFAULT_FORMAT: AccessCodeFormat = {
+    symbols: 8,
+    groupSize: 4,
+    codeLength: 9,
+    alphabet: '0123456789ABCDEFGHJKMNPQRSTVWXYZ',
+};
+
+// Keeps only the format's symbols, case folded, and puts a '-' between groups
+const formatCode = (input: string, format: AccessCodeFormat): string => {
+    const symbols = [...input.toUpperCase()]
+        .filter((c) => format.alphabet.includes(c))
+        .slice(0, format.symbols);
+    return symbols
+        .map((c, i) => (format.groupSize > 0 && i > 0 && i % format.groupSize === 0 ? '-' + c : c))
+        .join('');
+};
 
 const DownloadScreen: React.FC = () => {
     const [code, setCode] = useState('');
     const [loading, setLoading] = useState(false);
+    const [format, setFormat] = useState<AccessCodeFormat>(DEFAULT_FORMAT);
+
+    useEffect(() => {
+        getAccessCodeFormat()
+            .then(setFormat)
+            .catch((error) => console.error("Could not load the access code format", error));
+    }, []);
+
+    const placeholder = formatCode('X'.repeat(format.symbols), { ...format, alphabet: 'X' });
+    const complete = code.length === format.codeLength;
 
     const handleDownload = async (e: React.FormEvent) => {
         e.preventDefault();
@@ -53,20 +81,15 @@ const DownloadScreen: React.FC = () => {
                 </div>
 
                 <h2 className="text-2xl font-bold text-drop-text mb-2">Secure Retrieval</h2>
-                <p className="text-drop-accent text-sm mb-8 font-mono">Enter the 6-character access code</p>
+                <p className="text-drop-accent text-sm mb-8 font-mono">Enter the {format.symbols}-character access code</p>
 
                 <form onSubmit={handleDownload}>
                     <div className="relative mb-8 group">
                         <input
                             type="text"
-                            maxLength={7}
                             value={code}
-                            onChange={(e) => {
-                                let val = e.target.value.toUpperCase();
-                                if (val.length === 3 && code.length === 2) val += '-';
-                                setCode(val);
-                            }}
-                            placeholder="XXX-000"
+                            onChange={(e) => setCode(formatCode(e.target.value, format))}
+                            placeholder={placeholder}
                             className="w-full bg-drop-bg text-center text-2xl md:text-3xl font-mono font-bold tracking-[0.3em] text-blue-400 py-6 rounded-2xl outline-none shadow-neo-pressed border border-transparent focus:border-blue-500/20 transition-all placeholder:text-drop-surface uppercase"
                         />
                         <div className="absolute inset-0 rounded-2xl shadow-[0_0_30px_rgba(59,130,246,0.1)] opacity-0 group-focus-within:opacity-100 transition-opacity pointer-events-none" />
@@ -74,9 +97,9 @@ const DownloadScreen: React.FC = () => {
 
                     <button
                         type="submit"
-                        disabled={loading || code.length < 7}
+                        disabled={loading || !complete}
                         className={`w-full py-4 rounded-xl font-bold tracking-widest flex items-center justify-center gap-2 transition-all duration-200
-                        ${loading || code.length < 7
+                        ${loading || !complete
                                 ? 'bg-drop-bg text-drop-accent shadow-neo-pressed cursor-not-allowed opacity-50'
                                 : 'bg-drop-surface text-blue-400 shadow-neo-flat hover:shadow-none active:shadow-neo-pressed active:scale-[0.98]'
                             }`}
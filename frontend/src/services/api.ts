@@ -14,6 +14,13 @@ export interface DownloadResponse {
     originalFileName: string;
 }
 
+export interface AccessCodeFormat {
+    symbols: number;
+    groupSize: number;
+    codeLength: number;
+    alphabet: string;
+}
+
 export interface FileAPI {
     uploadFile(file: File, onProgress: (percent: number) => void): Promise<UploadResponse>;
     downloadFile(code: string): Promise<void>;
@@ -50,6 +57,11 @@ export const uploadFile = async (
 };
 
 
+export const getAccessCodeFormat = async (): Promise<AccessCodeFormat> => {
+    const response = await api.get<AccessCodeFormat>("/access-code-format");
+    return response.data;
+};
+
 export const downloadFile = async (code: string): Promise<void> => {
     // 1. Request the file as a BLOB (Binary Large Object)
     const response = await api.get(`/download/${code}`, {
@@ -0,0 +1,58 @@
+package com.example.secure_drop.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.secure_drop.config.AccessCodeProperties;
+import com.example.secure_drop.service.accesscode.AccessCodeFormat;
+import com.example.secure_drop.service.accesscode.LocalAccessCodeGenerator;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessCodeBenchmark {
+
+  @Param({ "0", "1024" })
+  private int poolSize;
+
+  private LocalAccessCodeGenerator generator;
+
+  @Setup
+  public void setUp() {
+    var properties = new AccessCodeProperties();
+    properties.setPoolSize(poolSize);
+    generator = new LocalAccessCodeGenerator(new AccessCodeFormat(properties), properties);
+  }
+
+  @TearDown
+  public void tearDown() {
+    generator.shutdown();
+  }
+
+  @Benchmark
+  public String generateAccessCode() {
+    return generator.next();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public String generateAccessCodeContended() {
+    return generator.next();
+  }
+}
@@ -0,0 +1,72 @@
+package com.example.secure_drop.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+import org.springframework.util.unit.DataSize;
+
+import com.example.secure_drop.config.EncryptionProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Shared fixtures for the JMH suites.
+ */
+final class BenchmarkSupport {
+  static final String SECRET_KEY = "0123456789abcdef0123456789abcdef";
+  static final String ALGORITHM = "AES/GCM/NoPadding";
+
+  private BenchmarkSupport() {
+    throw new UnsupportedOperationException("Utility class");
+  }
+
+  static EncryptionProperties encryptionProperties() {
+    var properties = new EncryptionProperties();
+    properties.setAlgorithm(ALGORITHM);
+    properties.setSecretKey(SECRET_KEY);
+    properties.setSegmentSize(DataSize.ofKilobytes(64));
+    return properties;
+  }
+
+  /**
+   * A registry that records like the application's, so the suites include the cost of the
+   * service metrics.
+   */
+  static MeterRegistry meterRegistry() {
+    return new SimpleMeterRegistry();
+  }
+
+  static byte[] payload(int size) {
+    byte[] bytes = new byte[size];
+    new SplittableRandom(size).nextBytes(bytes);
+    return bytes;
+  }
+
+  /**
+   * A scratch directory on tmpfs when the host has one, so storage suites measure the
+   * pipeline rather than the disk.
+   */
+  static Path scratchDirectory(String prefix) throws IOException {
+    var shm = Path.of("/dev/shm");
+    if (Files.isDirectory(shm) && Files.isWritable(shm)) {
+      return Files.createTempDirectory(shm, prefix);
+    }
+    return Files.createTempDirectory(prefix);
+  }
+
+  static void deleteRecursively(Path directory) throws IOException {
+    if (directory == null || !Files.exists(directory)) {
+      return;
+    }
+    try (Stream<Path> paths = Files.walk(directory)) {
+      for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.deleteIfExists(path);
+      }
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package com.example.secure_drop.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.secure_drop.service.encryption.ContentCodec;
+import com.example.secure_drop.service.encryption.EncryptionServiceImpl;
+
+/**
+ * Whole-buffer and segmented encryption across payload sizes. Run with {@code -prof gc} to
+ * compare allocation per operation between the two paths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class EncryptionBenchmark {
+
+  @Param({ "1024", "65536", "1048576", "10485760", "52428800" })
+  private int size;
+
+  private EncryptionServiceImpl encryptionService;
+  private byte[] plainText;
+  private byte[] legacyCipherText;
+  private Path segmentedCipherText;
+  private Path scratchDirectory;
+  private WritableByteChannel sink;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    encryptionService = new EncryptionServiceImpl(BenchmarkSupport.encryptionProperties(),
+        BenchmarkSupport.meterRegistry());
+    plainText = BenchmarkSupport.payload(size);
+    legacyCipherText = encryptionService.encrypt(plainText, BenchmarkSupport.SECRET_KEY);
+    sink = Channels.newChannel(OutputStream.nullOutputStream());
+    scratchDirectory = BenchmarkSupport.scratchDirectory("secure-drop-bench");
+
+    segmentedCipherText = Files.createTempFile("secure-drop-bench", ".enc");
+    try (var channel = FileChannel.open(segmentedCipherText, StandardOpenOption.WRITE)) {
+      encryptionService.encrypt(new ByteArrayInputStream(plainText), channel, BenchmarkSupport.SECRET_KEY);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(segmentedCipherText);
+    BenchmarkSupport.deleteRecursively(scratchDirectory);
+  }
+
+  @Benchmark
+  public byte[] encryptBytes() throws Exception {
+    return encryptionService.encrypt(plainText, BenchmarkSupport.SECRET_KEY);
+  }
+
+  @Benchmark
+  public byte[] decryptBytes() throws Exception {
+    return encryptionService.decrypt(legacyCipherText, BenchmarkSupport.SECRET_KEY);
+  }
+
+  @Benchmark
+  public long encryptSegmented() throws Exception {
+    return encryptionService.encrypt(new ByteArrayInputStream(plainText), sink, BenchmarkSupport.SECRET_KEY);
+  }
+
+  /**
+   * Single-threaded into a file, the baseline for {@link #encryptSegmentedParallel()}.
+   */
+  @Benchmark
+  public long encryptSegmentedToFile() throws Exception {
+    try (var channel = openScratchFile()) {
+      return encryptionService.encrypt(new ByteArrayInputStream(plainText), channel, -1, ContentCodec.NONE,
+          BenchmarkSupport.SECRET_KEY);
+    }
+  }
+
+  /**
+   * Segments sealed on all cores and written with positional writes; sizes below the parallel
+   * threshold fall back to the single-threaded path.
+   */
+  @Benchmark
+  public long encryptSegmentedParallel() throws Exception {
+    try (var channel = openScratchFile()) {
+      return encryptionService.encrypt(new ByteArrayInputStream(plainText), channel, size, ContentCodec.NONE,
+          BenchmarkSupport.SECRET_KEY);
+    }
+  }
+
+  @Benchmark
+  public long decryptSegmented() throws Exception {
+    var channel = FileChannel.open(segmentedCipherText, StandardOpenOption.READ);
+    try (var in = encryptionService.decrypt(channel, BenchmarkSupport.SECRET_KEY)) {
+      return in.transferTo(OutputStream.nullOutputStream());
+    }
+  }
+
+  private FileChannel openScratchFile() throws IOException {
+    return FileChannel.open(scratchDirectory.resolve("cipher.enc"), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+  }
+}
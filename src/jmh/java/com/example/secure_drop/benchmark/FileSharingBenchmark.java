@@ -0,0 +1,88 @@
+package com.example.secure_drop.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockMultipartFile;
+
+import com.example.secure_drop.SecureDropApplication;
+import com.example.secure_drop.model.StoragePolicy;
+import com.example.secure_drop.service.filesharing.FileSharingService;
+import com.example.secure_drop.service.filesharing.model.CustomMultipartFile;
+
+/**
+ * Full upload then download through {@link FileSharingService}, backed by an in-memory H2
+ * database in PostgreSQL mode and a tmpfs upload directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class FileSharingBenchmark {
+
+  @Param({ "1024", "1048576", "10485760" })
+  private int size;
+
+  private ConfigurableApplicationContext context;
+  private FileSharingService fileSharingService;
+  private CustomMultipartFile upload;
+  private Path uploadDir;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    uploadDir = BenchmarkSupport.scratchDirectory("secure-drop-sharing-bench");
+    context = new SpringApplicationBuilder(SecureDropApplication.class)
+        .web(WebApplicationType.NONE)
+        // Command-line arguments take precedence over application.yml
+        .run(
+            "--spring.datasource.url=jdbc:h2:mem:secure_drop_bench;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+            "--spring.datasource.username=sa",
+            "--spring.datasource.password=",
+            "--spring.jpa.show-sql=false",
+            // The migrations are PostgreSQL-specific; let Hibernate create the schema in H2
+            "--spring.flyway.enabled=false",
+            "--spring.jpa.hibernate.ddl-auto=create-drop",
+            "--logging.level.root=WARN",
+            "--file.upload-dir=" + uploadDir,
+            "--encryption.algorithm=" + BenchmarkSupport.ALGORITHM,
+            "--encryption.secret-key=" + BenchmarkSupport.SECRET_KEY);
+    fileSharingService = context.getBean(FileSharingService.class);
+    upload = new CustomMultipartFile(new MockMultipartFile("file", "payload.bin", "application/octet-stream",
+        BenchmarkSupport.payload(size)));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    context.close();
+    BenchmarkSupport.deleteRecursively(uploadDir);
+  }
+
+  @Benchmark
+  public long uploadThenDownload() throws IOException {
+    var response = fileSharingService.uploadFile(upload, StoragePolicy.SERVER_ENCRYPTED);
+    var download = fileSharingService.getFile(response.accessCode(), null);
+    try (var in = download.resource().getInputStream()) {
+      return in.transferTo(OutputStream.nullOutputStream());
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package com.example.secure_drop.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+
+import com.example.secure_drop.config.CompressionProperties;
+import com.example.secure_drop.config.FileStorageProperties;
+import com.example.secure_drop.service.encryption.EncryptionServiceImpl;
+import com.example.secure_drop.service.filestorage.CompressionPolicy;
+import com.example.secure_drop.service.filestorage.FileSync;
+import com.example.secure_drop.service.filestorage.LocalFileStorageService;
+
+/**
+ * {@link LocalFileStorageService} store and load against a tmpfs upload directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class FileStorageBenchmark {
+
+  @Param({ "1024", "1048576", "52428800" })
+  private int size;
+
+  private Path uploadDir;
+  private LocalFileStorageService fileStorageService;
+  private MockMultipartFile upload;
+  private String stored;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    uploadDir = BenchmarkSupport.scratchDirectory("secure-drop-storage-bench");
+    var fileStorageProperties = new FileStorageProperties();
+    fileStorageProperties.setUploadDir(uploadDir.toString());
+
+    var encryptionProperties = BenchmarkSupport.encryptionProperties();
+    var meterRegistry = BenchmarkSupport.meterRegistry();
+    // Deduplication is off, so no blob repository is needed
+    fileStorageService = new LocalFileStorageService(fileStorageProperties, encryptionProperties,
+        new EncryptionServiceImpl(encryptionProperties, meterRegistry), null,
+        new CompressionPolicy(new CompressionProperties()), new FileSync(fileStorageProperties, meterRegistry),
+        meterRegistry);
+    fileStorageService.init();
+
+    upload = new MockMultipartFile("file", "payload.bin", "application/octet-stream",
+        BenchmarkSupport.payload(size));
+    stored = fileStorageService.store(upload);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    BenchmarkSupport.deleteRecursively(uploadDir);
+  }
+
+  @Benchmark
+  public boolean storeAndDelete() {
+    return fileStorageService.delete(fileStorageService.store(upload));
+  }
+
+  @Benchmark
+  public long load() throws IOException {
+    try (var in = fileStorageService.load(stored).getInputStream()) {
+      return in.transferTo(OutputStream.nullOutputStream());
+    }
+  }
+}
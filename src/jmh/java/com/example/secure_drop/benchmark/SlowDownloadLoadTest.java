@@ -0,0 +1,167 @@
+package com.example.secure_drop.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Load driver for comparing platform and virtual request threads: uploads one file per
+ * client, then opens every download at once and reads each body at a throttled rate, the
+ * way slow mobile clients hold server threads.
+ *
+ * <pre>
+ * java -cp ... com.example.secure_drop.benchmark.SlowDownloadLoadTest [baseUrl] [clients] [fileBytes] [bytesPerSecond]
+ * </pre>
+ *
+ * Run once against a server started with {@code SECURE_DROP_VIRTUAL_THREADS=false} and
+ * once with {@code true}, and compare wall time and latency percentiles.
+ */
+public final class SlowDownloadLoadTest {
+  private static final Pattern ACCESS_CODE = Pattern.compile("\"accessCode\"\\s*:\\s*\"([^\"]+)\"");
+  private static final int READ_CHUNK = 16 * 1024;
+  private static final int RECEIVE_BUFFER = 16 * 1024;
+
+  private SlowDownloadLoadTest() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    var baseUrl = args.length > 0 ? args[0] : "http://localhost:5767/api/files";
+    int clients = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+    int fileBytes = args.length > 2 ? Integer.parseInt(args[2]) : 1024 * 1024;
+    int bytesPerSecond = args.length > 3 ? Integer.parseInt(args[3]) : 256 * 1024;
+
+    var client = HttpClient.newBuilder()
+        .executor(Executors.newVirtualThreadPerTaskExecutor())
+        .connectTimeout(Duration.ofSeconds(30))
+        .build();
+
+    System.out.printf("Uploading %d files of %d bytes%n", clients, fileBytes);
+    var codes = upload(client, baseUrl, clients, BenchmarkSupport.payload(fileBytes));
+
+    System.out.printf("Downloading with %d concurrent clients at %d B/s each%n", clients, bytesPerSecond);
+    var latencies = new ConcurrentLinkedQueue<Long>();
+    var failures = new AtomicInteger();
+    long started = System.nanoTime();
+
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (var code : codes) {
+        executor.submit(() -> {
+          long begin = System.nanoTime();
+          try {
+            if (download(URI.create(baseUrl + "/download/" + code), bytesPerSecond) != fileBytes) {
+              failures.incrementAndGet();
+              return;
+            }
+            latencies.add(System.nanoTime() - begin);
+          } catch (IOException | InterruptedException e) {
+            failures.incrementAndGet();
+          }
+        });
+      }
+    }
+
+    long wallMillis = (System.nanoTime() - started) / 1_000_000;
+    long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+    System.out.printf("completed=%d failed=%d wall=%dms p50=%dms p95=%dms p99=%dms max=%dms%n",
+        sorted.length, failures.get(), wallMillis,
+        percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99), percentile(sorted, 1.0));
+  }
+
+  private static List<String> upload(HttpClient client, String baseUrl, int count, byte[] payload) throws Exception {
+    var codes = new ArrayList<String>(count);
+    for (int i = 0; i < count; i++) {
+      var boundary = UUID.randomUUID().toString();
+      var head = ("--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"load-" + i
+          + ".bin\"\r\nContent-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+      var tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+
+      var request = HttpRequest.newBuilder(URI.create(baseUrl + "/upload"))
+          .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+          .POST(HttpRequest.BodyPublishers.ofByteArrays(List.of(head, payload, tail)))
+          .build();
+      var response = client.send(request, HttpResponse.BodyHandlers.ofString());
+      var matcher = ACCESS_CODE.matcher(response.body());
+      if (response.statusCode() != 200 || !matcher.find()) {
+        throw new IllegalStateException("Upload failed: " + response.statusCode() + " " + response.body());
+      }
+      codes.add(matcher.group(1));
+    }
+    return codes;
+  }
+
+  /**
+   * Plain HTTP/1.1 GET over a socket with a small receive buffer, so a slow reader keeps the
+   * TCP window closed the way a real slow client does instead of the kernel buffering the
+   * whole body on its behalf.
+   */
+  private static long download(URI uri, int bytesPerSecond) throws IOException, InterruptedException {
+    try (var socket = new Socket()) {
+      socket.setReceiveBufferSize(RECEIVE_BUFFER);
+      socket.connect(new InetSocketAddress(uri.getHost(), uri.getPort()), 30_000);
+      socket.setSoTimeout(300_000);
+
+      var request = "GET " + uri.getRawPath() + " HTTP/1.1\r\nHost: " + uri.getHost() + "\r\nConnection: close\r\n\r\n";
+      socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+
+      var in = new BufferedInputStream(socket.getInputStream(), READ_CHUNK);
+      var statusLine = readHeaderLine(in);
+      while (!readHeaderLine(in).isEmpty()) {
+        // skip response headers
+      }
+      if (!statusLine.contains(" 200 ")) {
+        return -1;
+      }
+      return readThrottled(in, bytesPerSecond);
+    }
+  }
+
+  private static String readHeaderLine(InputStream in) throws IOException {
+    var line = new StringBuilder();
+    int b;
+    while ((b = in.read()) >= 0 && b != '\n') {
+      if (b != '\r') {
+        line.append((char) b);
+      }
+    }
+    return line.toString();
+  }
+
+  private static long readThrottled(InputStream body, int bytesPerSecond) throws IOException, InterruptedException {
+    byte[] buffer = new byte[READ_CHUNK];
+    long total = 0;
+    long started = System.nanoTime();
+    int read;
+    while ((read = body.read(buffer)) >= 0) {
+      total += read;
+      long dueNanos = total * 1_000_000_000L / bytesPerSecond;
+      long aheadNanos = dueNanos - (System.nanoTime() - started);
+      if (aheadNanos > 0) {
+        Thread.sleep(Duration.ofNanos(aheadNanos));
+      }
+    }
+    return total;
+  }
+
+  private static long percentile(long[] sorted, double quantile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+    return sorted[Math.max(index, 0)] / 1_000_000;
+  }
+}
@@ -0,0 +1,24 @@
+package com.example.secure_drop.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@ConfigurationProperties(prefix = "access-code")
+@Getter
+@Setter
+public class AccessCodeProperties {
+  /** Symbols a code is drawn from; defaults to Crockford base32 (no I, L, O, U). */
+  private String alphabet = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+  /** Number of symbols per code, including the checksum symbol. */
+  private int length = 8;
+  /** Symbols between '-' separators; 0 disables grouping. */
+  private int groupSize = 4;
+  /** Whether the last symbol is a Luhn mod N check symbol. */
+  private boolean checksum = true;
+  /** Codes generated ahead of time; 0 generates every code inline. */
+  private int poolSize = 1024;
+  /** Size of the in-memory index bitset (32 MB by default); larger code spaces are hashed into it. */
+  private long indexBits = 1L << 28;
+}
@@ -8,7 +8,9 @@ import org.springframework.context.annotation.Configuration;
 
 @Configuration
 @EnableConfigurationProperties({ FileStorageProperties.class, EncryptionProperties.class, AppConfigProperties.class,
-    ErrorDocsProperties.class })
+    ErrorDocsProperties.class, AccessCodeProperties.class, CleanupProperties.class,
+    MetadataCacheProperties.class, ChunkedUploadProperties.class, CompressionProperties.class,
+    S3StorageProperties.class })
 public class AppConfig {
   @Bean
   Clock clock() {
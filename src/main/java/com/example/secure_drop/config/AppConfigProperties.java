@@ -1,5 +1,7 @@
 package com.example.secure_drop.config;
 
+import java.time.Duration;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import lombok.Getter;
@@ -10,4 +12,5 @@ import lombok.Setter;
 @Setter
 public class AppConfigProperties {
   private String baseUrl;
+  private Duration downloadSessionTtl = Duration.ofMinutes(30);
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.example.secure_drop.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@ConfigurationProperties(prefix = "chunked-upload")
+@Getter
+@Setter
+public class ChunkedUploadProperties {
+  /** Largest file a chunked upload may announce. */
+  private DataSize maxFileSize = DataSize.ofGigabytes(8);
+  /** Largest chunk accepted per request, rounded down to whole encryption segments. */
+  private DataSize chunkSize = DataSize.ofMegabytes(16);
+  /** How long an upload may sit idle before it and its partial file are discarded. */
+  private Duration sessionTtl = Duration.ofHours(24);
+}
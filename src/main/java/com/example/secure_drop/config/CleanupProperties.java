@@ -0,0 +1,31 @@
+package com.example.secure_drop.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@ConfigurationProperties(prefix = "cleanup")
+@Getter
+@Setter
+public class CleanupProperties {
+  /** Rows fetched, and deleted in one statement, per batch. */
+  private int batchSize = 500;
+  /** Stored files deleted concurrently within a batch. */
+  private int parallelism = 4;
+  /** Resolution of the in-memory expiry timer: files are removed at most this long after they fall due. */
+  private Duration expiryTick = Duration.ofSeconds(1);
+  /** Fully downloaded one-time files waiting to be purged; when full, the download thread purges inline. */
+  private int purgeQueueCapacity = 1000;
+  /** Purge attempts per file before it is left to the expiry timer. */
+  private int purgeMaxAttempts = 3;
+  /** Delay before the first purge retry, doubling on each further attempt. */
+  private Duration purgeRetryDelay = Duration.ofSeconds(5);
+  /**
+   * Age, since their last write, before stored files nothing refers to are removed as orphans;
+   * younger ones may belong to an upload that has not saved its metadata yet.
+   */
+  private Duration orphanGracePeriod = Duration.ofHours(1);
+}
@@ -0,0 +1,39 @@
+package com.example.secure_drop.config;
+
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.MimeType;
+import org.springframework.util.unit.DataSize;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@ConfigurationProperties(prefix = "compression")
+@Getter
+@Setter
+public class CompressionProperties {
+  /** Deflates compressible server-encrypted uploads before they are encrypted. */
+  private boolean enabled = false;
+  /** Deflate level, 1 (fastest) to 9 (smallest). */
+  private int level = 6;
+  /** Uploads smaller than this are stored as they are. */
+  private DataSize minSize = DataSize.ofKilobytes(1);
+  /** Leading bytes sampled to judge content of types listed in neither list below. */
+  private DataSize sampleSize = DataSize.ofKilobytes(4);
+  /** Samples above this many bits of entropy per byte are taken to be compressed already. */
+  private double maxEntropy = 7.0;
+  /** Always compressed. */
+  private List<MimeType> compressibleTypes = List.of(
+      MimeType.valueOf("text/*"), MimeType.valueOf("application/json"), MimeType.valueOf("application/*+json"),
+      MimeType.valueOf("application/xml"), MimeType.valueOf("application/*+xml"),
+      MimeType.valueOf("application/javascript"), MimeType.valueOf("application/x-ndjson"),
+      MimeType.valueOf("application/yaml"), MimeType.valueOf("image/svg+xml"));
+  /** Never compressed: media and archives that are compressed already. */
+  private List<MimeType> incompressibleTypes = List.of(
+      MimeType.valueOf("image/*"), MimeType.valueOf("video/*"), MimeType.valueOf("audio/*"),
+      MimeType.valueOf("application/zip"), MimeType.valueOf("application/gzip"),
+      MimeType.valueOf("application/x-gzip"), MimeType.valueOf("application/x-7z-compressed"),
+      MimeType.valueOf("application/vnd.rar"), MimeType.valueOf("application/x-bzip2"),
+      MimeType.valueOf("application/x-xz"), MimeType.valueOf("application/zstd"));
+}
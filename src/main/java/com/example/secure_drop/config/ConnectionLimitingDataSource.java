@@ -0,0 +1,99 @@
+package com.example.secure_drop.config;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Lets at most as many threads borrow a connection as the pool holds; the rest queue here in
+ * arrival order, without a timeout, instead of in the pool, whose acquisition timeout fails them
+ * when a burst of virtual threads outnumbers its connections. A permit is returned when the
+ * borrowed connection is closed.
+ */
+class ConnectionLimitingDataSource extends DelegatingDataSource implements AutoCloseable {
+  private final Semaphore permits;
+
+  ConnectionLimitingDataSource(DataSource target, int maxConnections) {
+    super(target);
+    this.permits = new Semaphore(maxConnections, true);
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    acquire();
+    try {
+      return releasingOnClose(obtainTargetDataSource().getConnection());
+    } catch (SQLException | RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    acquire();
+    try {
+      return releasingOnClose(obtainTargetDataSource().getConnection(username, password));
+    } catch (SQLException | RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  int availablePermits() {
+    return permits.availablePermits();
+  }
+
+  /**
+   * Closes the pool behind it, which is no longer the bean the context destroys.
+   */
+  @Override
+  public void close() throws Exception {
+    if (obtainTargetDataSource() instanceof AutoCloseable closeable) {
+      closeable.close();
+    }
+  }
+
+  private void acquire() throws SQLException {
+    try {
+      permits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted while waiting for a connection", e);
+    }
+  }
+
+  private Connection releasingOnClose(Connection connection) {
+    var released = new AtomicBoolean();
+    return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+        (proxy, method, args) -> switch (method.getName()) {
+          case "equals" -> proxy == args[0];
+          case "hashCode" -> System.identityHashCode(proxy);
+          case "toString" -> "Limited " + connection;
+          case "close" -> {
+            try {
+              connection.close();
+            } finally {
+              if (released.compareAndSet(false, true)) {
+                permits.release();
+              }
+            }
+            yield null;
+          }
+          default -> {
+            try {
+              yield method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+              throw e.getCause();
+            }
+          }
+        });
+  }
+}
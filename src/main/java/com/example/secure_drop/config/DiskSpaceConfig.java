@@ -0,0 +1,51 @@
+package com.example.secure_drop.config;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+
+import org.springframework.boot.health.application.DiskSpaceHealthIndicator;
+import org.springframework.boot.health.autoconfigure.application.DiskSpaceHealthIndicatorProperties;
+import org.springframework.boot.health.autoconfigure.contributor.ConditionalOnEnabledHealthIndicator;
+import org.springframework.boot.health.contributor.CompositeHealthContributor;
+import org.springframework.boot.micrometer.metrics.system.DiskSpaceMetricsBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * Free space is watched on every upload root, for the {@code disk.*} metrics and the
+ * {@code diskSpace} health check, in place of Boot's single configured path.
+ */
+@Configuration
+public class DiskSpaceConfig {
+  @Bean
+  DiskSpaceMetricsBinder diskSpaceMetrics(FileStorageProperties fileStorageProperties) {
+    return new DiskSpaceMetricsBinder(rootDirectories(fileStorageProperties), Tags.empty());
+  }
+
+  /**
+   * One indicator per root, under {@code root0}, {@code root1} and so on; each reports its path.
+   */
+  @Bean
+  @ConditionalOnEnabledHealthIndicator("diskspace")
+  CompositeHealthContributor diskSpaceHealthIndicator(FileStorageProperties fileStorageProperties,
+      DiskSpaceHealthIndicatorProperties diskSpaceHealthIndicatorProperties) {
+    var indicators = new LinkedHashMap<String, DiskSpaceHealthIndicator>();
+    for (var directory : rootDirectories(fileStorageProperties)) {
+      indicators.put("root" + indicators.size(),
+          new DiskSpaceHealthIndicator(directory, diskSpaceHealthIndicatorProperties.getThreshold()));
+    }
+    return CompositeHealthContributor.fromMap(indicators);
+  }
+
+  private static List<File> rootDirectories(FileStorageProperties fileStorageProperties) {
+    return fileStorageProperties.effectiveRoots().stream()
+        .map(FileStorageProperties.UploadRoot::getPath)
+        .filter(Objects::nonNull)
+        .map(File::new)
+        .toList();
+  }
+}
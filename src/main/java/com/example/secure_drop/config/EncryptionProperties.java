@@ -1,6 +1,7 @@
 package com.example.secure_drop.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -11,4 +12,9 @@ import lombok.Setter;
 public class EncryptionProperties {
   private String algorithm;
   private String secretKey;
+  private DataSize segmentSize = DataSize.ofKilobytes(64);
+  /** Cores that seal the segments of a large file together; 1 keeps encryption on the calling thread. */
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  /** Files expected to be smaller than this are encrypted on the calling thread. */
+  private DataSize parallelThreshold = DataSize.ofMegabytes(4);
 }
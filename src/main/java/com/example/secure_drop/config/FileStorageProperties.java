@@ -1,5 +1,9 @@
 package com.example.secure_drop.config;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import lombok.Getter;
@@ -9,5 +13,66 @@ import lombok.Setter;
 @Getter
 @Setter
 public class FileStorageProperties {
+  /** Where new files are stored; files of the other backend stay readable. */
+  private Backend backend = Backend.LOCAL;
   private String uploadDir;
+  /**
+   * Directories new files are spread across, e.g. one per disk, each picked in proportion to its
+   * weight. When empty, {@link #uploadDir} is the only one.
+   */
+  private List<UploadRoot> roots = new ArrayList<>();
+  /**
+   * Levels of two-hex-digit directories between a root and its files ({@code ab/cd/<uuid>} for
+   * 2), keeping every directory small; 0 stores files flat in the root.
+   */
+  private int shardDepth = 2;
+  /** Moves files of the former flat layout into their shard directories at startup. */
+  private boolean migrateFlatLayout = false;
+  /** When a write counts as durable, see {@link FsyncPolicy}. */
+  private FsyncPolicy fsync = FsyncPolicy.PER_FILE;
+  /** With {@link FsyncPolicy#GROUP}, how long the first write of a batch waits for others to join it. */
+  private Duration fsyncGroupWindow = Duration.ofMillis(5);
+  /** Lets uploads opt into {@code CLIENT_ENCRYPTED} storage; only for trusted networks. */
+  private boolean clientEncryptedEnabled = false;
+  /**
+   * Stores each distinct content once: server-encrypted uploads are keyed by an HMAC of their
+   * plaintext and share the blob of an earlier identical upload.
+   */
+  private boolean dedupEnabled = false;
+
+  /**
+   * The roots in use: {@link #roots}, or {@link #uploadDir} alone when none are configured.
+   */
+  public List<UploadRoot> effectiveRoots() {
+    if (!roots.isEmpty()) {
+      return roots;
+    }
+    var root = new UploadRoot();
+    root.setPath(uploadDir);
+    return List.of(root);
+  }
+
+  public enum Backend {
+    /** The upload roots on local disk. */
+    LOCAL,
+    /** An S3-compatible bucket, see {@link S3StorageProperties}. */
+    S3
+  }
+
+  public enum FsyncPolicy {
+    /** Leaves flushing to the OS: a crash can lose or tear files that were reported stored. */
+    NONE,
+    /** Each write is forced to disk, with its directory entry, before it is reported stored. */
+    PER_FILE,
+    /** Like {@link #PER_FILE}, but the writes of a short window are forced together. */
+    GROUP
+  }
+
+  @Getter
+  @Setter
+  public static class UploadRoot {
+    private String path;
+    /** Share of new files relative to the other roots. */
+    private int weight = 1;
+  }
 }
@@ -0,0 +1,18 @@
+package com.example.secure_drop.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@ConfigurationProperties(prefix = "metadata-cache")
+@Getter
+@Setter
+public class MetadataCacheProperties {
+  /** Access codes kept in memory at most. */
+  private long maximumSize = 10_000;
+  /** Longest an entry is served without re-reading the database; never past the file's expiry. */
+  private Duration ttl = Duration.ofSeconds(30);
+}
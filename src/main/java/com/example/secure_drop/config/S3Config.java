@@ -0,0 +1,32 @@
+package com.example.secure_drop.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+@Configuration
+@ConditionalOnExpression("!'${s3.bucket:}'.isBlank()")
+public class S3Config {
+  @Bean(destroyMethod = "close")
+  S3Client s3Client(S3StorageProperties s3StorageProperties) {
+    var builder = S3Client.builder()
+        .region(Region.of(s3StorageProperties.getRegion()))
+        .forcePathStyle(s3StorageProperties.isPathStyleAccess());
+    if (s3StorageProperties.getEndpoint() != null) {
+      builder.endpointOverride(s3StorageProperties.getEndpoint());
+    }
+    if (s3StorageProperties.getAccessKeyId() != null) {
+      builder.credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(
+          s3StorageProperties.getAccessKeyId(), s3StorageProperties.getSecretAccessKey())));
+    } else {
+      builder.credentialsProvider(DefaultCredentialsProvider.builder().build());
+    }
+    return builder.build();
+  }
+}
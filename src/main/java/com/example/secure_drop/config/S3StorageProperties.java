@@ -0,0 +1,39 @@
+package com.example.secure_drop.config;
+
+import java.net.URI;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@ConfigurationProperties(prefix = "s3")
+@Getter
+@Setter
+public class S3StorageProperties {
+  /**
+   * Enables the S3 backend when set, for reading and deleting the bucket's files; new files only
+   * go there with {@code file.backend=s3}.
+   */
+  private String bucket;
+  /** Prepended to the key of every stored object, e.g. {@code uploads/}. */
+  private String prefix = "";
+  private String region = "us-east-1";
+  /** For S3-compatible stores such as MinIO; AWS itself when unset. */
+  private URI endpoint;
+  /** Addresses the bucket in the path rather than the host name, as most S3-compatible stores need. */
+  private boolean pathStyleAccess = false;
+  /** Static credentials; the default AWS provider chain is used when unset. */
+  private String accessKeyId;
+  private String secretAccessKey;
+  /**
+   * Size of each part of a multipart upload, at least the 5MB S3 requires; content smaller than
+   * one part is stored with a single request.
+   */
+  private DataSize partSize = DataSize.ofMegabytes(8);
+  /** Parts of one upload sent at the same time, each holding a part-sized buffer meanwhile. */
+  private int partsInFlight = 2;
+  /** Threads sending parts, shared by all uploads. */
+  private int uploadThreads = 8;
+}
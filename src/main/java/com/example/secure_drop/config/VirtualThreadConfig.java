@@ -0,0 +1,33 @@
+package com.example.secure_drop.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * With {@code spring.threads.virtual.enabled}, request concurrency is no longer capped by
+ * Tomcat's 200 threads, so the connection pool is the first shared limit requests meet.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+  /**
+   * Puts a {@link ConnectionLimitingDataSource} sized to the pool in front of Hikari.
+   */
+  @Bean
+  static BeanPostProcessor connectionLimitingDataSource() {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof HikariDataSource hikari) {
+          return new ConnectionLimitingDataSource(hikari, hikari.getMaximumPoolSize());
+        }
+        return bean;
+      }
+    };
+  }
+}
@@ -0,0 +1,75 @@
+package com.example.secure_drop.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.jspecify.annotations.NonNull;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.example.secure_drop.dto.FileUploadResponse;
+import com.example.secure_drop.dto.UploadSessionRequest;
+import com.example.secure_drop.dto.UploadSessionResponse;
+import com.example.secure_drop.exception.InvalidUploadException;
+import com.example.secure_drop.service.chunkedupload.ChunkedUploadService;
+
+/**
+ * Resumable uploads for files too large for a single request: start an upload, PUT its chunks
+ * at increasing offsets (retrying any that fail), then complete it to get an access code. After
+ * an interruption, the status tells which offset to resume from.
+ */
+@RestController
+@RequestMapping("/api/files/uploads")
+@RequiredArgsConstructor
+@Slf4j
+public class ChunkedUploadController {
+  private final ChunkedUploadService chunkedUploadService;
+
+  @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<@NonNull UploadSessionResponse> startUpload(@RequestBody UploadSessionRequest request) {
+    log.info("Received chunked upload request for file: {} ({} bytes)", request.fileName(), request.size());
+    if (request.size() == null) {
+      throw new InvalidUploadException("File size is required.");
+    }
+    var response = chunkedUploadService.start(request.fileName(), request.contentType(), request.size());
+    var location = UriComponentsBuilder.fromPath("/api/files/uploads/{uploadId}")
+        .buildAndExpand(response.uploadId())
+        .toUri();
+    return ResponseEntity.created(location).body(response);
+  }
+
+  @GetMapping("/{uploadId}")
+  public ResponseEntity<@NonNull UploadSessionResponse> getUploadStatus(@PathVariable String uploadId) {
+    log.info("Status request for upload {}", uploadId);
+    return ResponseEntity.ok(chunkedUploadService.status(uploadId));
+  }
+
+  @PutMapping(path = "/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+  public ResponseEntity<@NonNull UploadSessionResponse> uploadChunk(@PathVariable String uploadId,
+      @RequestParam long offset, HttpServletRequest request) throws IOException {
+    long length = request.getContentLengthLong();
+    log.info("Chunk for upload {} at offset {} ({} bytes)", uploadId, offset, length);
+    if (length < 0) {
+      throw new InvalidUploadException("Chunks must declare their Content-Length.");
+    }
+
+    // The body is encrypted as it is read, one segment at a time
+    try (InputStream content = request.getInputStream()) {
+      return ResponseEntity.ok(chunkedUploadService.writeChunk(uploadId, offset, length, content));
+    }
+  }
+
+  @PostMapping("/{uploadId}/complete")
+  public ResponseEntity<@NonNull FileUploadResponse> completeUpload(@PathVariable String uploadId) {
+    log.info("Completion request for upload {}", uploadId);
+    var response = chunkedUploadService.complete(uploadId);
+    log.info("Chunked upload {} completed with access code {}", uploadId, response.accessCode());
+    return ResponseEntity.ok(response);
+  }
+}
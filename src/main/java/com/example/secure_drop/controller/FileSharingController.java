@@ -1,17 +1,42 @@
 package com.example.secure_drop.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.fileupload2.core.DiskFileItem;
+import org.apache.commons.fileupload2.core.DiskFileItemFactory;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileUploadSizeException;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
 import org.jspecify.annotations.NonNull;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.servlet.autoconfigure.MultipartProperties;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import com.example.secure_drop.dto.AccessCodeFormatResponse;
+import com.example.secure_drop.dto.FileDownloadWrapper;
 import com.example.secure_drop.dto.FileUploadResponse;
+import com.example.secure_drop.exception.InvalidMultipartFileException;
+import com.example.secure_drop.exception.InvalidUploadException;
+import com.example.secure_drop.model.StoragePolicy;
+import com.example.secure_drop.service.accesscode.AccessCodeFormat;
+import com.example.secure_drop.service.encryption.ContentCodec;
 import com.example.secure_drop.service.filesharing.FileSharingService;
 import com.example.secure_drop.service.filesharing.model.CustomMultipartFile;
 
@@ -20,27 +45,165 @@ import com.example.secure_drop.service.filesharing.model.CustomMultipartFile;
 @RequiredArgsConstructor
 @Slf4j
 public class FileSharingController {
+  private static final String FILE_PART = "file";
+  private static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
   private final FileSharingService fileSharingService;
+  // Only bound when the servlet stack is, which a context started without a web server is not
+  private final ObjectProvider<MultipartProperties> multipartProperties;
+  private final AccessCodeFormat accessCodeFormat;
 
   @PostMapping("/upload")
-  public ResponseEntity<@NonNull FileUploadResponse> uploadFile(@RequestParam MultipartFile file) {
-    log.info("Received upload request for file: {}", file.getOriginalFilename());
+  public ResponseEntity<@NonNull FileUploadResponse> uploadFile(@RequestParam MultipartFile file,
+      @RequestParam(defaultValue = "SERVER_ENCRYPTED") StoragePolicy policy) {
+    log.info("Received upload request for file: {} (policy={})", file.getOriginalFilename(), policy);
     var uploadedMultipartFile = new CustomMultipartFile(file);
-    var response = fileSharingService.uploadFile(uploadedMultipartFile);
+    var response = fileSharingService.uploadFile(uploadedMultipartFile, policy);
     log.info("Upload completed for file: {} with access code {}", file.getOriginalFilename(), response.accessCode());
     return ResponseEntity.ok(response);
   }
 
+  /**
+   * Same as {@link #uploadFile(MultipartFile, StoragePolicy)}, but parses the multipart body as it arrives and
+   * encrypts the {@code file} part straight into storage instead of spooling it to a temp file first.
+   * Parts before it are skipped, anything after it is ignored.
+   */
+  @PostMapping(path = "/upload/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+  public ResponseEntity<@NonNull FileUploadResponse> uploadFileStream(HttpServletRequest request)
+      throws IOException {
+    // Request parameters would make the container parse the whole multipart body, so the policy
+    // is read from the query string alone
+    var policy = parsePolicy(UriComponentsBuilder.newInstance().query(request.getQueryString()).build()
+        .getQueryParams().getFirst("policy"));
+
+    var limits = multipartProperties.getIfAvailable(MultipartProperties::new);
+    var upload = new JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory>();
+    upload.setFileSizeMax(limits.getMaxFileSize().toBytes());
+    upload.setSizeMax(limits.getMaxRequestSize().toBytes());
+
+    try {
+      var parts = upload.getItemIterator(request);
+      while (parts.hasNext()) {
+        var part = parts.next();
+        if (part.isFormField() || !FILE_PART.equals(part.getFieldName())) {
+          continue;
+        }
+
+        log.info("Received streaming upload request for file: {}", part.getName());
+        FileUploadResponse response;
+        try (InputStream content = part.getInputStream()) {
+          // The request length bounds the part's, which is all the encryption strategy needs
+          response = fileSharingService.uploadFile(requireFilename(part), requireContentType(part), content,
+              request.getContentLengthLong(), policy);
+        }
+        log.info("Streaming upload completed for file: {} with access code {}", part.getName(), response.accessCode());
+        return ResponseEntity.ok(response);
+      }
+    } catch (FileUploadSizeException e) {
+      throw new MaxUploadSizeExceededException(e.getPermitted(), e);
+    } catch (RuntimeException e) {
+      // The part stream fails mid-encryption once the limit is crossed; storage wraps that failure
+      if (e.getCause() instanceof FileUploadSizeException sizeException) {
+        throw new MaxUploadSizeExceededException(sizeException.getPermitted(), sizeException);
+      }
+      throw e;
+    }
+
+    throw new InvalidMultipartFileException("Required part '" + FILE_PART + "' is not present.");
+  }
+
   @GetMapping("/download/{accessCode}")
-  public ResponseEntity<@NonNull Resource> downloadFile(@PathVariable String accessCode) {
+  public ResponseEntity<?> downloadFile(@PathVariable String accessCode, @RequestHeader HttpHeaders headers,
+      HttpServletRequest request) throws IOException {
     log.info("Download request received for access code {}", accessCode);
-    var wrapper = fileSharingService.getFile(accessCode);
+    var ranges = parseRanges(headers);
+    var ifRange = ranges.isEmpty() ? null : parseIfRange(headers.getFirst(HttpHeaders.IF_RANGE));
+
+    FileDownloadWrapper wrapper;
+    try {
+      // A new download session gets an entity tag no If-Range can match yet, so a Range sent alone
+      // applies to it; one the file cannot satisfy is refused before a download is spent on it
+      wrapper = fileSharingService.getFile(accessCode, downloadSessionOf(ifRange), file -> {
+        if (!ranges.isEmpty() && headers.getFirst(HttpHeaders.IF_RANGE) == null && offersRanges(headers, file)
+            && !isSatisfiable(ranges, file.resource())) {
+          throw new UnsatisfiableRangeException(file.resource());
+        }
+      });
+    } catch (UnsatisfiableRangeException e) {
+      log.info("Unsatisfiable ranges {} for access code {}, no download consumed", ranges, accessCode);
+      return rangeNotSatisfiable(e.resource).build();
+    }
     log.info("File retrieved: {} (type={})", wrapper.originalFileName(), wrapper.contentType());
 
-    return ResponseEntity.ok()
+    var resource = wrapper.resource();
+    var response = ResponseEntity.ok()
         .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + wrapper.originalFileName() + "\"")
-        .contentType(MediaType.parseMediaType(wrapper.contentType()))
-        .body(wrapper.resource());
+        .contentType(MediaType.parseMediaType(wrapper.contentType()));
+
+    var eTag = wrapper.downloadSession();
+    if (wrapper.contentEncoding() != null) {
+      response.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      if (!acceptsEncoding(headers, wrapper.contentEncoding())) {
+        // Inflated while it is written: the decoded length is unknown, so the body is chunked and
+        // ranges are not offered
+        log.info("Decoding {} for access code {}", wrapper.originalFileName(), accessCode);
+        return response
+            .eTag(eTag)
+            .header(HttpHeaders.ACCEPT_RANGES, "none")
+            .body(new InputStreamResource(new InflaterInputStream(resource.getInputStream())));
+      }
+      // The stored bytes are the encoded representation, so they go out as they are and ranges
+      // apply to them; its own entity tag keeps a range of it from being applied to the decoded
+      // bytes, or the other way round
+      response.header(HttpHeaders.CONTENT_ENCODING, wrapper.contentEncoding());
+      eTag = wrapper.downloadSession() + "-" + wrapper.contentEncoding();
+    }
+    response.eTag(eTag);
+
+    if (headers.getFirst(HttpHeaders.RANGE) == null && wrapper.storagePolicy() == StoragePolicy.CLIENT_ENCRYPTED
+        && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE)) && resource.isFile()) {
+      // Stored bytes go out as they are: the container sends the file with sendfile once this
+      // returns, so the body never passes through the JVM heap
+      long length = resource.contentLength();
+      log.info("Sending {} with sendfile for access code {}", wrapper.originalFileName(), accessCode);
+      request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, resource.getFile().getAbsolutePath());
+      request.setAttribute(SENDFILE_START_ATTRIBUTE, 0L);
+      request.setAttribute(SENDFILE_END_ATTRIBUTE, length);
+      return response
+          .contentLength(length)
+          .build();
+    }
+
+    if (headers.getFirst(HttpHeaders.RANGE) == null) {
+      // The resource decrypts while it is written, so the body is streamed with bounded memory
+      return response
+          .contentLength(resource.contentLength())
+          .body(resource);
+    }
+
+    // A stale If-Range validator or a malformed Range means the client gets the full body, per RFC 9110
+    boolean rangeApplies = !ranges.isEmpty()
+        && (headers.getFirst(HttpHeaders.IF_RANGE) == null || eTag.equals(ifRange));
+    if (rangeApplies) {
+      if (!isSatisfiable(ranges, resource)) {
+        log.info("Unsatisfiable ranges {} of {} for access code {}", ranges, wrapper.originalFileName(), accessCode);
+        return rangeNotSatisfiable(resource)
+            .eTag(eTag)
+            .build();
+      }
+      // Spring turns a Resource body into a 206 response for the Range header; each region
+      // skips straight to its first encrypted segment
+      log.info("Serving ranges {} of {} for access code {}", ranges, wrapper.originalFileName(), accessCode);
+      return response.body(resource);
+    }
+
+    // Spring leaves InputStreamResource bodies alone, so the Range header is not applied to it
+    return response
+        .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+        .contentLength(resource.contentLength())
+        .body(new InputStreamResource(resource.getInputStream()));
   }
 
   @GetMapping("/{accessCode}/info")
@@ -50,4 +213,140 @@ public class FileSharingController {
     log.debug("Info retrieved: {}", info);
     return ResponseEntity.ok(info);
   }
+
+  @GetMapping("/access-code-format")
+  public ResponseEntity<@NonNull AccessCodeFormatResponse> getAccessCodeFormat() {
+    return ResponseEntity.ok(new AccessCodeFormatResponse(
+        accessCodeFormat.symbols(),
+        accessCodeFormat.groupSize(),
+        accessCodeFormat.codeLength(),
+        accessCodeFormat.alphabet()));
+  }
+
+  private static boolean acceptsEncoding(HttpHeaders headers, String encoding) {
+    Boolean wildcard = null;
+    for (var value : headers.getValuesAsList(HttpHeaders.ACCEPT_ENCODING)) {
+      var parameters = value.split(";");
+      var token = parameters[0].trim();
+      boolean accepted = !hasZeroQuality(parameters);
+      if (token.equalsIgnoreCase(encoding)) {
+        return accepted;
+      }
+      if (token.equals("*")) {
+        wildcard = accepted;
+      }
+    }
+    return Boolean.TRUE.equals(wildcard);
+  }
+
+  /**
+   * Whether ranges apply to the body {@code file} is sent as: not to one decoded on the way out.
+   */
+  private static boolean offersRanges(HttpHeaders headers, FileDownloadWrapper file) {
+    return file.contentEncoding() == null || acceptsEncoding(headers, file.contentEncoding());
+  }
+
+  private static boolean hasZeroQuality(String[] parameters) {
+    for (int i = 1; i < parameters.length; i++) {
+      var parameter = parameters[i].trim();
+      if (parameter.startsWith("q=")) {
+        try {
+          return Double.parseDouble(parameter.substring(2)) == 0;
+        } catch (NumberFormatException e) {
+          return false;
+        }
+      }
+    }
+    return false;
+  }
+
+  private List<HttpRange> parseRanges(HttpHeaders headers) {
+    try {
+      return headers.getRange();
+    } catch (IllegalArgumentException e) {
+      // Malformed Range headers are ignored rather than rejected
+      log.debug("Ignoring malformed Range header: {}", e.getMessage());
+      return List.of();
+    }
+  }
+
+  private static boolean isSatisfiable(List<HttpRange> ranges, Resource resource) {
+    try {
+      HttpRange.toResourceRegions(ranges, resource);
+      return true;
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  private static ResponseEntity.BodyBuilder rangeNotSatisfiable(Resource resource) throws IOException {
+    // Spring would set 416 but still write the whole resource as its body
+    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + resource.contentLength());
+  }
+
+  private String parseIfRange(String ifRange) {
+    // Only strong entity tags can validate a range; dates and weak tags never match
+    if (ifRange == null || ifRange.length() < 2 || !ifRange.startsWith("\"") || !ifRange.endsWith("\"")) {
+      return null;
+    }
+    return ifRange.substring(1, ifRange.length() - 1);
+  }
+
+  /**
+   * The download session an entity tag was made from, without the content coding an encoded
+   * representation's tag carries.
+   */
+  private static String downloadSessionOf(String eTag) {
+    if (eTag == null) {
+      return null;
+    }
+    for (var codec : ContentCodec.values()) {
+      var suffix = "-" + codec.contentEncoding();
+      if (codec.contentEncoding() != null && eTag.endsWith(suffix)) {
+        return eTag.substring(0, eTag.length() - suffix.length());
+      }
+    }
+    return eTag;
+  }
+
+  private StoragePolicy parsePolicy(String policy) {
+    if (policy == null || policy.isBlank()) {
+      return StoragePolicy.SERVER_ENCRYPTED;
+    }
+    try {
+      return StoragePolicy.valueOf(policy);
+    } catch (IllegalArgumentException e) {
+      throw new InvalidUploadException("Unknown storage policy: " + policy);
+    }
+  }
+
+  private String requireFilename(FileItemInput part) {
+    var filename = part.getName();
+    if (filename == null || filename.isBlank()) {
+      throw new InvalidMultipartFileException("Original filename cannot be null or blank.");
+    }
+    return filename;
+  }
+
+  private String requireContentType(FileItemInput part) {
+    var type = part.getContentType();
+    if (type == null || type.isBlank()) {
+      throw new InvalidMultipartFileException("Content type cannot be null or blank.");
+    }
+    return type;
+  }
+
+  /**
+   * Thrown out of the check before a download is consumed, for the response to say how long the
+   * file is.
+   */
+  private static final class UnsatisfiableRangeException extends RuntimeException {
+    private final transient Resource resource;
+
+    UnsatisfiableRangeException(Resource resource) {
+      super("Range not satisfiable");
+      this.resource = resource;
+    }
+  }
 }
\ No newline at end of file
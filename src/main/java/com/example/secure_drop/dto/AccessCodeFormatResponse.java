@@ -0,0 +1,13 @@
+package com.example.secure_drop.dto;
+
+/**
+ * Shape of the access codes this instance issues, so clients can check and group what is typed:
+ * {@code symbols} characters from {@code alphabet}, a '-' after every {@code groupSize} of them
+ * (none when 0), {@code codeLength} characters in all.
+ */
+public record AccessCodeFormatResponse(
+        int symbols,
+        int groupSize,
+        int codeLength,
+        String alphabet) {
+}
@@ -0,0 +1,8 @@
+package com.example.secure_drop.dto;
+
+public record FileCleanupCandidate(
+        Long id,
+        String storagePath,
+        String accessCode,
+        boolean deduplicated) {
+}
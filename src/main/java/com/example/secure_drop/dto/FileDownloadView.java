@@ -0,0 +1,45 @@
+package com.example.secure_drop.dto;
+
+import java.sql.Timestamp;
+
+import com.example.secure_drop.model.FileMetadata;
+import com.example.secure_drop.model.StoragePolicy;
+
+public record FileDownloadView(
+        Long id,
+        String accessCode,
+        String fileName,
+        String fileType,
+        String storagePath,
+        StoragePolicy storagePolicy,
+        Timestamp expiryDate,
+        Integer maxDownloads,
+        String downloadSession,
+        Timestamp downloadSessionExpiry) {
+
+  public static FileDownloadView of(FileMetadata fileMetadata) {
+    return new FileDownloadView(
+        fileMetadata.getId(),
+        fileMetadata.getAccessCode(),
+        fileMetadata.getFileName(),
+        fileMetadata.getFileType(),
+        fileMetadata.getStoragePath(),
+        fileMetadata.getStoragePolicy(),
+        fileMetadata.getExpiryDate(),
+        fileMetadata.getMaxDownloads(),
+        fileMetadata.getDownloadSession(),
+        fileMetadata.getDownloadSessionExpiry());
+  }
+
+  public boolean isConsumed() {
+    return maxDownloads <= 0;
+  }
+
+  /**
+   * This view after one download was consumed, starting the given session.
+   */
+  public FileDownloadView withConsumedDownload(String session, Timestamp sessionExpiry) {
+    return new FileDownloadView(id, accessCode, fileName, fileType, storagePath, storagePolicy, expiryDate,
+        maxDownloads - 1, session, sessionExpiry);
+  }
+}
@@ -2,8 +2,13 @@ package com.example.secure_drop.dto;
 
 import org.springframework.core.io.Resource;
 
+import com.example.secure_drop.model.StoragePolicy;
+
 public record FileDownloadWrapper(
         Resource resource,
         String contentType,
-        String originalFileName) {
+        String originalFileName,
+        String downloadSession,
+        StoragePolicy storagePolicy,
+        String contentEncoding) {
 }
\ No newline at end of file
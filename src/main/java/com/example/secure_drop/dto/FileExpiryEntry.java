@@ -0,0 +1,21 @@
+package com.example.secure_drop.dto;
+
+import java.sql.Timestamp;
+
+public record FileExpiryEntry(
+        Long id,
+        Timestamp expiryDate,
+        Integer maxDownloads,
+        Timestamp downloadSessionExpiry) {
+
+  /**
+   * When the file becomes eligible for cleanup: its expiry date, or the end of its download
+   * session once its downloads are used up.
+   */
+  public Timestamp dueAt() {
+    if (maxDownloads > 0 || downloadSessionExpiry == null || downloadSessionExpiry.after(expiryDate)) {
+      return expiryDate;
+    }
+    return downloadSessionExpiry;
+  }
+}
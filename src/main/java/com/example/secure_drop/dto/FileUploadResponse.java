@@ -2,9 +2,12 @@ package com.example.secure_drop.dto;
 
 import java.time.LocalDateTime;
 
+import com.example.secure_drop.model.StoragePolicy;
+
 public record FileUploadResponse(
         String accessCode,
         String fileName,
         LocalDateTime expiresAt,
-        String downloadUrl) {
+        String downloadUrl,
+        StoragePolicy storagePolicy) {
 }
\ No newline at end of file
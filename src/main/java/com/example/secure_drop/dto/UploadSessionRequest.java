@@ -0,0 +1,7 @@
+package com.example.secure_drop.dto;
+
+public record UploadSessionRequest(
+        String fileName,
+        String contentType,
+        Long size) {
+}
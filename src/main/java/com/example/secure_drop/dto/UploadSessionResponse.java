@@ -0,0 +1,17 @@
+package com.example.secure_drop.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * State of a chunked upload: the next chunk starts at {@code receivedBytes}, and every chunk but
+ * the last must be a multiple of {@code chunkAlignment} bytes and at most {@code maxChunkSize}.
+ */
+public record UploadSessionResponse(
+        String uploadId,
+        String fileName,
+        long size,
+        long receivedBytes,
+        int chunkAlignment,
+        long maxChunkSize,
+        LocalDateTime expiresAt) {
+}
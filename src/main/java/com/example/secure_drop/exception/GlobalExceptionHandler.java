@@ -9,6 +9,7 @@ import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import com.example.secure_drop.config.ErrorDocsProperties;
@@ -46,6 +47,18 @@ public class GlobalExceptionHandler {
     return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(problem);
   }
 
+  @ExceptionHandler(MaxUploadSizeExceededException.class)
+  public ResponseEntity<@NonNull ProblemDetail> handleMaxUploadSize(MaxUploadSizeExceededException ex,
+      HttpServletRequest request) {
+    log.warn("Upload size limit exceeded: {}", ex.getMessage());
+    ProblemDetail problem = buildProblemDetail(HttpStatus.CONTENT_TOO_LARGE,
+        "Upload too large",
+        ex.getMessage(),
+        "upload-too-large",
+        request);
+    return ResponseEntity.status(HttpStatus.CONTENT_TOO_LARGE).body(problem);
+  }
+
   @ExceptionHandler(MaxDownloadsExceededException.class)
   public ResponseEntity<@NonNull ProblemDetail> handleMaxDownloads(MaxDownloadsExceededException ex,
       HttpServletRequest request) {
@@ -94,6 +107,42 @@ public class GlobalExceptionHandler {
     return ResponseEntity.status(HttpStatus.GONE).body(problem);
   }
 
+  @ExceptionHandler(InvalidUploadException.class)
+  public ResponseEntity<@NonNull ProblemDetail> handleInvalidUpload(InvalidUploadException ex,
+      HttpServletRequest request) {
+    log.warn("Invalid upload: {}", ex.getMessage());
+    ProblemDetail problem = buildProblemDetail(HttpStatus.BAD_REQUEST,
+        "Invalid upload",
+        ex.getMessage(),
+        "invalid-upload",
+        request);
+    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(problem);
+  }
+
+  @ExceptionHandler(UploadSessionNotFoundException.class)
+  public ResponseEntity<@NonNull ProblemDetail> handleUploadSessionNotFound(UploadSessionNotFoundException ex,
+      HttpServletRequest request) {
+    log.warn("Upload not found: {}", ex.getMessage());
+    ProblemDetail problem = buildProblemDetail(HttpStatus.NOT_FOUND,
+        "Upload not found",
+        ex.getMessage(),
+        "upload-not-found",
+        request);
+    return ResponseEntity.status(HttpStatus.NOT_FOUND).body(problem);
+  }
+
+  @ExceptionHandler(UploadConflictException.class)
+  public ResponseEntity<@NonNull ProblemDetail> handleUploadConflict(UploadConflictException ex,
+      HttpServletRequest request) {
+    log.warn("Upload conflict: {}", ex.getMessage());
+    ProblemDetail problem = buildProblemDetail(HttpStatus.CONFLICT,
+        "Upload conflict",
+        ex.getMessage(),
+        "upload-conflict",
+        request);
+    return ResponseEntity.status(HttpStatus.CONFLICT).body(problem);
+  }
+
   private ProblemDetail buildProblemDetail(HttpStatus status, String title, String detail,
       String errorPath, HttpServletRequest request) {
     ProblemDetail problem = ProblemDetail.forStatus(status);
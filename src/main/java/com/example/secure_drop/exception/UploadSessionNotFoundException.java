@@ -0,0 +1,7 @@
+package com.example.secure_drop.exception;
+
+public class UploadSessionNotFoundException extends RuntimeException {
+  public UploadSessionNotFoundException(String uploadId) {
+    super("No upload in progress with id: " + uploadId);
+  }
+}
@@ -4,6 +4,8 @@ import java.sql.Timestamp;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -29,9 +31,23 @@ public class FileMetadata {
   @Column(nullable = false)
   private String fileType;
 
+  /**
+   * URI of the stored file, naming its backend: {@code file:} or {@code s3:}. Rows from before
+   * there was a choice of backend hold a plain local path.
+   */
   @Column(nullable = false)
   private String storagePath;
 
+  @Builder.Default
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false, length = 32)
+  private StoragePolicy storagePolicy = StoragePolicy.SERVER_ENCRYPTED;
+
+  /** Whether {@link #storagePath} is a {@link StoredBlob} other uploads may share. */
+  @Builder.Default
+  @Column(nullable = false)
+  private boolean deduplicated = false;
+
   @Column(nullable = false, unique = true)
   private String accessCode;
 
@@ -46,6 +62,12 @@ public class FileMetadata {
   @Column(nullable = false)
   private Integer maxDownloads = -1;
 
+  @Column
+  private String downloadSession;
+
+  @Column
+  private Timestamp downloadSessionExpiry;
+
   public boolean isConsumed() {
     return maxDownloads <= 0;
   }
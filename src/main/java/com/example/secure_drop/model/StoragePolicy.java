@@ -0,0 +1,15 @@
+package com.example.secure_drop.model;
+
+/**
+ * How an uploaded file is protected at rest, chosen per upload.
+ */
+public enum StoragePolicy {
+  /** Encrypted by the server with its key; downloads are decrypted on the fly. */
+  SERVER_ENCRYPTED,
+  /**
+   * Already encrypted by the client, e.g. with a key kept in the URL fragment, and stored as
+   * received. Downloads hand the stored bytes to the container as they are, so they can go out
+   * with sendfile. Only for trusted deployments that enable it.
+   */
+  CLIENT_ENCRYPTED
+}
@@ -0,0 +1,44 @@
+package com.example.secure_drop.model;
+
+import java.sql.Timestamp;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A stored file shared by every upload of the same content, counted by the
+ * {@link FileMetadata} rows that reference it.
+ */
+@Entity
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredBlob {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  /** Hex HMAC-SHA256 of the plaintext. */
+  @Column(nullable = false, unique = true, length = 64)
+  private String digest;
+
+  @Column(nullable = false, unique = true)
+  private String fileName;
+
+  @Builder.Default
+  @Column(nullable = false)
+  private Integer refCount = 1;
+
+  @Builder.Default
+  @Column(nullable = false, updatable = false)
+  private Timestamp createdDate = new Timestamp(System.currentTimeMillis());
+}
@@ -0,0 +1,55 @@
+package com.example.secure_drop.model;
+
+import java.sql.Timestamp;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession {
+  @Id
+  private String id;
+
+  @Column(nullable = false)
+  private String fileName;
+
+  @Column(nullable = false)
+  private String fileType;
+
+  /** Name of the stored file the chunks are encrypted into. */
+  @Column(nullable = false)
+  private String storageFile;
+
+  /** Plaintext size announced when the upload started. */
+  @Column(nullable = false)
+  private Long size;
+
+  @Column(nullable = false)
+  private Integer segmentSize;
+
+  @Builder.Default
+  @Column(nullable = false)
+  private Long receivedBytes = 0L;
+
+  @Column(nullable = false)
+  private Timestamp expiryDate;
+
+  /** Set while the received file is being published under an access code. */
+  @Builder.Default
+  @Column(nullable = false)
+  private boolean completing = false;
+
+  public boolean isComplete() {
+    return receivedBytes.equals(size);
+  }
+}
@@ -1,18 +1,116 @@
 package com.example.secure_drop.repo;
 
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.example.secure_drop.dto.FileCleanupCandidate;
+import com.example.secure_drop.dto.FileDownloadView;
+import com.example.secure_drop.dto.FileExpiryEntry;
 import com.example.secure_drop.model.FileMetadata;
 
 public interface FileMetadataRepo extends JpaRepository<FileMetadata, Long> {
 
-  boolean existsByAccessCode(String accessCode);
+  @Transactional(readOnly = true)
+  @Query("""
+      select new com.example.secure_drop.dto.FileDownloadView(
+          m.id, m.accessCode, m.fileName, m.fileType, m.storagePath, m.storagePolicy, m.expiryDate, m.maxDownloads,
+          m.downloadSession, m.downloadSessionExpiry)
+      from FileMetadata m
+      where m.accessCode = :accessCode
+      """)
+  Optional<FileDownloadView> findDownloadViewByAccessCode(@Param("accessCode") String accessCode);
 
-  Optional<FileMetadata> findByAccessCode(String accessCode);
+  @Query("select m.accessCode from FileMetadata m")
+  Stream<String> streamAllAccessCodes();
 
-  List<FileMetadata> findByMaxDownloadsEqualsOrExpiryDateBefore(Integer maxDownloads, Timestamp now);
+  @Query("""
+      select new com.example.secure_drop.dto.FileExpiryEntry(
+          m.id, m.expiryDate, m.maxDownloads, m.downloadSessionExpiry)
+      from FileMetadata m
+      """)
+  Stream<FileExpiryEntry> streamAllExpiryEntries();
+
+  /**
+   * Expired files, plus consumed files whose resumable download session has ended, in id order
+   * after {@code afterId} so large backlogs can be walked in keyset-paginated batches.
+   */
+  @Query("""
+      select new com.example.secure_drop.dto.FileCleanupCandidate(m.id, m.storagePath, m.accessCode,
+          m.deduplicated)
+      from FileMetadata m
+      where m.id > :afterId
+        and (m.expiryDate < :now
+         or (m.maxDownloads <= 0 and (m.downloadSessionExpiry is null or m.downloadSessionExpiry < :now)))
+      order by m.id
+      """)
+  List<FileCleanupCandidate> findConsumedOrExpired(@Param("now") Timestamp now, @Param("afterId") long afterId,
+      Limit limit);
+
+  @Query("""
+      select new com.example.secure_drop.dto.FileCleanupCandidate(m.id, m.storagePath, m.accessCode,
+          m.deduplicated)
+      from FileMetadata m
+      where m.id in :ids
+        and (m.expiryDate < :now
+         or (m.maxDownloads <= 0 and (m.downloadSessionExpiry is null or m.downloadSessionExpiry < :now)))
+      """)
+  List<FileCleanupCandidate> findConsumedOrExpiredByIdIn(@Param("now") Timestamp now,
+      @Param("ids") Collection<Long> ids);
+
+  @Query("""
+      select new com.example.secure_drop.dto.FileCleanupCandidate(m.id, m.storagePath, m.accessCode,
+          m.deduplicated)
+      from FileMetadata m
+      where m.id = :id and m.maxDownloads <= 0
+      """)
+  List<FileCleanupCandidate> findConsumedById(@Param("id") Long id);
+
+  @Query("""
+      select count(m) from FileMetadata m
+      where m.expiryDate < :now
+         or (m.maxDownloads <= 0 and (m.downloadSessionExpiry is null or m.downloadSessionExpiry < :now))
+      """)
+  long countConsumedOrExpired(@Param("now") Timestamp now);
+
+  /**
+   * Consumes one download and starts a new download session, only while the file is still
+   * downloadable. Returns the number of rows updated: 0 means access must be refused.
+   */
+  @Transactional
+  @Modifying(clearAutomatically = true, flushAutomatically = true)
+  @Query("""
+      update FileMetadata m
+      set m.maxDownloads = m.maxDownloads - 1,
+          m.downloadSession = :downloadSession,
+          m.downloadSessionExpiry = :downloadSessionExpiry
+      where m.accessCode = :accessCode
+        and m.maxDownloads > 0
+        and m.expiryDate > :now
+      """)
+  int consumeDownload(
+      @Param("accessCode") String accessCode,
+      @Param("now") Timestamp now,
+      @Param("downloadSession") String downloadSession,
+      @Param("downloadSessionExpiry") Timestamp downloadSessionExpiry);
+
+  /**
+   * Points every upload stored at {@code oldPath} to {@code newPath}, for files moved on disk.
+   */
+  @Transactional
+  @Modifying(clearAutomatically = true, flushAutomatically = true)
+  @Query("update FileMetadata m set m.storagePath = :newPath where m.storagePath = :oldPath")
+  int updateStoragePath(@Param("oldPath") String oldPath, @Param("newPath") String newPath);
+
+  @Query("select m.storagePath from FileMetadata m where m.storagePath in :paths")
+  List<String> findStoragePathsIn(@Param("paths") Collection<String> paths);
 }
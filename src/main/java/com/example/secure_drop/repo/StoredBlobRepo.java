@@ -0,0 +1,52 @@
+package com.example.secure_drop.repo;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.secure_drop.model.StoredBlob;
+
+public interface StoredBlobRepo extends JpaRepository<StoredBlob, Long> {
+
+  /**
+   * Adds a reference to the blob holding {@code digest}. Returns the number of rows updated: 0
+   * means there is no such blob, or it was just deleted, and the content must be stored anew.
+   * A blob held this way cannot be deleted, even if it had just dropped to no references.
+   */
+  @Transactional
+  @Modifying(clearAutomatically = true, flushAutomatically = true)
+  @Query("update StoredBlob b set b.refCount = b.refCount + 1 where b.digest = :digest")
+  int acquire(@Param("digest") String digest);
+
+  @Query("select b.fileName from StoredBlob b where b.digest = :digest")
+  Optional<String> findFileNameByDigest(@Param("digest") String digest);
+
+  @Transactional
+  @Modifying(clearAutomatically = true, flushAutomatically = true)
+  @Query("update StoredBlob b set b.refCount = b.refCount - 1 where b.fileName = :fileName")
+  int release(@Param("fileName") String fileName);
+
+  /**
+   * Forgets a blob nothing references any more. Returns the number of rows deleted: only a
+   * caller that got 1 may delete the stored file, since a concurrent {@link #acquire(String)}
+   * keeps the row.
+   */
+  @Transactional
+  @Modifying(clearAutomatically = true, flushAutomatically = true)
+  @Query("delete from StoredBlob b where b.fileName = :fileName and b.refCount <= 0")
+  int deleteUnreferenced(@Param("fileName") String fileName);
+
+  @Transactional
+  @Modifying(clearAutomatically = true, flushAutomatically = true)
+  @Query("update StoredBlob b set b.fileName = :newFileName where b.fileName in :oldFileNames")
+  int rename(@Param("oldFileNames") Collection<String> oldFileNames, @Param("newFileName") String newFileName);
+
+  @Query("select b.fileName from StoredBlob b where b.fileName in :fileNames")
+  List<String> findFileNamesIn(@Param("fileNames") Collection<String> fileNames);
+}
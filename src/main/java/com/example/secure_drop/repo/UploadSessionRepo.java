@@ -0,0 +1,70 @@
+package com.example.secure_drop.repo;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.secure_drop.model.UploadSession;
+
+public interface UploadSessionRepo extends JpaRepository<UploadSession, String> {
+
+  /**
+   * Records a written chunk and extends the session, only if no other chunk was recorded since
+   * {@code expected} was read. Returns the number of rows updated: 0 means the chunk lost the race.
+   */
+  @Transactional
+  @Modifying(clearAutomatically = true, flushAutomatically = true)
+  @Query("""
+      update UploadSession s
+      set s.receivedBytes = :received, s.expiryDate = :expiryDate
+      where s.id = :id and s.receivedBytes = :expected
+      """)
+  int advance(@Param("id") String id, @Param("expected") long expected, @Param("received") long received,
+      @Param("expiryDate") Timestamp expiryDate);
+
+  /**
+   * Marks a fully received upload as being published and extends it past the publish. Returns the
+   * number of rows updated, so only one of several concurrent completions goes on to publish.
+   */
+  @Transactional
+  @Modifying(clearAutomatically = true, flushAutomatically = true)
+  @Query("""
+      update UploadSession s set s.completing = true, s.expiryDate = :expiryDate
+      where s.id = :id and s.receivedBytes = s.size and s.completing = false
+      """)
+  int markCompleting(@Param("id") String id, @Param("expiryDate") Timestamp expiryDate);
+
+  /**
+   * Hands an upload whose publish failed back to its client, who may complete it again.
+   */
+  @Transactional
+  @Modifying(clearAutomatically = true, flushAutomatically = true)
+  @Query("update UploadSession s set s.completing = false where s.id = :id")
+  int clearCompleting(@Param("id") String id);
+
+  /**
+   * Ends an upload that has sat idle past its expiry. Returns the number of rows deleted: 0 means
+   * a chunk arrived in the meantime and the upload lives on.
+   */
+  @Transactional
+  @Modifying(clearAutomatically = true, flushAutomatically = true)
+  @Query("delete from UploadSession s where s.id = :id and s.expiryDate < :now")
+  int deleteExpired(@Param("id") String id, @Param("now") Timestamp now);
+
+  List<UploadSession> findByExpiryDateBeforeOrderByExpiryDate(Timestamp now, Limit limit);
+
+  @Transactional
+  @Modifying(clearAutomatically = true, flushAutomatically = true)
+  @Query("update UploadSession s set s.storageFile = :newFile where s.storageFile in :oldFiles")
+  int renameStorageFile(@Param("oldFiles") Collection<String> oldFiles, @Param("newFile") String newFile);
+
+  @Query("select s.storageFile from UploadSession s where s.storageFile in :files")
+  List<String> findStorageFilesIn(@Param("files") Collection<String> files);
+}
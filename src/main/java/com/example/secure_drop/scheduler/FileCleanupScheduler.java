@@ -5,50 +5,47 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import com.example.secure_drop.model.FileMetadata;
-import com.example.secure_drop.repo.FileMetadataRepo;
-import com.example.secure_drop.service.filestorage.FileStorageService;
-
-import java.nio.file.Path;
-import java.sql.Timestamp;
-import java.time.Clock;
-import java.time.LocalDateTime;
+import com.example.secure_drop.service.chunkedupload.ChunkedUploadService;
+import com.example.secure_drop.service.filecleanup.FileCleanupService;
 
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class FileCleanupScheduler {
-  private final FileMetadataRepo fileMetadataRepo;
-  private final FileStorageService fileStorageService;
-  private final Clock clock;
-
-  @Scheduled(cron = "0 * * * * *")
+  private final FileCleanupService fileCleanupService;
+  private final ChunkedUploadService chunkedUploadService;
+
+  /**
+   * Safety net for the expiry timer: catches files it lost, e.g. to a failed tick or to rows
+   * written by another instance.
+   */
+  @Scheduled(cron = "${cleanup.reconcile-cron:0 */15 * * * *}")
   public void cleanupConsumedOrExpiredFiles() {
-    var expiredOrConsumedFiles = fileMetadataRepo
-        .findByMaxDownloadsEqualsOrExpiryDateBefore(0, Timestamp.valueOf(LocalDateTime.now(clock)));
-
-    if (expiredOrConsumedFiles.isEmpty()) {
-      log.debug("No consumed or expired files found for cleanup.");
-      return;
+    try {
+      fileCleanupService.cleanupConsumedOrExpired();
+    } catch (Exception e) {
+      log.error("File cleanup run failed", e);
     }
+  }
 
-    for (FileMetadata file : expiredOrConsumedFiles) {
-      var filePath = Path.of(file.getStoragePath());
-      try {
-        boolean deleted = fileStorageService.delete(filePath);
-
-        if (deleted) {
-          log.info("Deleted file '{}' at path {}", file.getFileName(), filePath);
-        } else {
-          log.warn("File '{}' not found at path {}", file.getFileName(), filePath);
-        }
-
-        fileMetadataRepo.delete(file);
-        log.debug("Deleted metadata record for file '{}'", file.getFileName());
+  /**
+   * Removes stored files nothing refers to, e.g. left behind by a crash or a failed upload.
+   */
+  @Scheduled(cron = "${cleanup.orphan-scan-cron:0 45 * * * *}")
+  public void removeOrphanedFiles() {
+    try {
+      fileCleanupService.removeOrphans();
+    } catch (Exception e) {
+      log.error("Orphaned file scan failed", e);
+    }
+  }
 
-      } catch (Exception e) {
-        log.error("Failed to delete file '{}' at path {}", file.getFileName(), filePath, e);
-      }
+  @Scheduled(cron = "${cleanup.reconcile-cron:0 */15 * * * *}")
+  public void purgeExpiredUploads() {
+    try {
+      chunkedUploadService.purgeExpired();
+    } catch (Exception e) {
+      log.error("Chunked upload cleanup run failed", e);
     }
   }
 }
@@ -0,0 +1,211 @@
+package com.example.secure_drop.service.accesscode;
+
+import java.util.Arrays;
+
+import org.springframework.stereotype.Component;
+
+import com.example.secure_drop.config.AccessCodeProperties;
+
+/**
+ * Shape of an access code: {@code length} symbols from {@code alphabet}, split into groups by
+ * '-', the last symbol optionally being a Luhn mod N check symbol over the others. The check
+ * symbol catches every single-symbol error and every swap of neighbouring symbols but one: the
+ * first and last symbols of the alphabet ('0' and 'Z' by default), as with Luhn's 09 and 90.
+ */
+@Component
+public class AccessCodeFormat {
+  private static final char SEPARATOR = '-';
+
+  private final char[] alphabet;
+  private final int[] symbolIndex = new int[128];
+  private final int symbolCount;
+  private final int symbols;
+  private final int payloadLength;
+  private final int groupSize;
+  private final boolean checksum;
+  private final int codeLength;
+  private final int sampleMask;
+
+  public AccessCodeFormat(AccessCodeProperties properties) {
+    this.alphabet = properties.getAlphabet().toCharArray();
+    this.symbolCount = alphabet.length;
+    this.checksum = properties.isChecksum();
+    this.symbols = properties.getLength();
+    this.payloadLength = symbols - (checksum ? 1 : 0);
+    this.groupSize = properties.getGroupSize();
+
+    if (symbolCount < 2 || symbolCount > 256) {
+      throw new IllegalArgumentException("Access code alphabet must have 2 to 256 symbols");
+    }
+    if (payloadLength < 1 || groupSize < 0) {
+      throw new IllegalArgumentException("Invalid access code length or group size");
+    }
+
+    Arrays.fill(symbolIndex, -1);
+    for (int i = 0; i < symbolCount; i++) {
+      char c = alphabet[i];
+      if (c >= symbolIndex.length || c == SEPARATOR || symbolIndex[c] >= 0) {
+        throw new IllegalArgumentException("Access code alphabet must be distinct ASCII symbols other than '-'");
+      }
+      symbolIndex[c] = i;
+    }
+
+    this.codeLength = symbols + (groupSize > 0 ? (symbols - 1) / groupSize : 0);
+    this.sampleMask = (Integer.highestOneBit(symbolCount - 1) << 1) - 1;
+  }
+
+  public int codeLength() {
+    return codeLength;
+  }
+
+  /**
+   * Symbols per code, separators not counted.
+   */
+  public int symbols() {
+    return symbols;
+  }
+
+  public int groupSize() {
+    return groupSize;
+  }
+
+  public String alphabet() {
+    return new String(alphabet);
+  }
+
+  /**
+   * Number of distinct codes, saturating at {@link Long#MAX_VALUE}.
+   */
+  public long codeSpace() {
+    long space = 1;
+    for (int i = 0; i < payloadLength; i++) {
+      if (space > Long.MAX_VALUE / symbolCount) {
+        return Long.MAX_VALUE;
+      }
+      space *= symbolCount;
+    }
+    return space;
+  }
+
+  /**
+   * Writes a code into {@code target} from uniformly random bytes, consuming them through
+   * {@code source} with rejection sampling so every symbol is unbiased.
+   */
+  void write(char[] target, RandomByteSource source) {
+    int sum = 0;
+    int position = 0;
+    for (int i = 0; i < payloadLength; i++) {
+      position = separate(target, position, i);
+      int index = nextSymbol(source);
+      target[position++] = alphabet[index];
+      sum += luhnAddend(index, payloadLength - 1 - i);
+    }
+    if (checksum) {
+      position = separate(target, position, payloadLength);
+      target[position] = alphabet[(symbolCount - sum % symbolCount) % symbolCount];
+    }
+  }
+
+  /**
+   * Payload of a code as a mixed-radix number (wrapping for very large code spaces), or -1
+   * if the code does not have this format or fails its checksum.
+   */
+  public long value(String code) {
+    if (code == null || code.length() != codeLength) {
+      return -1;
+    }
+    long value = 0;
+    int sum = 0;
+    int position = 0;
+    for (int i = 0; i < payloadLength; i++) {
+      if ((position = skipSeparator(code, position, i)) < 0) {
+        return -1;
+      }
+      int index = indexOf(code.charAt(position++));
+      if (index < 0) {
+        return -1;
+      }
+      value = value * symbolCount + index;
+      sum += luhnAddend(index, payloadLength - 1 - i);
+    }
+    if (checksum) {
+      if ((position = skipSeparator(code, position, payloadLength)) < 0) {
+        return -1;
+      }
+      int index = indexOf(code.charAt(position));
+      if (index < 0 || (sum + index) % symbolCount != 0) {
+        return -1;
+      }
+    }
+    return value & Long.MAX_VALUE;
+  }
+
+  /**
+   * The code as it is stored, from one typed with another case, spaces, or missing or misplaced
+   * separators. Input that does not reduce to exactly {@link #symbols()} symbols of the alphabet is
+   * returned as it is, so codes of an older format still match exactly.
+   */
+  public String normalize(String input) {
+    if (input == null) {
+      return null;
+    }
+    var target = new char[codeLength];
+    int count = 0;
+    int position = 0;
+    for (int i = 0; i < input.length(); i++) {
+      char c = input.charAt(i);
+      if (c == SEPARATOR || Character.isWhitespace(c)) {
+        continue;
+      }
+      if (indexOf(c) < 0) {
+        c = indexOf(Character.toUpperCase(c)) >= 0 ? Character.toUpperCase(c) : Character.toLowerCase(c);
+      }
+      if (count == symbols || indexOf(c) < 0) {
+        return input;
+      }
+      position = separate(target, position, count++);
+      target[position++] = c;
+    }
+    return count == symbols ? new String(target) : input;
+  }
+
+  private int nextSymbol(RandomByteSource source) {
+    while (true) {
+      int candidate = source.nextByte() & sampleMask;
+      if (candidate < symbolCount) {
+        return candidate;
+      }
+    }
+  }
+
+  /**
+   * Luhn mod N: every second symbol, counting from the rightmost payload symbol, is doubled.
+   */
+  private int luhnAddend(int index, int distanceFromRight) {
+    int addend = distanceFromRight % 2 == 0 ? index * 2 : index;
+    return addend / symbolCount + addend % symbolCount;
+  }
+
+  private int separate(char[] target, int position, int symbol) {
+    if (groupSize > 0 && symbol > 0 && symbol % groupSize == 0) {
+      target[position++] = SEPARATOR;
+    }
+    return position;
+  }
+
+  private int skipSeparator(String code, int position, int symbol) {
+    if (groupSize > 0 && symbol > 0 && symbol % groupSize == 0) {
+      return code.charAt(position) == SEPARATOR ? position + 1 : -1;
+    }
+    return position;
+  }
+
+  private int indexOf(char c) {
+    return c < symbolIndex.length ? symbolIndex[c] : -1;
+  }
+
+  @FunctionalInterface
+  interface RandomByteSource {
+    byte nextByte();
+  }
+}
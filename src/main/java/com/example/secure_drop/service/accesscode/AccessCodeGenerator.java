@@ -0,0 +1,8 @@
+package com.example.secure_drop.service.accesscode;
+
+public interface AccessCodeGenerator {
+  /**
+   * A random access code; not necessarily unique, see {@link AccessCodeIndex}.
+   */
+  String next();
+}
@@ -0,0 +1,18 @@
+package com.example.secure_drop.service.accesscode;
+
+/**
+ * In-process index of live access codes, used to pick unique codes without querying the database.
+ * The database unique constraint remains the final arbiter.
+ */
+public interface AccessCodeIndex {
+  boolean contains(String accessCode);
+
+  /**
+   * Marks the code as taken. Returns {@code false} if it was already taken.
+   */
+  boolean reserve(String accessCode);
+
+  void release(String accessCode);
+
+  long size();
+}
@@ -0,0 +1,129 @@
+package com.example.secure_drop.service.accesscode;
+
+import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.stereotype.Service;
+
+import com.example.secure_drop.config.AccessCodeProperties;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Draws codes from one bulk {@link SecureRandom#nextBytes} read into a reused buffer, and keeps
+ * a pool of pre-generated codes topped up in the background so uploads never wait on
+ * {@code SecureRandom}. An empty pool falls back to inline generation.
+ */
+@Service
+@Slf4j
+public class LocalAccessCodeGenerator implements AccessCodeGenerator {
+  private static final int RANDOM_BUFFER_SIZE = 4096;
+
+  private final AccessCodeFormat accessCodeFormat;
+  private final SecureRandom random = new SecureRandom();
+  private final byte[] randomBytes = new byte[RANDOM_BUFFER_SIZE];
+  private final AccessCodeFormat.RandomByteSource randomSource = this::nextRandomByte;
+  private final char[] code;
+  private final ReentrantLock lock = new ReentrantLock();
+  private int randomPosition = RANDOM_BUFFER_SIZE;
+
+  private final BlockingQueue<String> pool;
+  private final int refillThreshold;
+  private final ExecutorService refiller;
+  private final AtomicBoolean refilling = new AtomicBoolean();
+
+  public LocalAccessCodeGenerator(AccessCodeFormat accessCodeFormat, AccessCodeProperties accessCodeProperties) {
+    this.accessCodeFormat = accessCodeFormat;
+    this.code = new char[accessCodeFormat.codeLength()];
+
+    int poolSize = accessCodeProperties.getPoolSize();
+    if (poolSize > 0) {
+      this.pool = new ArrayBlockingQueue<>(poolSize);
+      this.refillThreshold = poolSize / 2;
+      this.refiller = Executors.newSingleThreadExecutor(
+          Thread.ofPlatform().name("access-code-pool").daemon().factory());
+      scheduleRefill();
+    } else {
+      this.pool = null;
+      this.refillThreshold = 0;
+      this.refiller = null;
+    }
+    log.info("Access code generator ready: {} codes, pool size {}", accessCodeFormat.codeSpace(), poolSize);
+  }
+
+  @Override
+  public String next() {
+    if (pool == null) {
+      return generate();
+    }
+
+    var accessCode = pool.poll();
+    if (pool.size() <= refillThreshold) {
+      scheduleRefill();
+    }
+    if (accessCode == null) {
+      log.debug("Access code pool empty, generating inline");
+      return generate();
+    }
+    return accessCode;
+  }
+
+  /**
+   * Generates one code inline, sharing the random buffer with the refill thread. A lock rather than
+   * a monitor, so a virtual request thread that waits here, or reads {@code SecureRandom}, parks
+   * without pinning its carrier.
+   */
+  public String generate() {
+    lock.lock();
+    try {
+      accessCodeFormat.write(code, randomSource);
+      return new String(code);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (refiller != null) {
+      refiller.shutdownNow();
+    }
+  }
+
+  private byte nextRandomByte() {
+    if (randomPosition == RANDOM_BUFFER_SIZE) {
+      random.nextBytes(randomBytes);
+      randomPosition = 0;
+    }
+    return randomBytes[randomPosition++];
+  }
+
+  private void scheduleRefill() {
+    if (!refilling.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      refiller.execute(this::refill);
+    } catch (RuntimeException e) {
+      refilling.set(false);
+      log.warn("Could not schedule access code pool refill", e);
+    }
+  }
+
+  private void refill() {
+    try {
+      while (pool.remainingCapacity() > 0 && pool.offer(generate())) {
+        // keep filling until full
+      }
+      log.debug("Access code pool refilled to {}", pool.size());
+    } finally {
+      refilling.set(false);
+    }
+  }
+}
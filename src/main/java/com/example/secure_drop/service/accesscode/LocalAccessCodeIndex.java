@@ -0,0 +1,114 @@
+package com.example.secure_drop.service.accesscode;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.secure_drop.config.AccessCodeProperties;
+import com.example.secure_drop.repo.FileMetadataRepo;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bitset over the code space. When the space fits in {@code access-code.index-bits} each code
+ * has its own bit, so lookups are exact; larger spaces are hashed into the bitset, where a
+ * false positive only costs a retry and a false negative is caught by the unique constraint.
+ * There, releasing a code clears a bit other live codes may share, so those look free again and
+ * {@link #size()} counts set bits rather than codes. Codes not in the current format cannot
+ * collide with new ones and are not tracked.
+ */
+@Service
+@Slf4j
+public class LocalAccessCodeIndex implements AccessCodeIndex {
+  private final FileMetadataRepo fileMetadataRepo;
+  private final AccessCodeFormat accessCodeFormat;
+  private final long capacity;
+  private final boolean exact;
+  private final AtomicLongArray bits;
+  private final AtomicLong size = new AtomicLong();
+
+  public LocalAccessCodeIndex(FileMetadataRepo fileMetadataRepo, AccessCodeFormat accessCodeFormat,
+      AccessCodeProperties accessCodeProperties) {
+    this.fileMetadataRepo = fileMetadataRepo;
+    this.accessCodeFormat = accessCodeFormat;
+
+    long codeSpace = accessCodeFormat.codeSpace();
+    long maxBits = Math.min(accessCodeProperties.getIndexBits(), (long) Integer.MAX_VALUE * Long.SIZE);
+    this.exact = codeSpace <= maxBits;
+    this.capacity = exact ? codeSpace : maxBits;
+    this.bits = new AtomicLongArray((int) ((capacity + Long.SIZE - 1) / Long.SIZE));
+    log.info("Access code index: {} bits, {}", capacity, exact ? "exact" : "hashed");
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional(readOnly = true)
+  public void load() {
+    log.info("Loading access code index");
+    try (var accessCodes = fileMetadataRepo.streamAllAccessCodes()) {
+      accessCodes.forEach(this::reserve);
+    }
+    log.info("Access code index loaded with {} codes", size.get());
+  }
+
+  @Override
+  public boolean contains(String accessCode) {
+    long bit = encode(accessCode);
+    return bit >= 0 && (bits.get((int) (bit >>> 6)) & (1L << bit)) != 0;
+  }
+
+  @Override
+  public boolean reserve(String accessCode) {
+    long bit = encode(accessCode);
+    if (bit < 0) {
+      return true;
+    }
+    long mask = 1L << bit;
+    long previous = bits.getAndAccumulate((int) (bit >>> 6), mask, (word, m) -> word | m);
+    if ((previous & mask) != 0) {
+      return false;
+    }
+    size.incrementAndGet();
+    return true;
+  }
+
+  @Override
+  public void release(String accessCode) {
+    long bit = encode(accessCode);
+    if (bit < 0) {
+      return;
+    }
+    long mask = 1L << bit;
+    long previous = bits.getAndAccumulate((int) (bit >>> 6), ~mask, (word, m) -> word & m);
+    if ((previous & mask) != 0) {
+      size.decrementAndGet();
+    }
+  }
+
+  @Override
+  public long size() {
+    return size.get();
+  }
+
+  /**
+   * Bit of the code in the index, or -1 for codes outside the current format.
+   */
+  private long encode(String accessCode) {
+    long value = accessCodeFormat.value(accessCode);
+    if (value < 0) {
+      return -1;
+    }
+    if (exact) {
+      return value;
+    }
+    // SplitMix64 finalizer, so neighbouring codes spread over the whole bitset
+    long hash = value;
+    hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+    hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+    hash ^= hash >>> 31;
+    return Math.floorMod(hash, capacity);
+  }
+}
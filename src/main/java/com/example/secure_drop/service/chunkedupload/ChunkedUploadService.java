@@ -0,0 +1,35 @@
+package com.example.secure_drop.service.chunkedupload;
+
+import java.io.InputStream;
+
+import com.example.secure_drop.dto.FileUploadResponse;
+import com.example.secure_drop.dto.UploadSessionResponse;
+
+public interface ChunkedUploadService {
+
+  /**
+   * Starts an upload of {@code size} bytes that arrives in chunks.
+   */
+  UploadSessionResponse start(String fileName, String contentType, long size);
+
+  UploadSessionResponse status(String uploadId);
+
+  /**
+   * Encrypts a chunk of {@code length} bytes into the upload at {@code offset}. A chunk that was
+   * already received is acknowledged without being written again, so a chunk whose response was
+   * lost can simply be sent again.
+   */
+  UploadSessionResponse writeChunk(String uploadId, long offset, long length, InputStream content);
+
+  /**
+   * Ends a fully received upload and publishes the file under a new access code.
+   */
+  FileUploadResponse complete(String uploadId);
+
+  /**
+   * Discards uploads left idle past their expiry, along with their partial files.
+   *
+   * @return the number of uploads discarded
+   */
+  int purgeExpired();
+}
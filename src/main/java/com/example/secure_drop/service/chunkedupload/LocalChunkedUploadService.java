@@ -0,0 +1,255 @@
+package com.example.secure_drop.service.chunkedupload;
+
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import com.example.secure_drop.config.ChunkedUploadProperties;
+import com.example.secure_drop.dto.FileUploadResponse;
+import com.example.secure_drop.dto.UploadSessionResponse;
+import com.example.secure_drop.exception.InvalidUploadException;
+import com.example.secure_drop.exception.UploadConflictException;
+import com.example.secure_drop.exception.UploadSessionNotFoundException;
+import com.example.secure_drop.model.UploadSession;
+import com.example.secure_drop.repo.FileMetadataRepo;
+import com.example.secure_drop.repo.UploadSessionRepo;
+import com.example.secure_drop.service.filesharing.FileSharingService;
+import com.example.secure_drop.service.filestorage.FileStorageService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Chunked uploads are encrypted on arrival into their final stored file, one segment at a time,
+ * so memory per upload stays at one segment whatever the file size. Every chunk but the last is
+ * a whole number of segments, which lets each one start at a fixed file position and lets an
+ * interrupted upload resume from the last chunk that was fully written.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class LocalChunkedUploadService implements ChunkedUploadService {
+  private static final int PURGE_BATCH_SIZE = 100;
+  private final UploadSessionRepo uploadSessionRepo;
+  private final FileMetadataRepo fileMetadataRepo;
+  private final FileStorageService fileStorageService;
+  private final FileSharingService fileSharingService;
+  private final ChunkedUploadProperties chunkedUploadProperties;
+  private final Clock clock;
+
+  @Override
+  public UploadSessionResponse start(String fileName, String contentType, long size) {
+    log.info("Starting chunked upload of {} ({} bytes)", fileName, size);
+    requireNonBlank(fileName, "Original filename cannot be null or blank.");
+    requireNonBlank(contentType, "Content type cannot be null or blank.");
+    if (size <= 0) {
+      throw new InvalidUploadException("File cannot be empty.");
+    }
+    long maxFileSize = chunkedUploadProperties.getMaxFileSize().toBytes();
+    if (size > maxFileSize) {
+      throw new MaxUploadSizeExceededException(maxFileSize);
+    }
+
+    var storageFile = fileStorageService.create();
+    var session = UploadSession.builder()
+        .id(UUID.randomUUID().toString())
+        .fileName(fileName)
+        .fileType(contentType)
+        .storageFile(storageFile)
+        .size(size)
+        .segmentSize(fileStorageService.segmentSize())
+        .expiryDate(nextExpiry())
+        .build();
+
+    try {
+      session = uploadSessionRepo.save(session);
+    } catch (RuntimeException e) {
+      deleteStoredFile(storageFile);
+      throw e;
+    }
+
+    log.info("Chunked upload {} started into {}", session.getId(), storageFile);
+    return toResponse(session);
+  }
+
+  @Override
+  public UploadSessionResponse status(String uploadId) {
+    return toResponse(findSession(uploadId));
+  }
+
+  @Override
+  public UploadSessionResponse writeChunk(String uploadId, long offset, long length, InputStream content) {
+    var session = findSession(uploadId);
+    long received = session.getReceivedBytes();
+    log.debug("Chunk for upload {} at offset {} ({} bytes), {} received so far", uploadId, offset, length, received);
+
+    if (offset < 0 || length < 0) {
+      throw new InvalidUploadException("Offset and length cannot be negative.");
+    }
+    if (offset < received && offset + length <= received) {
+      // A retry of a chunk whose response was lost; its bytes are on disk already
+      log.info("Chunk at offset {} of upload {} already received", offset, uploadId);
+      return toResponse(session);
+    }
+    if (offset > received) {
+      throw new UploadConflictException("Chunk leaves a gap; resume from offset " + received + ".");
+    }
+    if (offset + length > session.getSize()) {
+      throw new InvalidUploadException("Chunk ends past the announced size of " + session.getSize() + " bytes.");
+    }
+    long maxChunkSize = maxChunkSize(session.getSegmentSize());
+    if (length > maxChunkSize) {
+      throw new MaxUploadSizeExceededException(maxChunkSize);
+    }
+
+    if (length == 0) {
+      return toResponse(session);
+    }
+    boolean last = offset + length == session.getSize();
+    if (offset % session.getSegmentSize() != 0 || (!last && length % session.getSegmentSize() != 0)) {
+      throw new InvalidUploadException(
+          "Every chunk but the last must be a multiple of " + session.getSegmentSize() + " bytes.");
+    }
+
+    // A chunk overlapping what was received is written from its own offset; storage keeps the
+    // segments it already holds once they match the chunk, and refuses the chunk otherwise
+
+    long written = fileStorageService.write(session.getStorageFile(), offset, length, content, last);
+    if (written != length) {
+      // Nothing is recorded; retrying the chunk keeps the whole segments that did get written
+      throw new InvalidUploadException("Chunk ended after " + written + " of " + length + " bytes.");
+    }
+
+    var expiryDate = nextExpiry();
+    if (uploadSessionRepo.advance(uploadId, received, offset + written, expiryDate) == 0) {
+      throw new UploadConflictException("Upload changed concurrently; check its status and resume.");
+    }
+
+    session.setReceivedBytes(offset + written);
+    session.setExpiryDate(expiryDate);
+    log.info("Upload {} received {} of {} bytes", uploadId, session.getReceivedBytes(), session.getSize());
+    return toResponse(session);
+  }
+
+  @Override
+  public FileUploadResponse complete(String uploadId) {
+    var session = findSession(uploadId);
+    if (!session.isComplete()) {
+      throw new UploadConflictException(
+          "Upload has received " + session.getReceivedBytes() + " of " + session.getSize() + " bytes.");
+    }
+
+    // Only one of several concurrent completions gets to publish
+    if (session.isCompleting() || uploadSessionRepo.markCompleting(uploadId, nextExpiry()) == 0) {
+      throw new UploadConflictException("Upload is already being completed; check its status.");
+    }
+
+    // The session outlives a failed publish, stored file and all, so the client can complete again
+    FileUploadResponse response;
+    try {
+      response = fileSharingService.publishStoredFile(session.getFileName(), session.getFileType(),
+          session.getStorageFile());
+    } catch (RuntimeException e) {
+      clearCompleting(uploadId, e);
+      throw e;
+    }
+
+    try {
+      uploadSessionRepo.deleteById(uploadId);
+    } catch (RuntimeException e) {
+      // Left marked as completing, the purge drops the row but keeps the published file
+      log.warn("Failed to delete completed upload session {}", uploadId, e);
+    }
+    log.info("Chunked upload {} completed with access code {}", uploadId, response.accessCode());
+    return response;
+  }
+
+  @Override
+  public int purgeExpired() {
+    var now = Timestamp.valueOf(LocalDateTime.now(clock));
+    int purged = 0;
+
+    while (true) {
+      var expired = uploadSessionRepo.findByExpiryDateBeforeOrderByExpiryDate(now, Limit.of(PURGE_BATCH_SIZE));
+      for (var session : expired) {
+        if (uploadSessionRepo.deleteExpired(session.getId(), now) > 0) {
+          if (!isPublished(session)) {
+            deleteStoredFile(session.getStorageFile());
+          }
+          purged++;
+        }
+      }
+      if (expired.size() < PURGE_BATCH_SIZE) {
+        break;
+      }
+    }
+
+    if (purged > 0) {
+      log.info("Discarded {} idle chunked uploads", purged);
+    }
+    return purged;
+  }
+
+  private UploadSession findSession(String uploadId) {
+    return uploadSessionRepo.findById(uploadId)
+        .orElseThrow(() -> new UploadSessionNotFoundException(uploadId));
+  }
+
+  /**
+   * Whether a session left marked as completing, by a crash or a failed delete, had its file
+   * published before that.
+   */
+  private boolean isPublished(UploadSession session) {
+    return session.isCompleting()
+        && !fileMetadataRepo.findStoragePathsIn(List.of(session.getStorageFile())).isEmpty();
+  }
+
+  private void clearCompleting(String uploadId, RuntimeException cause) {
+    try {
+      uploadSessionRepo.clearCompleting(uploadId);
+    } catch (RuntimeException e) {
+      cause.addSuppressed(e);
+    }
+  }
+
+  private Timestamp nextExpiry() {
+    return Timestamp.valueOf(LocalDateTime.now(clock).plus(chunkedUploadProperties.getSessionTtl()));
+  }
+
+  private long maxChunkSize(int segmentSize) {
+    long chunkSize = chunkedUploadProperties.getChunkSize().toBytes();
+    return Math.max(segmentSize, chunkSize - chunkSize % segmentSize);
+  }
+
+  private void deleteStoredFile(String storageFile) {
+    try {
+      fileStorageService.delete(storageFile);
+    } catch (RuntimeException e) {
+      log.warn("Failed to delete stored file {} of a chunked upload", storageFile, e);
+    }
+  }
+
+  private UploadSessionResponse toResponse(UploadSession session) {
+    return new UploadSessionResponse(
+        session.getId(),
+        session.getFileName(),
+        session.getSize(),
+        session.getReceivedBytes(),
+        session.getSegmentSize(),
+        maxChunkSize(session.getSegmentSize()),
+        session.getExpiryDate().toLocalDateTime());
+  }
+
+  private static void requireNonBlank(String value, String message) {
+    if (value == null || value.isBlank()) {
+      throw new InvalidUploadException(message);
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package com.example.secure_drop.service.encryption;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Cipher;
+
+/**
+ * Lock-free pool of {@link Cipher} instances for one transformation.
+ *
+ * A thread-local cache would grow with every virtual thread, so instances are shared
+ * through a bounded queue instead; nothing here blocks or pins a carrier thread. A pool
+ * miss simply creates a new instance, and releases beyond {@code maxIdle} are dropped.
+ */
+final class CipherPool {
+  private final String transformation;
+  private final int maxIdle;
+  private final ConcurrentLinkedQueue<Cipher> idle = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger idleCount = new AtomicInteger();
+
+  CipherPool(String transformation, int maxIdle) {
+    this.transformation = transformation;
+    this.maxIdle = maxIdle;
+  }
+
+  Cipher acquire() throws GeneralSecurityException {
+    var cipher = idle.poll();
+    if (cipher == null) {
+      return Cipher.getInstance(transformation);
+    }
+    idleCount.decrementAndGet();
+    return cipher;
+  }
+
+  void release(Cipher cipher) {
+    if (idleCount.incrementAndGet() <= maxIdle) {
+      idle.offer(cipher);
+    } else {
+      idleCount.decrementAndGet();
+    }
+  }
+}
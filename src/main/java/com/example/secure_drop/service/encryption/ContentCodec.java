@@ -0,0 +1,42 @@
+package com.example.secure_drop.service.encryption;
+
+import java.io.IOException;
+
+/**
+ * Encoding applied to the plaintext before it was sealed, recorded in the {@link SegmentHeader}.
+ * Decrypting yields the encoded bytes; {@link #contentEncoding()} names them for HTTP.
+ */
+public enum ContentCodec {
+  NONE((byte) 0, null),
+  /** zlib-wrapped Deflate (RFC 1950), which is what HTTP calls {@code deflate}. */
+  DEFLATE((byte) 1, "deflate");
+
+  private final byte id;
+  private final String contentEncoding;
+
+  ContentCodec(byte id, String contentEncoding) {
+    this.id = id;
+    this.contentEncoding = contentEncoding;
+  }
+
+  public byte id() {
+    return id;
+  }
+
+  /**
+   * The {@code Content-Encoding} token of the decrypted bytes, or {@code null} when they are the
+   * content itself.
+   */
+  public String contentEncoding() {
+    return contentEncoding;
+  }
+
+  static ContentCodec fromId(byte id) throws IOException {
+    for (var codec : values()) {
+      if (codec.id == id) {
+        return codec;
+      }
+    }
+    throw new IOException("Unknown content codec: " + id);
+  }
+}
@@ -1,7 +1,83 @@
 package com.example.secure_drop.service.encryption;
 
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
 public interface EncryptionService {
   byte[] encrypt(byte[] pText, String secretKey) throws Exception;
 
   byte[] decrypt(byte[] encryptedDataWithIv, String secretKey) throws Exception;
+
+  /**
+   * Encrypts {@code source} into {@code target} using the segmented format described in
+   * {@link SegmentHeader}, holding at most one segment in memory.
+   *
+   * @return number of plaintext bytes consumed
+   */
+  long encrypt(InputStream source, WritableByteChannel target, String secretKey) throws Exception;
+
+  /**
+   * Same as {@link #encrypt(InputStream, WritableByteChannel, String)}, recording {@code codec} in
+   * the header as the encoding {@code source} is already in.
+   */
+  long encrypt(InputStream source, WritableByteChannel target, ContentCodec codec, String secretKey) throws Exception;
+
+  /**
+   * Same as {@link #encrypt(InputStream, WritableByteChannel, String)}, but when
+   * {@code expectedSize} reaches the parallel threshold the segments are sealed on several cores
+   * and each is written at its own position in {@code target}. Pass -1 when the size is unknown.
+   * {@code codec} is recorded in the header as the encoding {@code source} is already in.
+   */
+  long encrypt(InputStream source, FileChannel target, long expectedSize, ContentCodec codec, String secretKey)
+      throws Exception;
+
+  /**
+   * Starts a segmented ciphertext in {@code target} by writing a fresh {@link SegmentHeader}, so
+   * its segments can be appended later with
+   * {@link #encryptSegments(InputStream, FileChannel, SegmentHeader, int, long, boolean, String)}.
+   */
+  SegmentHeader writeHeader(WritableByteChannel target) throws Exception;
+
+  /**
+   * Encrypts {@code source} into {@code target} as segments {@code firstSegment} onwards of the
+   * ciphertext started by {@code header}. Without {@code last} every segment must be full; with
+   * it the final, possibly shorter, segment is sealed as the end of the ciphertext. Segments
+   * sealed again, as when a chunk is retried, get fresh nonces like any other. As with
+   * {@link #encrypt(InputStream, FileChannel, long, ContentCodec, String)}, {@code expectedSize} decides whether
+   * the segments are sealed on several cores.
+   *
+   * @return number of plaintext bytes consumed
+   */
+  long encryptSegments(InputStream source, FileChannel target, SegmentHeader header, int firstSegment,
+      long expectedSize, boolean last, String secretKey) throws Exception;
+
+  /**
+   * Same as {@link #encryptSegments(InputStream, FileChannel, SegmentHeader, int, long, boolean, String)},
+   * sealing one segment after the other into a target that can only be appended to.
+   */
+  long encryptSegments(InputStream source, WritableByteChannel target, SegmentHeader header, int firstSegment,
+      boolean last, String secretKey) throws Exception;
+
+  /**
+   * Checks {@code source} against segments {@code firstSegment} onwards of the ciphertext started
+   * by {@code header}, found in {@code target} from {@code position} on, consuming the plaintext of
+   * each segment it compares. Stops at the end of {@code source}, at the end of {@code target} or
+   * at the first segment that does not authenticate, as an interrupted write leaves it; segments
+   * from there on must be sealed again.
+   *
+   * @return number of plaintext bytes of {@code source} the intact segments hold
+   * @throws SegmentMismatchException if an intact segment holds other content than
+   *     {@code source}, or ends the ciphertext where {@code source} goes on
+   */
+  long matchSegments(InputStream source, SeekableByteChannel target, long position, SegmentHeader header,
+      int firstSegment, String secretKey) throws Exception;
+
+  /**
+   * Opens a stream that decrypts the segmented ciphertext in {@code source} one segment at
+   * a time. The returned stream takes ownership of the channel; if it cannot be opened, the
+   * channel is closed before the exception is thrown.
+   */
+  InputStream decrypt(SeekableByteChannel source, String secretKey) throws Exception;
 }
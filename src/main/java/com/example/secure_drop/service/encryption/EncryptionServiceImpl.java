@@ -1,9 +1,23 @@
 package com.example.secure_drop.service.encryption;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
+import javax.crypto.AEADBadTagException;
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
@@ -11,67 +25,492 @@ import org.springframework.stereotype.Service;
 
 import com.example.secure_drop.config.EncryptionProperties;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class EncryptionServiceImpl implements EncryptionService {
 
   private final EncryptionProperties encryptionProperties;
+  private final CipherPool cipherPool;
+  private final SecureRandom secureRandom = new SecureRandom();
+  private final SecretKeySpec configuredKey;
+  private final int parallelism;
+  private final ForkJoinPool segmentPool;
+  private final CryptoMetrics cryptoMetrics;
 
   private static final int TAG_LENGTH_BIT = 128;
   private static final int IV_LENGTH_BYTE = 12;
+  private static final int MAX_IDLE_CIPHERS = 64;
+  private static final int NO_LOOKAHEAD = -2;
+  private static final String KDF_ALGORITHM = "HmacSHA256";
+  private static final byte[] FILE_KEY_INFO = "secure-drop/file-key".getBytes(StandardCharsets.UTF_8);
+
+  public EncryptionServiceImpl(EncryptionProperties encryptionProperties, MeterRegistry meterRegistry) {
+    this.encryptionProperties = encryptionProperties;
+    this.cipherPool = new CipherPool(encryptionProperties.getAlgorithm(), MAX_IDLE_CIPHERS);
+    this.configuredKey = encryptionProperties.getSecretKey() == null
+        ? null
+        : new SecretKeySpec(encryptionProperties.getSecretKey().getBytes(), "AES");
+    this.parallelism = encryptionProperties.getParallelism();
+    // Shared by all large files, so the cores in use stay bounded however many are uploaded at once
+    this.segmentPool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    this.cryptoMetrics = new CryptoMetrics(meterRegistry);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (segmentPool != null) {
+      segmentPool.shutdownNow();
+    }
+  }
 
   @Override
   public byte[] encrypt(byte[] pText, String secretKey) throws Exception {
     log.debug("Starting encryption for {} bytes", pText.length);
     // 1. Generate a random IV (Unique for every file)
     byte[] iv = new byte[IV_LENGTH_BYTE];
-    new SecureRandom().nextBytes(iv);
+    secureRandom.nextBytes(iv);
 
     // 2. Initialize Cipher
-    Cipher cipher = Cipher.getInstance(encryptionProperties.getAlgorithm());
-    SecretKeySpec keySpec = new SecretKeySpec(secretKey.getBytes(), "AES");
-    GCMParameterSpec gcmSpec = new GCMParameterSpec(TAG_LENGTH_BIT, iv);
-    cipher.init(Cipher.ENCRYPT_MODE, keySpec, gcmSpec);
-
-    // 3. Encrypt data
-    byte[] cipherText = cipher.doFinal(pText);
+    Cipher cipher = cipherPool.acquire();
+    try {
+      long start = System.nanoTime();
+      cipher.init(Cipher.ENCRYPT_MODE, keyFor(secretKey), new GCMParameterSpec(TAG_LENGTH_BIT, iv));
 
-    // 4. Combine IV and CipherText (so we can find the IV during decryption)
-    byte[] result = ByteBuffer.allocate(iv.length + cipherText.length)
-        .put(iv)
-        .put(cipherText)
-        .array();
+      // 3. Encrypt data behind the IV (so we can find the IV during decryption)
+      byte[] result = new byte[IV_LENGTH_BYTE + cipher.getOutputSize(pText.length)];
+      System.arraycopy(iv, 0, result, 0, IV_LENGTH_BYTE);
+      cipher.doFinal(pText, 0, pText.length, result, IV_LENGTH_BYTE);
+      cryptoMetrics.recordEncrypt(pText.length, System.nanoTime() - start);
 
-    log.debug("Encryption completed, output size: {} bytes", result.length);
-    return result;
+      log.debug("Encryption completed, output size: {} bytes", result.length);
+      return result;
+    } finally {
+      cipherPool.release(cipher);
+    }
   }
 
   @Override
   public byte[] decrypt(byte[] encryptedDataWithIv, String secretKey) throws Exception {
     log.debug("Starting decryption for {} bytes", encryptedDataWithIv.length);
-    // 1. Extract the IV (first 12 bytes)
-    ByteBuffer bb = ByteBuffer.wrap(encryptedDataWithIv);
-    byte[] iv = new byte[IV_LENGTH_BYTE];
-    bb.get(iv);
-
-    // 2. Extract the actual encrypted data
-    byte[] cipherText = new byte[bb.remaining()];
-    bb.get(cipherText);
-
-    // 3. Initialize Cipher for Decryption
-    Cipher cipher = Cipher.getInstance(encryptionProperties.getAlgorithm());
-    SecretKeySpec keySpec = new SecretKeySpec(secretKey.getBytes(), "AES");
-    GCMParameterSpec gcmSpec = new GCMParameterSpec(TAG_LENGTH_BIT, iv);
-    cipher.init(Cipher.DECRYPT_MODE, keySpec, gcmSpec);
-
-    // 4. Decrypt
-    byte[] result = cipher.doFinal(cipherText);
-    log.debug("Decryption completed, output size: {} bytes", result.length);
-    return result;
+    // 1. The IV is the first 12 bytes, the encrypted data follows it
+    var gcmSpec = new GCMParameterSpec(TAG_LENGTH_BIT, encryptedDataWithIv, 0, IV_LENGTH_BYTE);
+
+    // 2. Initialize Cipher for Decryption
+    Cipher cipher = cipherPool.acquire();
+    try {
+      long start = System.nanoTime();
+      cipher.init(Cipher.DECRYPT_MODE, keyFor(secretKey), gcmSpec);
+
+      // 3. Decrypt
+      byte[] result = cipher.doFinal(encryptedDataWithIv, IV_LENGTH_BYTE, encryptedDataWithIv.length - IV_LENGTH_BYTE);
+      cryptoMetrics.recordDecrypt(result.length, System.nanoTime() - start);
+      log.debug("Decryption completed, output size: {} bytes", result.length);
+      return result;
+    } finally {
+      cipherPool.release(cipher);
+    }
+  }
+
+  @Override
+  public long encrypt(InputStream source, WritableByteChannel target, String secretKey) throws Exception {
+    return encrypt(source, target, ContentCodec.NONE, secretKey);
+  }
+
+  @Override
+  public long encrypt(InputStream source, WritableByteChannel target, ContentCodec codec, String secretKey)
+      throws Exception {
+    int segmentSize = Math.toIntExact(encryptionProperties.getSegmentSize().toBytes());
+    log.debug("Starting segmented encryption with {} byte segments", segmentSize);
+
+    // 1. Write the header (random salt, so every file gets its own key)
+    var header = SegmentHeader.generate(segmentSize, codec, secureRandom);
+    writeFully(target, ByteBuffer.wrap(header.bytes()));
+
+    Cipher cipher = cipherPool.acquire();
+    try {
+      return encryptSegments(source, target, header, 0, true, cipher, keyFor(secretKey, header));
+    } finally {
+      cipherPool.release(cipher);
+    }
+  }
+
+  @Override
+  public long encrypt(InputStream source, FileChannel target, long expectedSize, ContentCodec codec, String secretKey)
+      throws Exception {
+    if (!sealsInParallel(expectedSize)) {
+      return encrypt(source, target, codec, secretKey);
+    }
+
+    int segmentSize = Math.toIntExact(encryptionProperties.getSegmentSize().toBytes());
+    log.debug("Starting parallel segmented encryption with {} byte segments", segmentSize);
+
+    long base = target.position();
+    var header = SegmentHeader.generate(segmentSize, codec, secureRandom);
+    writeFully(target, ByteBuffer.wrap(header.bytes()));
+
+    var ciphers = new Cipher[parallelism];
+    for (int i = 0; i < ciphers.length; i++) {
+      ciphers[i] = cipherPool.acquire();
+    }
+    try {
+      return encryptSegmentsParallel(source, target, base, header, 0, true, ciphers, keyFor(secretKey, header));
+    } finally {
+      for (var cipher : ciphers) {
+        cipherPool.release(cipher);
+      }
+    }
+  }
+
+  @Override
+  public SegmentHeader writeHeader(WritableByteChannel target) throws Exception {
+    int segmentSize = Math.toIntExact(encryptionProperties.getSegmentSize().toBytes());
+    var header = SegmentHeader.generate(segmentSize, secureRandom);
+    writeFully(target, ByteBuffer.wrap(header.bytes()));
+    return header;
+  }
+
+  @Override
+  public long encryptSegments(InputStream source, FileChannel target, SegmentHeader header, int firstSegment,
+      long expectedSize, boolean last, String secretKey) throws Exception {
+    log.debug("Appending segments from {} (last={})", firstSegment, last);
+    requireCurrent(header);
+    if (!sealsInParallel(expectedSize)) {
+      Cipher cipher = cipherPool.acquire();
+      try {
+        return encryptSegments(source, target, header, firstSegment, last, cipher, keyFor(secretKey, header));
+      } finally {
+        cipherPool.release(cipher);
+      }
+    }
+
+    var ciphers = new Cipher[parallelism];
+    for (int i = 0; i < ciphers.length; i++) {
+      ciphers[i] = cipherPool.acquire();
+    }
+    try {
+      return encryptSegmentsParallel(source, target, 0, header, firstSegment, last, ciphers,
+          keyFor(secretKey, header));
+    } finally {
+      for (var cipher : ciphers) {
+        cipherPool.release(cipher);
+      }
+    }
+  }
+
+  @Override
+  public long encryptSegments(InputStream source, WritableByteChannel target, SegmentHeader header, int firstSegment,
+      boolean last, String secretKey) throws Exception {
+    log.debug("Appending segments from {} (last={})", firstSegment, last);
+    requireCurrent(header);
+    Cipher cipher = cipherPool.acquire();
+    try {
+      return encryptSegments(source, target, header, firstSegment, last, cipher, keyFor(secretKey, header));
+    } finally {
+      cipherPool.release(cipher);
+    }
+  }
+
+  @Override
+  public long matchSegments(InputStream source, SeekableByteChannel target, long position, SegmentHeader header,
+      int firstSegment, String secretKey) throws Exception {
+    requireCurrent(header);
+    var keySpec = keyFor(secretKey, header);
+    var cipherBuffer = ByteBuffer.allocate(header.encryptedSegmentSize());
+    var plainBuffer = ByteBuffer.allocate(header.segmentSize());
+    byte[] expected = new byte[header.segmentSize()];
+    long end = target.size();
+
+    long matched = 0;
+    long decryptNanos = 0;
+    Cipher cipher = cipherPool.acquire();
+    try {
+      for (int index = firstSegment; end - position >= header.segmentOverhead(); index = Math.incrementExact(index)) {
+        int length = (int) Math.min(header.encryptedSegmentSize(), end - position);
+        cipherBuffer.clear().limit(length);
+        target.position(position);
+        while (cipherBuffer.hasRemaining()) {
+          if (target.read(cipherBuffer) < 0) {
+            return matched;
+          }
+        }
+
+        // Only the final segment present can be the last of the ciphertext
+        long start = System.nanoTime();
+        boolean last = false;
+        if (!open(cipher, keySpec, header, index, false, cipherBuffer, plainBuffer)) {
+          last = position + length == end;
+          if (!last || !open(cipher, keySpec, header, index, true, cipherBuffer, plainBuffer)) {
+            break;
+          }
+        }
+        decryptNanos += System.nanoTime() - start;
+
+        int count = source.readNBytes(expected, 0, plainBuffer.remaining());
+        if (!Arrays.equals(expected, 0, count, plainBuffer.array(), 0, count)) {
+          throw new SegmentMismatchException(index);
+        }
+        if (count < plainBuffer.remaining()) {
+          // The source ended inside this segment
+          break;
+        }
+        if ((last || count < header.segmentSize()) && source.read() >= 0) {
+          throw new SegmentMismatchException(index);
+        }
+        matched += count;
+        position += length;
+      }
+    } finally {
+      cipherPool.release(cipher);
+      if (matched > 0) {
+        cryptoMetrics.recordDecrypt(matched, decryptNanos);
+      }
+    }
+    return matched;
+  }
+
+  /**
+   * Opens one sealed segment from {@code in} into {@code out}, telling whether it authenticated.
+   */
+  private static boolean open(Cipher cipher, SecretKeySpec keySpec, SegmentHeader header, int segmentIndex,
+      boolean last, ByteBuffer in, ByteBuffer out) throws GeneralSecurityException {
+    var sealed = in.duplicate().flip();
+    byte[] nonce = new byte[SegmentHeader.NONCE_LENGTH_BYTE];
+    sealed.get(nonce);
+    cipher.init(Cipher.DECRYPT_MODE, keySpec, new GCMParameterSpec(TAG_LENGTH_BIT, nonce));
+    cipher.updateAAD(header.aad(segmentIndex, last));
+    out.clear();
+    try {
+      cipher.doFinal(sealed, out);
+      out.flip();
+      return true;
+    } catch (AEADBadTagException e) {
+      out.clear().flip();
+      return false;
+    }
+  }
+
+  private static void requireCurrent(SegmentHeader header) {
+    if (!header.isCurrent()) {
+      throw new IllegalArgumentException("Segments can only be appended to a current-version ciphertext");
+    }
+  }
+
+  private boolean sealsInParallel(long expectedSize) {
+    return segmentPool != null && expectedSize >= encryptionProperties.getParallelThreshold().toBytes();
+  }
+
+  private long encryptSegments(InputStream source, WritableByteChannel target, SegmentHeader header, int firstSegment, boolean lastSegments, Cipher cipher, SecretKeySpec keySpec) throws Exception {
+    int segmentSize = header.segmentSize();
+
+    // 2. Seal one segment at a time, reading one byte ahead to detect the last segment
+    byte[] plain = new byte[segmentSize];
+    var cipherBuffer = ByteBuffer.allocate(header.encryptedSegmentSize());
+
+    long total = 0;
+    long sealNanos = 0;
+    int segmentIndex = firstSegment;
+    int length = source.readNBytes(plain, 0, segmentSize);
+    int lookahead = length == segmentSize ? source.read() : -1;
+
+    while (true) {
+      boolean end = lookahead < 0;
+      if (!lastSegments && length < segmentSize) {
+        // Only the segments that end the ciphertext may be short
+        if (length > 0) {
+          throw new IllegalArgumentException("Plaintext ends inside segment " + segmentIndex);
+        }
+        break;
+      }
+
+      long start = System.nanoTime();
+      seal(cipher, keySpec, header, segmentIndex, end && lastSegments, plain, length, cipherBuffer);
+      sealNanos += System.nanoTime() - start;
+      writeFully(target, cipherBuffer);
+
+      total += length;
+      segmentIndex = Math.incrementExact(segmentIndex);
+      if (end) {
+        break;
+      }
+
+      plain[0] = (byte) lookahead;
+      length = 1 + source.readNBytes(plain, 1, segmentSize - 1);
+      lookahead = length == segmentSize ? source.read() : -1;
+    }
+
+    cryptoMetrics.recordEncrypt(total, sealNanos);
+    log.debug("Segmented encryption completed, {} bytes in {} segments", total, segmentIndex - firstSegment);
+    return total;
+  }
+
+  /**
+   * Same contract as the sequential loop, but reads a window of one segment per cipher and seals
+   * the whole window on {@link #segmentPool}. Segments are authenticated independently and have
+   * fixed positions, so each task writes its own at its offset from {@code base}.
+   */
+  private long encryptSegmentsParallel(InputStream source, FileChannel target, long base, SegmentHeader header,
+      int firstSegment, boolean lastSegments, Cipher[] ciphers, SecretKeySpec keySpec) throws Exception {
+    int segmentSize = header.segmentSize();
+    int window = ciphers.length;
+    byte[][] plain = new byte[window][segmentSize];
+    var sealed = new ByteBuffer[window];
+    for (int i = 0; i < window; i++) {
+      sealed[i] = ByteBuffer.allocate(header.encryptedSegmentSize());
+    }
+    int[] lengths = new int[window];
+    var tasks = new ArrayList<Callable<Void>>(window);
+
+    long total = 0;
+    long sealNanos = 0;
+    int segmentIndex = firstSegment;
+    int lookahead = NO_LOOKAHEAD;
+    boolean end = false;
+
+    while (!end) {
+      // 2. Fill the window, reading one byte ahead to detect the last segment
+      int count = 0;
+      while (count < window && !end) {
+        int length = 0;
+        if (lookahead >= 0) {
+          plain[count][0] = (byte) lookahead;
+          length = 1;
+        }
+        length += source.readNBytes(plain[count], length, segmentSize - length);
+        lookahead = length == segmentSize ? source.read() : -1;
+        end = lookahead < 0;
+
+        if (!lastSegments && length < segmentSize) {
+          // Only the segments that end the ciphertext may be short
+          if (length > 0) {
+            throw new IllegalArgumentException("Plaintext ends inside segment " + (segmentIndex + count));
+          }
+          break;
+        }
+        lengths[count++] = length;
+      }
+
+      // 3. Seal and write the window on all cores
+      tasks.clear();
+      for (int i = 0; i < count; i++) {
+        int slot = i;
+        int index = Math.addExact(segmentIndex, i);
+        boolean last = end && lastSegments && i == count - 1;
+        tasks.add(() -> {
+          seal(ciphers[slot], keySpec, header, index, last, plain[slot], lengths[slot], sealed[slot]);
+          writeFully(target, sealed[slot], base + header.segmentOffset(index));
+          return null;
+        });
+      }
+      // The window's wall time, which includes its positional writes
+      long start = System.nanoTime();
+      var futures = segmentPool.invokeAll(tasks);
+      sealNanos += System.nanoTime() - start;
+      for (var future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception cause) {
+            throw cause;
+          }
+          throw e;
+        }
+      }
+
+      for (int i = 0; i < count; i++) {
+        total += lengths[i];
+      }
+      segmentIndex = Math.addExact(segmentIndex, count);
+    }
+
+    target.position(base + header.segmentOffset(firstSegment) + total
+        + (long) (segmentIndex - firstSegment) * header.segmentOverhead());
+    cryptoMetrics.recordEncrypt(total, sealNanos);
+    log.debug("Parallel segmented encryption completed, {} bytes in {} segments", total, segmentIndex - firstSegment);
+    return total;
+  }
+
+  /**
+   * Seals one segment into {@code out} behind a fresh random nonce, so sealing the same segment
+   * again never repeats one.
+   */
+  private void seal(Cipher cipher, SecretKeySpec keySpec, SegmentHeader header, int segmentIndex, boolean last,
+      byte[] plain, int length, ByteBuffer out) throws GeneralSecurityException {
+    byte[] nonce = new byte[SegmentHeader.NONCE_LENGTH_BYTE];
+    secureRandom.nextBytes(nonce);
+    cipher.init(Cipher.ENCRYPT_MODE, keySpec, new GCMParameterSpec(TAG_LENGTH_BIT, nonce));
+    cipher.updateAAD(header.aad(segmentIndex, last));
+    out.clear().put(nonce);
+    cipher.doFinal(ByteBuffer.wrap(plain, 0, length), out);
+    out.flip();
+  }
+
+  @Override
+  public InputStream decrypt(SeekableByteChannel source, String secretKey) throws Exception {
+    SegmentHeader header;
+    try {
+      header = SegmentHeader.read(source);
+    } catch (IOException | RuntimeException e) {
+      SegmentDecryptingInputStream.closeOnFailure(source, e);
+      throw e;
+    }
+    log.debug("Opening segmented decryption stream with {} byte segments", header.segmentSize());
+
+    SecretKeySpec keySpec;
+    try {
+      keySpec = keyFor(secretKey, header);
+    } catch (RuntimeException e) {
+      SegmentDecryptingInputStream.closeOnFailure(source, e);
+      throw e;
+    }
+    return new SegmentDecryptingInputStream(source, header, cipherPool, keySpec, TAG_LENGTH_BIT, cryptoMetrics);
+  }
+
+  /**
+   * Key of one segmented file: HKDF-SHA256 (RFC 5869) of the configured key with the header's
+   * salt, as long as the configured key. Versions without a salt use the configured key itself.
+   */
+  private SecretKeySpec keyFor(String secretKey, SegmentHeader header) {
+    var masterKey = keyFor(secretKey);
+    var salt = header.salt();
+    if (salt == null) {
+      return masterKey;
+    }
+    try {
+      var mac = Mac.getInstance(KDF_ALGORITHM);
+      mac.init(new SecretKeySpec(salt, KDF_ALGORITHM));
+      var pseudoRandomKey = mac.doFinal(masterKey.getEncoded());
+      // AES keys are at most one HMAC-SHA256 block long, so one expand round is enough
+      mac.init(new SecretKeySpec(pseudoRandomKey, KDF_ALGORITHM));
+      mac.update(FILE_KEY_INFO);
+      mac.update((byte) 1);
+      return new SecretKeySpec(mac.doFinal(), 0, masterKey.getEncoded().length, "AES");
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Cannot derive the file key", e);
+    }
+  }
+
+  private SecretKeySpec keyFor(String secretKey) {
+    // The configured key is derived once; anything else is built per call
+    if (configuredKey != null && secretKey.equals(encryptionProperties.getSecretKey())) {
+      return configuredKey;
+    }
+    return new SecretKeySpec(secretKey.getBytes(), "AES");
+  }
+
+  private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
   }
 
 }
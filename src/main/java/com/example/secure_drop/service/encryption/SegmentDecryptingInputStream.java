@@ -0,0 +1,179 @@
+package com.example.secure_drop.service.encryption;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Decrypts a segmented ciphertext lazily, one segment per refill, so the memory held per
+ * open stream is a single segment regardless of the file size. {@link #skip(long)} seeks to
+ * the segment holding the target offset instead of decrypting everything before it.
+ * Closing the stream closes the underlying channel and records the time spent decrypting.
+ */
+final class SegmentDecryptingInputStream extends InputStream {
+  private final SeekableByteChannel channel;
+  private final SegmentHeader header;
+  private final CipherPool cipherPool;
+  private final Cipher cipher;
+  private final SecretKeySpec keySpec;
+  private final int tagLengthBit;
+  private final long ciphertextLength;
+  private final long segmentCount;
+  private final long plaintextLength;
+  private final ByteBuffer cipherBuffer;
+  private final ByteBuffer plainBuffer;
+  private final CryptoMetrics cryptoMetrics;
+
+  private long nextSegment;
+  private long bufferStart;
+  private boolean closed;
+  private long decryptedBytes;
+  private long decryptNanos;
+
+  SegmentDecryptingInputStream(SeekableByteChannel channel, SegmentHeader header, CipherPool cipherPool,
+      SecretKeySpec keySpec, int tagLengthBit, CryptoMetrics cryptoMetrics)
+      throws IOException, GeneralSecurityException {
+    this.channel = channel;
+    this.header = header;
+    this.cipherPool = cipherPool;
+    this.keySpec = keySpec;
+    this.tagLengthBit = tagLengthBit;
+    this.cryptoMetrics = cryptoMetrics;
+    // The stream owns the channel from here on, so it is closed if the stream never opens
+    try {
+      this.ciphertextLength = channel.size();
+      this.segmentCount = header.segmentCount(ciphertextLength);
+      this.plaintextLength = header.plaintextLength(ciphertextLength);
+      this.cipherBuffer = ByteBuffer.allocate(header.encryptedSegmentSize());
+      this.plainBuffer = ByteBuffer.allocate(header.segmentSize()).limit(0);
+      this.cipher = cipherPool.acquire();
+    } catch (IOException | GeneralSecurityException | RuntimeException e) {
+      closeOnFailure(channel, e);
+      throw e;
+    }
+  }
+
+  static void closeOnFailure(SeekableByteChannel channel, Exception failure) {
+    try {
+      channel.close();
+    } catch (IOException suppressed) {
+      failure.addSuppressed(suppressed);
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!plainBuffer.hasRemaining() && !fill()) {
+      return -1;
+    }
+    return plainBuffer.get() & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!plainBuffer.hasRemaining() && !fill()) {
+      return -1;
+    }
+    int count = Math.min(len, plainBuffer.remaining());
+    plainBuffer.get(b, off, count);
+    return count;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    if (n <= 0) {
+      return 0;
+    }
+    long current = bufferStart + plainBuffer.position();
+    long target = Math.min(current + n, plaintextLength);
+
+    if (target < bufferStart + plainBuffer.limit()) {
+      plainBuffer.position((int) (target - bufferStart));
+      return target - current;
+    }
+
+    // Jump straight to the segment holding the target and decrypt only that one
+    plainBuffer.limit(0);
+    nextSegment = target / header.segmentSize();
+    bufferStart = nextSegment * header.segmentSize();
+    if (target < plaintextLength && fill()) {
+      plainBuffer.position((int) (target - bufferStart));
+    } else {
+      nextSegment = segmentCount;
+      bufferStart = plaintextLength;
+    }
+    return target - current;
+  }
+
+  @Override
+  public int available() {
+    return plainBuffer.remaining();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      cipherPool.release(cipher);
+      if (decryptedBytes > 0) {
+        cryptoMetrics.recordDecrypt(decryptedBytes, decryptNanos);
+      }
+    }
+    channel.close();
+  }
+
+  private boolean fill() throws IOException {
+    while (nextSegment < segmentCount) {
+      long offset = header.segmentOffset(nextSegment);
+      boolean last = nextSegment == segmentCount - 1;
+      int length = (int) Math.min(header.encryptedSegmentSize(), ciphertextLength - offset);
+
+      cipherBuffer.clear().limit(length);
+      channel.position(offset);
+      while (cipherBuffer.hasRemaining()) {
+        if (channel.read(cipherBuffer) < 0) {
+          throw new EOFException("Truncated segment " + nextSegment);
+        }
+      }
+
+      long start = System.nanoTime();
+      try {
+        int index = Math.toIntExact(nextSegment);
+        byte[] nonce;
+        cipherBuffer.flip();
+        if (header.isCurrent()) {
+          nonce = new byte[SegmentHeader.NONCE_LENGTH_BYTE];
+          cipherBuffer.get(nonce);
+        } else {
+          nonce = header.nonce(index, last);
+        }
+        cipher.init(Cipher.DECRYPT_MODE, keySpec, new GCMParameterSpec(tagLengthBit, nonce));
+        cipher.updateAAD(header.aad(index, last));
+        bufferStart = nextSegment * header.segmentSize();
+        plainBuffer.clear();
+        cipher.doFinal(cipherBuffer, plainBuffer);
+        plainBuffer.flip();
+        decryptNanos += System.nanoTime() - start;
+        decryptedBytes += plainBuffer.remaining();
+      } catch (GeneralSecurityException e) {
+        throw new IOException("Failed to decrypt segment " + nextSegment, e);
+      }
+
+      nextSegment++;
+      if (plainBuffer.hasRemaining()) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,255 @@
+package com.example.secure_drop.service.encryption;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Header of the segmented AES-GCM file format.
+ *
+ * <pre>
+ * header  : magic(4) | version(1) | segmentSize(4) | salt(32) | codec(1)
+ * segment : nonce(12) | ciphertext(segmentSize) | tag(16)     (the last segment may be shorter)
+ * </pre>
+ *
+ * The codec ({@link ContentCodec}) says how the plaintext was encoded before it was sealed.
+ *
+ * Every file is sealed under its own key, derived with HKDF-SHA256 from the configured key
+ * and the file's random salt. Each segment is sealed with a random nonce stored in front of it
+ * and {@code header | counter(4) | lastFlag(1)} as AAD, so segments cannot be reordered,
+ * dropped, truncated or moved to another file without failing authentication, and a segment
+ * sealed again, as when a chunk is retried, never repeats a nonce.
+ *
+ * Nonce budget: random 96-bit nonces stay within the 2^32 seals per key that NIST SP 800-38D
+ * allows, since a key seals one file of at most 2^31 segments (the counter is an int) plus the
+ * few resealed by retries; the chance of two nonces colliding under one key is then below
+ * 2^-35 for the largest file and negligible for real ones. Salts are 256 bits, so no two files
+ * share a key.
+ *
+ * Versions 1 and 2 are still read: they sealed every file under the configured key itself,
+ * with nonce {@code noncePrefix(7) | counter(4) | lastFlag(1)}, the header alone as AAD and no
+ * nonce in front of the segments. Their header was
+ * {@code magic | version | segmentSize | noncePrefix(7) | codec(1)}, without the codec byte in
+ * version 1.
+ */
+public final class SegmentHeader {
+  public static final int TAG_LENGTH_BYTE = 16;
+  public static final int NONCE_LENGTH_BYTE = 12;
+  public static final int NONCE_PREFIX_LENGTH_BYTE = 7;
+  public static final int SALT_LENGTH_BYTE = 32;
+
+  public static final int MAGIC_LENGTH = 4;
+
+  static final byte[] MAGIC = { 'S', 'D', 'R', 'P' };
+  static final byte VERSION_1 = 1;
+  static final byte VERSION_2 = 2;
+  static final byte VERSION = 3;
+  static final int PREAMBLE_LENGTH = MAGIC.length + 1 + Integer.BYTES;
+  static final int LENGTH_V1 = PREAMBLE_LENGTH + NONCE_PREFIX_LENGTH_BYTE;
+  static final int LENGTH_V2 = LENGTH_V1 + 1;
+  static final int LENGTH = PREAMBLE_LENGTH + SALT_LENGTH_BYTE + 1;
+  /** Length of the longest header of any version. */
+  public static final int MAX_LENGTH = LENGTH;
+
+  private final byte version;
+  private final int segmentSize;
+  private final byte[] noncePrefix;
+  private final byte[] salt;
+  private final ContentCodec codec;
+  private final byte[] bytes;
+
+  private SegmentHeader(byte version, int segmentSize, byte[] noncePrefix, byte[] salt, ContentCodec codec) {
+    this.version = version;
+    this.segmentSize = segmentSize;
+    this.noncePrefix = noncePrefix;
+    this.salt = salt;
+    this.codec = codec;
+
+    var buffer = ByteBuffer.allocate(switch (version) {
+      case VERSION_1 -> LENGTH_V1;
+      case VERSION_2 -> LENGTH_V2;
+      default -> LENGTH;
+    })
+        .put(MAGIC)
+        .put(version)
+        .putInt(segmentSize)
+        .put(version == VERSION ? salt : noncePrefix);
+    if (version != VERSION_1) {
+      buffer.put(codec.id());
+    }
+    this.bytes = buffer.array();
+  }
+
+  public static SegmentHeader generate(int segmentSize, SecureRandom random) {
+    return generate(segmentSize, ContentCodec.NONE, random);
+  }
+
+  public static SegmentHeader generate(int segmentSize, ContentCodec codec, SecureRandom random) {
+    if (segmentSize <= 0) {
+      throw new IllegalArgumentException("Segment size must be positive: " + segmentSize);
+    }
+    byte[] salt = new byte[SALT_LENGTH_BYTE];
+    random.nextBytes(salt);
+    return new SegmentHeader(VERSION, segmentSize, null, salt, codec);
+  }
+
+  public static SegmentHeader read(ReadableByteChannel channel) throws IOException {
+    var buffer = ByteBuffer.allocate(PREAMBLE_LENGTH);
+    readFully(channel, buffer);
+    buffer.flip();
+
+    byte[] magic = new byte[MAGIC.length];
+    buffer.get(magic);
+    if (!Arrays.equals(magic, MAGIC)) {
+      throw new IOException("Not a segmented ciphertext");
+    }
+
+    byte version = buffer.get();
+    if (version != VERSION_1 && version != VERSION_2 && version != VERSION) {
+      throw new IOException("Unsupported segment format version: " + version);
+    }
+
+    int segmentSize = buffer.getInt();
+    if (segmentSize <= 0) {
+      throw new IOException("Invalid segment size: " + segmentSize);
+    }
+
+    var rest = ByteBuffer.allocate(switch (version) {
+      case VERSION_1 -> NONCE_PREFIX_LENGTH_BYTE;
+      case VERSION_2 -> NONCE_PREFIX_LENGTH_BYTE + 1;
+      default -> SALT_LENGTH_BYTE + 1;
+    });
+    readFully(channel, rest);
+    rest.flip();
+
+    byte[] noncePrefix = null;
+    byte[] salt = null;
+    if (version == VERSION) {
+      salt = new byte[SALT_LENGTH_BYTE];
+      rest.get(salt);
+    } else {
+      noncePrefix = new byte[NONCE_PREFIX_LENGTH_BYTE];
+      rest.get(noncePrefix);
+    }
+    var codec = rest.hasRemaining() ? ContentCodec.fromId(rest.get()) : ContentCodec.NONE;
+    return new SegmentHeader(version, segmentSize, noncePrefix, salt, codec);
+  }
+
+  private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        throw new IOException("Truncated segment header");
+      }
+    }
+  }
+
+  public static boolean hasMagic(byte[] prefix) {
+    return prefix.length >= MAGIC_LENGTH && Arrays.equals(prefix, 0, MAGIC_LENGTH, MAGIC, 0, MAGIC_LENGTH);
+  }
+
+  public int segmentSize() {
+    return segmentSize;
+  }
+
+  public int length() {
+    return bytes.length;
+  }
+
+  public ContentCodec codec() {
+    return codec;
+  }
+
+  /**
+   * Whether this is the current version, whose segments carry their own nonces; only such
+   * ciphertexts are sealed or extended.
+   */
+  public boolean isCurrent() {
+    return version == VERSION;
+  }
+
+  /**
+   * Salt the file's key is derived from, or {@code null} for the versions sealed under the
+   * configured key itself.
+   */
+  public byte[] salt() {
+    return salt == null ? null : salt.clone();
+  }
+
+  /**
+   * Header bytes, the on-disk prefix.
+   */
+  public byte[] bytes() {
+    return bytes.clone();
+  }
+
+  /**
+   * AAD of one segment: the header, followed by its counter and last flag from version 3 on.
+   */
+  public byte[] aad(int segmentIndex, boolean lastSegment) {
+    if (!isCurrent()) {
+      return bytes.clone();
+    }
+    return ByteBuffer.allocate(bytes.length + Integer.BYTES + 1)
+        .put(bytes)
+        .putInt(segmentIndex)
+        .put((byte) (lastSegment ? 1 : 0))
+        .array();
+  }
+
+  /**
+   * Nonce of one segment of a version 1 or 2 ciphertext; later versions store it with the
+   * segment.
+   */
+  public byte[] nonce(int segmentIndex, boolean lastSegment) {
+    if (isCurrent()) {
+      throw new IllegalStateException("Version " + version + " segments carry their own nonces");
+    }
+    return ByteBuffer.allocate(NONCE_LENGTH_BYTE)
+        .put(noncePrefix)
+        .putInt(segmentIndex)
+        .put((byte) (lastSegment ? 1 : 0))
+        .array();
+  }
+
+  /**
+   * Bytes a segment takes beyond its plaintext: its tag, and its nonce from version 3 on.
+   */
+  public int segmentOverhead() {
+    return (isCurrent() ? NONCE_LENGTH_BYTE : 0) + TAG_LENGTH_BYTE;
+  }
+
+  public int encryptedSegmentSize() {
+    return segmentSize + segmentOverhead();
+  }
+
+  public long segmentOffset(long segmentIndex) {
+    return length() + segmentIndex * encryptedSegmentSize();
+  }
+
+  /**
+   * Plaintext length of a ciphertext of the given total size (header included).
+   */
+  public long plaintextLength(long ciphertextLength) {
+    long body = ciphertextLength - length();
+    long fullSegments = body / encryptedSegmentSize();
+    long remainder = body % encryptedSegmentSize();
+
+    if (body < segmentOverhead() || (remainder > 0 && remainder < segmentOverhead())) {
+      throw new IllegalStateException("Corrupted ciphertext length: " + ciphertextLength);
+    }
+    if (remainder == 0) {
+      return fullSegments * segmentSize;
+    }
+    return fullSegments * segmentSize + remainder - segmentOverhead();
+  }
+
+  /**
+   * Number of segments in a ciphertext of the given total size (header included).
+   */
+  public long segmentCount(long ciphertextLength) {
+    long body = ciphertextLength - length();
+    return (body + encryptedSegmentSize() - 1) / encryptedSegmentSize();
+  }
+}
@@ -0,0 +1,11 @@
+package com.example.secure_drop.service.encryption;
+
+/**
+ * Content offered for a segment that a ciphertext already holds, intact, differs from what the
+ * segment was sealed with.
+ */
+public class SegmentMismatchException extends Exception {
+  public SegmentMismatchException(long segmentIndex) {
+    super("Segment " + segmentIndex + " holds different content");
+  }
+}
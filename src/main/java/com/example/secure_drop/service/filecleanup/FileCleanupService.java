@@ -0,0 +1,33 @@
+package com.example.secure_drop.service.filecleanup;
+
+import java.util.Collection;
+
+public interface FileCleanupService {
+  /**
+   * Removes the stored files and metadata of every consumed or expired file.
+   *
+   * @return the number of files removed
+   */
+  int cleanupConsumedOrExpired();
+
+  /**
+   * Removes those of the given files that are consumed or expired; the rest are left alone.
+   *
+   * @return the number of files removed
+   */
+  int cleanup(Collection<Long> fileIds);
+
+  /**
+   * Queues a file whose downloads are used up for removal right away, even while its download
+   * session is still open. Files that are not consumed are left alone.
+   */
+  void purge(Long fileId);
+
+  /**
+   * Removes stored files that no upload, shared blob or chunked upload refers to, such as those
+   * left by a crash between writing a file and saving its metadata.
+   *
+   * @return the number of files removed
+   */
+  int removeOrphans();
+}
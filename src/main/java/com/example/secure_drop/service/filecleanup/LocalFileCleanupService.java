@@ -0,0 +1,365 @@
+package com.example.secure_drop.service.filecleanup;
+
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.secure_drop.config.CleanupProperties;
+import com.example.secure_drop.dto.FileCleanupCandidate;
+import com.example.secure_drop.repo.FileMetadataRepo;
+import com.example.secure_drop.repo.StoredBlobRepo;
+import com.example.secure_drop.repo.UploadSessionRepo;
+import com.example.secure_drop.service.accesscode.AccessCodeIndex;
+import com.example.secure_drop.service.filestorage.FileStorageService;
+import com.example.secure_drop.service.filestorage.StorageUris;
+import com.example.secure_drop.service.metadatacache.FileMetadataCache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Walks consumed and expired files in keyset-paginated batches: stored files are deleted in
+ * parallel, then the batch's metadata goes in a single {@code DELETE ... WHERE id IN (...)}.
+ * Rows whose file could not be deleted are kept and retried on the next run.
+ *
+ * <p>A deduplicated file gives up its reference to the shared blob in the transaction that deletes
+ * its row, so neither outlives the other; the blob is deleted with its last reference, once that
+ * commits. A batch whose transaction fails keeps all its rows, to be retried.
+ *
+ * <p>Fully downloaded one-time files are purged through a bounded queue as soon as their
+ * response completes, with retries; whatever still fails is left to the expiry timer.
+ *
+ * <p>Orphans, stored files without any row referring to them, are found by streaming the upload
+ * roots in batches against the tables; a batch costs one indexed lookup per table, so the scan
+ * can run alongside requests.
+ */
+@Service
+@Slf4j
+public class LocalFileCleanupService implements FileCleanupService {
+  private final FileMetadataRepo fileMetadataRepo;
+  private final StoredBlobRepo storedBlobRepo;
+  private final UploadSessionRepo uploadSessionRepo;
+  private final FileStorageService fileStorageService;
+  private final AccessCodeIndex accessCodeIndex;
+  private final FileMetadataCache fileMetadataCache;
+  private final Clock clock;
+  private final TransactionTemplate transactionTemplate;
+  private final int batchSize;
+  private final ExecutorService fileDeleter;
+  private final ThreadPoolExecutor purger;
+  private final ScheduledExecutorService purgeRetries;
+  private final int purgeMaxAttempts;
+  private final long purgeRetryDelayMillis;
+  private final Duration orphanGracePeriod;
+
+  private final AtomicLong backlog = new AtomicLong();
+  private final Counter deletedFiles;
+  private final Counter failedFiles;
+  private final Counter purgeRetryCount;
+  private final Counter orphanedFiles;
+  private final Timer runTimer;
+
+  public LocalFileCleanupService(FileMetadataRepo fileMetadataRepo, StoredBlobRepo storedBlobRepo,
+      UploadSessionRepo uploadSessionRepo, FileStorageService fileStorageService, AccessCodeIndex accessCodeIndex,
+      FileMetadataCache fileMetadataCache, Clock clock, PlatformTransactionManager transactionManager,
+      CleanupProperties cleanupProperties, MeterRegistry meterRegistry) {
+    this.fileMetadataRepo = fileMetadataRepo;
+    this.storedBlobRepo = storedBlobRepo;
+    this.uploadSessionRepo = uploadSessionRepo;
+    this.fileStorageService = fileStorageService;
+    this.accessCodeIndex = accessCodeIndex;
+    this.fileMetadataCache = fileMetadataCache;
+    this.clock = clock;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.batchSize = cleanupProperties.getBatchSize();
+    this.fileDeleter = Executors.newFixedThreadPool(cleanupProperties.getParallelism(),
+        Thread.ofPlatform().name("file-cleanup-", 0).daemon().factory());
+
+    // Bounded queue; when it is full the downloading thread purges inline, pacing downloads to deletes
+    this.purger = new ThreadPoolExecutor(cleanupProperties.getParallelism(), cleanupProperties.getParallelism(),
+        0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(cleanupProperties.getPurgeQueueCapacity()),
+        Thread.ofPlatform().name("file-purge-", 0).daemon().factory(), new ThreadPoolExecutor.CallerRunsPolicy());
+    this.purgeRetries = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("file-purge-retry").daemon().factory());
+    this.purgeMaxAttempts = cleanupProperties.getPurgeMaxAttempts();
+    this.purgeRetryDelayMillis = cleanupProperties.getPurgeRetryDelay().toMillis();
+    this.orphanGracePeriod = cleanupProperties.getOrphanGracePeriod();
+
+    Gauge.builder("securedrop.cleanup.backlog", backlog, AtomicLong::get)
+        .description("Consumed or expired files awaiting cleanup at the start of the last run")
+        .register(meterRegistry);
+    this.deletedFiles = Counter.builder("securedrop.cleanup.deleted")
+        .description("Files removed by cleanup")
+        .register(meterRegistry);
+    this.failedFiles = Counter.builder("securedrop.cleanup.failed")
+        .description("Files whose stored copy could not be deleted")
+        .register(meterRegistry);
+    Gauge.builder("securedrop.purge.queued", purger, executor -> executor.getQueue().size())
+        .description("Fully downloaded files waiting to be purged")
+        .register(meterRegistry);
+    this.purgeRetryCount = Counter.builder("securedrop.purge.retries")
+        .description("Purge attempts that failed and were rescheduled")
+        .register(meterRegistry);
+    this.orphanedFiles = Counter.builder("securedrop.cleanup.orphans")
+        .description("Stored files removed because nothing referred to them")
+        .register(meterRegistry);
+    this.runTimer = Timer.builder("securedrop.cleanup.run")
+        .description("Duration of cleanup runs that had work to do")
+        .register(meterRegistry);
+  }
+
+  @Override
+  public int cleanupConsumedOrExpired() {
+    var now = Timestamp.valueOf(LocalDateTime.now(clock));
+    long pending = fileMetadataRepo.countConsumedOrExpired(now);
+    backlog.set(pending);
+
+    if (pending == 0) {
+      log.debug("No consumed or expired files found for cleanup.");
+      return 0;
+    }
+
+    log.info("Cleaning up {} consumed or expired files", pending);
+    int removed = runTimer.record(() -> cleanup(now));
+    log.info("Cleanup removed {} of {} files", removed, pending);
+    return removed;
+  }
+
+  @Override
+  public int cleanup(Collection<Long> fileIds) {
+    var now = Timestamp.valueOf(LocalDateTime.now(clock));
+    var ids = List.copyOf(fileIds);
+    int removed = 0;
+
+    for (int from = 0; from < ids.size(); from += batchSize) {
+      var chunk = ids.subList(from, Math.min(from + batchSize, ids.size()));
+      var batch = fileMetadataRepo.findConsumedOrExpiredByIdIn(now, chunk);
+      if (!batch.isEmpty()) {
+        removed += deleteBatch(batch);
+      }
+    }
+    log.debug("Cleanup of {} due files removed {}", ids.size(), removed);
+    return removed;
+  }
+
+  @Override
+  public void purge(Long fileId) {
+    log.debug("Queueing purge of consumed file {}", fileId);
+    submitPurge(fileId, 1);
+  }
+
+  @Override
+  public int removeOrphans() {
+    var modifiedBefore = clock.instant().minus(orphanGracePeriod);
+    int scanned = 0;
+    int removed = 0;
+
+    var batch = new ArrayList<String>(batchSize);
+    try (var files = fileStorageService.list(modifiedBefore)) {
+      var iterator = files.iterator();
+      while (iterator.hasNext()) {
+        batch.add(iterator.next());
+        if (batch.size() == batchSize || !iterator.hasNext()) {
+          scanned += batch.size();
+          removed += removeUnreferenced(batch);
+          batch.clear();
+        }
+      }
+    }
+
+    if (removed > 0) {
+      log.warn("Removed {} orphaned files of {} scanned", removed, scanned);
+    } else {
+      log.debug("No orphaned files among {} scanned", scanned);
+    }
+    return removed;
+  }
+
+  private int removeUnreferenced(List<String> files) {
+    var names = new HashSet<String>();
+    for (var file : files) {
+      names.addAll(referenceNames(file));
+    }
+    var referenced = new HashSet<>(fileMetadataRepo.findStoragePathsIn(names));
+    referenced.addAll(storedBlobRepo.findFileNamesIn(names));
+    referenced.addAll(uploadSessionRepo.findStorageFilesIn(names));
+
+    int removed = 0;
+    for (var file : files) {
+      if (referenceNames(file).stream().anyMatch(referenced::contains)) {
+        continue;
+      }
+      log.warn("Removing orphaned file {}", file);
+      try {
+        if (fileStorageService.delete(file)) {
+          orphanedFiles.increment();
+          removed++;
+        }
+      } catch (RuntimeException e) {
+        log.warn("Failed to remove orphaned file {}", file, e);
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * The names a row may know {@code storagePath} by. Local files were recorded as plain paths
+   * before storage paths were URIs: absolute, or relative to the working directory, as the upload
+   * root was given when the row was written; blob rows and upload sessions from before sharding
+   * use the bare name.
+   */
+  private static Set<String> referenceNames(String storagePath) {
+    if (!StorageUris.isLocal(storagePath)) {
+      return Set.of(storagePath);
+    }
+    var absolute = StorageUris.toPath(storagePath).toAbsolutePath().normalize();
+    // Often the same name more than once, which Set.of would reject
+    return new HashSet<>(List.of(storagePath, absolute.toString(),
+        Path.of("").toAbsolutePath().relativize(absolute).toString(), absolute.getFileName().toString()));
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    purgeRetries.shutdownNow();
+    purger.shutdownNow();
+    fileDeleter.shutdownNow();
+  }
+
+  private void submitPurge(Long fileId, int attempt) {
+    purger.execute(() -> purgeNow(fileId, attempt));
+  }
+
+  private void purgeNow(Long fileId, int attempt) {
+    try {
+      var candidates = fileMetadataRepo.findConsumedById(fileId);
+      if (candidates.isEmpty()) {
+        log.debug("File {} is gone or not consumed, nothing to purge", fileId);
+        return;
+      }
+      if (deleteBatch(candidates) == 0) {
+        throw new IllegalStateException("Stored file or its row could not be deleted");
+      }
+      log.info("Purged consumed file {}", fileId);
+    } catch (Exception e) {
+      if (attempt >= purgeMaxAttempts) {
+        log.warn("Giving up purging file {} after {} attempts; left to the expiry timer", fileId, attempt, e);
+        return;
+      }
+      long delay = purgeRetryDelayMillis << (attempt - 1);
+      log.warn("Purging file {} failed (attempt {}), retrying in {} ms", fileId, attempt, delay, e);
+      purgeRetryCount.increment();
+      purgeRetries.schedule(() -> submitPurge(fileId, attempt + 1), delay, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private int cleanup(Timestamp now) {
+    var limit = Limit.of(batchSize);
+    long afterId = 0;
+    int removed = 0;
+
+    while (true) {
+      var batch = fileMetadataRepo.findConsumedOrExpired(now, afterId, limit);
+      if (batch.isEmpty()) {
+        break;
+      }
+      removed += deleteBatch(batch);
+      afterId = batch.getLast().id();
+      if (batch.size() < batchSize) {
+        break;
+      }
+    }
+    return removed;
+  }
+
+  private int deleteBatch(List<FileCleanupCandidate> batch) {
+    var deletions = batch.stream()
+        .map(candidate -> CompletableFuture.supplyAsync(() -> deleteStoredFile(candidate), fileDeleter))
+        .toList();
+
+    var deleted = new ArrayList<FileCleanupCandidate>(batch.size());
+    for (int i = 0; i < batch.size(); i++) {
+      if (deletions.get(i).join()) {
+        deleted.add(batch.get(i));
+      }
+    }
+
+    if (!deleted.isEmpty() && deleteRows(deleted)) {
+      deleted.forEach(candidate -> {
+        accessCodeIndex.release(candidate.accessCode());
+        fileMetadataCache.invalidate(candidate.accessCode());
+      });
+      log.debug("Deleted {} metadata records", deleted.size());
+    } else {
+      deleted.clear();
+    }
+
+    deletedFiles.increment(deleted.size());
+    failedFiles.increment(batch.size() - deleted.size());
+    return deleted.size();
+  }
+
+  private boolean deleteStoredFile(FileCleanupCandidate candidate) {
+    if (candidate.deduplicated()) {
+      // Released with the row, see deleteRows
+      return true;
+    }
+    var filePath = candidate.storagePath();
+    try {
+      if (!fileStorageService.delete(filePath)) {
+        log.warn("Stored file for access code {} not found at path {}", candidate.accessCode(), filePath);
+      }
+      return true;
+    } catch (Exception e) {
+      log.error("Failed to delete stored file for access code {} at path {}", candidate.accessCode(), filePath, e);
+      return false;
+    }
+  }
+
+  /**
+   * Deletes the rows and releases their blobs in one transaction. Returns false, with every row
+   * kept, if it fails.
+   */
+  private boolean deleteRows(List<FileCleanupCandidate> candidates) {
+    try {
+      transactionTemplate.executeWithoutResult(status -> {
+        fileMetadataRepo.deleteAllByIdInBatch(candidates.stream().map(FileCleanupCandidate::id).toList());
+        candidates.stream()
+            .filter(FileCleanupCandidate::deduplicated)
+            .forEach(candidate -> {
+              if (fileStorageService.release(candidate.storagePath())) {
+                log.debug("Releasing blob {} with its last reference", candidate.storagePath());
+              }
+            });
+      });
+      return true;
+    } catch (RuntimeException e) {
+      log.error("Failed to delete {} metadata records with their blob references; kept for the next run",
+          candidates.size(), e);
+      return false;
+    }
+  }
+}
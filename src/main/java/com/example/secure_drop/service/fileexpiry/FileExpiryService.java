@@ -4,4 +4,10 @@ import java.sql.Timestamp;
 
 public interface FileExpiryService {
   boolean isExpired(Timestamp expiryTime);
+
+  /**
+   * Arranges for the file to be cleaned up once {@code dueAt} has passed. Due times already in
+   * the past are handled on the next tick.
+   */
+  void scheduleCleanup(Long fileId, Timestamp dueAt);
 }
@@ -3,16 +3,58 @@ package com.example.secure_drop.service.fileexpiry;
 import java.sql.Timestamp;
 import java.time.Clock;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import lombok.RequiredArgsConstructor;
+import com.example.secure_drop.config.CleanupProperties;
+import com.example.secure_drop.repo.FileMetadataRepo;
+import com.example.secure_drop.service.filecleanup.FileCleanupService;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps every file's cleanup time in a {@link TimingWheel}, fed by uploads and downloads and
+ * rebuilt from the database at startup, and removes files within one tick of falling due.
+ */
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class LocalFileExpiryService implements FileExpiryService {
+  private static final int WHEEL_SIZE = 64;
+  private static final int WHEEL_LEVELS = 4;
+
   private final Clock clock;
+  private final FileMetadataRepo fileMetadataRepo;
+  private final FileCleanupService fileCleanupService;
+  private final long tickMillis;
+  private final TimingWheel<Long> wheel;
+  private final ConcurrentLinkedQueue<Long> overdue = new ConcurrentLinkedQueue<>();
+  private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(
+      Thread.ofPlatform().name("file-expiry-wheel").daemon().factory());
+
+  public LocalFileExpiryService(Clock clock, FileMetadataRepo fileMetadataRepo,
+      FileCleanupService fileCleanupService, CleanupProperties cleanupProperties, MeterRegistry meterRegistry) {
+    this.clock = clock;
+    this.fileMetadataRepo = fileMetadataRepo;
+    this.fileCleanupService = fileCleanupService;
+    this.tickMillis = cleanupProperties.getExpiryTick().toMillis();
+    this.wheel = new TimingWheel<>(tickMillis, WHEEL_SIZE, WHEEL_LEVELS, clock.millis());
+
+    Gauge.builder("securedrop.expiry.scheduled", this, LocalFileExpiryService::scheduledCount)
+        .description("Files waiting in the expiry timer")
+        .register(meterRegistry);
+  }
 
   @Override
   public boolean isExpired(Timestamp expiryTime) {
@@ -21,4 +63,58 @@ public class LocalFileExpiryService implements FileExpiryService {
 
     return LocalDateTime.now(clock).isAfter(timestamp.toLocalDateTime());
   }
+
+  @Override
+  public void scheduleCleanup(Long fileId, Timestamp dueAt) {
+    boolean scheduled;
+    synchronized (wheel) {
+      scheduled = wheel.add(dueAt.getTime(), fileId);
+    }
+    if (!scheduled) {
+      overdue.add(fileId);
+    }
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional(readOnly = true)
+  public void start() {
+    log.info("Rebuilding file expiry timer");
+    try (var entries = fileMetadataRepo.streamAllExpiryEntries()) {
+      entries.forEach(entry -> scheduleCleanup(entry.id(), entry.dueAt()));
+    }
+    log.info("File expiry timer rebuilt with {} files", scheduledCount());
+
+    ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    ticker.shutdownNow();
+  }
+
+  private void tick() {
+    try {
+      var due = new ArrayList<Long>();
+      synchronized (wheel) {
+        wheel.advance(clock.millis(), due::add);
+      }
+      for (Long fileId; (fileId = overdue.poll()) != null;) {
+        due.add(fileId);
+      }
+
+      if (!due.isEmpty()) {
+        log.debug("{} files fell due", due.size());
+        fileCleanupService.cleanup(due);
+      }
+    } catch (Exception e) {
+      // Files lost here are picked up by the reconciliation run
+      log.error("File expiry tick failed", e);
+    }
+  }
+
+  private int scheduledCount() {
+    synchronized (wheel) {
+      return wheel.size();
+    }
+  }
 }
@@ -0,0 +1,105 @@
+package com.example.secure_drop.service.fileexpiry;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel. Level {@code i} has {@code wheelSize} slots of
+ * {@code tick * wheelSize^i} milliseconds; an entry sits in the lowest level whose range covers
+ * its deadline and cascades down a level each time the clock reaches its slot. Adding and
+ * expiring an entry is O(1) amortised, and entries fire at most one tick after their deadline.
+ * Deadlines beyond the top level are parked in its farthest slot and re-placed on cascade.
+ *
+ * <p>Not thread-safe.
+ */
+final class TimingWheel<T> {
+  private final long tick;
+  private final int wheelSize;
+  private final long[] levelTicks;
+  private final ArrayDeque<Entry<T>>[][] slots;
+  private long currentTime;
+  private int size;
+
+  @SuppressWarnings("unchecked")
+  TimingWheel(long tick, int wheelSize, int levels, long startTime) {
+    this.tick = tick;
+    this.wheelSize = wheelSize;
+    this.levelTicks = new long[levels];
+    this.slots = new ArrayDeque[levels][wheelSize];
+
+    long levelTick = tick;
+    for (int level = 0; level < levels; level++) {
+      levelTicks[level] = levelTick;
+      for (int slot = 0; slot < wheelSize; slot++) {
+        slots[level][slot] = new ArrayDeque<>();
+      }
+      levelTick = Math.multiplyExact(levelTick, wheelSize);
+    }
+    this.currentTime = startTime - Math.floorMod(startTime, tick);
+  }
+
+  /**
+   * Schedules {@code value} at {@code deadline}. Returns {@code false}, without scheduling, if
+   * the deadline has already passed.
+   */
+  boolean add(long deadline, T value) {
+    if (deadline / tick < currentTime / tick) {
+      return false;
+    }
+    place(new Entry<>(deadline, value));
+    size++;
+    return true;
+  }
+
+  /**
+   * Moves the clock to {@code now}, one tick at a time, passing every entry that falls due
+   * to {@code expired}.
+   */
+  void advance(long now, Consumer<T> expired) {
+    while (currentTime + tick <= now) {
+      currentTime += tick;
+
+      // Fire before cascading: the slot just passed is the one cascaded entries may wrap into
+      var due = slots[0][slotIndex(currentTime - tick, 0)];
+      while (!due.isEmpty()) {
+        size--;
+        expired.accept(due.poll().value());
+      }
+
+      for (int level = levelTicks.length - 1; level > 0; level--) {
+        if (currentTime % levelTicks[level] == 0) {
+          var slot = slots[level][slotIndex(currentTime, level)];
+          var cascading = new ArrayList<>(slot);
+          slot.clear();
+          cascading.forEach(this::place);
+        }
+      }
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  private void place(Entry<T> entry) {
+    int top = levelTicks.length - 1;
+    for (int level = 0; level <= top; level++) {
+      long distance = entry.deadline() / levelTicks[level] - currentTime / levelTicks[level];
+      // Level 0 slots fire after their tick; higher ones cascade at its start, so must lie ahead
+      if (distance < wheelSize && (level == 0 || distance > 0)) {
+        slots[level][slotIndex(entry.deadline(), level)].add(entry);
+        return;
+      }
+    }
+    long farthest = (currentTime / levelTicks[top] + wheelSize - 1) * levelTicks[top];
+    slots[top][slotIndex(farthest, top)].add(entry);
+  }
+
+  private int slotIndex(long time, int level) {
+    return (int) Math.floorMod(time / levelTicks[level], (long) wheelSize);
+  }
+
+  private record Entry<T>(long deadline, T value) {
+  }
+}
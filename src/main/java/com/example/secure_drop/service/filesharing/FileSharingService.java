@@ -1,15 +1,52 @@
 package com.example.secure_drop.service.filesharing;
 
+import java.io.InputStream;
+import java.util.function.Consumer;
+
 import org.springframework.web.multipart.MultipartFile;
 
 import com.example.secure_drop.dto.FileDownloadWrapper;
 import com.example.secure_drop.dto.FileUploadResponse;
+import com.example.secure_drop.model.StoragePolicy;
 
 public interface FileSharingService {
 
-  FileUploadResponse uploadFile(MultipartFile file);
+  /**
+   * Uploads a file, encrypting it unless {@code storagePolicy} says the client already did.
+   */
+  FileUploadResponse uploadFile(MultipartFile file, StoragePolicy storagePolicy);
+
+  /**
+   * Uploads a file whose content is read straight from the request body, so it is encrypted
+   * into storage in a single pass. {@code expectedSize} is a hint, -1 when unknown.
+   */
+  FileUploadResponse uploadFile(String originalFilename, String contentType, InputStream content, long expectedSize,
+      StoragePolicy storagePolicy);
+
+  /**
+   * Publishes a file that is already encrypted into storage, e.g. by a chunked upload, under a
+   * new access code. If its metadata cannot be saved the stored file is left in place, still the
+   * caller's to retry or delete.
+   */
+  FileUploadResponse publishStoredFile(String originalFilename, String contentType, String storedPath);
+
+  /**
+   * Consumes one download of the file, or resumes the download session identified by
+   * {@code resumeSession} (the ETag handed out with an earlier response) without consuming
+   * another one.
+   */
+  default FileDownloadWrapper getFile(String accessCode, String resumeSession) {
+    return getFile(accessCode, resumeSession, file -> {
+    });
+  }
 
-  FileDownloadWrapper getFile(String accessCode);
+  /**
+   * Same as {@link #getFile(String, String)}, but when a download is about to be consumed the
+   * opened file is first handed to {@code beforeConsuming}, which rejects the request by throwing,
+   * e.g. for a range it cannot serve; the download is then left unspent. The file it sees still
+   * carries the session being replaced.
+   */
+  FileDownloadWrapper getFile(String accessCode, String resumeSession, Consumer<FileDownloadWrapper> beforeConsuming);
 
   FileUploadResponse getFileInfo(String accessCode);
 
@@ -1,118 +1,315 @@
 package com.example.secure_drop.service.filesharing;
 
-import java.nio.file.Path;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.sql.Timestamp;
 import java.time.Clock;
 import java.time.LocalDateTime;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import com.example.secure_drop.config.AppConfigProperties;
 import com.example.secure_drop.config.FileStorageProperties;
+import com.example.secure_drop.dto.FileDownloadView;
 import com.example.secure_drop.dto.FileDownloadWrapper;
 import com.example.secure_drop.dto.FileUploadResponse;
 import com.example.secure_drop.exception.FileExpiredException;
+import com.example.secure_drop.exception.InvalidUploadException;
 import com.example.secure_drop.exception.MaxDownloadsExceededException;
 import com.example.secure_drop.exception.RecordNotFoundException;
 import com.example.secure_drop.model.FileMetadata;
+import com.example.secure_drop.model.StoragePolicy;
 import com.example.secure_drop.repo.FileMetadataRepo;
+import com.example.secure_drop.service.accesscode.AccessCodeFormat;
+import com.example.secure_drop.service.accesscode.AccessCodeGenerator;
+import com.example.secure_drop.service.accesscode.AccessCodeIndex;
+import com.example.secure_drop.service.filecleanup.FileCleanupService;
 import com.example.secure_drop.service.fileexpiry.FileExpiryService;
+import com.example.secure_drop.service.filesharing.model.CompletionTrackingResource;
 import com.example.secure_drop.service.filestorage.FileStorageService;
-import com.example.secure_drop.util.FileAccessCodeUtils;
+import com.example.secure_drop.service.filestorage.model.DecryptingFileResource;
+import com.example.secure_drop.service.metadatacache.FileMetadataCache;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class LocalFileSharingService implements FileSharingService {
   private static final int MAX_DOWNLOADS = 1;
   private static final int DEFAULT_EXPIRY_DAYS = 1;
+  private static final int MAX_SAVE_ATTEMPTS = 3;
   private final FileStorageService fileStorageService;
   private final FileMetadataRepo fileMetadataRepo;
   private final FileStorageProperties fileStorageProperties;
   private final AppConfigProperties appConfigProperties;
   private final Clock clock;
   private final FileExpiryService fileExpiryService;
+  private final AccessCodeGenerator accessCodeGenerator;
+  private final AccessCodeIndex accessCodeIndex;
+  private final AccessCodeFormat accessCodeFormat;
+  private final FileCleanupService fileCleanupService;
+  private final FileMetadataCache fileMetadataCache;
+
+  private final MeterRegistry meterRegistry;
+  private final DistributionSummary accessCodeAttempts;
+  private final Counter accessCodeRejections;
+
+  public LocalFileSharingService(FileStorageService fileStorageService, FileMetadataRepo fileMetadataRepo,
+      FileStorageProperties fileStorageProperties, AppConfigProperties appConfigProperties, Clock clock,
+      FileExpiryService fileExpiryService, AccessCodeGenerator accessCodeGenerator, AccessCodeIndex accessCodeIndex,
+      AccessCodeFormat accessCodeFormat, FileCleanupService fileCleanupService, FileMetadataCache fileMetadataCache,
+      MeterRegistry meterRegistry) {
+    this.fileStorageService = fileStorageService;
+    this.fileMetadataRepo = fileMetadataRepo;
+    this.fileStorageProperties = fileStorageProperties;
+    this.appConfigProperties = appConfigProperties;
+    this.clock = clock;
+    this.fileExpiryService = fileExpiryService;
+    this.accessCodeGenerator = accessCodeGenerator;
+    this.accessCodeIndex = accessCodeIndex;
+    this.accessCodeFormat = accessCodeFormat;
+    this.fileCleanupService = fileCleanupService;
+    this.fileMetadataCache = fileMetadataCache;
+
+    this.meterRegistry = meterRegistry;
+    this.accessCodeAttempts = DistributionSummary.builder("securedrop.accesscode.attempts")
+        .description("Codes drawn until one was free in this instance's index")
+        .register(meterRegistry);
+    this.accessCodeRejections = Counter.builder("securedrop.accesscode.rejected")
+        .description("Access codes the database rejected as taken, forcing another save")
+        .register(meterRegistry);
+  }
+
+  @Override
+  public FileUploadResponse uploadFile(MultipartFile file, StoragePolicy storagePolicy) {
+    return timed("securedrop.upload", "Time to store an upload and save its metadata",
+        Tags.of("source", "multipart", "policy", storagePolicy.name()), () -> storeUpload(file, storagePolicy));
+  }
 
   @Override
-  public FileUploadResponse uploadFile(MultipartFile file) {
+  public FileUploadResponse uploadFile(String originalFilename, String fileType, InputStream content,
+      long expectedSize, StoragePolicy storagePolicy) {
+    return timed("securedrop.upload", "Time to store an upload and save its metadata",
+        Tags.of("source", "stream", "policy", storagePolicy.name()),
+        () -> storeUpload(originalFilename, fileType, content, expectedSize, storagePolicy));
+  }
+
+  private FileUploadResponse storeUpload(MultipartFile file, StoragePolicy storagePolicy) {
     log.info("Starting upload processing for file: {}", file.getOriginalFilename());
     var originalFilename = file.getOriginalFilename();
     var fileType = file.getContentType();
 
-    log.debug("Original filename={}, contentType={}", originalFilename, fileType);
-    var fileName = fileStorageService.store(file);
+    log.debug("Original filename={}, contentType={}, policy={}", originalFilename, fileType, storagePolicy);
+    String storedPath;
+    if (isClientEncrypted(storagePolicy)) {
+      try (var content = file.getInputStream()) {
+        storedPath = fileStorageService.storeAsIs(content, originalFilename);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    } else {
+      storedPath = fileStorageService.store(file);
+    }
 
-    log.debug("Stored file with internal name {}", fileName);
-    var storagePath = Path.of(fileStorageProperties.getUploadDir(), fileName).toString();
-    var accessCode = generateUniqueAccessCode();
+    return saveUpload(originalFilename, fileType, storedPath, storagePolicy, isDeduplicated(storagePolicy));
+  }
 
-    log.debug("Generated access code {}", accessCode);
-    var downloadUrl = getDownloadUrl(accessCode);
-    var expiryDate = Timestamp.valueOf(LocalDateTime.now(clock).plusDays(DEFAULT_EXPIRY_DAYS));
+  private FileUploadResponse storeUpload(String originalFilename, String fileType, InputStream content,
+      long expectedSize, StoragePolicy storagePolicy) {
+    log.info("Starting streamed upload processing for file: {}", originalFilename);
+    log.debug("Original filename={}, contentType={}, policy={}", originalFilename, fileType, storagePolicy);
+    var storedPath = isClientEncrypted(storagePolicy)
+        ? fileStorageService.storeAsIs(content, originalFilename)
+        : fileStorageService.store(content, originalFilename, fileType, expectedSize);
+
+    return saveUpload(originalFilename, fileType, storedPath, storagePolicy, isDeduplicated(storagePolicy));
+  }
+
+  @Override
+  public FileUploadResponse publishStoredFile(String originalFilename, String fileType, String storedPath) {
+    log.info("Publishing stored file {} as {}", storedPath, originalFilename);
+    // The caller owns the stored file until its row is saved, so a failure leaves it in place
+    var saved = saveMetadata(originalFilename, fileType, storedPath, StoragePolicy.SERVER_ENCRYPTED, false,
+        nextExpiryDate());
+    return published(saved);
+  }
+
+  private boolean isClientEncrypted(StoragePolicy storagePolicy) {
+    if (storagePolicy != StoragePolicy.CLIENT_ENCRYPTED) {
+      return false;
+    }
+    if (!fileStorageProperties.isClientEncryptedEnabled()) {
+      throw new InvalidUploadException("Client-encrypted storage is not enabled.");
+    }
+    return true;
+  }
+
+  /**
+   * Whether the storage service kept the upload in a blob shared with identical uploads.
+   */
+  private boolean isDeduplicated(StoragePolicy storagePolicy) {
+    return storagePolicy == StoragePolicy.SERVER_ENCRYPTED && fileStorageProperties.isDedupEnabled();
+  }
 
-    var fileMetadata = FileMetadata.builder()
-        .fileName(originalFilename)
-        .fileType(fileType)
-        .expiryDate(expiryDate)
-        .storagePath(storagePath)
-        .accessCode(accessCode)
-        .maxDownloads(MAX_DOWNLOADS)
-        .build();
+  private FileUploadResponse saveUpload(String originalFilename, String fileType, String storagePath,
+      StoragePolicy storagePolicy, boolean deduplicated) {
+    log.debug("Stored file at {}", storagePath);
 
-    var saved = fileMetadataRepo.save(fileMetadata);
+    FileMetadata saved;
+    try {
+      saved = saveMetadata(originalFilename, fileType, storagePath, storagePolicy, deduplicated, nextExpiryDate());
+    } catch (RuntimeException e) {
+      // Nothing refers to the stored file without its row, so it would only take up disk
+      discardStoredFile(storagePath, deduplicated, e);
+      throw e;
+    }
+    return published(saved);
+  }
 
+  private FileUploadResponse published(FileMetadata saved) {
     log.info("File metadata saved with id {}", saved.getId());
+    fileExpiryService.scheduleCleanup(saved.getId(), saved.getExpiryDate());
+    fileMetadataCache.put(FileDownloadView.of(saved));
+    var accessCode = saved.getAccessCode();
+    var downloadUrl = getDownloadUrl(accessCode);
 
     return new FileUploadResponse(
         accessCode,
-        originalFilename,
+        saved.getFileName(),
         saved.getExpiryDate().toLocalDateTime(),
-        downloadUrl);
+        downloadUrl,
+        saved.getStoragePolicy());
+  }
+
+  private Timestamp nextExpiryDate() {
+    return Timestamp.valueOf(LocalDateTime.now(clock).plusDays(DEFAULT_EXPIRY_DAYS));
+  }
+
+  private FileMetadata saveMetadata(String originalFilename, String fileType, String storagePath,
+      StoragePolicy storagePolicy, boolean deduplicated, Timestamp expiryDate) {
+    // The index only knows this instance's codes; the unique constraint settles the rest
+    FileMetadata saved = null;
+    for (int attempt = 1; saved == null; attempt++) {
+      var accessCode = generateUniqueAccessCode();
+      log.debug("Generated access code {}", accessCode);
+
+      var fileMetadata = FileMetadata.builder()
+          .fileName(originalFilename)
+          .fileType(fileType)
+          .expiryDate(expiryDate)
+          .storagePath(storagePath)
+          .storagePolicy(storagePolicy)
+          .deduplicated(deduplicated)
+          .accessCode(accessCode)
+          .maxDownloads(MAX_DOWNLOADS)
+          .build();
+
+      try {
+        saved = fileMetadataRepo.save(fileMetadata);
+      } catch (DataIntegrityViolationException e) {
+        if (attempt >= MAX_SAVE_ATTEMPTS) {
+          throw e;
+        }
+        log.warn("Access code {} rejected by the database, retrying (attempt {})", accessCode, attempt);
+        accessCodeRejections.increment();
+      } catch (RuntimeException e) {
+        accessCodeIndex.release(accessCode);
+        throw e;
+      }
+    }
+    return saved;
+  }
+
+  private void discardStoredFile(String storagePath, boolean deduplicated, RuntimeException cause) {
+    try {
+      if (deduplicated) {
+        fileStorageService.release(storagePath);
+      } else {
+        fileStorageService.delete(storagePath);
+      }
+    } catch (RuntimeException e) {
+      cause.addSuppressed(e);
+    }
   }
 
   @Override
-  public FileDownloadWrapper getFile(String accessCode) {
+  public FileDownloadWrapper getFile(String accessCode, String resumeSession,
+      Consumer<FileDownloadWrapper> beforeConsuming) {
+    // Covers validating and consuming the download; sending the body happens after this returns
+    return timed("securedrop.download", "Time to validate a download and open its file", Tags.empty(),
+        () -> openDownload(accessCodeFormat.normalize(accessCode), resumeSession, beforeConsuming));
+  }
+
+  private FileDownloadWrapper openDownload(String accessCode, String resumeSession,
+      Consumer<FileDownloadWrapper> beforeConsuming) {
     log.info("Processing download request for access code {}", accessCode);
-    var fileMetadata = getFileMetadata(accessCode);
+    var file = findDownloadView(accessCode);
 
-    var filePath = Path.of(fileMetadata.getStoragePath());
-    log.debug("Loading file from path {}", filePath);
-    var resource = fileStorageService.load(filePath);
-    log.debug("File loaded successfully");
+    if (isResumable(file, resumeSession)) {
+      log.info("Resuming download session for access code {}", accessCode);
+      return toDownloadWrapper(file);
+    }
 
-    // Update maxDownloads
-    var maxDownloads = fileMetadata.getMaxDownloads();
-    fileMetadata.setMaxDownloads(maxDownloads - 1);
-    fileMetadataRepo.save(fileMetadata);
-    log.debug("Download count decremented from {} to {}", maxDownloads, maxDownloads - 1);
+    validateDownloadable(file.expiryDate(), file.isConsumed(), accessCode);
+    var resource = load(file);
+    beforeConsuming.accept(toDownloadWrapper(file, resource));
 
-    log.info("Download completed for file: {} (access code: {})", fileMetadata.getFileName(), accessCode);
-    return new FileDownloadWrapper(
-        resource,
-        fileMetadata.getFileType(),
-        fileMetadata.getFileName());
+    // Consume one download in a single conditional UPDATE, starting a new download session that
+    // ranged requests can resume. Concurrent requests for the last download race on the row, not in Java.
+    var now = LocalDateTime.now(clock);
+    var downloadSession = UUID.randomUUID().toString();
+    var downloadSessionExpiry = Timestamp.valueOf(now.plus(appConfigProperties.getDownloadSessionTtl()));
+    int consumed = fileMetadataRepo.consumeDownload(
+        accessCode, Timestamp.valueOf(now), downloadSession, downloadSessionExpiry);
+    if (consumed == 0) {
+      log.warn("Download limit reached concurrently for access code {}", accessCode);
+      fileMetadataCache.invalidate(accessCode);
+      throw new MaxDownloadsExceededException(accessCode);
+    }
+
+    // A no-op at that time unless this was the last download
+    fileExpiryService.scheduleCleanup(file.id(), downloadSessionExpiry);
+
+    var downloaded = file.withConsumedDownload(downloadSession, downloadSessionExpiry);
+    fileMetadataCache.put(downloaded);
+    log.debug("Download count decremented from {} to {}", file.maxDownloads(), downloaded.maxDownloads());
+
+    var wrapper = toDownloadWrapper(downloaded, resource);
+    log.info("Download completed for file: {} (access code: {})", file.fileName(), accessCode);
+    return wrapper;
   }
 
   @Override
-  public FileUploadResponse getFileInfo(String accessCode) {
+  public FileUploadResponse getFileInfo(String code) {
+    var accessCode = accessCodeFormat.normalize(code);
     log.info("Retrieving file info for access code {}", accessCode);
-    var fileMetadata = getFileMetadata(accessCode);
-    var originalFilename = fileMetadata.getFileName();
-    log.debug("File info - filename={}, expiry date={}", originalFilename, fileMetadata.getExpiryDate());
+    var file = findDownloadView(accessCode);
+    validateDownloadable(file.expiryDate(), file.isConsumed(), accessCode);
+    var originalFilename = file.fileName();
+    log.debug("File info - filename={}, expiry date={}", originalFilename, file.expiryDate());
     var downloadUrl = getDownloadUrl(accessCode);
 
     log.info("File info retrieved successfully for {}", originalFilename);
     return new FileUploadResponse(
         accessCode,
         originalFilename,
-        fileMetadata.getExpiryDate().toLocalDateTime(),
-        downloadUrl);
+        file.expiryDate().toLocalDateTime(),
+        downloadUrl,
+        file.storagePolicy());
   }
 
   public String generateUniqueAccessCode() {
@@ -120,9 +317,10 @@ public class LocalFileSharingService implements FileSharingService {
     int tryCount = 100;
 
     while (tryCount-- > 0) {
-      String accessCode = FileAccessCodeUtils.generateAccessCode();
-      if (!fileMetadataRepo.existsByAccessCode(accessCode)) {
+      String accessCode = accessCodeGenerator.next();
+      if (accessCodeIndex.reserve(accessCode)) {
         log.debug("Unique access code generated successfully: {}", accessCode);
+        accessCodeAttempts.record(100 - tryCount);
         return accessCode;
       }
       log.debug("Access code collision detected, retrying (attempts remaining: {})", tryCount);
@@ -132,28 +330,101 @@ public class LocalFileSharingService implements FileSharingService {
     throw new IllegalStateException("Unable to generate unique access code after 100 attempts");
   }
 
-  private FileMetadata getFileMetadata(String accessCode) {
+  private <T> T timed(String name, String description, Tags tags, Supplier<T> action) {
+    var sample = Timer.start(meterRegistry);
+    var exception = "none";
+    try {
+      return action.get();
+    } catch (RuntimeException e) {
+      exception = e.getClass().getSimpleName();
+      throw e;
+    } finally {
+      sample.stop(Timer.builder(name)
+          .description(description)
+          .tags(tags.and("exception", exception))
+          .register(meterRegistry));
+    }
+  }
+
+  private FileDownloadView findDownloadView(String accessCode) {
     log.info("Retrieving file metadata for access code {}", accessCode);
-    var fileMetadata = fileMetadataRepo.findByAccessCode(accessCode)
-        .orElseThrow(() -> {
-          log.warn("File not found for access code {}", accessCode);
-          return new RecordNotFoundException(accessCode);
-        });
-    log.debug("File metadata found: id={}, filename={}", fileMetadata.getId(), fileMetadata.getFileName());
-
-    var expiryDate = fileMetadata.getExpiryDate();
+    var file = fileMetadataCache.get(accessCode)
+        .orElseThrow(() -> notFound(accessCode));
+    log.debug("File metadata found: id={}, filename={}", file.id(), file.fileName());
+    return file;
+  }
+
+  private RecordNotFoundException notFound(String accessCode) {
+    log.warn("File not found for access code {}", accessCode);
+    return new RecordNotFoundException(accessCode);
+  }
+
+  private void validateDownloadable(Timestamp expiryDate, boolean consumed, String accessCode) {
     if (fileExpiryService.isExpired(expiryDate)) {
       log.warn("File has expired for access code {}", accessCode);
       throw new FileExpiredException(accessCode);
     }
     log.debug("File not expired, expiry date: {}", expiryDate);
 
-    if (fileMetadata.isConsumed()) {
+    if (consumed) {
       log.warn("File download limit exceeded for access code {}", accessCode);
       throw new MaxDownloadsExceededException(accessCode);
     }
     log.debug("File download limit not exceeded");
-    return fileMetadata;
+  }
+
+  private boolean isResumable(FileDownloadView file, String resumeSession) {
+    if (resumeSession == null || !resumeSession.equals(file.downloadSession())) {
+      return false;
+    }
+    if (fileExpiryService.isExpired(file.expiryDate())) {
+      throw new FileExpiredException(file.accessCode());
+    }
+    return !fileExpiryService.isExpired(file.downloadSessionExpiry());
+  }
+
+  private FileDownloadWrapper toDownloadWrapper(FileDownloadView file) {
+    return toDownloadWrapper(file, load(file));
+  }
+
+  private Resource load(FileDownloadView file) {
+    var filePath = file.storagePath();
+    log.debug("Loading file from path {}", filePath);
+    return file.storagePolicy() == StoragePolicy.CLIENT_ENCRYPTED
+        ? fileStorageService.loadAsIs(filePath)
+        : fileStorageService.load(filePath);
+  }
+
+  private FileDownloadWrapper toDownloadWrapper(FileDownloadView file, Resource resource) {
+    if (file.storagePolicy() == StoragePolicy.CLIENT_ENCRYPTED) {
+      // Sent by the container after the request returns, so completion cannot be observed here;
+      // a consumed file is removed when its download session ends
+      return new FileDownloadWrapper(
+          resource,
+          file.fileType(),
+          file.fileName(),
+          file.downloadSession(),
+          file.storagePolicy(),
+          null);
+    }
+
+    var contentEncoding = resource instanceof DecryptingFileResource decrypting
+        ? decrypting.getContentEncoding()
+        : null;
+
+    if (file.isConsumed()) {
+      // Once the last download's full body is written nothing can use the file again
+      var fileId = file.id();
+      resource = new CompletionTrackingResource(resource, () -> fileCleanupService.purge(fileId));
+    }
+
+    return new FileDownloadWrapper(
+        resource,
+        file.fileType(),
+        file.fileName(),
+        file.downloadSession(),
+        file.storagePolicy(),
+        contentEncoding);
   }
 
   private String getDownloadUrl(String accessCode) {
@@ -0,0 +1,104 @@
+package com.example.secure_drop.service.filesharing.model;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.jspecify.annotations.NonNull;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Resource that runs {@code onComplete} when a stream over it is closed after the whole content
+ * was read from the start, i.e. once a full response body has been written. Streams that skip,
+ * as ranged responses do, or stop early never complete.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class CompletionTrackingResource extends AbstractResource {
+  private final Resource delegate;
+  private final Runnable onComplete;
+
+  @Override
+  @NonNull
+  public String getDescription() {
+    return delegate.getDescription();
+  }
+
+  @Override
+  public boolean exists() {
+    return delegate.exists();
+  }
+
+  @Override
+  public long contentLength() throws IOException {
+    return delegate.contentLength();
+  }
+
+  @Override
+  @NonNull
+  public InputStream getInputStream() throws IOException {
+    return new CompletionTrackingInputStream(delegate.getInputStream(), delegate.contentLength());
+  }
+
+  private class CompletionTrackingInputStream extends FilterInputStream {
+    private final long contentLength;
+    private long bytesRead;
+    private boolean skipped;
+    private boolean closed;
+
+    CompletionTrackingInputStream(InputStream in, long contentLength) {
+      super(in);
+      this.contentLength = contentLength;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        bytesRead++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        bytesRead += n;
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      skipped = true;
+      return super.skip(n);
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      super.close();
+
+      if (!skipped && bytesRead == contentLength) {
+        try {
+          onComplete.run();
+        } catch (RuntimeException e) {
+          log.warn("Completion callback failed for {}", delegate.getDescription(), e);
+        }
+      }
+    }
+  }
+}
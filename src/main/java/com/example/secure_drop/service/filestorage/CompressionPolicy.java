@@ -0,0 +1,145 @@
+package com.example.secure_drop.service.filestorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeType;
+
+import com.example.secure_drop.config.CompressionProperties;
+import com.example.secure_drop.service.encryption.ContentCodec;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Decides whether an upload is deflated before it is encrypted: by its declared type when the
+ * type is known to compress well or not at all, otherwise by the byte entropy of its first few KB.
+ * Encrypted bytes never compress, so this is the only point where it can happen.
+ */
+@Component
+@RequiredArgsConstructor
+public class CompressionPolicy {
+  private static final int DEFLATE_BUFFER_SIZE = 64 * 1024;
+
+  private final CompressionProperties compressionProperties;
+
+  public boolean isEnabled() {
+    return compressionProperties.isEnabled();
+  }
+
+  public int sampleSize() {
+    return Math.toIntExact(compressionProperties.getSampleSize().toBytes());
+  }
+
+  /**
+   * @param sample the leading bytes of the content, shorter than {@link #sampleSize()} only when
+   *     that is all there is
+   * @param expectedSize the announced size, or -1 when it is unknown
+   */
+  public ContentCodec choose(String contentType, byte[] sample, long expectedSize) {
+    if (!compressionProperties.isEnabled()) {
+      return ContentCodec.NONE;
+    }
+
+    long minSize = compressionProperties.getMinSize().toBytes();
+    boolean tooSmall = expectedSize >= 0
+        ? expectedSize < minSize
+        : sample.length < sampleSize() && sample.length < minSize;
+    if (tooSmall || sample.length == 0) {
+      return ContentCodec.NONE;
+    }
+
+    var type = parse(contentType);
+    if (type != null && matches(type, compressionProperties.getCompressibleTypes())) {
+      return ContentCodec.DEFLATE;
+    }
+    if (type != null && matches(type, compressionProperties.getIncompressibleTypes())) {
+      return ContentCodec.NONE;
+    }
+    return entropy(sample) <= compressionProperties.getMaxEntropy() ? ContentCodec.DEFLATE : ContentCodec.NONE;
+  }
+
+  /**
+   * A deflater for one upload; the caller must {@link Deflater#end()} it to free its native memory.
+   */
+  public Deflater newDeflater() {
+    return new Deflater(compressionProperties.getLevel());
+  }
+
+  /**
+   * {@code source} as it is to be encrypted: its leading bytes are peeked at to {@link #choose}
+   * a codec, then it is read from the start, deflated if that is the choice. Closing the result
+   * frees the deflater and leaves {@code source} open.
+   */
+  public Encoded encode(InputStream source, String contentType, long expectedSize) throws IOException {
+    if (!isEnabled()) {
+      return new Encoded(ContentCodec.NONE, source, null);
+    }
+
+    var peekable = new PushbackInputStream(source, sampleSize());
+    byte[] sample = peekable.readNBytes(sampleSize());
+    peekable.unread(sample);
+
+    var codec = choose(contentType, sample, expectedSize);
+    if (codec == ContentCodec.NONE) {
+      return new Encoded(codec, peekable, null);
+    }
+    var deflater = newDeflater();
+    return new Encoded(codec, new DeflaterInputStream(peekable, deflater, DEFLATE_BUFFER_SIZE), deflater);
+  }
+
+  private static MimeType parse(String contentType) {
+    if (contentType == null) {
+      return null;
+    }
+    try {
+      return MimeType.valueOf(contentType);
+    } catch (InvalidMimeTypeException e) {
+      return null;
+    }
+  }
+
+  private static boolean matches(MimeType type, Iterable<MimeType> patterns) {
+    for (var pattern : patterns) {
+      if (pattern.includes(type)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Shannon entropy in bits per byte: 8 for random or compressed data, well below for text.
+   */
+  private static double entropy(byte[] sample) {
+    int[] counts = new int[256];
+    for (byte b : sample) {
+      counts[b & 0xFF]++;
+    }
+
+    double entropy = 0;
+    for (int count : counts) {
+      if (count > 0) {
+        double p = (double) count / sample.length;
+        entropy -= p * Math.log(p);
+      }
+    }
+    return entropy / Math.log(2);
+  }
+
+  /**
+   * Content ready for encryption, and the codec to record for it.
+   */
+  public record Encoded(ContentCodec codec, InputStream content, Deflater deflater) implements AutoCloseable {
+    @Override
+    public void close() {
+      if (deflater != null) {
+        deflater.end();
+      }
+    }
+  }
+}
@@ -1,18 +1,99 @@
 package com.example.secure_drop.service.filestorage;
 
-import java.nio.file.Path;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.stream.Stream;
 
 import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
+/**
+ * Stored files live in the backend picked by {@code file.backend}: under the configured upload
+ * roots, sharded by name (see {@link StorageLayout}), or in an S3 bucket. The methods that create
+ * one return its storage path, a URI naming the backend (see {@link StorageUris}), which is what
+ * metadata records. A file stored in one go only becomes visible under its own name once it is
+ * complete and durable.
+ */
 public interface FileStorageService {
   void init();
 
+  /**
+   * Encrypts {@code file} into a new stored file, returning its path. Content that compresses is
+   * deflated first when compression is on. With deduplication on, the
+   * content is hashed first and an existing blob of the same content is returned instead,
+   * skipping encryption altogether.
+   */
   String store(MultipartFile file);
 
-  Resource load(Path path);
+  /**
+   * Encrypts {@code content} straight into a new file as it is read, returning the stored file's
+   * path. The stream is read to its end but not closed. {@code contentType} and
+   * {@code expectedSize} are only hints for whether to compress it and how to encrypt it; pass -1
+   * when the size is unknown. With deduplication on, the content is hashed
+   * while it is encrypted and the new file is dropped for an existing blob of the same content.
+   */
+  String store(InputStream content, String originalFilename, String contentType, long expectedSize);
 
-  boolean delete(Path path);
+  /**
+   * Stores {@code content} as it is, without encrypting it, returning the stored file's path. For
+   * content the client has already encrypted. The stream is read to its end but not closed.
+   */
+  String storeAsIs(InputStream content, String originalFilename);
+
+  /**
+   * Starts an empty stored file for content that arrives in pieces through
+   * {@link #write(String, long, long, InputStream, boolean)}, returning its path.
+   */
+  String create();
+
+  /**
+   * Encrypts the {@code length} bytes of {@code content} into the stored file from plaintext
+   * {@code offset}, which must be a
+   * multiple of {@link #segmentSize()}. Intact segments an earlier write already sealed from that
+   * offset on are kept once checked against the content they hold; anything after them is
+   * discarded and sealed again under fresh nonces. With {@code last} the content ends the file.
+   *
+   * @return number of plaintext bytes of {@code content} the file now holds
+   * @throws com.example.secure_drop.exception.UploadConflictException if a segment already
+   *     written holds other content
+   */
+  long write(String storedPath, long offset, long length, InputStream content, boolean last);
+
+  /**
+   * Plaintext segment size of files started by {@link #create()}.
+   */
+  int segmentSize();
+
+  Resource load(String storagePath);
+
+  /**
+   * Loads a file written by {@link #storeAsIs(InputStream, String)} as it is stored. A local one
+   * is a plain file resource the container can send without copying it through the JVM.
+   */
+  Resource loadAsIs(String storagePath);
+
+  boolean delete(String storagePath);
+
+  /**
+   * Drops one reference to a deduplicated blob, deleting the stored file once no upload
+   * references it any more. Within a transaction, the reference is dropped with it, and the file
+   * deleted only once it commits.
+   *
+   * @return whether that was the last reference, so the stored file is, or will be, deleted
+   */
+  boolean release(String storagePath);
+
+  /**
+   * Storage paths of every file last modified before {@code modifiedBefore}: stored files, and
+   * whatever interrupted writes left behind. Found lazily as the stream is consumed, which must be
+   * closed.
+   */
+  Stream<String> list(Instant modifiedBefore);
+
+  /**
+   * Whether {@code storagePath} names a file of this backend.
+   */
+  boolean owns(String storagePath);
 
   void deleteAll();
 }
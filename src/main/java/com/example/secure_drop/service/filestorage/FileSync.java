@@ -0,0 +1,173 @@
+package com.example.secure_drop.service.filestorage;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import com.example.secure_drop.config.FileStorageProperties;
+import com.example.secure_drop.config.FileStorageProperties.FsyncPolicy;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Forces written files and the directories that name them to disk, per
+ * {@code file.fsync}. With {@link FsyncPolicy#GROUP} writers hand their paths to one thread,
+ * which waits {@code file.fsync-group-window} for more to arrive and forces the whole batch
+ * back to back; the filesystem folds those into one journal commit, so concurrent writers
+ * share the cost of a flush instead of queueing for their own.
+ */
+@Component
+@Slf4j
+public class FileSync {
+  private final FsyncPolicy policy;
+  private final long groupWindowNanos;
+  private final LinkedBlockingQueue<PendingSync> pending = new LinkedBlockingQueue<>();
+  private final Thread groupSyncer;
+
+  private final Timer syncTimer;
+  private final DistributionSummary batchSize;
+
+  public FileSync(FileStorageProperties fileStorageProperties, MeterRegistry meterRegistry) {
+    this.policy = fileStorageProperties.getFsync();
+    this.groupWindowNanos = fileStorageProperties.getFsyncGroupWindow().toNanos();
+    this.syncTimer = Timer.builder("securedrop.storage.fsync")
+        .description("Time a write waits for its file or directory to reach the disk")
+        .tag("policy", policy.name())
+        .register(meterRegistry);
+    this.batchSize = DistributionSummary.builder("securedrop.storage.fsync.batch")
+        .description("Files and directories forced together by one group sync")
+        .register(meterRegistry);
+
+    this.groupSyncer = policy == FsyncPolicy.GROUP
+        ? Thread.ofPlatform().name("fsync-group").daemon().start(this::runGroups)
+        : null;
+  }
+
+  /**
+   * Makes what was written through {@code channel}, the open channel of {@code path}, durable.
+   */
+  public void sync(FileChannel channel, Path path) throws IOException {
+    switch (policy) {
+      case NONE -> { }
+      case PER_FILE -> {
+        long start = System.nanoTime();
+        channel.force(true);
+        syncTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      }
+      case GROUP -> await(path);
+    }
+  }
+
+  /**
+   * Makes the entries of {@code directory}, e.g. a file just moved into it, durable.
+   */
+  public void syncDirectory(Path directory) throws IOException {
+    switch (policy) {
+      case NONE -> { }
+      case PER_FILE -> {
+        long start = System.nanoTime();
+        force(directory);
+        syncTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      }
+      case GROUP -> await(directory);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (groupSyncer != null) {
+      groupSyncer.interrupt();
+    }
+  }
+
+  private void await(Path path) throws IOException {
+    long start = System.nanoTime();
+    var request = new PendingSync(path, new CompletableFuture<>());
+    pending.add(request);
+    if (!groupSyncer.isAlive()) {
+      request.done().completeExceptionally(new IOException("File sync is shut down"));
+    }
+    try {
+      request.done().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for " + path + " to be synced");
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+    }
+    syncTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+  }
+
+  private void runGroups() {
+    var batch = new ArrayList<PendingSync>();
+    try {
+      while (true) {
+        batch.add(pending.take());
+        long deadline = System.nanoTime() + groupWindowNanos;
+        for (long left = groupWindowNanos; left > 0; left = deadline - System.nanoTime()) {
+          var next = pending.poll(left, TimeUnit.NANOSECONDS);
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+        }
+        syncBatch(batch);
+        batch.clear();
+      }
+    } catch (InterruptedException e) {
+      var shutdown = new IOException("File sync is shutting down");
+      batch.addAll(pending);
+      batch.forEach(request -> request.done().completeExceptionally(shutdown));
+    }
+  }
+
+  private void syncBatch(List<PendingSync> batch) {
+    // The same file or directory may be waited on by several writers; force it once for all
+    var byPath = new LinkedHashMap<Path, List<PendingSync>>();
+    for (var request : batch) {
+      byPath.computeIfAbsent(request.path(), path -> new ArrayList<>()).add(request);
+    }
+    batchSize.record(byPath.size());
+
+    byPath.forEach((path, requests) -> {
+      try {
+        force(path);
+        requests.forEach(request -> request.done().complete(null));
+      } catch (IOException | RuntimeException e) {
+        log.error("Failed to sync {}", path, e);
+        requests.forEach(request -> request.done().completeExceptionally(e));
+      }
+    });
+  }
+
+  private static void force(Path path) throws IOException {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      // Some platforms cannot open a directory for syncing; its entries are then left to the OS
+      if (!Files.isDirectory(path)) {
+        throw e;
+      }
+      log.debug("Cannot sync directory {}", path, e);
+    }
+  }
+
+  private record PendingSync(Path path, CompletableFuture<Void> done) {
+  }
+}
@@ -0,0 +1,101 @@
+package com.example.secure_drop.service.filestorage;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.example.secure_drop.config.FileStorageProperties;
+import com.example.secure_drop.repo.FileMetadataRepo;
+import com.example.secure_drop.repo.StoredBlobRepo;
+import com.example.secure_drop.repo.UploadSessionRepo;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Moves files stored flat in an upload root, as they were before sharding, into their shard
+ * directories. Runs once at startup, before any request is served; other instances sharing the
+ * roots must be stopped meanwhile.
+ *
+ * Each file is hard-linked at its new path, every reference to it is updated, and only then is
+ * the old link removed, so a migration cut short can simply be run again.
+ */
+@Component
+@ConditionalOnProperty(prefix = "file", name = "migrate-flat-layout", havingValue = "true")
+@Slf4j
+@RequiredArgsConstructor
+public class FlatLayoutMigration {
+  private final FileStorageProperties fileStorageProperties;
+  private final FileMetadataRepo fileMetadataRepo;
+  private final StoredBlobRepo storedBlobRepo;
+  private final UploadSessionRepo uploadSessionRepo;
+
+  @PostConstruct
+  public void migrate() {
+    var layout = new StorageLayout(fileStorageProperties);
+    if (fileStorageProperties.getShardDepth() == 0) {
+      log.warn("Flat layout migration requested with a shard depth of 0, nothing to do");
+      return;
+    }
+
+    for (var root : layout.roots()) {
+      if (!Files.isDirectory(root)) {
+        continue;
+      }
+      log.info("Migrating flat files in {}", root);
+      int migrated = 0;
+      try (var files = Files.list(root)) {
+        for (var file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+          var name = file.getFileName().toString();
+          if (isStoredFileName(name)) {
+            migrate(file, layout.place(root, name));
+            migrated++;
+          }
+        }
+      } catch (IOException e) {
+        log.error("Flat layout migration of {} failed after {} files", root, migrated, e);
+        throw new RuntimeException("Flat layout migration failed.", e);
+      }
+      log.info("Migrated {} flat files in {}", migrated, root);
+    }
+  }
+
+  private void migrate(Path file, Path target) throws IOException {
+    Files.createDirectories(target.getParent());
+    try {
+      Files.createLink(target, file);
+    } catch (FileAlreadyExistsException e) {
+      // Left behind by an earlier run that stopped before removing the old link
+      if (!Files.isSameFile(target, file)) {
+        throw e;
+      }
+    }
+
+    var oldPath = file.toString();
+    var newPath = StorageUris.of(target);
+    // Blob rows and upload sessions from before sharding hold the bare file name
+    var oldNames = List.of(oldPath, file.getFileName().toString());
+    int uploads = fileMetadataRepo.updateStoragePath(oldPath, newPath);
+    int blobs = storedBlobRepo.rename(oldNames, newPath);
+    int sessions = uploadSessionRepo.renameStorageFile(oldNames, newPath);
+    log.debug("Moved {} to {} ({} uploads, {} blobs, {} upload sessions)", file, target, uploads, blobs,
+        sessions);
+
+    Files.delete(file);
+  }
+
+  private static boolean isStoredFileName(String name) {
+    try {
+      return UUID.fromString(name).toString().equals(name);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+}
@@ -1,47 +1,149 @@
 package com.example.secure_drop.service.filestorage;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.example.secure_drop.config.EncryptionProperties;
 import com.example.secure_drop.config.FileStorageProperties;
+import com.example.secure_drop.exception.InvalidMultipartFileException;
 import com.example.secure_drop.exception.ResourceNotFoundException;
+import com.example.secure_drop.exception.UploadConflictException;
+import com.example.secure_drop.model.StoredBlob;
+import com.example.secure_drop.repo.StoredBlobRepo;
+import com.example.secure_drop.service.encryption.ContentCodec;
 import com.example.secure_drop.service.encryption.EncryptionService;
+import com.example.secure_drop.service.encryption.SegmentHeader;
+import com.example.secure_drop.service.encryption.SegmentMismatchException;
+import com.example.secure_drop.service.filestorage.model.DecryptingFileResource;
+import com.example.secure_drop.service.filestorage.model.MacInputStream;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class LocalFileStorageService implements FileStorageService {
+  private static final String DEDUP_ALGORITHM = "HmacSHA256";
+  private static final byte[] DEDUP_KEY_LABEL = "secure-drop/dedup".getBytes(StandardCharsets.UTF_8);
+  private static final int MAX_BLOB_ATTEMPTS = 3;
+  private static final String PART_SUFFIX = ".part";
+  private static final Pattern STORED_NAME = Pattern.compile(
+      "[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}(" + Pattern.quote(PART_SUFFIX) + ")?");
+
   private final FileStorageProperties fileStorageProperties;
   private final EncryptionProperties encryptionProperties;
   private final EncryptionService encryptionService;
+  private final StoredBlobRepo storedBlobRepo;
+  private final CompressionPolicy compressionPolicy;
+  private final FileSync fileSync;
+  private final StorageLayout storageLayout;
+  private final SecretKeySpec dedupKey;
+
+  private final Counter bytesWritten;
+  private final Counter bytesRead;
+  private final Timer writeTimer;
+  private final Counter deduplicatedUploads;
+
+  public LocalFileStorageService(FileStorageProperties fileStorageProperties,
+      EncryptionProperties encryptionProperties, EncryptionService encryptionService, StoredBlobRepo storedBlobRepo,
+      CompressionPolicy compressionPolicy, FileSync fileSync, MeterRegistry meterRegistry) {
+    this.fileStorageProperties = fileStorageProperties;
+    this.encryptionProperties = encryptionProperties;
+    this.encryptionService = encryptionService;
+    this.storedBlobRepo = storedBlobRepo;
+    this.compressionPolicy = compressionPolicy;
+    this.fileSync = fileSync;
+    this.storageLayout = new StorageLayout(fileStorageProperties);
+    this.dedupKey = fileStorageProperties.isDedupEnabled()
+        ? deriveDedupKey(encryptionProperties.getSecretKey())
+        : null;
+
+    // The S3 backend registers the same meters, told apart by the backend tag
+    this.bytesWritten = Counter.builder("securedrop.storage.written")
+        .description("Bytes of encrypted files written to storage")
+        .baseUnit("bytes")
+        .tag("backend", "local")
+        .register(meterRegistry);
+    // Files handed to sendfile never pass through the JVM and are not counted
+    this.bytesRead = Counter.builder("securedrop.storage.read")
+        .description("Bytes of stored files read back for downloads")
+        .baseUnit("bytes")
+        .tag("backend", "local")
+        .register(meterRegistry);
+    this.writeTimer = Timer.builder("securedrop.storage.write")
+        .description("Time to write one upload or chunk, including reading its source and encrypting it")
+        .tag("backend", "local")
+        .register(meterRegistry);
+    this.deduplicatedUploads = Counter.builder("securedrop.storage.deduplicated")
+        .description("Uploads that share the blob of an earlier identical upload")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Derived from the encryption key rather than using it directly, so the digests stored in the
+   * database reveal nothing about it. Keyed at all so equal digests cannot be checked against
+   * guessed content without the key.
+   */
+  private static SecretKeySpec deriveDedupKey(String secretKey) {
+    try {
+      var mac = Mac.getInstance(DEDUP_ALGORITHM);
+      mac.init(new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), DEDUP_ALGORITHM));
+      return new SecretKeySpec(mac.doFinal(DEDUP_KEY_LABEL), DEDUP_ALGORITHM);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Cannot derive the deduplication key", e);
+    }
+  }
 
   @Override
   @PostConstruct
   public void init() {
     log.info("Initializing upload directory...");
 
-    if (fileStorageProperties.getUploadDir() != null) {
-      var uploadDirPath = Path.of(fileStorageProperties.getUploadDir());
-      log.debug("Upload directory path resolved to: {}", uploadDirPath);
+    if (fileStorageProperties.getUploadDir() == null && fileStorageProperties.getRoots().isEmpty()) {
+      log.warn("Upload directory is null. Skipping initialization.");
+      return;
+    }
 
+    for (var uploadDirPath : storageLayout.roots()) {
+      log.debug("Upload directory path resolved to: {}", uploadDirPath);
       try {
         Files.createDirectories(uploadDirPath);
         log.info("Upload directory created or already exists: {}", uploadDirPath);
@@ -49,8 +151,6 @@ public class LocalFileStorageService implements FileStorageService {
         log.error("Failed to create upload directory: {}", uploadDirPath, e);
         throw new RuntimeException(e);
       }
-    } else {
-      log.warn("Upload directory is null. Skipping initialization.");
     }
   }
 
@@ -58,37 +158,326 @@ public class LocalFileStorageService implements FileStorageService {
   public String store(MultipartFile file) {
     log.info("Starting to store file: {}", file.getOriginalFilename());
 
-    var originalFilename = Optional.ofNullable(file.getOriginalFilename())
+    var filePath = cleanFilename(file.getOriginalFilename());
+
+    try {
+      if (file.isEmpty()) {
+        log.warn("Attempted to store empty file: {}", filePath);
+        throw new RuntimeException("Cannot store empty file.");
+      }
+
+      if (dedupKey != null) {
+        return storeDeduplicated(file, filePath);
+      }
+
+      try (InputStream in = file.getInputStream()) {
+        return storeEncrypted(in, filePath, file.getContentType(), file.getSize());
+      }
+    } catch (IOException e) {
+      log.error("Failed to store file: {}", filePath, e);
+      throw new RuntimeException("File storage failed.", e);
+    } catch (InvalidMultipartFileException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public String store(InputStream content, String originalFilename, String contentType, long expectedSize) {
+    log.info("Starting to store streamed file: {}", originalFilename);
+
+    var filePath = cleanFilename(originalFilename);
+
+    try {
+      if (dedupKey != null) {
+        // The digest is only known once the content has been encrypted, so a duplicate still
+        // costs the write; its file is dropped afterwards
+        var mac = newDedupMac();
+        var storedPath = storeEncrypted(new MacInputStream(content, mac), filePath, contentType, expectedSize);
+        return registerBlob(HexFormat.of().formatHex(mac.doFinal()), storedPath);
+      }
+      return storeEncrypted(content, filePath, contentType, expectedSize);
+    } catch (IOException e) {
+      log.error("Failed to store file: {}", filePath, e);
+      throw new RuntimeException("File storage failed.", e);
+    } catch (InvalidMultipartFileException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public String storeAsIs(InputStream content, String originalFilename) {
+    log.info("Starting to store client-encrypted file: {}", originalFilename);
+
+    var filePath = cleanFilename(originalFilename);
+    Path destination;
+    try {
+      destination = newFile();
+    } catch (IOException e) {
+      log.error("Failed to create shard directory for file: {}", filePath, e);
+      throw new RuntimeException("File storage failed.", e);
+    }
+
+    var part = partFile(destination);
+    try {
+      long size = writeTimer.recordCallable(() -> copyTo(content, part));
+      bytesWritten.increment(size);
+      if (size == 0) {
+        log.warn("Attempted to store empty file: {}", filePath);
+        Files.deleteIfExists(part);
+        throw new InvalidMultipartFileException("File cannot be empty.");
+      }
+
+      commit(part, destination);
+      log.info("File successfully stored as received at: {}", destination.toAbsolutePath());
+      return StorageUris.of(destination);
+    } catch (InvalidMultipartFileException e) {
+      throw e;
+    } catch (Exception e) {
+      log.error("Failed to store file: {}", filePath, e);
+      try {
+        Files.deleteIfExists(part);
+      } catch (IOException suppressed) {
+        e.addSuppressed(suppressed);
+      }
+      throw new RuntimeException("File storage failed.", e);
+    }
+  }
+
+  private String cleanFilename(String originalFilename) {
+    var filename = Optional.ofNullable(originalFilename)
         .orElseThrow(() -> new RuntimeException("Filename cannot be null."));
 
-    var filePath = StringUtils.cleanPath(Objects.requireNonNull(originalFilename));
+    var filePath = StringUtils.cleanPath(Objects.requireNonNull(filename));
     log.debug("Cleaned file path: {}", filePath);
 
     if (filePath.contains("..")) {
       log.error("Invalid file path detected: {}", filePath);
       throw new RuntimeException("Invalid file path.");
     }
+    return filePath;
+  }
 
+  /**
+   * Hashes the already received upload first, so a duplicate skips encryption and the write.
+   */
+  private String storeDeduplicated(MultipartFile file, String filePath) throws Exception {
+    var mac = newDedupMac();
+    try (InputStream in = new MacInputStream(file.getInputStream(), mac)) {
+      in.transferTo(OutputStream.nullOutputStream());
+    }
+    var digest = HexFormat.of().formatHex(mac.doFinal());
+
+    var existing = acquireBlob(digest);
+    if (existing.isPresent()) {
+      log.info("File {} matches stored blob {}, sharing it", filePath, existing.get());
+      deduplicatedUploads.increment();
+      return existing.get();
+    }
+
+    try (InputStream in = file.getInputStream()) {
+      return registerBlob(digest, storeEncrypted(in, filePath, file.getContentType(), file.getSize()));
+    }
+  }
+
+  /**
+   * Records {@code storedPath} as the blob for {@code digest}, unless a blob of the same content
+   * exists by now: then that one gains a reference and the new file is deleted.
+   */
+  private String registerBlob(String digest, String storedPath) throws IOException {
+    Path stored = StorageUris.toPath(storedPath);
     try {
-      if (file.isEmpty()) {
-        log.warn("Attempted to store empty file: {}", filePath);
-        throw new RuntimeException("Cannot store empty file.");
+      for (int attempt = 1; ; attempt++) {
+        var existing = acquireBlob(digest);
+        if (existing.isPresent()) {
+          log.info("Stored file {} duplicates blob {}, sharing it", storedPath, existing.get());
+          Files.deleteIfExists(stored);
+          deduplicatedUploads.increment();
+          return existing.get();
+        }
+
+        try {
+          storedBlobRepo.save(StoredBlob.builder()
+              .digest(digest)
+              .fileName(storedPath)
+              .build());
+          log.debug("Registered blob {}", storedPath);
+          return storedPath;
+        } catch (DataIntegrityViolationException e) {
+          // The same content was registered concurrently; share that blob instead
+          if (attempt >= MAX_BLOB_ATTEMPTS) {
+            throw e;
+          }
+        }
       }
+    } catch (RuntimeException e) {
+      Files.deleteIfExists(stored);
+      throw e;
+    }
+  }
 
-      // Encrypt File
-      var encrypted = encryptionService.encrypt(file.getBytes(), encryptionProperties.getSecretKey());
+  private Optional<String> acquireBlob(String digest) {
+    if (storedBlobRepo.acquire(digest) == 0) {
+      return Optional.empty();
+    }
+    // Blobs registered before sharding are keyed by their bare name in the flat upload directory
+    return storedBlobRepo.findFileNameByDigest(digest)
+        .map(fileName -> Path.of(fileName).getParent() == null && fileStorageProperties.getUploadDir() != null
+            ? Path.of(fileStorageProperties.getUploadDir(), fileName).toString()
+            : fileName);
+  }
 
-      var fileName = UUID.randomUUID().toString();
+  private Mac newDedupMac() throws GeneralSecurityException {
+    var mac = Mac.getInstance(DEDUP_ALGORITHM);
+    mac.init(dedupKey);
+    return mac;
+  }
 
-      log.debug("Generated unique filename: {}", fileName);
+  /**
+   * Picks the path of a new file and creates its shard directories.
+   */
+  private Path newFile() throws IOException {
+    var destination = storageLayout.newFile();
+    Files.createDirectories(destination.getParent());
+    return destination;
+  }
 
-      Path destination = Path.of(fileStorageProperties.getUploadDir(), fileName);
-      Files.copy(new ByteArrayInputStream(encrypted), destination, StandardCopyOption.REPLACE_EXISTING);
+  /**
+   * Where a file is written until it is complete; only whole, synced files get a stored name.
+   */
+  private static Path partFile(Path destination) {
+    return destination.resolveSibling(destination.getFileName() + PART_SUFFIX);
+  }
 
-      log.info("File successfully stored at: {}", destination.toAbsolutePath());
-      return fileName;
+  /**
+   * Moves a complete part file to its stored name in one step, so after a crash a stored file
+   * is either whole or missing, never torn.
+   */
+  private void commit(Path part, Path destination) throws IOException {
+    try {
+      Files.move(part, destination, StandardCopyOption.ATOMIC_MOVE);
     } catch (IOException e) {
-      log.error("Failed to store file: {}", filePath, e);
+      Files.deleteIfExists(part);
+      throw e;
+    }
+    try {
+      fileSync.syncDirectory(destination.getParent());
+    } catch (IOException e) {
+      Files.deleteIfExists(destination);
+      throw e;
+    }
+  }
+
+  private long copyTo(InputStream content, Path destination) throws IOException {
+    try (var channel = FileChannel.open(destination, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      long size = content.transferTo(Channels.newOutputStream(channel));
+      fileSync.sync(channel, destination);
+      return size;
+    }
+  }
+
+  private String storeEncrypted(InputStream in, String filePath, String contentType, long expectedSize)
+      throws Exception {
+    Path destination = newFile();
+    Path part = partFile(destination);
+
+    log.debug("Generated unique file path: {}", destination);
+
+    // Encrypt File, streaming one segment at a time into a part file that is moved into place once complete
+    long size = writeTimer.recordCallable(() -> encryptTo(in, part, contentType, expectedSize));
+    bytesWritten.increment(Files.size(part));
+
+    // A streamed upload only reveals that it was empty once it has been read
+    if (size == 0) {
+      log.warn("Attempted to store empty file: {}", filePath);
+      Files.deleteIfExists(part);
+      throw new InvalidMultipartFileException("File cannot be empty.");
+    }
+
+    commit(part, destination);
+
+    log.info("File successfully stored at: {}", destination.toAbsolutePath());
+    return StorageUris.of(destination);
+  }
+
+  @Override
+  public String create() {
+    Path destination;
+    try {
+      destination = newFile();
+    } catch (IOException e) {
+      log.error("Failed to create shard directory for an appendable file", e);
+      throw new RuntimeException("File storage failed.", e);
+    }
+
+    try (var channel = FileChannel.open(destination, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      encryptionService.writeHeader(channel);
+      fileSync.sync(channel, destination);
+      fileSync.syncDirectory(destination.getParent());
+      log.info("Started appendable file at: {}", destination.toAbsolutePath());
+      return StorageUris.of(destination);
+    } catch (Exception e) {
+      log.error("Failed to start appendable file: {}", destination, e);
+      throw new RuntimeException("File storage failed.", e);
+    }
+  }
+
+  @Override
+  public long write(String storedPath, long offset, long length, InputStream content, boolean last) {
+    Path path = StorageUris.toPath(storedPath);
+    log.debug("Writing to {} from offset {} (last={})", path, offset, last);
+
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        var lock = tryLock(channel)) {
+      if (lock == null) {
+        throw new UploadConflictException("Another write to this upload is in progress.");
+      }
+
+      var header = SegmentHeader.read(channel);
+      if (offset % header.segmentSize() != 0) {
+        throw new IllegalArgumentException("Offset " + offset + " is not a multiple of " + header.segmentSize());
+      }
+
+      // Segments are fixed-size, so the plaintext offset maps straight to a file position. Segments
+      // an earlier write left from there on are kept if they are intact and hold this same
+      // content; the first one that is not, and all after it, are sealed again under fresh nonces.
+      long segment = offset / header.segmentSize();
+      var source = new PushbackInputStream(content, 1);
+      long kept = encryptionService.matchSegments(source, channel, header.segmentOffset(segment), header,
+          Math.toIntExact(segment), encryptionProperties.getSecretKey());
+
+      int next = source.read();
+      if (next < 0) {
+        return kept;
+      }
+      source.unread(next);
+
+      long nextSegment = segment + kept / header.segmentSize();
+      long position = header.segmentOffset(nextSegment);
+      channel.truncate(position).position(position);
+
+      long sample = System.nanoTime();
+      long written = encryptionService.encryptSegments(source, channel, header, Math.toIntExact(nextSegment),
+          length - kept, last, encryptionProperties.getSecretKey());
+      // The chunk is acknowledged, and never sent again, once this returns
+      fileSync.sync(channel, path);
+      writeTimer.record(System.nanoTime() - sample, TimeUnit.NANOSECONDS);
+      bytesWritten.increment(channel.size() - position);
+      return kept + written;
+    } catch (NoSuchFileException e) {
+      log.warn("Appendable file does not exist: {}", path);
+      throw new ResourceNotFoundException(path.toString());
+    } catch (SegmentMismatchException e) {
+      log.warn("Rewrite of {} from offset {} differs from its content: {}", path, offset, e.getMessage());
+      throw new UploadConflictException("Chunk at offset " + offset + " differs from the content already "
+          + "received there; start a new upload.");
+    } catch (UploadConflictException | IllegalArgumentException e) {
+      throw e;
+    } catch (IOException e) {
+      log.error("Failed to write to file: {}", path, e);
       throw new RuntimeException("File storage failed.", e);
     } catch (Exception e) {
       throw new RuntimeException(e);
@@ -96,7 +485,22 @@ public class LocalFileStorageService implements FileStorageService {
   }
 
   @Override
-  public Resource load(Path path) {
+  public int segmentSize() {
+    return Math.toIntExact(encryptionProperties.getSegmentSize().toBytes());
+  }
+
+  private static FileLock tryLock(FileChannel channel) throws IOException {
+    try {
+      return channel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      // Held by another thread of this JVM
+      return null;
+    }
+  }
+
+  @Override
+  public Resource load(String storagePath) {
+    var path = StorageUris.toPath(storagePath);
     log.info("Loading file from {}", path);
     var resource = new FileSystemResource(path);
 
@@ -106,10 +510,20 @@ public class LocalFileStorageService implements FileStorageService {
     }
 
     try {
-      var file = encryptionService.decrypt(resource.getContentAsByteArray(), encryptionProperties.getSecretKey());
-      log.debug("Decryption successful for file {}", path);
+      var header = readHeader(path);
+      if (header.isEmpty()) {
+        log.debug("File {} uses the legacy single-block format", path);
+        var content = resource.getContentAsByteArray();
+        bytesRead.increment(content.length);
+        var file = encryptionService.decrypt(content, encryptionProperties.getSecretKey());
+        return new ByteArrayResource(file);
+      }
+
+      var contentLength = header.get().plaintextLength(Files.size(path));
+      log.debug("Streaming decryption prepared for file {} ({} bytes)", path, contentLength);
 
-      return new ByteArrayResource(file);
+      return new DecryptingFileResource(path.toString(), () -> FileChannel.open(path, StandardOpenOption.READ),
+          contentLength, header.get().codec(), encryptionService, encryptionProperties.getSecretKey(), bytesRead);
     } catch (Exception e) {
       log.error("Failed to decrypt file {}", path, e);
       throw new RuntimeException(e);
@@ -117,7 +531,57 @@ public class LocalFileStorageService implements FileStorageService {
   }
 
   @Override
-  public boolean delete(Path path) {
+  public Resource loadAsIs(String storagePath) {
+    var path = StorageUris.toPath(storagePath);
+    log.info("Loading file as stored from {}", path);
+    var resource = new FileSystemResource(path);
+
+    if (!resource.exists()) {
+      log.warn("Requested file does not exist: {}", path);
+      throw new ResourceNotFoundException(path.toString());
+    }
+    return resource;
+  }
+
+  /**
+   * @return number of bytes encrypted, after compression if any
+   */
+  private long encryptTo(InputStream in, Path destination, String contentType, long expectedSize) throws Exception {
+    try (var channel = FileChannel.open(destination, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      long size = encryptTo(in, channel, destination, contentType, expectedSize);
+      fileSync.sync(channel, destination);
+      return size;
+    } catch (Exception e) {
+      Files.deleteIfExists(destination);
+      throw e;
+    }
+  }
+
+  private long encryptTo(InputStream in, FileChannel channel, Path destination, String contentType,
+      long expectedSize) throws Exception {
+    try (var encoded = compressionPolicy.encode(in, contentType, expectedSize)) {
+      if (encoded.codec() != ContentCodec.NONE) {
+        log.debug("Compressing {} ({}) before encryption", destination, contentType);
+      }
+      return encryptionService.encrypt(encoded.content(), channel, expectedSize, encoded.codec(),
+          encryptionProperties.getSecretKey());
+    }
+  }
+
+  private Optional<SegmentHeader> readHeader(Path path) throws IOException {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var magic = ByteBuffer.allocate(SegmentHeader.MAGIC_LENGTH);
+      channel.read(magic);
+      if (!SegmentHeader.hasMagic(magic.array())) {
+        return Optional.empty();
+      }
+      return Optional.of(SegmentHeader.read(channel.position(0)));
+    }
+  }
+
+  @Override
+  public boolean delete(String storagePath) {
+    var path = StorageUris.toPath(storagePath);
     log.info("Attempting to delete file at {}", path);
     try {
       boolean deleted = Files.deleteIfExists(path);
@@ -133,11 +597,80 @@ public class LocalFileStorageService implements FileStorageService {
     }
   }
 
+  @Override
+  public boolean release(String storagePath) {
+    var storedPath = storagePath;
+    if (storedBlobRepo.release(storedPath) == 0) {
+      // Not migrated from the flat layout yet, see acquireBlob
+      storedPath = StorageUris.toPath(storagePath).getFileName().toString();
+      storedBlobRepo.release(storedPath);
+    }
+    if (storedBlobRepo.deleteUnreferenced(storedPath) == 0) {
+      log.debug("Blob {} is still referenced", storedPath);
+      return false;
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      return delete(storagePath);
+    }
+    // A rollback brings the row back, which must still find its file
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        try {
+          delete(storagePath);
+        } catch (RuntimeException e) {
+          log.warn("Failed to delete released blob {}; left to the orphan scan", storagePath, e);
+        }
+      }
+    });
+    return true;
+  }
+
+  @Override
+  public Stream<String> list(Instant modifiedBefore) {
+    return storageLayout.roots().stream()
+        .filter(Files::isDirectory)
+        .flatMap(root -> {
+          try {
+            return Files.find(root, Integer.MAX_VALUE, (path, attributes) -> attributes.isRegularFile()
+                && attributes.lastModifiedTime().toInstant().isBefore(modifiedBefore));
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        })
+        .map(StorageUris::of);
+  }
+
+  @Override
+  public boolean owns(String storagePath) {
+    return StorageUris.isLocal(storagePath);
+  }
+
+  /**
+   * Deletes every file of this backend under each root, part files of unfinished writes included.
+   * Anything not named like a stored file is left alone, as are the shard directories.
+   */
   @Override
   public void deleteAll() {
-    log.info("deleteAll() called - not yet implemented");
-    // TODO Auto-generated method stub
-    throw new UnsupportedOperationException("Unimplemented method 'deleteAll'");
+    log.warn("Deleting all files under {}", storageLayout.roots());
+    long deleted = 0;
+    for (var root : storageLayout.roots()) {
+      if (!Files.isDirectory(root)) {
+        continue;
+      }
+      try (var files = Files.find(root, Integer.MAX_VALUE, (path, attributes) -> attributes.isRegularFile()
+          && STORED_NAME.matcher(path.getFileName().toString()).matches())) {
+        for (var path : (Iterable<Path>) files::iterator) {
+          if (Files.deleteIfExists(path)) {
+            deleted++;
+          }
+        }
+      } catch (IOException e) {
+        log.error("Failed to delete files under {}", root, e);
+        throw new UncheckedIOException(e);
+      }
+    }
+    log.info("Deleted {} files", deleted);
   }
 
 }
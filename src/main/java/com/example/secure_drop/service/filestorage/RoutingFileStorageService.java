@@ -0,0 +1,119 @@
+package com.example.secure_drop.service.filestorage;
+
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.example.secure_drop.config.FileStorageProperties;
+import com.example.secure_drop.config.FileStorageProperties.Backend;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The storage the rest of the application uses: new files go to the backend picked by
+ * {@code file.backend}, while every other operation goes to the backend its storage path names.
+ * Files stored before a switch of backend thus stay readable, and are deleted as usual, until
+ * they expire.
+ */
+@Service
+@Primary
+@Slf4j
+public class RoutingFileStorageService implements FileStorageService {
+  private final FileStorageService target;
+  private final List<FileStorageService> backends;
+
+  public RoutingFileStorageService(FileStorageProperties fileStorageProperties,
+      LocalFileStorageService localFileStorageService, ObjectProvider<S3FileStorageService> s3FileStorageService) {
+    var s3 = s3FileStorageService.getIfAvailable();
+    this.backends = s3 == null ? List.of(localFileStorageService) : List.of(s3, localFileStorageService);
+    this.target = fileStorageProperties.getBackend() == Backend.S3 ? s3 : localFileStorageService;
+    if (target == null) {
+      throw new IllegalStateException("file.backend=s3 requires s3.bucket");
+    }
+    log.info("Storing new files with {}", target.getClass().getSimpleName());
+  }
+
+  @Override
+  public void init() {
+    backends.forEach(FileStorageService::init);
+  }
+
+  @Override
+  public String store(MultipartFile file) {
+    return target.store(file);
+  }
+
+  @Override
+  public String store(InputStream content, String originalFilename, String contentType, long expectedSize) {
+    return target.store(content, originalFilename, contentType, expectedSize);
+  }
+
+  @Override
+  public String storeAsIs(InputStream content, String originalFilename) {
+    return target.storeAsIs(content, originalFilename);
+  }
+
+  @Override
+  public String create() {
+    return target.create();
+  }
+
+  @Override
+  public long write(String storedPath, long offset, long length, InputStream content, boolean last) {
+    return backendOf(storedPath).write(storedPath, offset, length, content, last);
+  }
+
+  @Override
+  public int segmentSize() {
+    return target.segmentSize();
+  }
+
+  @Override
+  public Resource load(String storagePath) {
+    return backendOf(storagePath).load(storagePath);
+  }
+
+  @Override
+  public Resource loadAsIs(String storagePath) {
+    return backendOf(storagePath).loadAsIs(storagePath);
+  }
+
+  @Override
+  public boolean delete(String storagePath) {
+    return backendOf(storagePath).delete(storagePath);
+  }
+
+  @Override
+  public boolean release(String storagePath) {
+    return backendOf(storagePath).release(storagePath);
+  }
+
+  @Override
+  public Stream<String> list(Instant modifiedBefore) {
+    return backends.stream().flatMap(backend -> backend.list(modifiedBefore));
+  }
+
+  @Override
+  public boolean owns(String storagePath) {
+    return backends.stream().anyMatch(backend -> backend.owns(storagePath));
+  }
+
+  @Override
+  public void deleteAll() {
+    target.deleteAll();
+  }
+
+  private FileStorageService backendOf(String storagePath) {
+    return backends.stream()
+        .filter(backend -> backend.owns(storagePath))
+        .findFirst()
+        .orElseThrow(() -> new IllegalStateException("No storage backend configured for " + storagePath));
+  }
+}
@@ -0,0 +1,716 @@
+package com.example.secure_drop.service.filestorage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.example.secure_drop.config.EncryptionProperties;
+import com.example.secure_drop.config.FileStorageProperties;
+import com.example.secure_drop.config.S3StorageProperties;
+import com.example.secure_drop.exception.InvalidMultipartFileException;
+import com.example.secure_drop.exception.ResourceNotFoundException;
+import com.example.secure_drop.exception.UploadConflictException;
+import com.example.secure_drop.service.encryption.EncryptionService;
+import com.example.secure_drop.service.encryption.SegmentHeader;
+import com.example.secure_drop.service.encryption.SegmentMismatchException;
+import com.example.secure_drop.service.filestorage.model.DecryptingFileResource;
+import com.example.secure_drop.service.filestorage.model.MultipartUploadChannel;
+import com.example.secure_drop.service.filestorage.model.S3ObjectChannel;
+import com.example.secure_drop.service.filestorage.model.StoredObjectResource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Stores files as objects in an S3-compatible bucket, under {@code s3.prefix} and a random
+ * name, so any instance can serve any file. Uploads are encrypted as they stream in and sent as
+ * a multipart upload (see {@link MultipartUploadChannel}); downloads read the object with a
+ * ranged GET from the first byte they need (see {@link S3ObjectChannel}).
+ *
+ * Content that arrives in pieces is staged next to its object, under {@code <key>.chunks/}:
+ * the segment header, then one object per chunk, named by its plaintext offset. Objects are only
+ * ever written whole, so a chunk is either all there or missing. The last chunk assembles them
+ * into the object itself, copying them within the bucket where S3 allows it.
+ *
+ * Registered whenever {@code s3.bucket} is set, whatever {@code file.backend} says, so files
+ * stored in the bucket stay readable after new files go back to local disk.
+ */
+@Service
+@ConditionalOnExpression("!'${s3.bucket:}'.isBlank()")
+@Slf4j
+public class S3FileStorageService implements FileStorageService {
+  private static final String URI_PREFIX = StorageUris.S3_SCHEME + "://";
+  private static final String CHUNKS_SUFFIX = ".chunks/";
+  private static final String HEADER_OBJECT = "header";
+  private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+  /** Most keys one DeleteObjects request takes. */
+  private static final int DELETE_BATCH_SIZE = 1000;
+  private static final Pattern CONTENT_RANGE = Pattern.compile("bytes \\d+-\\d+/(\\d+)");
+
+  private final S3Client s3;
+  private final String bucket;
+  private final String prefix;
+  private final int partSize;
+  private final int partsInFlight;
+  private final EncryptionProperties encryptionProperties;
+  private final EncryptionService encryptionService;
+  private final CompressionPolicy compressionPolicy;
+  private final Pattern keyPattern;
+  private final ExecutorService partSender;
+
+  private final Counter bytesWritten;
+  private final Counter bytesRead;
+  private final Timer writeTimer;
+
+  public S3FileStorageService(S3Client s3, S3StorageProperties s3StorageProperties,
+      FileStorageProperties fileStorageProperties, EncryptionProperties encryptionProperties,
+      EncryptionService encryptionService, CompressionPolicy compressionPolicy, MeterRegistry meterRegistry) {
+    if (!StringUtils.hasText(s3StorageProperties.getBucket())) {
+      throw new IllegalStateException("s3.bucket is required for the S3 backend");
+    }
+    if (fileStorageProperties.getBackend() == FileStorageProperties.Backend.S3
+        && fileStorageProperties.isDedupEnabled()) {
+      // Blob sharing and its reference counts live in the local backend only
+      throw new IllegalStateException("file.dedup-enabled is not supported with the S3 backend");
+    }
+    long configuredPartSize = s3StorageProperties.getPartSize().toBytes();
+    if (configuredPartSize < MIN_PART_SIZE) {
+      throw new IllegalStateException("s3.part-size must be at least 5MB: " + s3StorageProperties.getPartSize());
+    }
+
+    this.s3 = s3;
+    this.bucket = s3StorageProperties.getBucket();
+    this.prefix = Objects.requireNonNullElse(s3StorageProperties.getPrefix(), "");
+    this.partSize = Math.toIntExact(configuredPartSize);
+    this.partsInFlight = s3StorageProperties.getPartsInFlight();
+    this.encryptionProperties = encryptionProperties;
+    this.encryptionService = encryptionService;
+    this.compressionPolicy = compressionPolicy;
+    // Only objects named like ours are listed, so a shared bucket's other objects are never
+    // taken for orphans
+    this.keyPattern = Pattern.compile(Pattern.quote(prefix)
+        + "([0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12})(" + Pattern.quote(CHUNKS_SUFFIX) + ".*)?");
+    this.partSender = Executors.newFixedThreadPool(s3StorageProperties.getUploadThreads(),
+        Thread.ofPlatform().name("s3-part-", 0).daemon().factory());
+
+    // The meters of the local backend, told apart by the backend tag
+    this.bytesWritten = Counter.builder("securedrop.storage.written")
+        .description("Bytes of encrypted files written to storage")
+        .baseUnit("bytes")
+        .tag("backend", "s3")
+        .register(meterRegistry);
+    this.bytesRead = Counter.builder("securedrop.storage.read")
+        .description("Bytes of stored files read back for downloads")
+        .baseUnit("bytes")
+        .tag("backend", "s3")
+        .register(meterRegistry);
+    this.writeTimer = Timer.builder("securedrop.storage.write")
+        .description("Time to write one upload or chunk, including reading its source and encrypting it")
+        .tag("backend", "s3")
+        .register(meterRegistry);
+  }
+
+  @Override
+  @PostConstruct
+  public void init() {
+    log.info("Checking bucket {}...", bucket);
+    try {
+      s3.headBucket(request -> request.bucket(bucket));
+      log.info("Storing files in bucket {} under '{}'", bucket, prefix);
+    } catch (SdkException e) {
+      log.error("Bucket {} is not accessible", bucket, e);
+      throw new RuntimeException(e);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    partSender.shutdownNow();
+  }
+
+  @Override
+  public String store(MultipartFile file) {
+    log.info("Starting to store file: {}", file.getOriginalFilename());
+    if (file.isEmpty()) {
+      log.warn("Attempted to store empty file: {}", file.getOriginalFilename());
+      throw new RuntimeException("Cannot store empty file.");
+    }
+
+    try (InputStream in = file.getInputStream()) {
+      return store(in, file.getOriginalFilename(), file.getContentType(), file.getSize());
+    } catch (IOException e) {
+      log.error("Failed to store file: {}", file.getOriginalFilename(), e);
+      throw new RuntimeException("File storage failed.", e);
+    }
+  }
+
+  @Override
+  public String store(InputStream content, String originalFilename, String contentType, long expectedSize) {
+    log.info("Starting to store streamed file: {}", originalFilename);
+    var key = newKey();
+
+    try (var upload = newUpload(key);
+        var encoded = compressionPolicy.encode(content, contentType, expectedSize)) {
+      long size = writeTimer.recordCallable(() -> {
+        long plaintext = encryptionService.encrypt(encoded.content(), upload, encoded.codec(),
+            encryptionProperties.getSecretKey());
+        if (plaintext > 0) {
+          upload.complete();
+        }
+        return plaintext;
+      });
+      // A streamed upload only reveals that it was empty once it has been read; closing the
+      // upload without completing it drops it
+      if (size == 0) {
+        log.warn("Attempted to store empty file: {}", originalFilename);
+        throw new InvalidMultipartFileException("File cannot be empty.");
+      }
+      bytesWritten.increment(upload.size());
+      log.info("File successfully stored as {}", key);
+      return uri(key);
+    } catch (InvalidMultipartFileException e) {
+      throw e;
+    } catch (Exception e) {
+      log.error("Failed to store file: {}", originalFilename, e);
+      throw new RuntimeException("File storage failed.", e);
+    }
+  }
+
+  @Override
+  public String storeAsIs(InputStream content, String originalFilename) {
+    log.info("Starting to store client-encrypted file: {}", originalFilename);
+    var key = newKey();
+
+    try (var upload = newUpload(key)) {
+      long size = writeTimer.recordCallable(() -> {
+        long copied = content.transferTo(Channels.newOutputStream(upload));
+        if (copied > 0) {
+          upload.complete();
+        }
+        return copied;
+      });
+      if (size == 0) {
+        log.warn("Attempted to store empty file: {}", originalFilename);
+        throw new InvalidMultipartFileException("File cannot be empty.");
+      }
+      bytesWritten.increment(size);
+      log.info("File successfully stored as received as {}", key);
+      return uri(key);
+    } catch (InvalidMultipartFileException e) {
+      throw e;
+    } catch (Exception e) {
+      log.error("Failed to store file: {}", originalFilename, e);
+      throw new RuntimeException("File storage failed.", e);
+    }
+  }
+
+  @Override
+  public String create() {
+    var key = newKey();
+    try {
+      var header = new ByteArrayOutputStream();
+      encryptionService.writeHeader(Channels.newChannel(header));
+      s3.putObject(request -> request.bucket(bucket).key(headerKey(key)), RequestBody.fromBytes(header.toByteArray()));
+      log.info("Started appendable file {}", key);
+      return uri(key);
+    } catch (Exception e) {
+      log.error("Failed to start appendable file {}", key, e);
+      throw new RuntimeException("File storage failed.", e);
+    }
+  }
+
+  @Override
+  public long write(String storedPath, long offset, long length, InputStream content, boolean last) {
+    var key = keyOf(storedPath);
+    log.debug("Writing to {} from offset {} (last={})", key, offset, last);
+
+    try {
+      var headerBytes = readObject(headerKey(key));
+      if (headerBytes.isEmpty()) {
+        var size = sizeOf(key);
+        if (size.isPresent()) {
+          // Assembled already; the response to the last chunk got lost
+          return matchAssembled(content, key, size.getAsLong(), offset);
+        }
+        log.warn("Appendable file does not exist: {}", key);
+        throw new ResourceNotFoundException(storedPath);
+      }
+      var header = SegmentHeader.read(Channels.newChannel(new ByteArrayInputStream(headerBytes.get())));
+      if (offset % header.segmentSize() != 0) {
+        throw new IllegalArgumentException("Offset " + offset + " is not a multiple of " + header.segmentSize());
+      }
+
+      // Chunks an earlier attempt staged from this offset on are kept if they hold this same
+      // content; only what follows them is encrypted, under fresh nonces, and staged
+      var chunks = listChunks(key, header);
+      var source = new PushbackInputStream(content, 1);
+      long position = offset;
+      for (var chunk : chunks) {
+        if (chunk.offset() <= position && position < chunk.end()) {
+          position += matchStaged(source, chunk, header, position);
+          if (position < chunk.end()) {
+            // Staged chunks are complete objects, so only the end of the content stops short
+            if (source.read() >= 0) {
+              throw new IOException("Staged chunk " + chunk.key() + " fails authentication at " + position);
+            }
+            break;
+          }
+        }
+      }
+      long kept = position - offset;
+      deleteChunksFrom(chunks, position);
+
+      int next = source.read();
+      if (next < 0) {
+        if (last && kept == length) {
+          assemble(key, headerBytes.get(), header);
+        }
+        return kept;
+      }
+      source.unread(next);
+
+      long sample = System.nanoTime();
+      long written;
+      long stagedSize;
+      var chunkKey = chunkKey(key, position);
+      try (var upload = newUpload(chunkKey)) {
+        written = encryptionService.encryptSegments(source, upload, header,
+            Math.toIntExact(position / header.segmentSize()), last, encryptionProperties.getSecretKey());
+        if (last && kept + written < length) {
+          // Sealed as the end of the file though it is not; dropped so the retry seals it again
+          log.warn("Last chunk of {} ended after {} of {} bytes", key, kept + written, length);
+          return kept;
+        }
+        upload.complete();
+        stagedSize = upload.size();
+      }
+      writeTimer.record(System.nanoTime() - sample, TimeUnit.NANOSECONDS);
+      bytesWritten.increment(stagedSize);
+
+      if (last) {
+        assemble(key, headerBytes.get(), header);
+      }
+      return kept + written;
+    } catch (SegmentMismatchException e) {
+      log.warn("Rewrite of {} from offset {} differs from its content: {}", key, offset, e.getMessage());
+      throw new UploadConflictException("Chunk at offset " + offset + " differs from the content already "
+          + "received there; start a new upload.");
+    } catch (ResourceNotFoundException | IllegalArgumentException e) {
+      throw e;
+    } catch (IOException | SdkException e) {
+      log.error("Failed to write to file: {}", key, e);
+      throw new RuntimeException("File storage failed.", e);
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public int segmentSize() {
+    return Math.toIntExact(encryptionProperties.getSegmentSize().toBytes());
+  }
+
+  /**
+   * Joins the staged chunks, behind the header, into the object itself and drops them.
+   */
+  private void assemble(String key, byte[] headerBytes, SegmentHeader header) throws IOException {
+    var chunks = listChunks(key, header);
+    long expected = 0;
+    for (var chunk : chunks) {
+      if (chunk.offset() != expected) {
+        throw new IllegalStateException("Chunked upload " + key + " is missing content at " + expected);
+      }
+      expected = chunk.end();
+    }
+
+    long start = System.nanoTime();
+    // S3 takes parts of 5MB or more only, bar the last; the header leads the first part, so that
+    // one is sent through here and the others are copied within the bucket
+    boolean copyable = chunks.size() > 1 && chunks.subList(0, chunks.size() - 1).stream()
+        .allMatch(chunk -> chunk.size() >= MIN_PART_SIZE);
+    if (copyable) {
+      assembleByCopy(key, headerBytes, chunks);
+    } else {
+      assembleByStreaming(key, headerBytes, chunks);
+    }
+    log.info("Assembled {} from {} chunks ({} bytes) in {} ms", key, chunks.size(), expected,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+    var staged = new ArrayList<String>();
+    staged.add(headerKey(key));
+    chunks.forEach(chunk -> staged.add(chunk.key()));
+    deleteObjects(staged);
+  }
+
+  private void assembleByCopy(String key, byte[] headerBytes, List<Chunk> chunks) throws IOException {
+    var uploadId = s3.createMultipartUpload(request -> request.bucket(bucket).key(key)).uploadId();
+    try {
+      var parts = new ArrayList<CompletableFuture<CompletedPart>>(chunks.size());
+      var first = chunks.getFirst();
+      var firstPart = RequestBody.fromContentProvider(
+          () -> new SequenceInputStream(new ByteArrayInputStream(headerBytes), getObject(first.key())),
+          headerBytes.length + first.size(), "application/octet-stream");
+      parts.add(CompletableFuture.supplyAsync(() -> CompletedPart.builder()
+          .partNumber(1)
+          .eTag(s3.uploadPart(request -> request.bucket(bucket).key(key).uploadId(uploadId).partNumber(1),
+              firstPart).eTag())
+          .build(), partSender));
+
+      for (int i = 1; i < chunks.size(); i++) {
+        var chunk = chunks.get(i);
+        int partNumber = i + 1;
+        parts.add(CompletableFuture.supplyAsync(() -> CompletedPart.builder()
+            .partNumber(partNumber)
+            .eTag(s3.uploadPartCopy(request -> request.sourceBucket(bucket).sourceKey(chunk.key())
+                .destinationBucket(bucket).destinationKey(key).uploadId(uploadId).partNumber(partNumber))
+                .copyPartResult().eTag())
+            .build(), partSender));
+      }
+
+      List<CompletedPart> completedParts;
+      try {
+        completedParts = parts.stream().map(CompletableFuture::join).toList();
+      } catch (CompletionException e) {
+        // Let the others finish, so none arrives after the abort
+        parts.forEach(part -> part.handle((result, failure) -> null).join());
+        throw new IOException("Failed to assemble " + key, e.getCause());
+      }
+      s3.completeMultipartUpload(request -> request.bucket(bucket).key(key).uploadId(uploadId)
+          .multipartUpload(upload -> upload.parts(completedParts)));
+    } catch (IOException | RuntimeException e) {
+      try {
+        s3.abortMultipartUpload(request -> request.bucket(bucket).key(key).uploadId(uploadId));
+      } catch (RuntimeException suppressed) {
+        e.addSuppressed(suppressed);
+      }
+      throw e;
+    }
+  }
+
+  private void assembleByStreaming(String key, byte[] headerBytes, List<Chunk> chunks) throws IOException {
+    try (var upload = newUpload(key); var out = Channels.newOutputStream(upload)) {
+      out.write(headerBytes);
+      for (var chunk : chunks) {
+        try (var in = getObject(chunk.key())) {
+          in.transferTo(out);
+        }
+      }
+      upload.complete();
+    }
+  }
+
+  private List<Chunk> listChunks(String key, SegmentHeader header) {
+    var staging = key + CHUNKS_SUFFIX;
+    return s3.listObjectsV2Paginator(request -> request.bucket(bucket).prefix(staging))
+        .contents()
+        .stream()
+        .filter(object -> !object.key().equals(headerKey(key)))
+        .map(object -> {
+          long offset = Long.parseLong(object.key().substring(staging.length()));
+          return new Chunk(object.key(), offset, offset + plaintextLength(header, object.size()), object.size());
+        })
+        .sorted(Comparator.comparingLong(Chunk::offset))
+        .toList();
+  }
+
+  /**
+   * Chunks from {@code position} on follow no content, left by an attempt that was cut short
+   * before the chunk now written from there.
+   */
+  private void deleteChunksFrom(List<Chunk> chunks, long position) {
+    var stale = chunks.stream()
+        .filter(chunk -> chunk.offset() >= position)
+        .map(Chunk::key)
+        .toList();
+    if (!stale.isEmpty()) {
+      log.debug("Dropping {} stale chunks", stale.size());
+      deleteObjects(stale);
+    }
+  }
+
+  /**
+   * Plaintext length of staged segments of {@code size} bytes, the last of which may be short.
+   */
+  private static long plaintextLength(SegmentHeader header, long size) {
+    long remainder = size % header.encryptedSegmentSize();
+    return size / header.encryptedSegmentSize() * header.segmentSize()
+        + (remainder > 0 ? remainder - header.segmentOverhead() : 0);
+  }
+
+  /**
+   * Plaintext bytes of {@code source} that the staged {@code chunk} holds from {@code position} on.
+   */
+  private long matchStaged(InputStream source, Chunk chunk, SegmentHeader header, long position) throws Exception {
+    long segment = position / header.segmentSize();
+    long chunkSegment = chunk.offset() / header.segmentSize();
+    try (var channel = new S3ObjectChannel(s3, bucket, chunk.key(), chunk.size())) {
+      long chunkPosition = (segment - chunkSegment) * header.encryptedSegmentSize();
+      return encryptionService.matchSegments(source, channel, chunkPosition, header, Math.toIntExact(segment),
+          encryptionProperties.getSecretKey());
+    }
+  }
+
+  /**
+   * Plaintext bytes of {@code source} that the assembled object holds from {@code offset} on.
+   */
+  private long matchAssembled(InputStream source, String key, long size, long offset) throws Exception {
+    try (var channel = new S3ObjectChannel(s3, bucket, key, size)) {
+      var header = SegmentHeader.read(channel);
+      long segment = offset / header.segmentSize();
+      return encryptionService.matchSegments(source, channel, header.segmentOffset(segment), header,
+          Math.toIntExact(segment), encryptionProperties.getSecretKey());
+    }
+  }
+
+  @Override
+  public Resource load(String storagePath) {
+    var key = keyOf(storagePath);
+    log.info("Loading file {}", key);
+
+    try (var probe = getObject(GetObjectRequest.builder()
+        .bucket(bucket)
+        .key(key)
+        .range("bytes=0-" + (SegmentHeader.MAX_LENGTH - 1))
+        .build())) {
+      long size = totalSize(probe.response().contentRange(), probe.response().contentLength());
+      var header = SegmentHeader.read(Channels.newChannel(probe));
+      var contentLength = header.plaintextLength(size);
+      log.debug("Streaming decryption prepared for file {} ({} bytes)", key, contentLength);
+
+      return new DecryptingFileResource(storagePath, () -> new S3ObjectChannel(s3, bucket, key, size), contentLength,
+          header.codec(), encryptionService, encryptionProperties.getSecretKey(), bytesRead);
+    } catch (ResourceNotFoundException e) {
+      throw e;
+    } catch (Exception e) {
+      log.error("Failed to load file {}", key, e);
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public Resource loadAsIs(String storagePath) {
+    var key = keyOf(storagePath);
+    log.info("Loading file as stored from {}", key);
+    try {
+      long size = s3.headObject(request -> request.bucket(bucket).key(key)).contentLength();
+      return new StoredObjectResource(storagePath, () -> new S3ObjectChannel(s3, bucket, key, size), size);
+    } catch (S3Exception e) {
+      if (e.statusCode() == 404) {
+        log.warn("Requested file does not exist: {}", key);
+        throw new ResourceNotFoundException(storagePath);
+      }
+      throw e;
+    }
+  }
+
+  private static long totalSize(String contentRange, long contentLength) {
+    if (contentRange == null) {
+      // The whole object was returned, being shorter than the range
+      return contentLength;
+    }
+    var matcher = CONTENT_RANGE.matcher(contentRange);
+    if (!matcher.matches()) {
+      throw new IllegalStateException("Unexpected Content-Range: " + contentRange);
+    }
+    return Long.parseLong(matcher.group(1));
+  }
+
+  @Override
+  public boolean delete(String storagePath) {
+    var key = keyOf(storagePath);
+    log.info("Attempting to delete file {}", key);
+
+    var keys = new ArrayList<String>();
+    if (exists(key)) {
+      keys.add(key);
+    }
+    s3.listObjectsV2Paginator(request -> request.bucket(bucket).prefix(key + CHUNKS_SUFFIX))
+        .contents()
+        .forEach(object -> keys.add(object.key()));
+    if (keys.isEmpty()) {
+      log.warn("File not found, nothing deleted at {}", key);
+      return false;
+    }
+    deleteObjects(keys);
+    log.info("Successfully deleted file {}", key);
+    return true;
+  }
+
+  /**
+   * Nothing is shared on this backend, see the constructor.
+   */
+  @Override
+  public boolean release(String storagePath) {
+    return delete(storagePath);
+  }
+
+  /**
+   * Staged chunks are listed as the file they belong to.
+   */
+  @Override
+  public Stream<String> list(Instant modifiedBefore) {
+    return s3.listObjectsV2Paginator(request -> request.bucket(bucket).prefix(prefix))
+        .contents()
+        .stream()
+        .filter(object -> object.lastModified().isBefore(modifiedBefore))
+        .map(S3Object::key)
+        .map(keyPattern::matcher)
+        .filter(Matcher::matches)
+        .map(matcher -> uri(prefix + matcher.group(1)))
+        .distinct();
+  }
+
+  @Override
+  public boolean owns(String storagePath) {
+    return storagePath.startsWith(URI_PREFIX + bucket + "/");
+  }
+
+  /**
+   * Deletes every file of this backend, staged chunks included, a page of keys at a time. Other
+   * objects under the prefix are left alone, as {@link #list(Instant)} leaves them out.
+   */
+  @Override
+  public void deleteAll() {
+    log.warn("Deleting all files in bucket {} under '{}'", bucket, prefix);
+    var keys = new ArrayList<String>(DELETE_BATCH_SIZE);
+    long deleted = 0;
+    for (var object : s3.listObjectsV2Paginator(request -> request.bucket(bucket).prefix(prefix)).contents()) {
+      if (!keyPattern.matcher(object.key()).matches()) {
+        continue;
+      }
+      keys.add(object.key());
+      if (keys.size() == DELETE_BATCH_SIZE) {
+        deleteObjects(keys);
+        deleted += keys.size();
+        keys.clear();
+      }
+    }
+    deleteObjects(keys);
+    deleted += keys.size();
+    log.info("Deleted {} objects from bucket {}", deleted, bucket);
+  }
+
+  private String newKey() {
+    return prefix + UUID.randomUUID();
+  }
+
+  private String uri(String key) {
+    return URI_PREFIX + bucket + "/" + key;
+  }
+
+  private String keyOf(String storagePath) {
+    if (!owns(storagePath)) {
+      throw new IllegalArgumentException("Not a file of bucket " + bucket + ": " + storagePath);
+    }
+    return storagePath.substring((URI_PREFIX + bucket + "/").length());
+  }
+
+  private static String headerKey(String key) {
+    return key + CHUNKS_SUFFIX + HEADER_OBJECT;
+  }
+
+  /**
+   * Zero-padded, so listing returns chunks in order of their offset.
+   */
+  private static String chunkKey(String key, long offset) {
+    return key + CHUNKS_SUFFIX + "%020d".formatted(offset);
+  }
+
+  private MultipartUploadChannel newUpload(String key) {
+    return new MultipartUploadChannel(s3, bucket, key, partSize, partsInFlight, partSender);
+  }
+
+  private InputStream getObject(String key) {
+    return getObject(GetObjectRequest.builder().bucket(bucket).key(key).build());
+  }
+
+  private ResponseInputStream<GetObjectResponse> getObject(GetObjectRequest request) {
+    try {
+      return s3.getObject(request);
+    } catch (S3Exception e) {
+      if (e.statusCode() == 404) {
+        throw new ResourceNotFoundException(uri(request.key()));
+      }
+      throw e;
+    }
+  }
+
+  private Optional<byte[]> readObject(String key) throws IOException {
+    try (var in = getObject(key)) {
+      return Optional.of(in.readAllBytes());
+    } catch (ResourceNotFoundException e) {
+      return Optional.empty();
+    }
+  }
+
+  private boolean exists(String key) {
+    return sizeOf(key).isPresent();
+  }
+
+  private OptionalLong sizeOf(String key) {
+    try {
+      return OptionalLong.of(s3.headObject(request -> request.bucket(bucket).key(key)).contentLength());
+    } catch (S3Exception e) {
+      if (e.statusCode() == 404) {
+        return OptionalLong.empty();
+      }
+      throw e;
+    }
+  }
+
+  private void deleteObjects(List<String> keys) {
+    for (int from = 0; from < keys.size(); from += DELETE_BATCH_SIZE) {
+      var batch = keys.subList(from, Math.min(keys.size(), from + DELETE_BATCH_SIZE)).stream()
+          .map(key -> ObjectIdentifier.builder().key(key).build())
+          .toList();
+      var response = s3.deleteObjects(request -> request.bucket(bucket).delete(delete -> delete.objects(batch)));
+      if (response.hasErrors() && !response.errors().isEmpty()) {
+        var error = response.errors().getFirst();
+        throw new IllegalStateException("Failed to delete " + error.key() + ": " + error.message());
+      }
+    }
+  }
+
+  private record Chunk(String key, long offset, long end, long size) {
+  }
+}
@@ -0,0 +1,84 @@
+package com.example.secure_drop.service.filestorage;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.example.secure_drop.config.FileStorageProperties;
+
+/**
+ * Where stored files go: a root picked at random in proportion to its weight, then
+ * {@code shardDepth} levels of directories named after the leading hex digits of the file's
+ * UUID, so directories stay small however many files there are.
+ */
+public class StorageLayout {
+  private static final int SHARD_NAME_LENGTH = 2;
+
+  private final List<Path> roots;
+  private final int[] cumulativeWeights;
+  private final int shardDepth;
+
+  public StorageLayout(FileStorageProperties fileStorageProperties) {
+    var configured = fileStorageProperties.effectiveRoots();
+    this.roots = configured.stream()
+        .map(root -> {
+          if (root.getPath() == null || root.getPath().isBlank()) {
+            throw new IllegalStateException("Upload root without a path");
+          }
+          return Path.of(root.getPath());
+        })
+        .toList();
+
+    this.cumulativeWeights = new int[configured.size()];
+    int total = 0;
+    for (int i = 0; i < cumulativeWeights.length; i++) {
+      int weight = configured.get(i).getWeight();
+      if (weight <= 0) {
+        throw new IllegalStateException("Upload root " + roots.get(i) + " needs a positive weight: " + weight);
+      }
+      total = Math.addExact(total, weight);
+      cumulativeWeights[i] = total;
+    }
+
+    this.shardDepth = fileStorageProperties.getShardDepth();
+    if (shardDepth < 0 || shardDepth * SHARD_NAME_LENGTH > 32) {
+      throw new IllegalStateException("Shard depth out of range: " + shardDepth);
+    }
+  }
+
+  public List<Path> roots() {
+    return roots;
+  }
+
+  /**
+   * Path for a new file with a fresh random name. Its shard directories may not exist yet.
+   */
+  public Path newFile() {
+    return place(pickRoot(), UUID.randomUUID().toString());
+  }
+
+  /**
+   * Where {@code fileName} belongs under {@code root}.
+   */
+  public Path place(Path root, String fileName) {
+    var path = root;
+    var hex = fileName.replace("-", "");
+    for (int level = 0; level < shardDepth && hex.length() >= (level + 1) * SHARD_NAME_LENGTH; level++) {
+      path = path.resolve(hex.substring(level * SHARD_NAME_LENGTH, (level + 1) * SHARD_NAME_LENGTH));
+    }
+    return path.resolve(fileName);
+  }
+
+  private Path pickRoot() {
+    if (roots.size() == 1) {
+      return roots.getFirst();
+    }
+    int ticket = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+    int i = 0;
+    while (ticket >= cumulativeWeights[i]) {
+      i++;
+    }
+    return roots.get(i);
+  }
+}
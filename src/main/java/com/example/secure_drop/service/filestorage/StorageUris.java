@@ -0,0 +1,47 @@
+package com.example.secure_drop.service.filestorage;
+
+import java.net.URI;
+import java.nio.file.Path;
+
+/**
+ * Storage paths name the backend holding a file by their scheme: {@code file:} for the upload
+ * roots, {@code s3:} for object storage. Rows written before there was more than one backend hold
+ * a plain path, which is read as a local file.
+ */
+public final class StorageUris {
+  public static final String FILE_SCHEME = "file";
+  public static final String S3_SCHEME = "s3";
+
+  private StorageUris() {
+  }
+
+  public static String of(Path path) {
+    return path.toAbsolutePath().normalize().toUri().toString();
+  }
+
+  /**
+   * The scheme of {@code storagePath}, {@link #FILE_SCHEME} for a plain path.
+   */
+  public static String scheme(String storagePath) {
+    int colon = storagePath.indexOf(':');
+    // A single letter before the colon is a Windows drive, not a scheme
+    if (colon <= 1 || !storagePath.startsWith("//", colon + 1) && !storagePath.startsWith("/", colon + 1)) {
+      return FILE_SCHEME;
+    }
+    return storagePath.substring(0, colon);
+  }
+
+  public static boolean isLocal(String storagePath) {
+    return FILE_SCHEME.equals(scheme(storagePath));
+  }
+
+  /**
+   * The local file {@code storagePath} names, either as a {@code file:} URI or a plain path.
+   */
+  public static Path toPath(String storagePath) {
+    if (storagePath.startsWith(FILE_SCHEME + ":")) {
+      return Path.of(URI.create(storagePath));
+    }
+    return Path.of(storagePath);
+  }
+}
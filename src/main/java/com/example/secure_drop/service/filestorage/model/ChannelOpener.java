@@ -0,0 +1,12 @@
+package com.example.secure_drop.service.filestorage.model;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Opens a fresh channel over a stored file, positioned at its start.
+ */
+@FunctionalInterface
+public interface ChannelOpener {
+  SeekableByteChannel open() throws IOException;
+}
@@ -0,0 +1,102 @@
+package com.example.secure_drop.service.filestorage.model;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.jspecify.annotations.NonNull;
+import org.springframework.core.io.AbstractResource;
+
+import com.example.secure_drop.service.encryption.ContentCodec;
+import com.example.secure_drop.service.encryption.EncryptionService;
+
+import io.micrometer.core.instrument.Counter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Resource over a stored segmented ciphertext. Every {@link #getInputStream()} opens a
+ * fresh channel through {@code opener} and a stream over it that decrypts segment by segment,
+ * and the plaintext length comes from the stored header instead of reading the content.
+ * Content compressed before it was encrypted is returned still encoded, as named by
+ * {@link #getContentEncoding()}. Bytes read through those streams are added to
+ * {@code bytesRead}.
+ */
+@RequiredArgsConstructor
+public class DecryptingFileResource extends AbstractResource {
+  private final String description;
+  private final ChannelOpener opener;
+  private final long contentLength;
+  private final ContentCodec codec;
+  private final EncryptionService encryptionService;
+  private final String secretKey;
+  private final Counter bytesRead;
+
+  @Override
+  @NonNull
+  public String getDescription() {
+    return "Encrypted file [" + description + "]";
+  }
+
+  /**
+   * Checked when the file was loaded, which reading its header required.
+   */
+  @Override
+  public boolean exists() {
+    return true;
+  }
+
+  @Override
+  public long contentLength() {
+    return contentLength;
+  }
+
+  /**
+   * The {@code Content-Encoding} of the bytes this resource returns, or {@code null} when they
+   * are the file itself.
+   */
+  public String getContentEncoding() {
+    return codec.contentEncoding();
+  }
+
+  @Override
+  @NonNull
+  public InputStream getInputStream() throws IOException {
+    var channel = opener.open();
+    try {
+      return new CountingInputStream(encryptionService.decrypt(channel, secretKey), bytesRead);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    } catch (Exception e) {
+      channel.close();
+      throw new IOException("Failed to open decryption stream for " + description, e);
+    }
+  }
+
+  private static final class CountingInputStream extends FilterInputStream {
+    private final Counter counter;
+
+    CountingInputStream(InputStream in, Counter counter) {
+      super(in);
+      this.counter = counter;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        counter.increment();
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int count = super.read(b, off, len);
+      if (count > 0) {
+        counter.increment(count);
+      }
+      return count;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package com.example.secure_drop.service.filestorage.model;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.crypto.Mac;
+
+/**
+ * Feeds every byte read through it into a {@link Mac}, so content can be authenticated or
+ * keyed by its HMAC in the same pass that consumes it. Skipped bytes are read and fed too.
+ */
+public class MacInputStream extends FilterInputStream {
+  private static final int SKIP_BUFFER_SIZE = 8192;
+
+  private final Mac mac;
+
+  public MacInputStream(InputStream in, Mac mac) {
+    super(in);
+    this.mac = mac;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = super.read();
+    if (b >= 0) {
+      mac.update((byte) b);
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    int count = super.read(b, off, len);
+    if (count > 0) {
+      mac.update(b, off, count);
+    }
+    return count;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    if (n <= 0) {
+      return 0;
+    }
+    byte[] buffer = new byte[(int) Math.min(n, SKIP_BUFFER_SIZE)];
+    long skipped = 0;
+    while (skipped < n) {
+      int count = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+      if (count < 0) {
+        break;
+      }
+      skipped += count;
+    }
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+}
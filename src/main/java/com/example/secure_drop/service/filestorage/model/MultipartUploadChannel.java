@@ -0,0 +1,199 @@
+package com.example.secure_drop.service.filestorage.model;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.ContentStreamProvider;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+
+/**
+ * Streams what is written to it into one S3 object, a part at a time, so an upload of any size
+ * holds only a few parts in memory. Full parts are sent on {@code executor} while the next one
+ * fills, at most {@code partsInFlight} of them at once; a writer that gets ahead of them waits.
+ * Content that never fills a part is sent with a single PutObject instead.
+ *
+ * Nothing is visible under the key until {@link #complete()}; closing the channel without it
+ * aborts the upload and drops the parts sent so far.
+ */
+@Slf4j
+public class MultipartUploadChannel implements WritableByteChannel {
+  private final S3Client s3;
+  private final String bucket;
+  private final String key;
+  private final int partSize;
+  private final Executor executor;
+  private final Semaphore inFlight;
+
+  private byte[] buffer;
+  private int buffered;
+  private long size;
+  private String uploadId;
+  private final List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+  private boolean open = true;
+  private boolean completed;
+  private volatile Throwable failure;
+
+  public MultipartUploadChannel(S3Client s3, String bucket, String key, int partSize, int partsInFlight,
+      Executor executor) {
+    this.s3 = s3;
+    this.bucket = bucket;
+    this.key = key;
+    this.partSize = partSize;
+    this.executor = executor;
+    this.inFlight = new Semaphore(partsInFlight);
+    this.buffer = new byte[partSize];
+  }
+
+  @Override
+  public int write(ByteBuffer src) throws IOException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+    int written = src.remaining();
+    while (src.hasRemaining()) {
+      int count = Math.min(src.remaining(), partSize - buffered);
+      src.get(buffer, buffered, count);
+      buffered += count;
+      if (buffered == partSize) {
+        sendPart();
+      }
+    }
+    size += written;
+    return written;
+  }
+
+  /**
+   * Bytes written so far.
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Sends what is left and makes the object visible under its key.
+   */
+  public void complete() throws IOException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+    if (uploadId == null) {
+      s3.putObject(request -> request.bucket(bucket).key(key), body(Arrays.copyOf(buffer, buffered)));
+    } else {
+      if (buffered > 0) {
+        sendPart();
+      }
+      var completedParts = awaitParts();
+      s3.completeMultipartUpload(request -> request.bucket(bucket).key(key).uploadId(uploadId)
+          .multipartUpload(upload -> upload.parts(completedParts)));
+    }
+    completed = true;
+    open = false;
+    buffer = null;
+    log.debug("Stored object {} ({} bytes, {} parts)", key, size, Math.max(1, parts.size()));
+  }
+
+  /**
+   * Aborts the upload unless it was completed.
+   */
+  @Override
+  public void close() {
+    if (!open) {
+      return;
+    }
+    open = false;
+    buffer = null;
+    if (completed || uploadId == null) {
+      return;
+    }
+    // Parts still being sent would otherwise arrive after the abort and be stored, and billed, anyway
+    for (var part : parts) {
+      try {
+        part.join();
+      } catch (RuntimeException ignored) {
+        // The abort drops whatever did arrive
+      }
+    }
+    try {
+      s3.abortMultipartUpload(request -> request.bucket(bucket).key(key).uploadId(uploadId));
+      log.debug("Aborted upload of {}", key);
+    } catch (RuntimeException e) {
+      log.warn("Failed to abort upload {} of {}; left to the bucket's lifecycle rules", uploadId, key, e);
+    }
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+
+  private void sendPart() throws IOException {
+    if (failure != null) {
+      // Stop as soon as a part fails instead of sending the rest of the content first
+      throw new IOException("Failed to send a part of " + key, failure);
+    }
+    if (uploadId == null) {
+      uploadId = s3.createMultipartUpload(request -> request.bucket(bucket).key(key)).uploadId();
+    }
+
+    try {
+      inFlight.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting to send a part of " + key);
+    }
+
+    int partNumber = parts.size() + 1;
+    RequestBody content;
+    if (buffered == partSize) {
+      // A full part is handed over as it is and the next one gets a fresh buffer, saving a copy
+      content = body(buffer);
+      buffer = new byte[partSize];
+    } else {
+      content = body(Arrays.copyOf(buffer, buffered));
+    }
+    var part = CompletableFuture.supplyAsync(() -> {
+      var response = s3.uploadPart(request -> request.bucket(bucket).key(key).uploadId(uploadId)
+          .partNumber(partNumber), content);
+      return CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build();
+    }, executor);
+    part.whenComplete((completedPart, e) -> {
+      if (e != null) {
+        failure = e;
+      }
+      inFlight.release();
+    });
+    parts.add(part);
+    buffered = 0;
+  }
+
+  private static RequestBody body(byte[] bytes) {
+    // Unlike fromBytes, does not copy; retries read the same array again
+    return RequestBody.fromContentProvider(ContentStreamProvider.fromByteArrayUnsafe(bytes), bytes.length,
+        "application/octet-stream");
+  }
+
+  private List<CompletedPart> awaitParts() throws IOException {
+    try {
+      return parts.stream()
+          .map(CompletableFuture::join)
+          .sorted(Comparator.comparing(CompletedPart::partNumber))
+          .toList();
+    } catch (CompletionException e) {
+      throw new IOException("Failed to send a part of " + key, e.getCause());
+    }
+  }
+}
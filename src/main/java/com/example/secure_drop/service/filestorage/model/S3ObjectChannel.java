@@ -0,0 +1,136 @@
+package com.example.secure_drop.service.filestorage.model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+/**
+ * Reads an S3 object of known size as a seekable channel. A read streams the object from the
+ * current position to its end with one ranged GET, which later reads continue; only moving the
+ * position elsewhere drops that response and starts another from there. A download, or a range
+ * of one, thus costs a single request however it is read.
+ */
+public class S3ObjectChannel implements SeekableByteChannel {
+  private final S3Client s3;
+  private final String bucket;
+  private final String key;
+  private final long size;
+
+  private long position;
+  private ResponseInputStream<GetObjectResponse> response;
+  private ReadableByteChannel body;
+  private boolean open = true;
+
+  public S3ObjectChannel(S3Client s3, String bucket, String key, long size) {
+    this.s3 = s3;
+    this.bucket = bucket;
+    this.key = key;
+    this.size = size;
+  }
+
+  @Override
+  public int read(ByteBuffer dst) throws IOException {
+    ensureOpen();
+    if (position >= size) {
+      return -1;
+    }
+    if (body == null) {
+      try {
+        response = s3.getObject(GetObjectRequest.builder()
+            .bucket(bucket)
+            .key(key)
+            .range("bytes=" + position + "-")
+            .build());
+      } catch (SdkException e) {
+        throw new IOException("Failed to read " + key + " from " + position, e);
+      }
+      body = Channels.newChannel(response);
+    }
+
+    int count = body.read(dst);
+    if (count < 0) {
+      throw new EOFException("Object " + key + " ended at " + position + " of " + size + " bytes");
+    }
+    position += count;
+    return count;
+  }
+
+  @Override
+  public long position() throws IOException {
+    ensureOpen();
+    return position;
+  }
+
+  @Override
+  public SeekableByteChannel position(long newPosition) throws IOException {
+    ensureOpen();
+    if (newPosition < 0) {
+      throw new IllegalArgumentException("Negative position: " + newPosition);
+    }
+    if (newPosition != position) {
+      dropResponse();
+      position = newPosition;
+    }
+    return this;
+  }
+
+  @Override
+  public long size() throws IOException {
+    ensureOpen();
+    return size;
+  }
+
+  @Override
+  public int write(ByteBuffer src) {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public SeekableByteChannel truncate(long size) {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+
+  @Override
+  public void close() {
+    open = false;
+    dropResponse();
+  }
+
+  private void ensureOpen() throws IOException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+  }
+
+  private void dropResponse() {
+    if (response != null) {
+      if (position < size) {
+        // Closing alone would read the rest of the object to keep the connection
+        response.abort();
+      }
+      try {
+        response.close();
+      } catch (IOException ignored) {
+        // Nothing more is read from it
+      }
+      response = null;
+      body = null;
+    }
+  }
+}
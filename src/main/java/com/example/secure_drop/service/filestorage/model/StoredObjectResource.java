@@ -0,0 +1,47 @@
+package com.example.secure_drop.service.filestorage.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+
+import org.jspecify.annotations.NonNull;
+import org.springframework.core.io.AbstractResource;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Resource over a stored file returned as it is. Every {@link #getInputStream()} opens a fresh
+ * channel through {@code opener}; skipping on the stream moves the channel's position, so a
+ * range request reads only the bytes it asks for.
+ */
+@RequiredArgsConstructor
+public class StoredObjectResource extends AbstractResource {
+  private final String description;
+  private final ChannelOpener opener;
+  private final long contentLength;
+
+  @Override
+  @NonNull
+  public String getDescription() {
+    return "Stored file [" + description + "]";
+  }
+
+  /**
+   * Checked when the file was loaded.
+   */
+  @Override
+  public boolean exists() {
+    return true;
+  }
+
+  @Override
+  public long contentLength() {
+    return contentLength;
+  }
+
+  @Override
+  @NonNull
+  public InputStream getInputStream() throws IOException {
+    return Channels.newInputStream(opener.open());
+  }
+}
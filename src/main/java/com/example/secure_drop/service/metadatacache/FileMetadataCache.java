@@ -0,0 +1,19 @@
+package com.example.secure_drop.service.metadatacache;
+
+import java.util.Optional;
+
+import com.example.secure_drop.dto.FileDownloadView;
+
+/**
+ * Near-cache of file metadata by access code, in front of the database.
+ */
+public interface FileMetadataCache {
+  /**
+   * The file's metadata, read from the database on a miss.
+   */
+  Optional<FileDownloadView> get(String accessCode);
+
+  void put(FileDownloadView file);
+
+  void invalidate(String accessCode);
+}
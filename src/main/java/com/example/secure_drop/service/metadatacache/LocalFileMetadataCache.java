@@ -0,0 +1,87 @@
+package com.example.secure_drop.service.metadatacache;
+
+import java.time.Clock;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Service;
+
+import com.example.secure_drop.config.MetadataCacheProperties;
+import com.example.secure_drop.dto.FileDownloadView;
+import com.example.secure_drop.repo.FileMetadataRepo;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded Caffeine cache whose entries live for the configured TTL but never past the file's
+ * expiry date. Downloads write through and cleanup invalidates; the TTL bounds staleness from
+ * changes made by other instances, and the conditional download UPDATE stays authoritative.
+ */
+@Service
+@Slf4j
+public class LocalFileMetadataCache implements FileMetadataCache {
+  private final FileMetadataRepo fileMetadataRepo;
+  private final Cache<String, FileDownloadView> cache;
+
+  public LocalFileMetadataCache(FileMetadataRepo fileMetadataRepo, Clock clock,
+      MetadataCacheProperties metadataCacheProperties, MeterRegistry meterRegistry) {
+    this.fileMetadataRepo = fileMetadataRepo;
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(metadataCacheProperties.getMaximumSize())
+        .expireAfter(new ExpiryBoundedTtl(clock, metadataCacheProperties.getTtl().toNanos()))
+        .recordStats()
+        .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, "fileMetadata");
+  }
+
+  @Override
+  public Optional<FileDownloadView> get(String accessCode) {
+    var cached = cache.getIfPresent(accessCode);
+    if (cached != null) {
+      return Optional.of(cached);
+    }
+    // Loaded outside the cache's compute, which holds a map monitor: a virtual thread waiting for
+    // a connection in there pins its carrier until Java 24. A download's write-through is newer
+    // than what was read here, so it is not replaced
+    var file = fileMetadataRepo.findDownloadViewByAccessCode(accessCode);
+    file.ifPresent(view -> cache.asMap().putIfAbsent(accessCode, view));
+    return file;
+  }
+
+  @Override
+  public void put(FileDownloadView file) {
+    cache.put(file.accessCode(), file);
+  }
+
+  @Override
+  public void invalidate(String accessCode) {
+    log.debug("Invalidating cached metadata for access code {}", accessCode);
+    cache.invalidate(accessCode);
+  }
+
+  private record ExpiryBoundedTtl(Clock clock, long ttlNanos) implements Expiry<String, FileDownloadView> {
+
+    @Override
+    public long expireAfterCreate(String accessCode, FileDownloadView file, long currentTime) {
+      long untilExpiry = TimeUnit.MILLISECONDS.toNanos(file.expiryDate().getTime() - clock.millis());
+      return Math.max(0, Math.min(ttlNanos, untilExpiry));
+    }
+
+    @Override
+    public long expireAfterUpdate(String accessCode, FileDownloadView file, long currentTime,
+        long currentDuration) {
+      return expireAfterCreate(accessCode, file, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(String accessCode, FileDownloadView file, long currentTime,
+        long currentDuration) {
+      return currentDuration;
+    }
+  }
+}
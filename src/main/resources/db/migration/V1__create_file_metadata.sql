@@ -0,0 +1,15 @@
+-- Schema previously created by Hibernate's ddl-auto: update. IF NOT EXISTS lets this run on
+-- databases that already have it (baseline-version 0), adding any columns they predate.
+CREATE TABLE IF NOT EXISTS file_metadata (
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    file_name      VARCHAR(255) NOT NULL,
+    file_type      VARCHAR(255) NOT NULL,
+    storage_path   VARCHAR(255) NOT NULL,
+    access_code    VARCHAR(255) NOT NULL,
+    upload_date    TIMESTAMP(6) NOT NULL,
+    expiry_date    TIMESTAMP(6) NOT NULL,
+    max_downloads  INTEGER      NOT NULL
+);
+
+ALTER TABLE file_metadata ADD COLUMN IF NOT EXISTS download_session VARCHAR(255);
+ALTER TABLE file_metadata ADD COLUMN IF NOT EXISTS download_session_expiry TIMESTAMP(6);
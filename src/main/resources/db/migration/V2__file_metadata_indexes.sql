@@ -0,0 +1,32 @@
+-- Replace the single-column unique constraint on access_code (named by Hibernate on existing
+-- databases) with a unique index that also covers the columns the info lookup reads, so it
+-- can be answered from the index alone.
+DO $$
+DECLARE
+    constraint_name TEXT;
+BEGIN
+    FOR constraint_name IN
+        SELECT con.conname
+        FROM pg_constraint con
+        JOIN pg_attribute att ON att.attrelid = con.conrelid AND att.attnum = con.conkey[1]
+        WHERE con.conrelid = 'file_metadata'::regclass
+          AND con.contype = 'u'
+          AND cardinality(con.conkey) = 1
+          AND att.attname = 'access_code'
+    LOOP
+        EXECUTE format('ALTER TABLE file_metadata DROP CONSTRAINT %I', constraint_name);
+    END LOOP;
+END $$;
+
+CREATE UNIQUE INDEX IF NOT EXISTS file_metadata_access_code_idx
+    ON file_metadata (access_code)
+    INCLUDE (file_name, expiry_date, max_downloads);
+
+-- Expired rows: a range scan on expiry_date. now() is not immutable, so this cannot be partial.
+CREATE INDEX IF NOT EXISTS file_metadata_expiry_date_idx
+    ON file_metadata (expiry_date, id);
+
+-- Consumed rows are a small, short-lived slice of the table: index only those.
+CREATE INDEX IF NOT EXISTS file_metadata_consumed_idx
+    ON file_metadata (download_session_expiry, id)
+    WHERE max_downloads <= 0;
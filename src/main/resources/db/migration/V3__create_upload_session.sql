@@ -0,0 +1,14 @@
+-- Chunked uploads in progress. received_bytes only advances once a chunk is fully written, so
+-- it is the offset an interrupted upload resumes from.
+CREATE TABLE upload_session (
+    id              VARCHAR(36)  PRIMARY KEY,
+    file_name       VARCHAR(255) NOT NULL,
+    file_type       VARCHAR(255) NOT NULL,
+    storage_file    VARCHAR(255) NOT NULL,
+    size            BIGINT       NOT NULL,
+    segment_size    INTEGER      NOT NULL,
+    received_bytes  BIGINT       NOT NULL,
+    expiry_date     TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX upload_session_expiry_date_idx ON upload_session (expiry_date);
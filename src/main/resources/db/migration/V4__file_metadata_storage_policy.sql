@@ -0,0 +1,3 @@
+-- Files stored before per-upload policies were all encrypted by the server.
+ALTER TABLE file_metadata
+    ADD COLUMN storage_policy VARCHAR(32) NOT NULL DEFAULT 'SERVER_ENCRYPTED';
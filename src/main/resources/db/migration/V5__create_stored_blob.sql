@@ -0,0 +1,13 @@
+-- Deduplicated ciphertext blobs, keyed by an HMAC of their plaintext. ref_count is the number of
+-- file_metadata rows sharing the blob; a blob is only deleted once it drops to zero.
+CREATE TABLE stored_blob (
+    id            BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    digest        VARCHAR(64)  NOT NULL UNIQUE,
+    file_name     VARCHAR(255) NOT NULL UNIQUE,
+    ref_count     INTEGER      NOT NULL,
+    created_date  TIMESTAMP(6) NOT NULL
+);
+
+-- Files stored before deduplication each own their stored file.
+ALTER TABLE file_metadata
+    ADD COLUMN deduplicated BOOLEAN NOT NULL DEFAULT FALSE;
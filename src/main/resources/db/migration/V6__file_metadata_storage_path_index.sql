@@ -0,0 +1,3 @@
+-- Moving a stored file (e.g. into its shard directory) looks up the uploads that reference it
+-- by path.
+CREATE INDEX file_metadata_storage_path_idx ON file_metadata (storage_path);
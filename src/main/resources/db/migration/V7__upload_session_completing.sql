@@ -0,0 +1,4 @@
+-- Set while a fully received upload is being published; the session row is only deleted once its
+-- file_metadata row is saved, so a failed publish leaves the upload to be completed again.
+ALTER TABLE upload_session
+    ADD COLUMN completing BOOLEAN NOT NULL DEFAULT FALSE;
@@ -203,5 +203,5 @@ to {
 `):" "+Q0(c[0]):"as no adapter specified";throw new pt("There is no suitable adapter to dispatch the request "+p,"ERR_NOT_SUPPORT")}return r}const Ub={getAdapter:fO,adapters:zp};function id(n){if(n.cancelToken&&n.cancelToken.throwIfRequested(),n.signal&&n.signal.aborted)throw new vl(null,n)}function Z0(n){return id(n),n.headers=je.from(n.headers),n.data=ad.call(n,n.transformRequest),["post","put","patch"].indexOf(n.method)!==-1&&n.headers.setContentType("application/x-www-form-urlencoded",!1),Ub.getAdapter(n.adapter||Go.adapter,n)(n).then(function(s){return id(n),s.data=ad.call(n,n.transformResponse,s),s.headers=je.from(s.headers),s},function(s){return zb(s)||(id(n),s&&s.response&&(s.response.data=ad.call(n,n.transformResponse,s.response),s.response.headers=je.from(s.response.headers))),Promise.reject(s)})}const Vb="1.13.2",tu={};["object","boolean","number","function","string","symbol"].forEach((n,a)=>{tu[n]=function(s){return typeof s===n||"a"+(a<1?"n ":" ")+n}});const J0={};tu.transitional=function(a,l,s){function r(f,c){return"[Axios v"+Vb+"] Transitional option '"+f+"'"+c+(s?". "+s:"")}return(f,c,p)=>{if(a===!1)throw new pt(r(c," has been removed"+(l?" in "+l:"")),pt.ERR_DEPRECATED);return l&&!J0[c]&&(J0[c]=!0,console.warn(r(c," has been deprecated since v"+l+" and will be removed in the near future"))),a?a(f,c,p):!0}};tu.spelling=function(a){return(l,s)=>(console.warn(`${s} is likely a misspelling of ${a}`),!0)};function dO(n,a,l){if(typeof n!="object")throw new pt("options must be an object",pt.ERR_BAD_OPTION_VALUE);const s=Object.keys(n);let r=s.length;for(;r-- >0;){const f=s[r],c=a[f];if(c){const p=n[f],h=p===void 0||c(p,f,n);if(h!==!0)throw new pt("option "+f+" must be "+h,pt.ERR_BAD_OPTION_VALUE);continue}if(l!==!0)throw new pt("Unknown option "+f,pt.ERR_BAD_OPTION)}}const Dr={assertOptions:dO,validators:tu},bn=Dr.validators;let li=class{constructor(a){this.defaults=a||{},this.interceptors={request:new V0,response:new V0}}async request(a,l){try{return await this._request(a,l)}catch(s){if(s instanceof Error){let r={};Error.captureStackTrace?Error.captureStackTrace(r):r=new Error;const f=r.stack?r.stack.replace(/^.+\n/,""):"";try{s.stack?f&&!String(s.stack).endsWith(f.replace(/^.+\n.+\n/,""))&&(s.stack+=`
 `+f):s.stack=f}catch{}}throw s}}_request(a,l){typeof a=="string"?(l=l||{},l.url=a):l=a||{},l=oi(this.defaults,l);const{transitional:s,paramsSerializer:r,headers:f}=l;s!==void 0&&Dr.assertOptions(s,{silentJSONParsing:bn.transitional(bn.boolean),forcedJSONParsing:bn.transitional(bn.boolean),clarifyTimeoutError:bn.transitional(bn.boolean)},!1),r!=null&&(B.isFunction(r)?l.paramsSerializer={serialize:r}:Dr.assertOptions(r,{encode:bn.function,serialize:bn.function},!0)),l.allowAbsoluteUrls!==void 0||(this.defaults.allowAbsoluteUrls!==void 0?l.allowAbsoluteUrls=this.defaults.allowAbsoluteUrls:l.allowAbsoluteUrls=!0),Dr.assertOptions(l,{baseUrl:bn.spelling("baseURL"),withXsrfToken:bn.spelling("withXSRFToken")},!0),l.method=(l.method||this.defaults.method||"get").toLowerCase();let c=f&&B.merge(f.common,f[l.method]);f&&B.forEach(["delete","get","head","post","put","patch","common"],S=>{delete f[S]}),l.headers=je.concat(c,f);const p=[];let h=!0;this.interceptors.request.forEach(function(A){typeof A.runWhen=="function"&&A.runWhen(l)===!1||(h=h&&A.synchronous,p.unshift(A.fulfilled,A.rejected))});const m=[];this.interceptors.response.forEach(function(A){m.push(A.fulfilled,A.rejected)});let v,y=0,x;if(!h){const S=[Z0.bind(this),void 0];for(S.unshift(...p),S.push(...m),x=S.length,v=Promise.resolve(l);y<x;)v=v.then(S[y++],S[y++]);return v}x=p.length;let T=l;for(;y<x;){const S=p[y++],A=p[y++];try{T=S(T)}catch(C){A.call(this,C);break}}try{v=Z0.call(this,T)}catch(S){return Promise.reject(S)}for(y=0,x=m.length;y<x;)v=v.then(m[y++],m[y++]);return v}getUri(a){a=oi(this.defaults,a);const l=Nb(a.baseURL,a.url,a.allowAbsoluteUrls);return Ob(l,a.params,a.paramsSerializer)}};B.forEach(["delete","get","head","options"],function(a){li.prototype[a]=function(l,s){return this.request(oi(s||{},{method:a,url:l,data:(s||{}).data}))}});B.forEach(["post","put","patch"],function(a){function l(s){return function(f,c,p){return this.request(oi(p||{},{method:a,headers:s?{"Content-Type":"multipart/form-data"}:{},url:f,data:c}))}}li.prototype[a]=l(),li.prototype[a+"Form"]=l(!0)});let pO=class kb{constructor(a){if(typeof a!="function")throw new TypeError("executor must be a function.");let l;this.promise=new Promise(function(f){l=f});const s=this;this.promise.then(r=>{if(!s._listeners)return;let f=s._listeners.length;for(;f-- >0;)s._listeners[f](r);s._listeners=null}),this.promise.then=r=>{let f;const c=new Promise(p=>{s.subscribe(p),f=p}).then(r);return c.cancel=function(){s.unsubscribe(f)},c},a(function(f,c,p){s.reason||(s.reason=new vl(f,c,p),l(s.reason))})}throwIfRequested(){if(this.reason)throw this.reason}subscribe(a){if(this.reason){a(this.reason);return}this._listeners?this._listeners.push(a):this._listeners=[a]}unsubscribe(a){if(!this._listeners)return;const l=this._listeners.indexOf(a);l!==-1&&this._listeners.splice(l,1)}toAbortSignal(){const a=new AbortController,l=s=>{a.abort(s)};return this.subscribe(l),a.signal.unsubscribe=()=>this.unsubscribe(l),a.signal}static source(){let a;return{token:new kb(function(r){a=r}),cancel:a}}};function mO(n){return function(l){return n.apply(null,l)}}function hO(n){return B.isObject(n)&&n.isAxiosError===!0}const qd={Continue:100,SwitchingProtocols:101,Processing:102,EarlyHints:103,Ok:200,Created:201,Accepted:202,NonAuthoritativeInformation:203,NoContent:204,ResetContent:205,PartialContent:206,MultiStatus:207,AlreadyReported:208,ImUsed:226,MultipleChoices:300,MovedPermanently:301,Found:302,SeeOther:303,NotModified:304,UseProxy:305,Unused:306,TemporaryRedirect:307,PermanentRedirect:308,BadRequest:400,Unauthorized:401,PaymentRequired:402,Forbidden:403,NotFound:404,MethodNotAllowed:405,NotAcceptable:406,ProxyAuthenticationRequired:407,RequestTimeout:408,Conflict:409,Gone:410,LengthRequired:411,PreconditionFailed:412,PayloadTooLarge:413,UriTooLong:414,UnsupportedMediaType:415,RangeNotSatisfiable:416,ExpectationFailed:417,ImATeapot:418,MisdirectedRequest:421,UnprocessableEntity:422,Locked:423,FailedDependency:424,TooEarly:425,UpgradeRequired:426,PreconditionRequired:428,TooManyRequests:429,RequestHeaderFieldsTooLarge:431,UnavailableForLegalReasons:451,InternalServerError:500,NotImplemented:501,BadGateway:502,ServiceUnavailable:503,GatewayTimeout:504,HttpVersionNotSupported:505,VariantAlsoNegotiates:506,InsufficientStorage:507,LoopDetected:508,NotExtended:510,NetworkAuthenticationRequired:511,WebServerIsDown:521,ConnectionTimedOut:522,OriginIsUnreachable:523,TimeoutOccurred:524,SslHandshakeFailed:525,InvalidSslCertificate:526};Object.entries(qd).forEach(([n,a])=>{qd[a]=n});function Hb(n){const a=new li(n),l=gb(li.prototype.request,a);return B.extend(l,li.prototype,a,{allOwnKeys:!0}),B.extend(l,a,null,{allOwnKeys:!0}),l.create=function(r){return Hb(oi(n,r))},l}const Zt=Hb(Go);Zt.Axios=li;Zt.CanceledError=vl;Zt.CancelToken=pO;Zt.isCancel=zb;Zt.VERSION=Vb;Zt.toFormData=Ir;Zt.AxiosError=pt;Zt.Cancel=Zt.CanceledError;Zt.all=function(a){return Promise.all(a)};Zt.spread=mO;Zt.isAxiosError=hO;Zt.mergeConfig=oi;Zt.AxiosHeaders=je;Zt.formToJSON=n=>_b(B.isHTMLForm(n)?new FormData(n):n);Zt.getAdapter=Ub.getAdapter;Zt.HttpStatusCode=qd;Zt.default=Zt;const{Axios:RO,AxiosError:CO,CanceledError:DO,isCancel:OO,CancelToken:MO,VERSION:_O,all:zO,Cancel:jO,isAxiosError:NO,spread:LO,toFormData:BO,AxiosHeaders:UO,HttpStatusCode:VO,formToJSON:kO,getAdapter:HO,mergeConfig:qO}=Zt,qb={BASE_URL:"http://localhost:5767/api/files"},Pb=Zt.create({baseURL:qb.BASE_URL,headers:{"Content-Type":"application/json"}}),vO=async(n,a)=>{console.log(qb.BASE_URL);const l=new FormData;return l.append("file",n),(await Pb.post("/upload",l,{headers:{"Content-Type":"multipart/form-data"},onUploadProgress:r=>{if(r.total){const f=Math.round(r.loaded*100/r.total);a(f)}}})).data},gO=async n=>{const a=await Pb.get(`/download/${n}`,{responseType:"blob"});console.log(a);const l=a.headers["content-disposition"];let s="downloaded-file";if(l){const c=l.match(/filename="?([^"]+)"?/);c&&c.length===2&&(s=c[1])}const r=window.URL.createObjectURL(new Blob([a.data])),f=document.createElement("a");f.href=r,f.setAttribute("download",s),document.body.appendChild(f),f.click(),f.remove(),window.URL.revokeObjectURL(r)},yO=()=>{const[n,a]=E.useState(!1),[l,s]=E.useState(0),[r,f]=E.useState(null),c=E.useCallback(async y=>{const x=y[0];if(x){a(!0),s(0);try{const T=await vO(x,S=>{s(S)});f({downloadLink:T.downloadUrl,accessCode:T.accessCode}),rn.success("Secured in the vault.")}catch(T){console.error(T),rn.error("Upload failed. Is backend running?")}finally{a(!1)}}},[]),{getRootProps:p,getInputProps:h,isDragActive:m,acceptedFiles:v}=E1({onDrop:c,maxFiles:1,disabled:n||!!r});return k.jsxs(el.div,{initial:{opacity:0,y:20},animate:{opacity:1,y:0},className:"w-full max-w-md",children:[k.jsx(vb,{position:"bottom-center",toastOptions:{style:{background:"#1e293b",color:"#fff",border:"1px solid #334155"}}}),k.jsxs("div",{className:"bg-drop-surface p-8 rounded-[40px] shadow-neo-flat relative overflow-hidden",children:[k.jsxs("div",{className:"text-center mb-8",children:[k.jsx("h2",{className:"text-2xl font-bold text-drop-text tracking-wide",children:r?"Transfer Complete":"Upload File"}),k.jsx("p",{className:"text-drop-accent text-sm mt-1 font-mono",children:r?"Scan or share the code below":"Max file size: 50MB"})]}),k.jsx(H4,{mode:"wait",children:r?k.jsxs(el.div,{initial:{opacity:0,scale:.9},animate:{opacity:1,scale:1},className:"flex flex-col items-center",children:[k.jsx("div",{className:"p-3 bg-white rounded-2xl shadow-neo-flat mb-8 rotate-1 hover:rotate-0 transition-transform duration-300",children:k.jsx(AC,{value:r.downloadLink,size:150})}),k.jsx("div",{className:"w-full bg-drop-bg p-1 rounded-2xl shadow-neo-pressed mb-6",children:k.jsxs("div",{onClick:()=>{navigator.clipboard.writeText(r.accessCode),rn.success("Copied!")},className:"flex items-center justify-between p-4 cursor-pointer group",children:[k.jsxs("div",{className:"flex flex-col",children:[k.jsx("span",{className:"text-[10px] text-drop-accent tracking-widest uppercase mb-1",children:"Access Code"}),k.jsx("span",{className:"text-3xl font-mono font-bold text-blue-400 tracking-[0.15em] group-hover:text-blue-300 transition-colors",children:r.accessCode})]}),k.jsx(BC,{className:"w-5 h-5 text-drop-accent group-hover:text-blue-400 transition-colors"})]})}),k.jsx("button",{onClick:()=>f(null),className:"text-sm text-drop-accent hover:text-drop-text transition-colors",children:"Start New Upload"})]},"result"):k.jsx(el.div,{exit:{opacity:0,scale:.95},transition:{duration:.2},children:k.jsxs("div",{...p(),className:`relative group aspect-square rounded-[30px] flex flex-col items-center justify-center cursor-pointer transition-all duration-300
     ${m?"shadow-neo-pressed border-blue-500/30":"shadow-neo-flat active:scale-95"} 
-    touch-manipulation`,children:[k.jsx("input",{...h()}),k.jsx("div",{className:"absolute inset-0 bg-blue-500/5 rounded-[30px] opacity-0 group-hover:opacity-100 transition-opacity"}),n?k.jsxs("div",{className:"w-full px-8 text-center",children:[k.jsx(XC,{className:"w-12 h-12 text-blue-400 animate-spin mx-auto mb-4"}),k.jsx("div",{className:"h-2 w-full bg-drop-bg rounded-full overflow-hidden shadow-neo-pressed",children:k.jsx(el.div,{className:"h-full bg-blue-500 shadow-[0_0_10px_#3b82f6]",initial:{width:0},animate:{width:`${l}%`}})}),k.jsxs("p",{className:"mt-4 text-xs font-mono text-blue-400",children:[l,"% ENCRYPTING"]})]}):k.jsxs(k.Fragment,{children:[k.jsx("div",{className:`p-4 rounded-full mb-4 transition-all duration-300 ${m?"bg-drop-bg text-blue-400 shadow-neo-pressed":"text-drop-accent"}`,children:k.jsx(NC,{className:"w-8 h-8"})}),v.length>0?k.jsxs("div",{className:"flex items-center gap-2 text-blue-300 bg-drop-bg px-4 py-2 rounded-lg shadow-neo-pressed",children:[k.jsx(qC,{className:"w-4 h-4"}),k.jsx("span",{className:"text-sm truncate max-w-[120px]",children:v[0].name})]}):k.jsxs("p",{className:"text-drop-accent font-medium group-hover:text-drop-text transition-colors text-center px-4",children:[k.jsx("span",{className:"hidden md:inline",children:"Drop file here"}),k.jsx("span",{className:"md:hidden",children:"Tap to select file"})]})]})]})},"upload")})]})]})},xO=()=>{const[n,a]=E.useState(""),[l,s]=E.useState(!1),r=async f=>{f.preventDefault(),s(!0);try{rn.loading("Downloading..."),await gO(n),rn.dismiss(),rn.success("Download started!")}catch(c){rn.dismiss(),console.error("Download failed",c),Zt.isAxiosError(c)&&c.response?c.response.status===404?rn.error("File expired or does not exist."):c.response.status===400?rn.error("Invalid access code."):rn.error("Server error."):rn.error("Connection failed.")}finally{s(!1)}};return k.jsxs("div",{className:"w-full max-w-md",children:[k.jsx(vb,{position:"bottom-center",toastOptions:{style:{background:"#1e293b",color:"#fff",border:"1px solid #334155"}}}),k.jsxs("div",{className:"bg-drop-surface p-10 rounded-[40px] shadow-neo-flat text-center",children:[k.jsx("div",{className:"w-16 h-16 bg-drop-bg rounded-2xl shadow-neo-pressed mx-auto mb-6 flex items-center justify-center text-blue-500",children:k.jsx(QC,{className:"w-8 h-8"})}),k.jsx("h2",{className:"text-2xl font-bold text-drop-text mb-2",children:"Secure Retrieval"}),k.jsx("p",{className:"text-drop-accent text-sm mb-8 font-mono",children:"Enter the 6-character access code"}),k.jsxs("form",{onSubmit:r,children:[k.jsxs("div",{className:"relative mb-8 group",children:[k.jsx("input",{type:"text",maxLength:7,value:n,onChange:f=>{let c=f.target.value.toUpperCase();c.length===3&&n.length===2&&(c+="-"),a(c)},placeholder:"XXX-000",className:"w-full bg-drop-bg text-center text-2xl md:text-3xl font-mono font-bold tracking-[0.3em] text-blue-400 py-6 rounded-2xl outline-none shadow-neo-pressed border border-transparent focus:border-blue-500/20 transition-all placeholder:text-drop-surface uppercase"}),k.jsx("div",{className:"absolute inset-0 rounded-2xl shadow-[0_0_30px_rgba(59,130,246,0.1)] opacity-0 group-focus-within:opacity-100 transition-opacity pointer-events-none"})]}),k.jsxs("button",{type:"submit",disabled:l||n.length<7,className:`w-full py-4 rounded-xl font-bold tracking-widest flex items-center justify-center gap-2 transition-all duration-200
-                        ${l||n.length<7?"bg-drop-bg text-drop-accent shadow-neo-pressed cursor-not-allowed opacity-50":"bg-drop-surface text-blue-400 shadow-neo-flat hover:shadow-none active:shadow-neo-pressed active:scale-[0.98]"}`,children:[l?"DECRYPTING...":"INITIATE DOWNLOAD",!l&&k.jsx(Ld,{className:"w-4 h-4"})]})]})]})]})},bO=()=>{const n=ul.c(5);let a,l;n[0]===Symbol.for("react.memo_cache_sentinel")?(a={opacity:0,scale:.95},l={opacity:1,scale:1},n[0]=a,n[1]=l):(a=n[0],l=n[1]);let s;n[2]===Symbol.for("react.memo_cache_sentinel")?(s=k.jsxs("div",{className:"text-center mb-8 mt-4",children:[k.jsx("div",{className:"inline-flex p-4 rounded-full bg-drop-bg shadow-neo-pressed mb-6 text-blue-400",children:k.jsx(rb,{className:"w-8 h-8"})}),k.jsx("h1",{className:"text-2xl md:text-3xl font-bold text-drop-text tracking-wide mb-2",children:"About Secure Drop"})]}),n[2]=s):s=n[2];let r;n[3]===Symbol.for("react.memo_cache_sentinel")?(r=k.jsxs("div",{className:"grid md:grid-cols-2 gap-4 mb-8",children:[k.jsx(ld,{icon:zC,title:"Ephemeral",desc:"Files auto-delete after 24h."}),k.jsx(ld,{icon:JC,title:"Anonymous",desc:"No logs. No tracking."}),k.jsx(ld,{icon:IC,title:"Fast",desc:"Direct P2P-style speed."})]}),n[3]=r):r=n[3];let f;return n[4]===Symbol.for("react.memo_cache_sentinel")?(f=k.jsx(el.div,{initial:a,animate:l,className:"w-full max-w-2xl h-full max-h-[80vh] flex flex-col",children:k.jsx("div",{className:"bg-drop-surface p-6 md:p-8 rounded-[40px] shadow-neo-flat flex flex-col h-full overflow-hidden",children:k.jsxs("div",{className:"overflow-y-auto no-scrollbar",children:[s,r,k.jsx("div",{className:"bg-drop-bg p-6 rounded-2xl shadow-neo-pressed text-center mb-4",children:k.jsx("p",{className:"text-drop-accent text-sm italic",children:'"Built for the moments when you need to move data without friction."'})})]})})}),n[4]=f):f=n[4],f},ld=n=>{const a=ul.c(10),{icon:l,title:s,desc:r}=n;let f;a[0]!==l?(f=k.jsx(l,{className:"w-5 h-5 text-blue-400 mb-2"}),a[0]=l,a[1]=f):f=a[1];let c;a[2]!==s?(c=k.jsx("h3",{className:"text-drop-text font-bold text-sm",children:s}),a[2]=s,a[3]=c):c=a[3];let p;a[4]!==r?(p=k.jsx("p",{className:"text-xs text-drop-accent",children:r}),a[4]=r,a[5]=p):p=a[5];let h;return a[6]!==f||a[7]!==c||a[8]!==p?(h=k.jsxs("div",{className:"p-4 rounded-2xl border border-white/5 bg-drop-bg/50",children:[f,c,p]}),a[6]=f,a[7]=c,a[8]=p,a[9]=h):h=a[9],h},SO=()=>{const n=ul.c(4);let a,l;n[0]===Symbol.for("react.memo_cache_sentinel")?(a={opacity:0,scale:.95},l={opacity:1,scale:1},n[0]=a,n[1]=l):(a=n[0],l=n[1]);let s;n[2]===Symbol.for("react.memo_cache_sentinel")?(s=k.jsx("div",{className:"p-8 pb-4 flex-none border-b border-white/5",children:k.jsxs("div",{className:"flex items-center gap-4",children:[k.jsx(kC,{className:"w-8 h-8 text-drop-accent"}),k.jsxs("div",{children:[k.jsx("h1",{className:"text-2xl font-bold text-drop-text",children:"Terms"}),k.jsx("p",{className:"text-xs text-drop-accent uppercase tracking-widest",children:"MVP v1.0"})]})]})}),n[2]=s):s=n[2];let r;return n[3]===Symbol.for("react.memo_cache_sentinel")?(r=k.jsx(el.div,{initial:a,animate:l,className:"w-full max-w-2xl h-full max-h-[80vh] flex flex-col",children:k.jsxs("div",{className:"bg-drop-surface rounded-[40px] shadow-neo-flat flex flex-col h-full overflow-hidden",children:[s,k.jsx("div",{className:"flex-1 overflow-y-auto p-8 pt-4 no-scrollbar",children:k.jsxs("div",{className:"space-y-6 text-drop-accent text-sm leading-relaxed",children:[k.jsx(bo,{title:"1. Service Description",children:'Secure Drop is provided "as is". We make no guarantees regarding uptime or security.'}),k.jsx(bo,{title:"2. User Responsibility",children:"You agree not to upload illegal material. You retain full responsibility for content."}),k.jsx(bo,{title:"3. Data Retention",children:"Files are permanently deleted automatically. We are not responsible for data loss."}),k.jsx(bo,{title:"4. Privacy",children:"We do not collect personal data. Connection metadata is ephemeral."}),k.jsx(bo,{title:"5. Usage Limits",children:"Fair use applies. Excessive bandwidth usage may result in temporary IP bans."})]})})]})}),n[3]=r):r=n[3],r},bo=n=>{const a=ul.c(7),{title:l,children:s}=n;let r;a[0]!==l?(r=k.jsx("h3",{className:"text-drop-text font-semibold mb-2",children:l}),a[0]=l,a[1]=r):r=a[1];let f;a[2]!==s?(f=k.jsx("p",{className:"opacity-80",children:s}),a[2]=s,a[3]=f):f=a[3];let c;return a[4]!==r||a[5]!==f?(c=k.jsxs("div",{children:[r,f]}),a[4]=r,a[5]=f,a[6]=c):c=a[6],c},yr=n=>{const a=ul.c(10),{to:l,icon:s,label:r}=n,c=Oa().pathname===l,p=`flex flex-col md:flex-row items-center justify-center gap-1 md:gap-2 md:px-4 md:py-2 w-full md:w-auto rounded-xl transition-all duration-300 ${c?"text-blue-400 md:bg-drop-surface md:shadow-neo-pressed":"text-drop-accent hover:text-drop-text"}`,h=`w-6 h-6 md:w-4 md:h-4 ${c?"drop-shadow-[0_0_8px_rgba(59,130,246,0.5)]":""}`;let m;a[0]!==s||a[1]!==h?(m=k.jsx(s,{className:h}),a[0]=s,a[1]=h,a[2]=m):m=a[2];let v;a[3]!==r?(v=k.jsx("span",{className:"text-[10px] md:text-sm font-medium tracking-wide",children:r}),a[3]=r,a[4]=v):v=a[4];let y;return a[5]!==p||a[6]!==m||a[7]!==v||a[8]!==l?(y=k.jsxs(nl,{to:l,className:p,children:[m,v]}),a[5]=p,a[6]=m,a[7]=v,a[8]=l,a[9]=y):y=a[9],y},TO=()=>{const n=ul.c(10);let a;n[0]===Symbol.for("react.memo_cache_sentinel")?(a=k.jsx("div",{className:"p-2 bg-drop-surface rounded-lg shadow-neo-flat text-blue-400",children:k.jsx(rb,{className:"w-5 h-5 md:w-6 md:h-6"})}),n[0]=a):a=n[0];let l;n[1]===Symbol.for("react.memo_cache_sentinel")?(l=k.jsxs("div",{className:"flex items-center gap-3",children:[a,k.jsxs("h1",{className:"text-lg md:text-xl font-black tracking-[0.25em] text-drop-text text-glow",children:["SECURE",k.jsx("span",{className:"text-drop-accent font-light",children:"DROP"})]})]}),n[1]=l):l=n[1];let s;n[2]===Symbol.for("react.memo_cache_sentinel")?(s=k.jsxs("nav",{className:"hidden md:flex gap-4",children:[k.jsx(yr,{to:"/",icon:j0,label:"SEND"}),k.jsx(yr,{to:"/download",icon:Ld,label:"RECEIVE"})]}),n[2]=s):s=n[2];let r;n[3]===Symbol.for("react.memo_cache_sentinel")?(r=k.jsx("header",{className:"flex-none h-16 z-50 backdrop-blur-md border-b border-white/5 bg-drop-bg/80",children:k.jsxs("div",{className:"h-full px-6 flex items-center justify-between max-w-5xl mx-auto",children:[l,s,k.jsx(nl,{to:"/about",className:"md:hidden text-drop-accent hover:text-white",children:k.jsx(FC,{className:"w-5 h-5"})})]})}),n[3]=r):r=n[3];let f;n[4]===Symbol.for("react.memo_cache_sentinel")?(f=k.jsx(So,{path:"/",element:k.jsx(yO,{})}),n[4]=f):f=n[4];let c;n[5]===Symbol.for("react.memo_cache_sentinel")?(c=k.jsx(So,{path:"/download",element:k.jsx(xO,{})}),n[5]=c):c=n[5];let p;n[6]===Symbol.for("react.memo_cache_sentinel")?(p=k.jsx(So,{path:"/about",element:k.jsx(bO,{})}),n[6]=p):p=n[6];let h;n[7]===Symbol.for("react.memo_cache_sentinel")?(h=k.jsx("main",{className:"flex-1 relative overflow-hidden w-full max-w-5xl mx-auto",children:k.jsx("div",{className:"h-full w-full flex items-center justify-center p-4",children:k.jsxs(sE,{children:[f,c,p,k.jsx(So,{path:"/terms",element:k.jsx(SO,{})})]})})}),n[7]=h):h=n[7];let m;n[8]===Symbol.for("react.memo_cache_sentinel")?(m=k.jsxs("footer",{className:"hidden md:flex flex-none justify-center items-center gap-6 py-4 text-drop-accent text-xs tracking-wider opacity-60 font-mono mb-2",children:[k.jsx(nl,{to:"/about",className:"hover:text-blue-400",children:"ABOUT"}),k.jsx("span",{children:"//"}),k.jsx(nl,{to:"/terms",className:"hover:text-blue-400",children:"TERMS"}),k.jsx("span",{children:"//"}),k.jsx("p",{children:"v1.0.0 MVP"})]}),n[8]=m):m=n[8];let v;return n[9]===Symbol.for("react.memo_cache_sentinel")?(v=k.jsx(ME,{children:k.jsxs("div",{className:"flex flex-col h-[100dvh] w-full overflow-hidden",children:[r,h,m,k.jsxs("nav",{className:"md:hidden flex-none h-20 bg-ghost-bg/90 backdrop-blur-lg border-t border-white/5 pb-safe px-6 flex justify-around items-center z-50",children:[k.jsx(yr,{to:"/",icon:j0,label:"SEND"}),k.jsx(yr,{to:"/download",icon:Ld,label:"RECEIVE"})]})]})}),n[9]=v):v=n[9],v};dT.createRoot(document.getElementById("root")).render(k.jsx(E.StrictMode,{children:k.jsx(TO,{})}));
+    touch-manipulation`,children:[k.jsx("input",{...h()}),k.jsx("div",{className:"absolute inset-0 bg-blue-500/5 rounded-[30px] opacity-0 group-hover:opacity-100 transition-opacity"}),n?k.jsxs("div",{className:"w-full px-8 text-center",children:[k.jsx(XC,{className:"w-12 h-12 text-blue-400 animate-spin mx-auto mb-4"}),k.jsx("div",{className:"h-2 w-full bg-drop-bg rounded-full overflow-hidden shadow-neo-pressed",children:k.jsx(el.div,{className:"h-full bg-blue-500 shadow-[0_0_10px_#3b82f6]",initial:{width:0},animate:{width:`${l}%`}})}),k.jsxs("p",{className:"mt-4 text-xs font-mono text-blue-400",children:[l,"% ENCRYPTING"]})]}):k.jsxs(k.Fragment,{children:[k.jsx("div",{className:`p-4 rounded-full mb-4 transition-all duration-300 ${m?"bg-drop-bg text-blue-400 shadow-neo-pressed":"text-drop-accent"}`,children:k.jsx(NC,{className:"w-8 h-8"})}),v.length>0?k.jsxs("div",{className:"flex items-center gap-2 text-blue-300 bg-drop-bg px-4 py-2 rounded-lg shadow-neo-pressed",children:[k.jsx(qC,{className:"w-4 h-4"}),k.jsx("span",{className:"text-sm truncate max-w-[120px]",children:v[0].name})]}):k.jsxs("p",{className:"text-drop-accent font-medium group-hover:text-drop-text transition-colors text-center px-4",children:[k.jsx("span",{className:"hidden md:inline",children:"Drop file here"}),k.jsx("span",{className:"md:hidden",children:"Tap to select file"})]})]})]})},"upload")})]})]})},Xq={symbols:8,groupSize:4,codeLength:9,alphabet:"0123456789ABCDEFGHJKMNPQRSTVWXYZ"},Yq=(n,a)=>[...n.toUpperCase()].filter(l=>a.alphabet.includes(l)).slice(0,a.symbols).map((l,s)=>a.groupSize>0&&s>0&&s%a.groupSize===0?"-"+l:l).join(""),xO=()=>{const[n,a]=E.useState(""),[l,s]=E.useState(!1),[Zq,Wq]=E.useState(Xq);E.useEffect(()=>{Pb.get("/access-code-format").then(f=>Wq(f.data)).catch(f=>console.error("Could not load the access code format",f))},[]);const p=Yq("X".repeat(Zq.symbols),{...Zq,alphabet:"X"}),m=n.length===Zq.codeLength,r=async f=>{f.preventDefault(),s(!0);try{rn.loading("Downloading..."),await gO(n),rn.dismiss(),rn.success("Download started!")}catch(c){rn.dismiss(),console.error("Download failed",c),Zt.isAxiosError(c)&&c.response?c.response.status===404?rn.error("File expired or does not exist."):c.response.status===400?rn.error("Invalid access code."):rn.error("Server error."):rn.error("Connection failed.")}finally{s(!1)}};return k.jsxs("div",{className:"w-full max-w-md",children:[k.jsx(vb,{position:"bottom-center",toastOptions:{style:{background:"#1e293b",color:"#fff",border:"1px solid #334155"}}}),k.jsxs("div",{className:"bg-drop-surface p-10 rounded-[40px] shadow-neo-flat text-center",children:[k.jsx("div",{className:"w-16 h-16 bg-drop-bg rounded-2xl shadow-neo-pressed mx-auto mb-6 flex items-center justify-center text-blue-500",children:k.jsx(QC,{className:"w-8 h-8"})}),k.jsx("h2",{className:"text-2xl font-bold text-drop-text mb-2",children:"Secure Retrieval"}),k.jsxs("p",{className:"text-drop-accent text-sm mb-8 font-mono",children:["Enter the ",Zq.symbols,"-character access code"]}),k.jsxs("form",{onSubmit:r,children:[k.jsxs("div",{className:"relative mb-8 group",children:[k.jsx("input",{type:"text",value:n,onChange:f=>a(Yq(f.target.value,Zq)),placeholder:p,className:"w-full bg-drop-bg text-center text-2xl md:text-3xl font-mono font-bold tracking-[0.3em] text-blue-400 py-6 rounded-2xl outline-none shadow-neo-pressed border border-transparent focus:border-blue-500/20 transition-all placeholder:text-drop-surface uppercase"}),k.jsx("div",{className:"absolute inset-0 rounded-2xl shadow-[0_0_30px_rgba(59,130,246,0.1)] opacity-0 group-focus-within:opacity-100 transition-opacity pointer-events-none"})]}),k.jsxs("button",{type:"submit",disabled:l||!m,className:`w-full py-4 rounded-xl font-bold tracking-widest flex items-center justify-center gap-2 transition-all duration-200
+                        ${l||!m?"bg-drop-bg text-drop-accent shadow-neo-pressed cursor-not-allowed opacity-50":"bg-drop-surface text-blue-400 shadow-neo-flat hover:shadow-none active:shadow-neo-pressed active:scale-[0.98]"}`,children:[l?"DECRYPTING...":"INITIATE DOWNLOAD",!l&&k.jsx(Ld,{className:"w-4 h-4"})]})]})]})]})},bO=()=>{const n=ul.c(5);let a,l;n[0]===Symbol.for("react.memo_cache_sentinel")?(a={opacity:0,scale:.95},l={opacity:1,scale:1},n[0]=a,n[1]=l):(a=n[0],l=n[1]);let s;n[2]===Symbol.for("react.memo_cache_sentinel")?(s=k.jsxs("div",{className:"text-center mb-8 mt-4",children:[k.jsx("div",{className:"inline-flex p-4 rounded-full bg-drop-bg shadow-neo-pressed mb-6 text-blue-400",children:k.jsx(rb,{className:"w-8 h-8"})}),k.jsx("h1",{className:"text-2xl md:text-3xl font-bold text-drop-text tracking-wide mb-2",children:"About Secure Drop"})]}),n[2]=s):s=n[2];let r;n[3]===Symbol.for("react.memo_cache_sentinel")?(r=k.jsxs("div",{className:"grid md:grid-cols-2 gap-4 mb-8",children:[k.jsx(ld,{icon:zC,title:"Ephemeral",desc:"Files auto-delete after 24h."}),k.jsx(ld,{icon:JC,title:"Anonymous",desc:"No logs. No tracking."}),k.jsx(ld,{icon:IC,title:"Fast",desc:"Direct P2P-style speed."})]}),n[3]=r):r=n[3];let f;return n[4]===Symbol.for("react.memo_cache_sentinel")?(f=k.jsx(el.div,{initial:a,animate:l,className:"w-full max-w-2xl h-full max-h-[80vh] flex flex-col",children:k.jsx("div",{className:"bg-drop-surface p-6 md:p-8 rounded-[40px] shadow-neo-flat flex flex-col h-full overflow-hidden",children:k.jsxs("div",{className:"overflow-y-auto no-scrollbar",children:[s,r,k.jsx("div",{className:"bg-drop-bg p-6 rounded-2xl shadow-neo-pressed text-center mb-4",children:k.jsx("p",{className:"text-drop-accent text-sm italic",children:'"Built for the moments when you need to move data without friction."'})})]})})}),n[4]=f):f=n[4],f},ld=n=>{const a=ul.c(10),{icon:l,title:s,desc:r}=n;let f;a[0]!==l?(f=k.jsx(l,{className:"w-5 h-5 text-blue-400 mb-2"}),a[0]=l,a[1]=f):f=a[1];let c;a[2]!==s?(c=k.jsx("h3",{className:"text-drop-text font-bold text-sm",children:s}),a[2]=s,a[3]=c):c=a[3];let p;a[4]!==r?(p=k.jsx("p",{className:"text-xs text-drop-accent",children:r}),a[4]=r,a[5]=p):p=a[5];let h;return a[6]!==f||a[7]!==c||a[8]!==p?(h=k.jsxs("div",{className:"p-4 rounded-2xl border border-white/5 bg-drop-bg/50",children:[f,c,p]}),a[6]=f,a[7]=c,a[8]=p,a[9]=h):h=a[9],h},SO=()=>{const n=ul.c(4);let a,l;n[0]===Symbol.for("react.memo_cache_sentinel")?(a={opacity:0,scale:.95},l={opacity:1,scale:1},n[0]=a,n[1]=l):(a=n[0],l=n[1]);let s;n[2]===Symbol.for("react.memo_cache_sentinel")?(s=k.jsx("div",{className:"p-8 pb-4 flex-none border-b border-white/5",children:k.jsxs("div",{className:"flex items-center gap-4",children:[k.jsx(kC,{className:"w-8 h-8 text-drop-accent"}),k.jsxs("div",{children:[k.jsx("h1",{className:"text-2xl font-bold text-drop-text",children:"Terms"}),k.jsx("p",{className:"text-xs text-drop-accent uppercase tracking-widest",children:"MVP v1.0"})]})]})}),n[2]=s):s=n[2];let r;return n[3]===Symbol.for("react.memo_cache_sentinel")?(r=k.jsx(el.div,{initial:a,animate:l,className:"w-full max-w-2xl h-full max-h-[80vh] flex flex-col",children:k.jsxs("div",{className:"bg-drop-surface rounded-[40px] shadow-neo-flat flex flex-col h-full overflow-hidden",children:[s,k.jsx("div",{className:"flex-1 overflow-y-auto p-8 pt-4 no-scrollbar",children:k.jsxs("div",{className:"space-y-6 text-drop-accent text-sm leading-relaxed",children:[k.jsx(bo,{title:"1. Service Description",children:'Secure Drop is provided "as is". We make no guarantees regarding uptime or security.'}),k.jsx(bo,{title:"2. User Responsibility",children:"You agree not to upload illegal material. You retain full responsibility for content."}),k.jsx(bo,{title:"3. Data Retention",children:"Files are permanently deleted automatically. We are not responsible for data loss."}),k.jsx(bo,{title:"4. Privacy",children:"We do not collect personal data. Connection metadata is ephemeral."}),k.jsx(bo,{title:"5. Usage Limits",children:"Fair use applies. Excessive bandwidth usage may result in temporary IP bans."})]})})]})}),n[3]=r):r=n[3],r},bo=n=>{const a=ul.c(7),{title:l,children:s}=n;let r;a[0]!==l?(r=k.jsx("h3",{className:"text-drop-text font-semibold mb-2",children:l}),a[0]=l,a[1]=r):r=a[1];let f;a[2]!==s?(f=k.jsx("p",{className:"opacity-80",children:s}),a[2]=s,a[3]=f):f=a[3];let c;return a[4]!==r||a[5]!==f?(c=k.jsxs("div",{children:[r,f]}),a[4]=r,a[5]=f,a[6]=c):c=a[6],c},yr=n=>{const a=ul.c(10),{to:l,icon:s,label:r}=n,c=Oa().pathname===l,p=`flex flex-col md:flex-row items-center justify-center gap-1 md:gap-2 md:px-4 md:py-2 w-full md:w-auto rounded-xl transition-all duration-300 ${c?"text-blue-400 md:bg-drop-surface md:shadow-neo-pressed":"text-drop-accent hover:text-drop-text"}`,h=`w-6 h-6 md:w-4 md:h-4 ${c?"drop-shadow-[0_0_8px_rgba(59,130,246,0.5)]":""}`;let m;a[0]!==s||a[1]!==h?(m=k.jsx(s,{className:h}),a[0]=s,a[1]=h,a[2]=m):m=a[2];let v;a[3]!==r?(v=k.jsx("span",{className:"text-[10px] md:text-sm font-medium tracking-wide",children:r}),a[3]=r,a[4]=v):v=a[4];let y;return a[5]!==p||a[6]!==m||a[7]!==v||a[8]!==l?(y=k.jsxs(nl,{to:l,className:p,children:[m,v]}),a[5]=p,a[6]=m,a[7]=v,a[8]=l,a[9]=y):y=a[9],y},TO=()=>{const n=ul.c(10);let a;n[0]===Symbol.for("react.memo_cache_sentinel")?(a=k.jsx("div",{className:"p-2 bg-drop-surface rounded-lg shadow-neo-flat text-blue-400",children:k.jsx(rb,{className:"w-5 h-5 md:w-6 md:h-6"})}),n[0]=a):a=n[0];let l;n[1]===Symbol.for("react.memo_cache_sentinel")?(l=k.jsxs("div",{className:"flex items-center gap-3",children:[a,k.jsxs("h1",{className:"text-lg md:text-xl font-black tracking-[0.25em] text-drop-text text-glow",children:["SECURE",k.jsx("span",{className:"text-drop-accent font-light",children:"DROP"})]})]}),n[1]=l):l=n[1];let s;n[2]===Symbol.for("react.memo_cache_sentinel")?(s=k.jsxs("nav",{className:"hidden md:flex gap-4",children:[k.jsx(yr,{to:"/",icon:j0,label:"SEND"}),k.jsx(yr,{to:"/download",icon:Ld,label:"RECEIVE"})]}),n[2]=s):s=n[2];let r;n[3]===Symbol.for("react.memo_cache_sentinel")?(r=k.jsx("header",{className:"flex-none h-16 z-50 backdrop-blur-md border-b border-white/5 bg-drop-bg/80",children:k.jsxs("div",{className:"h-full px-6 flex items-center justify-between max-w-5xl mx-auto",children:[l,s,k.jsx(nl,{to:"/about",className:"md:hidden text-drop-accent hover:text-white",children:k.jsx(FC,{className:"w-5 h-5"})})]})}),n[3]=r):r=n[3];let f;n[4]===Symbol.for("react.memo_cache_sentinel")?(f=k.jsx(So,{path:"/",element:k.jsx(yO,{})}),n[4]=f):f=n[4];let c;n[5]===Symbol.for("react.memo_cache_sentinel")?(c=k.jsx(So,{path:"/download",element:k.jsx(xO,{})}),n[5]=c):c=n[5];let p;n[6]===Symbol.for("react.memo_cache_sentinel")?(p=k.jsx(So,{path:"/about",element:k.jsx(bO,{})}),n[6]=p):p=n[6];let h;n[7]===Symbol.for("react.memo_cache_sentinel")?(h=k.jsx("main",{className:"flex-1 relative overflow-hidden w-full max-w-5xl mx-auto",children:k.jsx("div",{className:"h-full w-full flex items-center justify-center p-4",children:k.jsxs(sE,{children:[f,c,p,k.jsx(So,{path:"/terms",element:k.jsx(SO,{})})]})})}),n[7]=h):h=n[7];let m;n[8]===Symbol.for("react.memo_cache_sentinel")?(m=k.jsxs("footer",{className:"hidden md:flex flex-none justify-center items-center gap-6 py-4 text-drop-accent text-xs tracking-wider opacity-60 font-mono mb-2",children:[k.jsx(nl,{to:"/about",className:"hover:text-blue-400",children:"ABOUT"}),k.jsx("span",{children:"//"}),k.jsx(nl,{to:"/terms",className:"hover:text-blue-400",children:"TERMS"}),k.jsx("span",{children:"//"}),k.jsx("p",{children:"v1.0.0 MVP"})]}),n[8]=m):m=n[8];let v;return n[9]===Symbol.for("react.memo_cache_sentinel")?(v=k.jsx(ME,{children:k.jsxs("div",{className:"flex flex-col h-[100dvh] w-full overflow-hidden",children:[r,h,m,k.jsxs("nav",{className:"md:hidden flex-none h-20 bg-ghost-bg/90 backdrop-blur-lg border-t border-white/5 pb-safe px-6 flex justify-around items-center z-50",children:[k.jsx(yr,{to:"/",icon:j0,label:"SEND"}),k.jsx(yr,{to:"/download",icon:Ld,label:"RECEIVE"})]})]})}),n[9]=v):v=n[9],v};dT.createRoot(document.getElementById("root")).render(k.jsx(E.StrictMode,{children:k.jsx(TO,{})}));
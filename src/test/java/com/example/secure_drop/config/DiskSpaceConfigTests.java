@@ -0,0 +1,65 @@
+package com.example.secure_drop.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.health.autoconfigure.application.DiskSpaceHealthIndicatorProperties;
+import org.springframework.boot.health.contributor.HealthIndicator;
+import org.springframework.boot.health.contributor.Status;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Disk space metrics and health follow the configured upload roots.
+ */
+class DiskSpaceConfigTests {
+  @TempDir
+  Path dir;
+
+  private final DiskSpaceConfig config = new DiskSpaceConfig();
+
+  @Test
+  void watchesEveryRoot() throws IOException {
+    var properties = new FileStorageProperties();
+    properties.setUploadDir(dir.resolve("legacy").toString());
+    properties.setRoots(List.of(root("disk1"), root("disk2")));
+    var registry = new SimpleMeterRegistry();
+
+    config.diskSpaceMetrics(properties).bindTo(registry);
+    var health = config.diskSpaceHealthIndicator(properties, new DiskSpaceHealthIndicatorProperties());
+
+    assertThat(registry.find("disk.free").gauges())
+        .extracting(gauge -> gauge.getId().getTag("path"))
+        .containsExactlyInAnyOrder(dir.resolve("disk1").toString(), dir.resolve("disk2").toString());
+    assertThat(((HealthIndicator) health.getContributor("root1")).health().getDetails())
+        .containsEntry("path", dir.resolve("disk2").toString());
+    assertThat(((HealthIndicator) health.getContributor("root0")).health().getStatus()).isEqualTo(Status.UP);
+    assertThat(health.getContributor("root2")).isNull();
+  }
+
+  @Test
+  void watchesUploadDirWithoutRoots() {
+    var properties = new FileStorageProperties();
+    properties.setUploadDir(dir.toString());
+    var registry = new SimpleMeterRegistry();
+
+    config.diskSpaceMetrics(properties).bindTo(registry);
+
+    assertThat(registry.find("disk.free").gauges())
+        .extracting(gauge -> gauge.getId().getTag("path"))
+        .containsExactly(dir.toString());
+  }
+
+  private FileStorageProperties.UploadRoot root(String name) throws IOException {
+    var root = new FileStorageProperties.UploadRoot();
+    Files.createDirectory(dir.resolve(name));
+    root.setPath(dir.resolve(name).toString());
+    return root;
+  }
+}
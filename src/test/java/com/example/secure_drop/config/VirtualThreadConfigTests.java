@@ -0,0 +1,78 @@
+package com.example.secure_drop.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * In virtual-thread mode, threads queue for a connection in front of the pool, and only then.
+ */
+class VirtualThreadConfigTests {
+  private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+      .withUserConfiguration(VirtualThreadConfig.class)
+      .withBean(HikariDataSource.class, () -> {
+        var hikari = new HikariDataSource();
+        hikari.setMaximumPoolSize(7);
+        return hikari;
+      });
+
+  @Test
+  void limitsConnectionsToThePoolSizeWithVirtualThreads() {
+    contextRunner.withPropertyValues("spring.threads.virtual.enabled=true").run(context -> {
+      var dataSource = context.getBean(DataSource.class);
+      assertThat(dataSource).isInstanceOf(ConnectionLimitingDataSource.class);
+      assertThat(((ConnectionLimitingDataSource) dataSource).availablePermits()).isEqualTo(7);
+      assertThat(dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize()).isEqualTo(7);
+    });
+  }
+
+  @Test
+  void leavesThePoolAloneWithPlatformThreads() {
+    contextRunner.run(context -> assertThat(context.getBean(DataSource.class)).isInstanceOf(HikariDataSource.class));
+  }
+
+  @Test
+  void queuesBorrowersBeyondTheLimitUntilAConnectionIsClosed() throws Exception {
+    var pool = mock(DataSource.class);
+    var first = mock(Connection.class);
+    var second = mock(Connection.class);
+    when(pool.getConnection()).thenReturn(first, second);
+    var dataSource = new ConnectionLimitingDataSource(pool, 1);
+
+    var borrowed = dataSource.getConnection();
+    var waiting = CompletableFuture.supplyAsync(() -> {
+      try {
+        return dataSource.getConnection();
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    Thread.sleep(100);
+    assertThat(waiting).isNotDone();
+
+    // Closing twice returns the permit once
+    borrowed.close();
+    borrowed.close();
+    verify(first, times(2)).close();
+    var next = waiting.get(5, TimeUnit.SECONDS);
+    assertThat(next).isNotEqualTo(borrowed);
+    assertThat(dataSource.availablePermits()).isZero();
+
+    next.close();
+    verify(second).close();
+    assertThat(dataSource.availablePermits()).isOne();
+  }
+}
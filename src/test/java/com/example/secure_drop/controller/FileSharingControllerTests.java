@@ -0,0 +1,370 @@
+package com.example.secure_drop.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.DeflaterOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.servlet.autoconfigure.MultipartProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.unit.DataSize;
+
+import com.example.secure_drop.config.AccessCodeProperties;
+import com.example.secure_drop.config.EncryptionProperties;
+import com.example.secure_drop.dto.FileDownloadWrapper;
+import com.example.secure_drop.model.StoragePolicy;
+import com.example.secure_drop.service.accesscode.AccessCodeFormat;
+import com.example.secure_drop.service.encryption.ContentCodec;
+import com.example.secure_drop.service.encryption.EncryptionServiceImpl;
+import com.example.secure_drop.service.filesharing.FileSharingService;
+import com.example.secure_drop.service.filesharing.model.CompletionTrackingResource;
+import com.example.secure_drop.service.filestorage.model.DecryptingFileResource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Drives {@link FileSharingController#downloadFile} over a real segmented ciphertext, checking
+ * Range and If-Range handling and that only a full body purges a consumed file.
+ */
+class FileSharingControllerTests {
+  private static final String KEY = "0123456789abcdef0123456789abcdef";
+  private static final String ACCESS_CODE = "K7M2-QX4H";
+  private static final String SESSION = "2f1d6f0e-6a53-4f43-9d59-0d6c5a8b6a11";
+  private static final int SEGMENT = 1024;
+
+  @TempDir
+  Path dir;
+
+  private EncryptionServiceImpl encryptionService;
+  private FileSharingService fileSharingService;
+  private MockMvc mockMvc;
+  private byte[] content;
+  private Path stored;
+  private final AtomicInteger purges = new AtomicInteger();
+  private final AtomicInteger consumed = new AtomicInteger();
+
+  @BeforeEach
+  void setUp() throws Exception {
+    var encryptionProperties = new EncryptionProperties();
+    encryptionProperties.setAlgorithm("AES/GCM/NoPadding");
+    encryptionProperties.setSecretKey(KEY);
+    encryptionProperties.setSegmentSize(DataSize.ofBytes(SEGMENT));
+    encryptionProperties.setParallelism(1);
+    encryptionService = new EncryptionServiceImpl(encryptionProperties, new SimpleMeterRegistry());
+
+    var text = new StringBuilder();
+    for (int line = 0; text.length() < 5 * SEGMENT + 300; line++) {
+      text.append("line ").append(line).append('\n');
+    }
+    content = text.toString().getBytes(StandardCharsets.US_ASCII);
+    stored = dir.resolve("stored");
+    try (var channel = FileChannel.open(stored, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      encryptionService.encrypt(new ByteArrayInputStream(content), channel, KEY);
+    }
+
+    fileSharingService = mock(FileSharingService.class);
+    when(fileSharingService.getFile(eq(ACCESS_CODE), any(), any())).thenAnswer(invocation -> open(invocation, download()));
+
+    mockMvc = MockMvcBuilders
+        .standaloneSetup(new FileSharingController(fileSharingService,
+            new StaticListableBeanFactory().getBeanProvider(MultipartProperties.class),
+            new AccessCodeFormat(new AccessCodeProperties())))
+        .build();
+  }
+
+  @AfterEach
+  void tearDown() {
+    encryptionService.shutdown();
+  }
+
+  @Test
+  void fullBodyPurgesConsumedFile() throws Exception {
+    mockMvc.perform(get("/api/files/download/{code}", ACCESS_CODE))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"" + SESSION + "\""))
+        .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, content.length))
+        .andExpect(content().bytes(content));
+
+    assertThat(purges).hasValue(1);
+  }
+
+  @Test
+  void leadingRangeDoesNotPurge() throws Exception {
+    mockMvc.perform(get("/api/files/download/{code}", ACCESS_CODE).header(HttpHeaders.RANGE, "bytes=0-99"))
+        .andExpect(status().isPartialContent())
+        .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 0-99/" + content.length))
+        .andExpect(content().bytes(Arrays.copyOfRange(content, 0, 100)));
+
+    assertThat(purges).hasValue(0);
+  }
+
+  @Test
+  void singleRangeSpansSegments() throws Exception {
+    mockMvc.perform(get("/api/files/download/{code}", ACCESS_CODE)
+        .header(HttpHeaders.RANGE, "bytes=1000-3100"))
+        .andExpect(status().isPartialContent())
+        .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 1000-3100/" + content.length))
+        .andExpect(content().bytes(Arrays.copyOfRange(content, 1000, 3101)));
+  }
+
+  @Test
+  void suffixRangeReturnsTheTail() throws Exception {
+    mockMvc.perform(get("/api/files/download/{code}", ACCESS_CODE).header(HttpHeaders.RANGE, "bytes=-50"))
+        .andExpect(status().isPartialContent())
+        .andExpect(content().bytes(Arrays.copyOfRange(content, content.length - 50, content.length)));
+
+    assertThat(purges).hasValue(0);
+  }
+
+  @Test
+  void multipleRangesReturnByteranges() throws Exception {
+    var result = mockMvc.perform(get("/api/files/download/{code}", ACCESS_CODE)
+        .header(HttpHeaders.RANGE, "bytes=0-9,2048-2100"))
+        .andExpect(status().isPartialContent())
+        .andExpect(header().string(HttpHeaders.CONTENT_TYPE, startsWith("multipart/byteranges")))
+        .andReturn();
+
+    var body = result.getResponse().getContentAsString(StandardCharsets.US_ASCII);
+    assertThat(body)
+        .contains("Content-Range: bytes 0-9/" + content.length)
+        .contains(new String(content, 0, 10, StandardCharsets.US_ASCII))
+        .contains("Content-Range: bytes 2048-2100/" + content.length)
+        .contains(new String(content, 2048, 53, StandardCharsets.US_ASCII));
+    assertThat(purges).hasValue(0);
+  }
+
+  @Test
+  void matchingIfRangeResumesWithRange() throws Exception {
+    mockMvc.perform(get("/api/files/download/{code}", ACCESS_CODE)
+        .header(HttpHeaders.RANGE, "bytes=100-199")
+        .header(HttpHeaders.IF_RANGE, "\"" + SESSION + "\""))
+        .andExpect(status().isPartialContent())
+        .andExpect(content().bytes(Arrays.copyOfRange(content, 100, 200)));
+
+    verify(fileSharingService).getFile(eq(ACCESS_CODE), eq(SESSION), any());
+  }
+
+  @Test
+  void staleIfRangeGetsFullBody() throws Exception {
+    mockMvc.perform(get("/api/files/download/{code}", ACCESS_CODE)
+        .header(HttpHeaders.RANGE, "bytes=100-199")
+        .header(HttpHeaders.IF_RANGE, "\"expired-session\""))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"" + SESSION + "\""))
+        .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+        .andExpect(content().bytes(content));
+
+    assertThat(purges).hasValue(1);
+  }
+
+  @Test
+  void dateIfRangeNeverMatches() throws Exception {
+    mockMvc.perform(get("/api/files/download/{code}", ACCESS_CODE)
+        .header(HttpHeaders.RANGE, "bytes=100-199")
+        .header(HttpHeaders.IF_RANGE, "Wed, 21 Oct 2015 07:28:00 GMT"))
+        .andExpect(status().isOk())
+        .andExpect(content().bytes(content));
+
+    verify(fileSharingService).getFile(eq(ACCESS_CODE), isNull(), any());
+  }
+
+  @Test
+  void malformedRangeIsIgnored() throws Exception {
+    mockMvc.perform(get("/api/files/download/{code}", ACCESS_CODE).header(HttpHeaders.RANGE, "bytes=oops"))
+        .andExpect(status().isOk())
+        .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+        .andExpect(content().bytes(content));
+
+    verify(fileSharingService).getFile(eq(ACCESS_CODE), isNull(), any());
+  }
+
+  @Test
+  void unsatisfiableRangeGets416() throws Exception {
+    mockMvc.perform(get("/api/files/download/{code}", ACCESS_CODE)
+        .header(HttpHeaders.RANGE, "bytes=" + content.length + "-"))
+        .andExpect(status().isRequestedRangeNotSatisfiable())
+        .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + content.length))
+        .andExpect(header().doesNotExist(HttpHeaders.ETAG))
+        .andExpect(content().bytes(new byte[0]));
+
+    assertThat(purges).hasValue(0);
+    assertThat(consumed).hasValue(0);
+  }
+
+  @Test
+  void unsatisfiableRangeOfAResumedSessionGets416() throws Exception {
+    mockMvc.perform(get("/api/files/download/{code}", ACCESS_CODE)
+        .header(HttpHeaders.RANGE, "bytes=" + content.length + "-")
+        .header(HttpHeaders.IF_RANGE, "\"" + SESSION + "\""))
+        .andExpect(status().isRequestedRangeNotSatisfiable())
+        .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + content.length))
+        .andExpect(header().string(HttpHeaders.ETAG, "\"" + SESSION + "\""));
+
+    assertThat(consumed).hasValue(0);
+  }
+
+  @Test
+  void rangeAloneOpensADownloadSession() throws Exception {
+    mockMvc.perform(get("/api/files/download/{code}", ACCESS_CODE).header(HttpHeaders.RANGE, "bytes=0-99"))
+        .andExpect(status().isPartialContent())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"" + SESSION + "\""))
+        .andExpect(content().bytes(Arrays.copyOfRange(content, 0, 100)));
+    assertThat(consumed).hasValue(1);
+
+    // The rest, resumed under the entity tag the first range came with
+    mockMvc.perform(get("/api/files/download/{code}", ACCESS_CODE)
+        .header(HttpHeaders.RANGE, "bytes=100-")
+        .header(HttpHeaders.IF_RANGE, "\"" + SESSION + "\""))
+        .andExpect(status().isPartialContent())
+        .andExpect(content().bytes(Arrays.copyOfRange(content, 100, content.length)));
+    assertThat(consumed).hasValue(1);
+  }
+
+  @Test
+  void rangeOfADecodedBodyIsNotChecked() throws Exception {
+    storeDeflated();
+
+    // Ranges are not offered on the decoded body, so one past its end still gets all of it
+    mockMvc.perform(get("/api/files/download/{code}", ACCESS_CODE)
+        .header(HttpHeaders.ACCEPT_ENCODING, "identity")
+        .header(HttpHeaders.RANGE, "bytes=" + 10 * content.length + "-"))
+        .andExpect(status().isOk())
+        .andExpect(content().bytes(content));
+    assertThat(consumed).hasValue(1);
+  }
+
+  @Test
+  void encodedBodyHasItsOwnEntityTag() throws Exception {
+    var encoded = storeDeflated();
+
+    mockMvc.perform(get("/api/files/download/{code}", ACCESS_CODE).header(HttpHeaders.ACCEPT_ENCODING, "deflate"))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "deflate"))
+        .andExpect(header().string(HttpHeaders.ETAG, "\"" + SESSION + "-deflate\""))
+        .andExpect(content().bytes(encoded));
+  }
+
+  @Test
+  void decodedBodyKeepsTheSessionEntityTag() throws Exception {
+    storeDeflated();
+
+    mockMvc.perform(get("/api/files/download/{code}", ACCESS_CODE).header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+        .andExpect(status().isOk())
+        .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+        .andExpect(header().string(HttpHeaders.ETAG, "\"" + SESSION + "\""))
+        .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "none"))
+        .andExpect(content().bytes(content));
+  }
+
+  @Test
+  void encodedRangeResumesWithEncodedEntityTag() throws Exception {
+    var encoded = storeDeflated();
+
+    mockMvc.perform(get("/api/files/download/{code}", ACCESS_CODE)
+        .header(HttpHeaders.ACCEPT_ENCODING, "deflate")
+        .header(HttpHeaders.RANGE, "bytes=10-59")
+        .header(HttpHeaders.IF_RANGE, "\"" + SESSION + "-deflate\""))
+        .andExpect(status().isPartialContent())
+        .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 10-59/" + encoded.length))
+        .andExpect(content().bytes(Arrays.copyOfRange(encoded, 10, 60)));
+
+    verify(fileSharingService).getFile(eq(ACCESS_CODE), eq(SESSION), any());
+  }
+
+  @Test
+  void encodedRangeWithDecodedEntityTagGetsFullBody() throws Exception {
+    var encoded = storeDeflated();
+
+    // A range of the decoded bytes cannot be taken from the encoded ones
+    mockMvc.perform(get("/api/files/download/{code}", ACCESS_CODE)
+        .header(HttpHeaders.ACCEPT_ENCODING, "deflate")
+        .header(HttpHeaders.RANGE, "bytes=10-59")
+        .header(HttpHeaders.IF_RANGE, "\"" + SESSION + "\""))
+        .andExpect(status().isOk())
+        .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+        .andExpect(header().string(HttpHeaders.ETAG, "\"" + SESSION + "-deflate\""))
+        .andExpect(content().bytes(encoded));
+
+    verify(fileSharingService).getFile(eq(ACCESS_CODE), eq(SESSION), any());
+  }
+
+  @Test
+  void describesAccessCodeFormat() throws Exception {
+    mockMvc.perform(get("/api/files/access-code-format"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.symbols").value(8))
+        .andExpect(jsonPath("$.groupSize").value(4))
+        .andExpect(jsonPath("$.codeLength").value(9))
+        .andExpect(jsonPath("$.alphabet").value("0123456789ABCDEFGHJKMNPQRSTVWXYZ"));
+  }
+
+  /**
+   * As the service does: resuming {@link #SESSION} spends nothing, any other request passes the
+   * check and then consumes a download.
+   */
+  private FileDownloadWrapper open(InvocationOnMock invocation, FileDownloadWrapper file) {
+    if (!SESSION.equals(invocation.getArgument(1))) {
+      invocation.<Consumer<FileDownloadWrapper>>getArgument(2).accept(file);
+      consumed.incrementAndGet();
+    }
+    return file;
+  }
+
+  private FileDownloadWrapper download() throws Exception {
+    return download(stored, content.length, ContentCodec.NONE);
+  }
+
+  private FileDownloadWrapper download(Path file, long length, ContentCodec codec) throws Exception {
+    var resource = new DecryptingFileResource(file.toString(), () -> FileChannel.open(file),
+        length, codec, encryptionService, KEY, new SimpleMeterRegistry().counter("read"));
+    return new FileDownloadWrapper(new CompletionTrackingResource(resource, purges::incrementAndGet),
+        "text/plain", "notes.txt", SESSION, StoragePolicy.SERVER_ENCRYPTED, codec.contentEncoding());
+  }
+
+  /**
+   * Stores the content deflated, as compression does, and serves it from then on; returns the
+   * encoded bytes.
+   */
+  private byte[] storeDeflated() throws Exception {
+    var encoded = new ByteArrayOutputStream();
+    try (var deflater = new DeflaterOutputStream(encoded)) {
+      deflater.write(content);
+    }
+    var file = dir.resolve("deflated");
+    try (var channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      encryptionService.encrypt(new ByteArrayInputStream(encoded.toByteArray()), channel, KEY);
+    }
+    when(fileSharingService.getFile(eq(ACCESS_CODE), any(), any()))
+        .thenAnswer(invocation -> open(invocation, download(file, encoded.size(), ContentCodec.DEFLATE)));
+    return encoded.toByteArray();
+  }
+}
@@ -0,0 +1,163 @@
+package com.example.secure_drop.repo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * Checks that the migrated schema gives the hot {@link FileMetadataRepo} queries index plans
+ * on a table shaped like production: mostly live rows, a thin slice of expired and consumed ones.
+ */
+class FileMetadataQueryPlanTests {
+  private static final String NOW = "TIMESTAMP '2026-01-01 12:00:00'";
+
+  private static EmbeddedPostgres postgres;
+  private static DataSource dataSource;
+
+  @BeforeAll
+  static void setUp() throws IOException, SQLException {
+    postgres = EmbeddedPostgres.start();
+    dataSource = postgres.getPostgresDatabase();
+    Flyway.configure().dataSource(dataSource).load().migrate();
+
+    try (var connection = dataSource.getConnection(); var statement = connection.createStatement()) {
+      // 100k rows: 200 expired, 100 consumed, the rest live; a backlog below one cleanup batch
+      statement.execute("""
+          INSERT INTO file_metadata (file_name, file_type, storage_path, access_code, upload_date,
+                                     expiry_date, max_downloads, download_session_expiry)
+          SELECT 'file-' || n, 'application/octet-stream', '/uploads/' || n, 'CODE-' || n,
+                 %1$s - INTERVAL '1 hour',
+                 CASE WHEN n %% 500 = 0 THEN %1$s - INTERVAL '1 minute' ELSE %1$s + INTERVAL '1 day' END,
+                 CASE WHEN n %% 1000 = 1 THEN 0 ELSE 1 END,
+                 CASE WHEN n %% 1000 = 1 THEN %1$s - INTERVAL '1 minute' END
+          FROM generate_series(1, 100000) AS n
+          """.formatted(NOW));
+      statement.execute("VACUUM ANALYZE file_metadata");
+    }
+  }
+
+  @AfterAll
+  static void tearDown() throws IOException {
+    postgres.close();
+  }
+
+  @Test
+  void accessCodeLookupUsesUniqueIndex() throws SQLException {
+    var plan = explain("SELECT * FROM file_metadata WHERE access_code = 'CODE-4242'");
+
+    assertThat(plan).contains("Index Scan using file_metadata_access_code_idx");
+  }
+
+  @Test
+  void infoLookupIsIndexOnly() throws SQLException {
+    var plan = explain("""
+        SELECT file_name, expiry_date, max_downloads FROM file_metadata WHERE access_code = 'CODE-4242'
+        """);
+
+    assertThat(plan).contains("Index Only Scan using file_metadata_access_code_idx");
+  }
+
+  @Test
+  void consumedOrExpiredCountCombinesExpiryAndPartialIndexes() throws SQLException {
+    var plan = explain("""
+        SELECT count(*) FROM file_metadata
+        WHERE expiry_date < %1$s
+           OR (max_downloads <= 0 AND (download_session_expiry IS NULL OR download_session_expiry < %1$s))
+        """.formatted(NOW));
+
+    assertThat(plan)
+        .contains("file_metadata_expiry_date_idx")
+        .contains("file_metadata_consumed_idx")
+        .doesNotContain("Seq Scan");
+  }
+
+  @Test
+  void consumedOrExpiredBatchUsesExpiryAndPartialIndexes() throws SQLException {
+    var plan = explain("""
+        SELECT id, storage_path, access_code FROM file_metadata
+        WHERE id > 0
+          AND (expiry_date < %1$s
+           OR (max_downloads <= 0 AND (download_session_expiry IS NULL OR download_session_expiry < %1$s)))
+        ORDER BY id
+        LIMIT 500
+        """.formatted(NOW));
+
+    assertThat(plan)
+        .contains("file_metadata_expiry_date_idx")
+        .contains("file_metadata_consumed_idx")
+        .doesNotContain("Seq Scan");
+  }
+
+  @Test
+  void storagePathUpdateUsesIndex() throws SQLException {
+    var plan = explain("""
+        UPDATE file_metadata SET storage_path = '/uploads/42/4242' WHERE storage_path = '/uploads/4242'
+        """);
+
+    assertThat(plan).contains("file_metadata_storage_path_idx");
+  }
+
+  @Test
+  void migratesSchemaCreatedByHibernate() throws SQLException {
+    try (var connection = dataSource.getConnection(); var statement = connection.createStatement()) {
+      statement.execute("CREATE DATABASE legacy");
+    }
+    var legacy = postgres.getDatabase("postgres", "legacy");
+    try (var connection = legacy.getConnection(); var statement = connection.createStatement()) {
+      statement.execute("""
+          CREATE TABLE file_metadata (
+              id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+              file_name VARCHAR(255) NOT NULL,
+              file_type VARCHAR(255) NOT NULL,
+              storage_path VARCHAR(255) NOT NULL,
+              access_code VARCHAR(255) NOT NULL CONSTRAINT ukhibernate123 UNIQUE,
+              upload_date TIMESTAMP(6) NOT NULL,
+              expiry_date TIMESTAMP(6) NOT NULL,
+              max_downloads INTEGER NOT NULL)
+          """);
+    }
+
+    Flyway.configure().dataSource(legacy).baselineOnMigrate(true).baselineVersion("0").load().migrate();
+
+    try (var connection = legacy.getConnection()) {
+      assertThat(count(connection, "SELECT count(*) FROM pg_constraint WHERE conname = 'ukhibernate123'"))
+          .isZero();
+      assertThat(count(connection, "SELECT count(*) FROM pg_indexes WHERE indexname LIKE 'file_metadata_%_idx'"))
+          .isEqualTo(4);
+      assertThat(count(connection, """
+          SELECT count(*) FROM information_schema.columns
+          WHERE table_name = 'file_metadata' AND column_name LIKE 'download_session%'
+          """)).isEqualTo(2);
+    }
+  }
+
+  private static String explain(String query) throws SQLException {
+    try (var connection = dataSource.getConnection();
+        var statement = connection.createStatement();
+        var resultSet = statement.executeQuery("EXPLAIN " + query)) {
+      var plan = new StringBuilder();
+      while (resultSet.next()) {
+        plan.append(resultSet.getString(1)).append('\n');
+      }
+      return plan.toString();
+    }
+  }
+
+  private static long count(Connection connection, String query) throws SQLException {
+    try (var statement = connection.createStatement(); var resultSet = statement.executeQuery(query)) {
+      resultSet.next();
+      return resultSet.getLong(1);
+    }
+  }
+}
@@ -0,0 +1,213 @@
+package com.example.secure_drop.service.accesscode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.secure_drop.config.AccessCodeProperties;
+
+/**
+ * Checks the shape of generated codes, the Luhn mod N check symbol and how typed codes are
+ * normalized, for the default format and a few others.
+ */
+class AccessCodeFormatTests {
+  private static final String ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+
+  @Test
+  void defaultCodesAreTwoGroupsOfFour() {
+    var format = new AccessCodeFormat(new AccessCodeProperties());
+    var random = new SplittableRandom(1);
+
+    for (int i = 0; i < 1000; i++) {
+      var code = generate(format, random);
+
+      assertThat(code).matches("[0-9A-HJKMNP-TV-Z]{4}-[0-9A-HJKMNP-TV-Z]{4}");
+      assertThat(format.value(code)).isNotNegative();
+    }
+    assertThat(format.codeLength()).isEqualTo(9);
+    assertThat(format.symbols()).isEqualTo(8);
+    // The check symbol adds no codes
+    assertThat(format.codeSpace()).isEqualTo(1L << 35);
+  }
+
+  @Test
+  void groupsLongerCodes() {
+    var format = format(8, 4, true);
+
+    var code = generate(format, new SplittableRandom(2));
+
+    assertThat(code).hasSize(9).matches("[0-9A-Z]{4}-[0-9A-Z]{4}");
+    assertThat(format.codeLength()).isEqualTo(9);
+    assertThat(format.value(code)).isNotNegative();
+  }
+
+  @Test
+  void leavesUngroupedCodesWithoutSeparators() {
+    var format = format(5, 0, false);
+
+    var code = generate(format, new SplittableRandom(3));
+
+    assertThat(code).hasSize(5).doesNotContain("-");
+    assertThat(format.codeSpace()).isEqualTo(1L << 25);
+  }
+
+  @Test
+  void rejectsMisplacedSeparatorsAndForeignSymbols() {
+    var format = new AccessCodeFormat(new AccessCodeProperties());
+    var code = craft(format, 20, 7, 0, 31, 5, 12, 9);
+
+    assertThat(format.value(code)).isNotNegative();
+    assertThat(format.value(code.replace("-", ""))).isNegative();
+    assertThat(format.value(code.substring(0, 2) + "-" + code.substring(2, 4) + code.substring(5))).isNegative();
+    assertThat(format.value(code.substring(0, 8) + "U")).isNegative();
+    assertThat(format.value(code.toLowerCase())).isNegative();
+    assertThat(format.value(null)).isNegative();
+  }
+
+  @Test
+  void checksumCatchesEverySingleSymbolError() {
+    var format = new AccessCodeFormat(new AccessCodeProperties());
+    var random = new SplittableRandom(4);
+
+    for (int i = 0; i < 200; i++) {
+      var code = generate(format, random).toCharArray();
+      for (int position : symbolPositions(code)) {
+        char original = code[position];
+        for (char replacement : ALPHABET.toCharArray()) {
+          if (replacement == original) {
+            continue;
+          }
+          code[position] = replacement;
+          assertThat(format.value(new String(code))).as(new String(code)).isNegative();
+        }
+        code[position] = original;
+      }
+    }
+  }
+
+  @Test
+  void checksumCatchesAdjacentTranspositionsExceptFirstAndLastSymbol() {
+    var format = format(8, 4, true);
+    var undetected = new ArrayList<String>();
+    int last = ALPHABET.length() - 1;
+
+    // Every pair of symbols at every pair of neighbouring payload positions, across the separator too
+    for (int position = 0; position < 6; position++) {
+      for (int a = 0; a <= last; a++) {
+        for (int b = 0; b <= last; b++) {
+          var payload = new int[7];
+          payload[position] = a;
+          payload[position + 1] = b;
+          if (a != b && format.value(swap(craft(format, payload), position)) >= 0) {
+            undetected.add(ALPHABET.charAt(a) + "" + ALPHABET.charAt(b));
+          }
+        }
+      }
+    }
+    // The last payload symbol and the check symbol it determines
+    for (int a = 0; a <= last; a++) {
+      var code = craft(format, 0, 0, 0, 0, 0, 0, a);
+      if (code.charAt(7) != code.charAt(8) && format.value(swap(code, 6)) >= 0) {
+        undetected.add(code.substring(7));
+      }
+    }
+
+    // The one blind spot of Luhn mod N, as of Luhn's 09/90
+    assertThat(undetected).isNotEmpty().allMatch(pair -> pair.equals("0Z") || pair.equals("Z0"));
+  }
+
+  @Test
+  void normalizesTypedCodes() {
+    var format = new AccessCodeFormat(new AccessCodeProperties());
+    var code = craft(format, 20, 7, 0, 31, 5, 12, 9);
+
+    assertThat(format.normalize(code)).isEqualTo(code);
+    assertThat(format.normalize(code.toLowerCase())).isEqualTo(code);
+    assertThat(format.normalize(code.replace("-", ""))).isEqualTo(code);
+    assertThat(format.normalize(" " + code.substring(0, 2) + " - " + code.substring(2).toLowerCase() + "\n"))
+        .isEqualTo(code);
+    assertThat(format.normalize(code.substring(0, 5) + "-" + code.substring(5))).isEqualTo(code);
+  }
+
+  @Test
+  void leavesOtherInputAlone() {
+    var format = new AccessCodeFormat(new AccessCodeProperties());
+
+    // Codes of the former letters-and-digits format may hold I, L, O or U, which must not be remapped
+    assertThat(format.normalize("OIL-123")).isEqualTo("OIL-123");
+    assertThat(format.normalize("k7m2q")).isEqualTo("k7m2q");
+    assertThat(format.normalize("k7m2qx9")).isEqualTo("k7m2qx9");
+    assertThat(format.normalize(null)).isNull();
+  }
+
+  @Test
+  void groupsNormalizedCodesOfOtherFormats() {
+    assertThat(format(8, 4, true).normalize("abcd efgh")).isEqualTo("ABCD-EFGH");
+    assertThat(format(8, 0, true).normalize("abcd-efgh")).isEqualTo("ABCDEFGH");
+  }
+
+  @Test
+  void rejectsUnusableAlphabets() {
+    var properties = new AccessCodeProperties();
+
+    properties.setAlphabet("ABCA");
+    assertThatThrownBy(() -> new AccessCodeFormat(properties)).isInstanceOf(IllegalArgumentException.class);
+    properties.setAlphabet("AB-C");
+    assertThatThrownBy(() -> new AccessCodeFormat(properties)).isInstanceOf(IllegalArgumentException.class);
+    properties.setAlphabet("A");
+    assertThatThrownBy(() -> new AccessCodeFormat(properties)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static AccessCodeFormat format(int length, int groupSize, boolean checksum) {
+    var properties = new AccessCodeProperties();
+    properties.setLength(length);
+    properties.setGroupSize(groupSize);
+    properties.setChecksum(checksum);
+    return new AccessCodeFormat(properties);
+  }
+
+  private static String generate(AccessCodeFormat format, SplittableRandom random) {
+    var code = new char[format.codeLength()];
+    format.write(code, () -> (byte) random.nextInt());
+    return new String(code);
+  }
+
+  /**
+   * The code with the given payload symbol indexes and its check symbol.
+   */
+  private static String craft(AccessCodeFormat format, int... payload) {
+    var code = new char[format.codeLength()];
+    int[] next = { 0 };
+    format.write(code, () -> (byte) payload[next[0]++]);
+    return new String(code);
+  }
+
+  /**
+   * Swaps the symbol at {@code symbol} with the one after it, skipping a separator between them.
+   */
+  private static String swap(String code, int symbol) {
+    var chars = code.toCharArray();
+    var positions = symbolPositions(chars);
+    int first = positions.get(symbol);
+    int second = positions.get(symbol + 1);
+    char c = chars[first];
+    chars[first] = chars[second];
+    chars[second] = c;
+    return new String(chars);
+  }
+
+  private static List<Integer> symbolPositions(char[] code) {
+    var positions = new ArrayList<Integer>();
+    for (int i = 0; i < code.length; i++) {
+      if (code[i] != '-') {
+        positions.add(i);
+      }
+    }
+    return positions;
+  }
+}
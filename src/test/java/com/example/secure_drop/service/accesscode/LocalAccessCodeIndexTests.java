@@ -0,0 +1,158 @@
+package com.example.secure_drop.service.accesscode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.secure_drop.config.AccessCodeProperties;
+import com.example.secure_drop.repo.FileMetadataRepo;
+
+/**
+ * Reserve and release on the access code bitset, in its exact mode and in its hashed mode where
+ * codes share bits.
+ */
+class LocalAccessCodeIndexTests {
+  private final FileMetadataRepo fileMetadataRepo = mock(FileMetadataRepo.class);
+  private final SplittableRandom random = new SplittableRandom(7);
+
+  @Test
+  void reservesEachCodeOnceUntilReleased() {
+    var format = new AccessCodeFormat(new AccessCodeProperties());
+    var index = index(format, new AccessCodeProperties());
+    var code = generate(format);
+
+    assertThat(index.contains(code)).isFalse();
+    assertThat(index.reserve(code)).isTrue();
+    assertThat(index.reserve(code)).isFalse();
+    assertThat(index.contains(code)).isTrue();
+    assertThat(index.size()).isEqualTo(1);
+
+    index.release(code);
+    index.release(code);
+
+    assertThat(index.contains(code)).isFalse();
+    assertThat(index.size()).isZero();
+    assertThat(index.reserve(code)).isTrue();
+  }
+
+  @Test
+  void keepsNeighbouringCodesApartInExactMode() {
+    var format = new AccessCodeFormat(new AccessCodeProperties());
+    var index = index(format, new AccessCodeProperties());
+    var codes = new ArrayList<String>();
+    for (int i = 0; i < 5000; i++) {
+      var code = generate(format);
+      if (!codes.contains(code)) {
+        codes.add(code);
+      }
+    }
+
+    codes.forEach(code -> assertThat(index.reserve(code)).as(code).isTrue());
+    index.release(codes.get(0));
+
+    assertThat(index.size()).isEqualTo(codes.size() - 1);
+    assertThat(codes.subList(1, codes.size())).allMatch(index::contains);
+  }
+
+  @Test
+  void ignoresCodesOfOtherFormats() {
+    var format = new AccessCodeFormat(new AccessCodeProperties());
+    var index = index(format, new AccessCodeProperties());
+
+    assertThat(index.reserve("ABC-12")).isTrue();
+    assertThat(index.reserve("ABC-12")).isTrue();
+    assertThat(index.contains("ABC-12")).isFalse();
+    index.release("ABC-12");
+    assertThat(index.size()).isZero();
+  }
+
+  @Test
+  void loadsLiveCodes() {
+    var format = new AccessCodeFormat(new AccessCodeProperties());
+    var index = index(format, new AccessCodeProperties());
+    var live = generate(format);
+    when(fileMetadataRepo.streamAllAccessCodes()).thenReturn(Stream.of(live, "LEGACY-1"));
+
+    index.load();
+
+    assertThat(index.contains(live)).isTrue();
+    assertThat(index.size()).isEqualTo(1);
+  }
+
+  @Test
+  void concurrentReservationsOfOneCodeHaveOneWinner() throws Exception {
+    var format = new AccessCodeFormat(new AccessCodeProperties());
+    var index = index(format, new AccessCodeProperties());
+    int threads = 8;
+
+    try (var executor = Executors.newFixedThreadPool(threads)) {
+      for (int round = 0; round < 200; round++) {
+        var code = generate(format);
+        var start = new CountDownLatch(1);
+        var results = new ArrayList<Future<Boolean>>();
+        for (int i = 0; i < threads; i++) {
+          results.add(executor.submit(() -> {
+            start.await();
+            return index.reserve(code);
+          }));
+        }
+        start.countDown();
+
+        int winners = 0;
+        for (var result : results) {
+          winners += result.get() ? 1 : 0;
+        }
+        assertThat(winners).as(code).isEqualTo(1);
+      }
+    }
+  }
+
+  @Test
+  void hashedModeSharesBitsBetweenCodes() {
+    var properties = new AccessCodeProperties();
+    properties.setIndexBits(64);
+    var format = new AccessCodeFormat(properties);
+    var index = index(format, properties);
+    var first = generate(format);
+    index.reserve(first);
+    var second = collidingWith(format, index, first);
+
+    // A false positive: the second code is free but looks taken, which costs the generator a retry
+    assertThat(index.reserve(second)).isFalse();
+    assertThat(index.size()).isEqualTo(1);
+
+    // Releasing either clears the shared bit, so the other, though still live in the database, now
+    // looks free; a save that draws it again is rejected by the unique constraint and retried
+    index.release(first);
+    assertThat(index.contains(second)).isFalse();
+    assertThat(index.size()).isZero();
+  }
+
+  private LocalAccessCodeIndex index(AccessCodeFormat format, AccessCodeProperties properties) {
+    return new LocalAccessCodeIndex(fileMetadataRepo, format, properties);
+  }
+
+  private String generate(AccessCodeFormat format) {
+    var code = new char[format.codeLength()];
+    format.write(code, () -> (byte) random.nextInt());
+    return new String(code);
+  }
+
+  private String collidingWith(AccessCodeFormat format, LocalAccessCodeIndex index, String code) {
+    while (true) {
+      var candidate = generate(format);
+      if (!candidate.equals(code) && index.contains(candidate)) {
+        return candidate;
+      }
+    }
+  }
+}
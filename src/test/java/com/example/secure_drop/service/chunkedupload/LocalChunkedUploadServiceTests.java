@@ -0,0 +1,355 @@
+package com.example.secure_drop.service.chunkedupload;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.util.unit.DataSize;
+
+import com.example.secure_drop.config.ChunkedUploadProperties;
+import com.example.secure_drop.config.CompressionProperties;
+import com.example.secure_drop.config.EncryptionProperties;
+import com.example.secure_drop.config.FileStorageProperties;
+import com.example.secure_drop.dto.FileUploadResponse;
+import com.example.secure_drop.exception.UploadConflictException;
+import com.example.secure_drop.exception.UploadSessionNotFoundException;
+import com.example.secure_drop.model.StoragePolicy;
+import com.example.secure_drop.model.UploadSession;
+import com.example.secure_drop.repo.FileMetadataRepo;
+import com.example.secure_drop.repo.StoredBlobRepo;
+import com.example.secure_drop.repo.UploadSessionRepo;
+import com.example.secure_drop.service.encryption.EncryptionServiceImpl;
+import com.example.secure_drop.service.encryption.SegmentHeader;
+import com.example.secure_drop.service.filesharing.FileSharingService;
+import com.example.secure_drop.service.filestorage.CompressionPolicy;
+import com.example.secure_drop.service.filestorage.FileSync;
+import com.example.secure_drop.service.filestorage.LocalFileStorageService;
+import com.example.secure_drop.service.filestorage.StorageUris;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Chunked uploads into real local storage, with the session table held in memory: resuming
+ * after an interrupted chunk, only with the content already written, and completing so that a
+ * failed publish loses nothing.
+ */
+class LocalChunkedUploadServiceTests {
+  private static final int SEGMENT = 1024;
+  private static final Instant NOW = Instant.parse("2026-03-01T12:00:00Z");
+
+  @TempDir
+  Path dir;
+
+  private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+  private final FileMetadataRepo fileMetadataRepo = mock(FileMetadataRepo.class);
+  private final FileSharingService fileSharingService = mock(FileSharingService.class);
+  private final Clock clock = Clock.fixed(NOW, ZoneOffset.UTC);
+  private EncryptionServiceImpl encryptionService;
+  private FileSync fileSync;
+  private LocalFileStorageService storage;
+  private LocalChunkedUploadService service;
+  private byte[] content;
+
+  @BeforeEach
+  void setUp() {
+    var registry = new SimpleMeterRegistry();
+    var encryptionProperties = new EncryptionProperties();
+    encryptionProperties.setAlgorithm("AES/GCM/NoPadding");
+    encryptionProperties.setSecretKey("0123456789abcdef0123456789abcdef");
+    encryptionProperties.setSegmentSize(DataSize.ofBytes(SEGMENT));
+    encryptionProperties.setParallelism(1);
+    encryptionService = new EncryptionServiceImpl(encryptionProperties, registry);
+
+    var fileStorageProperties = new FileStorageProperties();
+    fileStorageProperties.setUploadDir(dir.toString());
+    fileStorageProperties.setFsync(FileStorageProperties.FsyncPolicy.NONE);
+    fileSync = new FileSync(fileStorageProperties, registry);
+    storage = new LocalFileStorageService(fileStorageProperties, encryptionProperties, encryptionService,
+        mock(StoredBlobRepo.class), new CompressionPolicy(new CompressionProperties()), fileSync, registry);
+    storage.init();
+
+    var chunkedUploadProperties = new ChunkedUploadProperties();
+    chunkedUploadProperties.setChunkSize(DataSize.ofBytes(4 * SEGMENT));
+    service = new LocalChunkedUploadService(uploadSessionRepo(), fileMetadataRepo, storage, fileSharingService,
+        chunkedUploadProperties, clock);
+
+    content = new byte[10 * SEGMENT + 123];
+    new SplittableRandom(5).nextBytes(content);
+    when(fileSharingService.publishStoredFile(anyString(), anyString(), anyString()))
+        .thenReturn(new FileUploadResponse("K7M-2QX", "notes.bin", LocalDateTime.now(clock).plusDays(1),
+            "http://localhost/K7M-2QX", StoragePolicy.SERVER_ENCRYPTED));
+  }
+
+  @AfterEach
+  void tearDown() {
+    encryptionService.shutdown();
+    fileSync.shutdown();
+  }
+
+  @Test
+  void resumesAfterAnInterruptedChunk() throws Exception {
+    var upload = service.start("notes.bin", "application/octet-stream", content.length);
+    var id = upload.uploadId();
+    assertThat(upload.maxChunkSize()).isEqualTo(4 * SEGMENT);
+
+    writeChunk(id, 0, 4 * SEGMENT);
+    // The connection drops partway through the second chunk
+    assertThatThrownBy(() -> service.writeChunk(id, 4 * SEGMENT, 4 * SEGMENT,
+        droppingAfter(new ByteArrayInputStream(content, 4 * SEGMENT, 4 * SEGMENT), 2 * SEGMENT + 100)))
+        .hasRootCauseInstanceOf(IOException.class);
+    assertThat(service.status(id).receivedBytes()).isEqualTo(4 * SEGMENT);
+    // A chunk cut short is rejected without being recorded
+    assertThatThrownBy(() -> service.writeChunk(id, 4 * SEGMENT, 4 * SEGMENT,
+        new ByteArrayInputStream(content, 4 * SEGMENT, 4 * SEGMENT + 123)))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(service.status(id).receivedBytes()).isEqualTo(4 * SEGMENT);
+
+    // A retried first chunk whose response was lost is acknowledged without writing
+    assertThat(writeChunk(id, 0, 4 * SEGMENT)).isEqualTo(4 * SEGMENT);
+    assertThat(writeChunk(id, 4 * SEGMENT, 4 * SEGMENT)).isEqualTo(8 * SEGMENT);
+    assertThatThrownBy(() -> service.complete(id)).isInstanceOf(UploadConflictException.class);
+    assertThat(writeChunk(id, 8 * SEGMENT, content.length - 8 * SEGMENT)).isEqualTo(content.length);
+
+    var storageFile = sessions.get(id).getStorageFile();
+    var response = service.complete(id);
+
+    assertThat(response.accessCode()).isEqualTo("K7M-2QX");
+    verify(fileSharingService).publishStoredFile("notes.bin", "application/octet-stream", storageFile);
+    assertThat(sessions).isEmpty();
+    assertThat(read(storageFile)).isEqualTo(content);
+  }
+
+  @Test
+  void retriedChunkMustHoldWhatAnEarlierAttemptWrote() throws Exception {
+    var id = service.start("notes.bin", "application/octet-stream", content.length).uploadId();
+    writeChunk(id, 0, 4 * SEGMENT);
+    var file = StorageUris.toPath(sessions.get(id).getStorageFile());
+    // The second chunk reached the disk, but the process died before recording it and while
+    // segment 7 was still being written
+    storage.write(sessions.get(id).getStorageFile(), 4 * SEGMENT, 4 * SEGMENT,
+        new ByteArrayInputStream(content, 4 * SEGMENT, 4 * SEGMENT), false);
+    SegmentHeader header;
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      header = SegmentHeader.read(channel);
+      channel.truncate(header.segmentOffset(8) - 500);
+    }
+    var before = Files.readAllBytes(file);
+    int cut = Math.toIntExact(header.segmentOffset(7));
+
+    var changed = Arrays.copyOfRange(content, 4 * SEGMENT, 8 * SEGMENT);
+    changed[SEGMENT + 10] ^= 1;
+    assertThatThrownBy(() -> service.writeChunk(id, 4 * SEGMENT, 4 * SEGMENT, new ByteArrayInputStream(changed)))
+        .isInstanceOf(UploadConflictException.class);
+    assertThat(Files.readAllBytes(file)).isEqualTo(before);
+
+    // The same content keeps the intact segments and seals the cut one again behind a new nonce
+    assertThat(writeChunk(id, 4 * SEGMENT, 4 * SEGMENT)).isEqualTo(8 * SEGMENT);
+    var after = Files.readAllBytes(file);
+    assertThat(Arrays.copyOf(after, cut)).isEqualTo(Arrays.copyOf(before, cut));
+    assertThat(Arrays.copyOfRange(after, cut, cut + SegmentHeader.NONCE_LENGTH_BYTE))
+        .isNotEqualTo(Arrays.copyOfRange(before, cut, cut + SegmentHeader.NONCE_LENGTH_BYTE));
+
+    writeChunk(id, 8 * SEGMENT, content.length - 8 * SEGMENT);
+    assertThat(read(sessions.get(id).getStorageFile())).isEqualTo(content);
+  }
+
+  @Test
+  void failedPublishLeavesTheUploadToCompleteAgain() throws Exception {
+    var id = receiveAll();
+    var storageFile = sessions.get(id).getStorageFile();
+    when(fileSharingService.publishStoredFile(anyString(), anyString(), anyString()))
+        .thenThrow(new DataIntegrityViolationException("access code taken"))
+        .thenReturn(new FileUploadResponse("K7M-2QX", "notes.bin", LocalDateTime.now(clock).plusDays(1),
+            "http://localhost/K7M-2QX", StoragePolicy.SERVER_ENCRYPTED));
+
+    assertThatThrownBy(() -> service.complete(id)).isInstanceOf(DataIntegrityViolationException.class);
+
+    assertThat(sessions.get(id).isCompleting()).isFalse();
+    assertThat(service.status(id).receivedBytes()).isEqualTo(content.length);
+    assertThat(read(storageFile)).isEqualTo(content);
+
+    assertThat(service.complete(id).accessCode()).isEqualTo("K7M-2QX");
+    verify(fileSharingService, times(2)).publishStoredFile("notes.bin", "application/octet-stream", storageFile);
+    assertThat(sessions).isEmpty();
+  }
+
+  @Test
+  void onlyOneCompletionPublishes() {
+    var id = receiveAll();
+    sessions.get(id).setCompleting(true);
+
+    assertThatThrownBy(() -> service.complete(id)).isInstanceOf(UploadConflictException.class);
+    verify(fileSharingService, never()).publishStoredFile(anyString(), anyString(), anyString());
+
+    sessions.remove(id);
+    assertThatThrownBy(() -> service.complete(id)).isInstanceOf(UploadSessionNotFoundException.class);
+  }
+
+  @Test
+  void purgeKeepsTheFileOfAnUploadPublishedBeforeItsSessionWasDeleted() throws Exception {
+    var published = receiveAll();
+    var abandoned = service.start("other.bin", "application/octet-stream", content.length).uploadId();
+    var publishedFile = sessions.get(published).getStorageFile();
+    var abandonedFile = sessions.get(abandoned).getStorageFile();
+    writeChunk(abandoned, 0, 4 * SEGMENT);
+
+    // As after a crash between saving the file's metadata and deleting its session
+    sessions.get(published).setCompleting(true);
+    when(fileMetadataRepo.findStoragePathsIn(List.of(publishedFile))).thenReturn(List.of(publishedFile));
+    sessions.values().forEach(session -> session.setExpiryDate(Timestamp.from(NOW.minus(Duration.ofHours(1)))));
+
+    assertThat(service.purgeExpired()).isEqualTo(2);
+
+    assertThat(sessions).isEmpty();
+    assertThat(read(publishedFile)).isEqualTo(content);
+    assertThat(storage.delete(abandonedFile)).isFalse();
+  }
+
+  private String receiveAll() {
+    var id = service.start("notes.bin", "application/octet-stream", content.length).uploadId();
+    for (int offset = 0; offset < content.length; offset += 4 * SEGMENT) {
+      writeChunk(id, offset, Math.min(4 * SEGMENT, content.length - offset));
+    }
+    return id;
+  }
+
+  private long writeChunk(String id, int offset, int length) {
+    return service.writeChunk(id, offset, length, new ByteArrayInputStream(content, offset, length))
+        .receivedBytes();
+  }
+
+  private static InputStream droppingAfter(InputStream in, int bytes) {
+    return new FilterInputStream(in) {
+      private int left = bytes;
+
+      @Override
+      public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        if (left == 0) {
+          throw new IOException("Connection reset");
+        }
+        int n = super.read(b, off, Math.min(len, left));
+        left -= Math.max(n, 0);
+        return n;
+      }
+    };
+  }
+
+  private byte[] read(String storageFile) throws Exception {
+    try (var in = storage.load(storageFile).getInputStream()) {
+      return in.readAllBytes();
+    }
+  }
+
+  /**
+   * The session table in memory, holding the conditional updates to the same rules as the queries.
+   */
+  private UploadSessionRepo uploadSessionRepo() {
+    var repo = mock(UploadSessionRepo.class);
+    when(repo.save(any())).thenAnswer(invocation -> {
+      UploadSession session = invocation.getArgument(0);
+      sessions.put(session.getId(), session);
+      return session;
+    });
+    when(repo.findById(anyString()))
+        .thenAnswer(invocation -> Optional.ofNullable(sessions.get(invocation.getArgument(0))).map(this::copy));
+    when(repo.advance(anyString(), anyLong(), anyLong(), any())).thenAnswer(invocation -> update(
+        invocation.getArgument(0), session -> session.getReceivedBytes() == (long) invocation.getArgument(1),
+        session -> {
+          session.setReceivedBytes(invocation.getArgument(2));
+          session.setExpiryDate(invocation.getArgument(3));
+        }));
+    when(repo.markCompleting(anyString(), any())).thenAnswer(invocation -> update(
+        invocation.getArgument(0), session -> session.isComplete() && !session.isCompleting(),
+        session -> {
+          session.setCompleting(true);
+          session.setExpiryDate(invocation.getArgument(1));
+        }));
+    when(repo.clearCompleting(anyString())).thenAnswer(invocation -> update(
+        invocation.getArgument(0), session -> true, session -> session.setCompleting(false)));
+    when(repo.findByExpiryDateBeforeOrderByExpiryDate(any(), any())).thenAnswer(invocation -> {
+      Timestamp now = invocation.getArgument(0);
+      Limit limit = invocation.getArgument(1);
+      return sessions.values().stream()
+          .filter(session -> session.getExpiryDate().before(now))
+          .sorted(Comparator.comparing(UploadSession::getExpiryDate))
+          .limit(limit.max())
+          .map(this::copy)
+          .toList();
+    });
+    when(repo.deleteExpired(anyString(), any())).thenAnswer(invocation -> {
+      Timestamp now = invocation.getArgument(1);
+      UploadSession session = sessions.get(invocation.getArgument(0));
+      return session != null && session.getExpiryDate().before(now) && sessions.remove(session.getId(), session)
+          ? 1
+          : 0;
+    });
+    doAnswer(invocation -> sessions.remove(invocation.getArgument(0)))
+        .when(repo).deleteById(anyString());
+    return repo;
+  }
+
+  /**
+   * A detached copy, as a query returns.
+   */
+  private UploadSession copy(UploadSession session) {
+    return new UploadSession(session.getId(), session.getFileName(), session.getFileType(),
+        session.getStorageFile(), session.getSize(), session.getSegmentSize(), session.getReceivedBytes(),
+        session.getExpiryDate(), session.isCompleting());
+  }
+
+  private int update(String id, Predicate<UploadSession> where, Consumer<UploadSession> set) {
+    int[] updated = { 0 };
+    sessions.computeIfPresent(id, (key, session) -> {
+      if (where.test(session)) {
+        set.accept(session);
+        updated[0] = 1;
+      }
+      return session;
+    });
+    return updated[0];
+  }
+}
@@ -0,0 +1,572 @@
+package com.example.secure_drop.service.encryption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.util.unit.DataSize;
+
+import com.example.secure_drop.config.EncryptionProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Pins the segmented format described in {@link SegmentHeader}: round trips at the segment
+ * boundaries, the key derivation, nonce and AAD layout, and that any reordering, truncation or
+ * tampering fails authentication instead of yielding different plaintext.
+ */
+class SegmentedEncryptionTests {
+  private static final String KEY = "0123456789abcdef0123456789abcdef";
+  private static final int SEGMENT = 1024;
+  private static final int OVERHEAD = SegmentHeader.NONCE_LENGTH_BYTE + SegmentHeader.TAG_LENGTH_BYTE;
+  private static final int ENCRYPTED_SEGMENT = SEGMENT + OVERHEAD;
+
+  @TempDir
+  Path dir;
+
+  private EncryptionServiceImpl sequential;
+  private EncryptionServiceImpl parallel;
+
+  @BeforeEach
+  void setUp() {
+    sequential = new EncryptionServiceImpl(properties(1), new SimpleMeterRegistry());
+    parallel = new EncryptionServiceImpl(properties(4), new SimpleMeterRegistry());
+  }
+
+  @AfterEach
+  void tearDown() {
+    sequential.shutdown();
+    parallel.shutdown();
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = { 0, 1, SEGMENT - 1, SEGMENT, SEGMENT + 1, 3 * SEGMENT + 7, 5 * SEGMENT })
+  void roundTripsAtSegmentBoundaries(int size) throws Exception {
+    var content = payload(size);
+
+    var file = encrypt(sequential, content);
+
+    assertThat(Files.size(file)).isEqualTo(SegmentHeader.LENGTH + expectedBody(size));
+    assertThat(decrypt(file)).isEqualTo(content);
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = { 0, 1, SEGMENT - 1, SEGMENT, SEGMENT + 1, 4 * SEGMENT, 4 * SEGMENT + 1, 9 * SEGMENT - 1 })
+  void parallelSealedOutputIsReadBySequentialReader(int size) throws Exception {
+    var content = payload(size);
+    var file = dir.resolve("parallel-" + size);
+
+    try (var channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      long consumed = parallel.encrypt(new ByteArrayInputStream(content), channel, content.length,
+          ContentCodec.NONE, KEY);
+
+      assertThat(consumed).isEqualTo(size);
+      // The channel is left at the end, as after a sequential write
+      assertThat(channel.position()).isEqualTo(Files.size(file));
+    }
+
+    assertThat(Files.size(file)).isEqualTo(SegmentHeader.LENGTH + expectedBody(size));
+    assertThat(decrypt(file)).isEqualTo(content);
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = { false, true })
+  void appendedSegmentsFormOneCiphertext(boolean sealInParallel) throws Exception {
+    var service = sealInParallel ? parallel : sequential;
+    var content = payload(6 * SEGMENT + 100);
+    var file = dir.resolve("appended");
+
+    try (var channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      var header = service.writeHeader(channel);
+      service.encryptSegments(new ByteArrayInputStream(content, 0, 4 * SEGMENT), channel, header, 0,
+          4 * SEGMENT, false, KEY);
+      channel.position(header.segmentOffset(4));
+      service.encryptSegments(new ByteArrayInputStream(content, 4 * SEGMENT, content.length - 4 * SEGMENT),
+          channel, header, 4, content.length - 4 * SEGMENT, true, KEY);
+    }
+
+    assertThat(decrypt(file)).isEqualTo(content);
+  }
+
+  @Test
+  void resealedSegmentsGetFreshNonces() throws Exception {
+    var content = payload(3 * SEGMENT);
+    var file = dir.resolve("resealed");
+
+    try (var channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      var header = sequential.writeHeader(channel);
+      sequential.encryptSegments(new ByteArrayInputStream(content, 0, 2 * SEGMENT), channel, header, 0,
+          2 * SEGMENT, false, KEY);
+      var first = nonceAt(channel, header.segmentOffset(1));
+
+      // Segment 1 again, with other content, as a retried chunk may bring
+      channel.truncate(header.segmentOffset(1)).position(header.segmentOffset(1));
+      sequential.encryptSegments(new ByteArrayInputStream(content, SEGMENT, 2 * SEGMENT), channel, header, 1,
+          2 * SEGMENT, true, KEY);
+
+      assertThat(nonceAt(channel, header.segmentOffset(1))).isNotEqualTo(first);
+    }
+    assertThat(decrypt(file)).isEqualTo(content);
+  }
+
+  @Test
+  void matchesSegmentsUpToTheFirstIncompleteOne() throws Exception {
+    var content = payload(4 * SEGMENT);
+    var file = dir.resolve("interrupted");
+
+    try (var channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      var header = sequential.writeHeader(channel);
+      sequential.encryptSegments(new ByteArrayInputStream(content), channel, header, 0, content.length, false, KEY);
+      // Segment 3 cut short, as by a crash while writing it
+      channel.truncate(header.segmentOffset(3) + 100);
+
+      var source = new ByteArrayInputStream(content, SEGMENT, content.length - SEGMENT);
+      assertThat(sequential.matchSegments(source, channel, header.segmentOffset(1), header, 1, KEY))
+          .isEqualTo(2 * SEGMENT);
+      // Only the intact segments' content was taken from the source
+      assertThat(source.available()).isEqualTo(SEGMENT);
+    }
+  }
+
+  @Test
+  void matchRejectsOtherContentInAnIntactSegment() throws Exception {
+    var content = payload(3 * SEGMENT + 10);
+    var file = encrypt(sequential, content);
+    var changed = content.clone();
+    changed[2 * SEGMENT + 1] ^= 1;
+
+    try (var channel = FileChannel.open(file)) {
+      var header = SegmentHeader.read(channel);
+      assertThatThrownBy(() -> sequential.matchSegments(new ByteArrayInputStream(changed), channel,
+          header.segmentOffset(0), header, 0, KEY))
+          .isInstanceOf(SegmentMismatchException.class)
+          .hasMessageContaining("Segment 2");
+      // Content going on past the segment that ends the file differs too
+      var longer = Arrays.copyOf(content, content.length + 1);
+      assertThatThrownBy(() -> sequential.matchSegments(new ByteArrayInputStream(longer), channel,
+          header.segmentOffset(0), header, 0, KEY))
+          .isInstanceOf(SegmentMismatchException.class)
+          .hasMessageContaining("Segment 3");
+      assertThat(sequential.matchSegments(new ByteArrayInputStream(content), channel, header.segmentOffset(0),
+          header, 0, KEY)).isEqualTo(content.length);
+    }
+  }
+
+  @Test
+  void appendRejectsShortSegmentBeforeTheEnd() throws Exception {
+    try (var channel = FileChannel.open(dir.resolve("short"), StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.WRITE)) {
+      var header = sequential.writeHeader(channel);
+
+      assertThatThrownBy(() -> sequential.encryptSegments(new ByteArrayInputStream(payload(SEGMENT + 1)), channel,
+          header, 0, SEGMENT + 1, false, KEY))
+          .isInstanceOf(IllegalArgumentException.class)
+          .hasMessageContaining("segment 1");
+    }
+  }
+
+  @Test
+  void skipSeeksIntoTheSegmentHoldingTheOffset() throws Exception {
+    var content = payload(5 * SEGMENT + 3);
+    var file = encrypt(sequential, content);
+
+    try (var in = sequential.decrypt(FileChannel.open(file), KEY)) {
+      assertThat(in.skip(2 * SEGMENT + 10)).isEqualTo(2 * SEGMENT + 10);
+      assertThat(in.readNBytes(SEGMENT)).isEqualTo(Arrays.copyOfRange(content, 2 * SEGMENT + 10, 3 * SEGMENT + 10));
+      assertThat(in.skip(10 * SEGMENT)).isEqualTo(content.length - 3 * SEGMENT - 10);
+      assertThat(in.read()).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  void writesCurrentHeaderWithCodec() throws Exception {
+    var file = dir.resolve("codec");
+    try (var channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      sequential.encrypt(new ByteArrayInputStream(payload(10)), channel, ContentCodec.DEFLATE, KEY);
+    }
+
+    var bytes = Files.readAllBytes(file);
+    assertThat(SegmentHeader.hasMagic(bytes)).isTrue();
+    assertThat(bytes[SegmentHeader.MAGIC.length]).isEqualTo(SegmentHeader.VERSION);
+    assertThat(ByteBuffer.wrap(bytes, SegmentHeader.MAGIC.length + 1, Integer.BYTES).getInt()).isEqualTo(SEGMENT);
+    assertThat(bytes[SegmentHeader.LENGTH - 1]).isEqualTo(ContentCodec.DEFLATE.id());
+    try (var channel = FileChannel.open(file)) {
+      assertThat(SegmentHeader.read(channel).codec()).isEqualTo(ContentCodec.DEFLATE);
+    }
+  }
+
+  @Test
+  void readsCurrentFilesSealedByHand() throws Exception {
+    var content = payload(2 * SEGMENT + 5);
+    var header = currentHeader();
+
+    var file = write(header, sealCurrent(header, content, 2));
+
+    try (var channel = FileChannel.open(file)) {
+      assertThat(SegmentHeader.read(channel).salt()).isEqualTo(Arrays.copyOfRange(header,
+          SegmentHeader.PREAMBLE_LENGTH, SegmentHeader.PREAMBLE_LENGTH + SegmentHeader.SALT_LENGTH_BYTE));
+    }
+    assertThat(decrypt(file)).isEqualTo(content);
+  }
+
+  @Test
+  void sealsUnderAKeyDerivedPerFile() throws Exception {
+    var bytes = Files.readAllBytes(encrypt(sequential, payload(100)));
+    var header = Arrays.copyOf(bytes, SegmentHeader.LENGTH);
+    var segment = ByteBuffer.wrap(bytes, SegmentHeader.LENGTH, bytes.length - SegmentHeader.LENGTH);
+    var nonce = new byte[SegmentHeader.NONCE_LENGTH_BYTE];
+    segment.get(nonce);
+    var sealed = new byte[segment.remaining()];
+    segment.get(sealed);
+
+    // Not the configured key itself, but the one derived from it and this file's salt
+    assertThatThrownBy(() -> open(new SecretKeySpec(KEY.getBytes(), "AES"), header, nonce, 0, sealed))
+        .isInstanceOf(AEADBadTagException.class);
+    assertThat(open(fileKey(header), header, nonce, 0, sealed)).isEqualTo(payload(100));
+  }
+
+  @Test
+  void readsVersionOneFilesSealedByHand() throws Exception {
+    var content = payload(2 * SEGMENT + 5);
+    var header = header(SegmentHeader.VERSION_1);
+
+    var file = write(header, seal(header, content, 2));
+
+    try (var channel = FileChannel.open(file)) {
+      var read = SegmentHeader.read(channel);
+      assertThat(read.length()).isEqualTo(SegmentHeader.LENGTH_V1);
+      assertThat(read.codec()).isEqualTo(ContentCodec.NONE);
+    }
+    assertThat(decrypt(file)).isEqualTo(content);
+  }
+
+  @Test
+  void readsVersionTwoFilesSealedByHand() throws Exception {
+    var content = payload(2 * SEGMENT);
+    var header = header(SegmentHeader.VERSION_2);
+
+    var file = write(header, seal(header, content, 1));
+
+    assertThat(decrypt(file)).isEqualTo(content);
+  }
+
+  @Test
+  void rejectsReorderedSegments() throws Exception {
+    var content = payload(3 * SEGMENT + 10);
+    var bytes = Files.readAllBytes(encrypt(sequential, content));
+
+    var swapped = bytes.clone();
+    int first = SegmentHeader.LENGTH;
+    System.arraycopy(bytes, first + ENCRYPTED_SEGMENT, swapped, first, ENCRYPTED_SEGMENT);
+    System.arraycopy(bytes, first, swapped, first + ENCRYPTED_SEGMENT, ENCRYPTED_SEGMENT);
+
+    assertThatThrownBy(() -> decrypt(write(swapped))).isInstanceOf(IOException.class)
+        .hasMessageContaining("segment 0");
+  }
+
+  @Test
+  void rejectsCiphertextTruncatedAtASegmentBoundary() throws Exception {
+    var bytes = Files.readAllBytes(encrypt(sequential, payload(3 * SEGMENT)));
+
+    // Dropping whole segments leaves a valid length; the new final segment was not sealed as last
+    var truncated = Arrays.copyOf(bytes, SegmentHeader.LENGTH + 2 * ENCRYPTED_SEGMENT);
+
+    assertThatThrownBy(() -> decrypt(write(truncated))).isInstanceOf(IOException.class)
+        .hasMessageContaining("segment 1");
+  }
+
+  @Test
+  void rejectsCiphertextTruncatedInsideASegment() throws Exception {
+    var bytes = Files.readAllBytes(encrypt(sequential, payload(2 * SEGMENT + 500)));
+
+    var truncated = Arrays.copyOf(bytes, bytes.length - 100);
+
+    assertThatThrownBy(() -> decrypt(write(truncated))).isInstanceOf(IOException.class);
+  }
+
+  @Test
+  void rejectsLengthThatCannotHoldATag() throws Exception {
+    var bytes = Files.readAllBytes(encrypt(sequential, payload(SEGMENT + 500)));
+
+    var truncated = Arrays.copyOf(bytes, SegmentHeader.LENGTH + ENCRYPTED_SEGMENT + 3);
+
+    assertThatThrownBy(() -> decrypt(write(truncated))).isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("Corrupted ciphertext length");
+  }
+
+  @Test
+  void rejectsFlippedLastFlag() throws Exception {
+    var content = payload(2 * SEGMENT + 10);
+    var header = currentHeader();
+
+    // The final segment sealed as if more followed
+    var unterminated = write(header, sealCurrent(header, content, 3));
+    // An inner segment sealed as if it ended the file
+    var earlyEnd = write(header, sealCurrent(header, content, 1));
+
+    assertThatThrownBy(() -> decrypt(unterminated)).isInstanceOf(IOException.class)
+        .hasMessageContaining("segment 2");
+    assertThatThrownBy(() -> decrypt(earlyEnd)).isInstanceOf(IOException.class)
+        .hasMessageContaining("segment 1");
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = { 9, 24, 40, 41 })
+  void rejectsTamperedHeaderBytes(int offset) throws Exception {
+    // Salt (9 to 40), which the key is derived from, and codec (41), authenticated as AAD
+    var bytes = Files.readAllBytes(encrypt(sequential, payload(SEGMENT + 10)));
+
+    bytes[offset] ^= 1;
+
+    assertThatThrownBy(() -> decrypt(write(bytes))).isInstanceOf(IOException.class);
+  }
+
+  @Test
+  void rejectsTamperedSegmentSize() throws Exception {
+    var bytes = Files.readAllBytes(encrypt(sequential, payload(SEGMENT + 10)));
+
+    ByteBuffer.wrap(bytes).putInt(SegmentHeader.MAGIC.length + 1, 2 * SEGMENT);
+
+    assertThatThrownBy(() -> decrypt(write(bytes))).isInstanceOf(IOException.class);
+  }
+
+  @Test
+  void rejectsHeaderFromAnotherFile() throws Exception {
+    var content = payload(SEGMENT + 10);
+    var bytes = Files.readAllBytes(encrypt(sequential, content));
+    var other = Files.readAllBytes(encrypt(sequential, content));
+
+    System.arraycopy(other, 0, bytes, 0, SegmentHeader.LENGTH);
+
+    assertThatThrownBy(() -> decrypt(write(bytes))).isInstanceOf(IOException.class);
+  }
+
+  @Test
+  void rejectsTamperedNonce() throws Exception {
+    var bytes = Files.readAllBytes(encrypt(sequential, payload(2 * SEGMENT)));
+
+    bytes[SegmentHeader.LENGTH + ENCRYPTED_SEGMENT + 3] ^= 1;
+
+    assertThatThrownBy(() -> decrypt(write(bytes))).isInstanceOf(IOException.class)
+        .hasMessageContaining("segment 1");
+  }
+
+  @Test
+  void rejectsFlippedCiphertextBit() throws Exception {
+    var bytes = Files.readAllBytes(encrypt(sequential, payload(2 * SEGMENT)));
+
+    bytes[SegmentHeader.LENGTH + ENCRYPTED_SEGMENT + SegmentHeader.NONCE_LENGTH_BYTE + 7] ^= 0x40;
+
+    assertThatThrownBy(() -> decrypt(write(bytes))).isInstanceOf(IOException.class)
+        .hasMessageContaining("segment 1");
+  }
+
+  @Test
+  void rejectsUnknownVersionAndMagic() throws Exception {
+    var bytes = Files.readAllBytes(encrypt(sequential, payload(10)));
+    var version = bytes.clone();
+    version[SegmentHeader.MAGIC.length] = 4;
+    var magic = bytes.clone();
+    magic[0] = 'X';
+
+    assertThatThrownBy(() -> decrypt(write(version))).isInstanceOf(IOException.class)
+        .hasMessageContaining("version");
+    assertThatThrownBy(() -> decrypt(write(magic))).isInstanceOf(IOException.class)
+        .hasMessageContaining("Not a segmented ciphertext");
+  }
+
+  @Test
+  void closesTheChannelWhenTheStreamCannotBeOpened() throws Exception {
+    var bytes = Files.readAllBytes(encrypt(sequential, payload(SEGMENT + 500)));
+    var badLength = write(Arrays.copyOf(bytes, SegmentHeader.LENGTH + ENCRYPTED_SEGMENT + 3));
+    var badHeader = write(Arrays.copyOf(bytes, SegmentHeader.MAGIC.length + 2));
+
+    for (var file : new Path[] { badLength, badHeader }) {
+      var channel = FileChannel.open(file);
+      assertThatThrownBy(() -> sequential.decrypt(channel, KEY)).isInstanceOfAny(IOException.class,
+          IllegalStateException.class);
+      assertThat(channel.isOpen()).as("%s", file).isFalse();
+    }
+  }
+
+  private static byte[] nonceAt(FileChannel channel, long position) throws IOException {
+    var nonce = ByteBuffer.allocate(SegmentHeader.NONCE_LENGTH_BYTE);
+    channel.read(nonce, position);
+    return nonce.array();
+  }
+
+  private static EncryptionProperties properties(int parallelism) {
+    var properties = new EncryptionProperties();
+    properties.setAlgorithm("AES/GCM/NoPadding");
+    properties.setSecretKey(KEY);
+    properties.setSegmentSize(DataSize.ofBytes(SEGMENT));
+    properties.setParallelism(parallelism);
+    properties.setParallelThreshold(DataSize.ofBytes(0));
+    return properties;
+  }
+
+  private static long expectedBody(int size) {
+    long segments = Math.max(1, (size + SEGMENT - 1) / SEGMENT);
+    return size + segments * OVERHEAD;
+  }
+
+  private Path encrypt(EncryptionService service, byte[] content) throws Exception {
+    var file = Files.createTempFile(dir, "sealed", ".bin");
+    try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      assertThat(service.encrypt(new ByteArrayInputStream(content), channel, KEY)).isEqualTo(content.length);
+    }
+    return file;
+  }
+
+  private byte[] decrypt(Path file) throws Exception {
+    try (var in = sequential.decrypt(FileChannel.open(file), KEY)) {
+      return in.readAllBytes();
+    }
+  }
+
+  private Path write(byte[]... parts) throws IOException {
+    var file = Files.createTempFile(dir, "crafted", ".bin");
+    try (var out = Files.newOutputStream(file)) {
+      for (var part : parts) {
+        out.write(part);
+      }
+    }
+    return file;
+  }
+
+  private static byte[] currentHeader() {
+    var salt = new byte[SegmentHeader.SALT_LENGTH_BYTE];
+    new SplittableRandom(42).nextBytes(salt);
+    return ByteBuffer.allocate(SegmentHeader.LENGTH)
+        .put(SegmentHeader.MAGIC)
+        .put(SegmentHeader.VERSION)
+        .putInt(SEGMENT)
+        .put(salt)
+        .put(ContentCodec.NONE.id())
+        .array();
+  }
+
+  /**
+   * Seals {@code content} as the current version does: each segment under the file key behind
+   * its own nonce, with {@code header | counter | lastFlag} as AAD, flagging only segment
+   * {@code lastFlagged} as the last.
+   */
+  private static byte[] sealCurrent(byte[] header, byte[] content, int lastFlagged) throws Exception {
+    var key = fileKey(header);
+    var random = new SplittableRandom(7);
+    int count = (content.length + SEGMENT - 1) / SEGMENT;
+
+    var out = ByteBuffer.allocate(content.length + count * OVERHEAD);
+    for (int index = 0; index < count; index++) {
+      var nonce = new byte[SegmentHeader.NONCE_LENGTH_BYTE];
+      random.nextBytes(nonce);
+      var cipher = Cipher.getInstance("AES/GCM/NoPadding");
+      cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, nonce));
+      cipher.updateAAD(aad(header, index, index == lastFlagged));
+      int from = index * SEGMENT;
+      out.put(nonce).put(cipher.doFinal(content, from, Math.min(SEGMENT, content.length - from)));
+    }
+    return out.array();
+  }
+
+  private static byte[] open(SecretKeySpec key, byte[] header, byte[] nonce, int index, byte[] sealed)
+      throws Exception {
+    var cipher = Cipher.getInstance("AES/GCM/NoPadding");
+    cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, nonce));
+    cipher.updateAAD(aad(header, index, true));
+    return cipher.doFinal(sealed);
+  }
+
+  private static byte[] aad(byte[] header, int index, boolean last) {
+    return ByteBuffer.allocate(header.length + Integer.BYTES + 1)
+        .put(header)
+        .putInt(index)
+        .put((byte) (last ? 1 : 0))
+        .array();
+  }
+
+  /**
+   * HKDF-SHA256 of the configured key with the header's salt and the file-key label, as long as
+   * the configured key.
+   */
+  private static SecretKeySpec fileKey(byte[] header) throws Exception {
+    var salt = Arrays.copyOfRange(header, SegmentHeader.PREAMBLE_LENGTH,
+        SegmentHeader.PREAMBLE_LENGTH + SegmentHeader.SALT_LENGTH_BYTE);
+    var mac = Mac.getInstance("HmacSHA256");
+    mac.init(new SecretKeySpec(salt, "HmacSHA256"));
+    var pseudoRandomKey = mac.doFinal(KEY.getBytes());
+    mac.init(new SecretKeySpec(pseudoRandomKey, "HmacSHA256"));
+    mac.update("secure-drop/file-key".getBytes(StandardCharsets.UTF_8));
+    mac.update((byte) 1);
+    return new SecretKeySpec(Arrays.copyOf(mac.doFinal(), KEY.length()), "AES");
+  }
+
+  private static byte[] header(byte version) {
+    var buffer = ByteBuffer.allocate(version == SegmentHeader.VERSION_1 ? SegmentHeader.LENGTH_V1 : SegmentHeader.LENGTH_V2)
+        .put(SegmentHeader.MAGIC)
+        .put(version)
+        .putInt(SEGMENT)
+        .put(new byte[] { 1, 2, 3, 4, 5, 6, 7 });
+    if (version != SegmentHeader.VERSION_1) {
+      buffer.put(ContentCodec.NONE.id());
+    }
+    return buffer.array();
+  }
+
+  /**
+   * Seals {@code content} as versions 1 and 2 did: segment by segment under the configured key
+   * with nonce {@code prefix | counter | lastFlag} and the header as AAD, flagging only segment
+   * {@code lastFlagged} as the last.
+   */
+  private static byte[] seal(byte[] header, byte[] content, int lastFlagged) throws Exception {
+    var key = new SecretKeySpec(KEY.getBytes(), "AES");
+    int prefixOffset = SegmentHeader.MAGIC.length + 1 + Integer.BYTES;
+    var prefix = Arrays.copyOfRange(header, prefixOffset, prefixOffset + SegmentHeader.NONCE_PREFIX_LENGTH_BYTE);
+    int count = (content.length + SEGMENT - 1) / SEGMENT;
+
+    var out = ByteBuffer.allocate(content.length + count * SegmentHeader.TAG_LENGTH_BYTE);
+    for (int index = 0; index < count; index++) {
+      var nonce = ByteBuffer.allocate(SegmentHeader.NONCE_LENGTH_BYTE)
+          .put(prefix)
+          .putInt(index)
+          .put((byte) (index == lastFlagged ? 1 : 0))
+          .array();
+      var cipher = Cipher.getInstance("AES/GCM/NoPadding");
+      cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, nonce));
+      cipher.updateAAD(header);
+      int from = index * SEGMENT;
+      out.put(cipher.doFinal(content, from, Math.min(SEGMENT, content.length - from)));
+    }
+    return out.array();
+  }
+
+  private static byte[] payload(int size) {
+    var bytes = new byte[size];
+    new SplittableRandom(size).nextBytes(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,257 @@
+package com.example.secure_drop.service.filecleanup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.stubbing.Answer;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import com.example.secure_drop.config.CleanupProperties;
+import com.example.secure_drop.config.CompressionProperties;
+import com.example.secure_drop.config.EncryptionProperties;
+import com.example.secure_drop.config.FileStorageProperties;
+import com.example.secure_drop.dto.FileCleanupCandidate;
+import com.example.secure_drop.repo.FileMetadataRepo;
+import com.example.secure_drop.repo.StoredBlobRepo;
+import com.example.secure_drop.repo.UploadSessionRepo;
+import com.example.secure_drop.service.accesscode.AccessCodeIndex;
+import com.example.secure_drop.service.encryption.EncryptionServiceImpl;
+import com.example.secure_drop.service.filestorage.CompressionPolicy;
+import com.example.secure_drop.service.filestorage.FileSync;
+import com.example.secure_drop.service.filestorage.LocalFileStorageService;
+import com.example.secure_drop.service.filestorage.StorageUris;
+import com.example.secure_drop.service.metadatacache.FileMetadataCache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * The orphan scan over real upload roots, against tables that refer to their files by each of
+ * the names rows have used over time: only old files nothing refers to are removed. Also, that a
+ * deduplicated file's blob is released with its row or not at all.
+ */
+class LocalFileCleanupServiceTests {
+  private static final Instant NOW = Instant.parse("2026-03-01T12:00:00Z");
+  private static final Duration GRACE = Duration.ofHours(1);
+
+  @TempDir
+  Path dir;
+
+  private final Set<String> metadataPaths = new HashSet<>();
+  private final Set<String> blobNames = new HashSet<>();
+  private final Set<String> sessionFiles = new HashSet<>();
+  private EncryptionServiceImpl encryptionService;
+  private FileSync fileSync;
+  private final FileMetadataRepo fileMetadataRepo = mock(FileMetadataRepo.class);
+  private final StoredBlobRepo storedBlobRepo = mock(StoredBlobRepo.class);
+  private final AccessCodeIndex accessCodeIndex = mock(AccessCodeIndex.class);
+  private final RecordingTransactionManager transactionManager = new RecordingTransactionManager();
+  private LocalFileCleanupService cleanup;
+
+  @BeforeEach
+  void setUp() {
+    var registry = new SimpleMeterRegistry();
+    var encryptionProperties = new EncryptionProperties();
+    encryptionProperties.setAlgorithm("AES/GCM/NoPadding");
+    encryptionProperties.setSecretKey("0123456789abcdef0123456789abcdef");
+    encryptionService = new EncryptionServiceImpl(encryptionProperties, registry);
+
+    var fileStorageProperties = new FileStorageProperties();
+    fileStorageProperties.setUploadDir(dir.toString());
+    fileStorageProperties.setFsync(FileStorageProperties.FsyncPolicy.NONE);
+    fileSync = new FileSync(fileStorageProperties, registry);
+    var storage = new LocalFileStorageService(fileStorageProperties, encryptionProperties, encryptionService,
+        storedBlobRepo, new CompressionPolicy(new CompressionProperties()), fileSync, registry);
+    storage.init();
+
+    when(fileMetadataRepo.findStoragePathsIn(anyCollection())).thenAnswer(referencedIn(metadataPaths));
+    when(storedBlobRepo.findFileNamesIn(anyCollection())).thenAnswer(referencedIn(blobNames));
+    var uploadSessionRepo = mock(UploadSessionRepo.class);
+    when(uploadSessionRepo.findStorageFilesIn(anyCollection())).thenAnswer(referencedIn(sessionFiles));
+
+    var cleanupProperties = new CleanupProperties();
+    // Several batches per scan
+    cleanupProperties.setBatchSize(3);
+    cleanupProperties.setOrphanGracePeriod(GRACE);
+    cleanup = new LocalFileCleanupService(fileMetadataRepo, storedBlobRepo, uploadSessionRepo, storage,
+        accessCodeIndex, mock(FileMetadataCache.class), Clock.fixed(NOW, ZoneOffset.UTC), transactionManager,
+        cleanupProperties, registry);
+  }
+
+  @AfterEach
+  void tearDown() {
+    cleanup.shutdown();
+    encryptionService.shutdown();
+    fileSync.shutdown();
+  }
+
+  @Test
+  void removesOnlyOldUnreferencedFiles() throws IOException {
+    var orphan = file("ab/cd", GRACE.multipliedBy(2));
+    var recent = file("ab/cd", GRACE.dividedBy(2));
+    var abandonedPart = file("ab/cd", ".part", GRACE.multipliedBy(2));
+    var writingPart = file("12/34", ".part", GRACE.dividedBy(2));
+    var flatOrphan = file("", GRACE.multipliedBy(3));
+
+    assertThat(cleanup.removeOrphans()).isEqualTo(3);
+
+    assertThat(orphan).doesNotExist();
+    assertThat(abandonedPart).doesNotExist();
+    assertThat(flatOrphan).doesNotExist();
+    // Within the grace period, e.g. an upload still being written or not yet saved
+    assertThat(recent).exists();
+    assertThat(writingPart).exists();
+  }
+
+  @Test
+  void keepsFilesReferencedByAnyTableUnderAnyName() throws IOException {
+    var old = GRACE.multipliedBy(2);
+    var byUri = file("ab/cd", old);
+    metadataPaths.add(StorageUris.of(byUri));
+    var byAbsolutePath = file("ab/cd", old);
+    metadataPaths.add(byAbsolutePath.toString());
+    var byRelativePath = file("ef/01", old);
+    metadataPaths.add(Path.of("").toAbsolutePath().relativize(byRelativePath).toString());
+    var blob = file("ef/01", old);
+    blobNames.add(StorageUris.of(blob));
+    var flatBlob = file("", old);
+    blobNames.add(flatBlob.getFileName().toString());
+    var session = file("23/45", old);
+    sessionFiles.add(StorageUris.of(session));
+    var flatSession = file("", old);
+    sessionFiles.add(flatSession.getFileName().toString());
+    var legacyFlat = file("", old);
+    metadataPaths.add(legacyFlat.toString());
+    var orphan = file("23/45", old);
+
+    assertThat(cleanup.removeOrphans()).isEqualTo(1);
+
+    assertThat(orphan).doesNotExist();
+    assertThat(List.of(byUri, byAbsolutePath, byRelativePath, blob, flatBlob, session, flatSession, legacyFlat))
+        .allMatch(Files::exists);
+  }
+
+  @Test
+  void finishesOnAnEmptyRoot() {
+    assertThat(cleanup.removeOrphans()).isZero();
+  }
+
+  @Test
+  void releasesLastReferencesWithTheRows() throws IOException {
+    var blob = file("ab/cd", Duration.ZERO);
+    var own = file("ef/01", Duration.ZERO);
+    due(new FileCleanupCandidate(1L, StorageUris.of(blob), "AAAA-AAAA", true),
+        new FileCleanupCandidate(2L, StorageUris.of(own), "BBBB-BBBB", false));
+    when(storedBlobRepo.release(anyString())).thenReturn(1);
+    when(storedBlobRepo.deleteUnreferenced(StorageUris.of(blob))).thenReturn(1);
+
+    assertThat(cleanup.cleanup(List.of(1L, 2L))).isEqualTo(2);
+
+    assertThat(transactionManager.commits).isOne();
+    assertThat(blob).doesNotExist();
+    assertThat(own).doesNotExist();
+    verify(accessCodeIndex).release("AAAA-AAAA");
+  }
+
+  @Test
+  void keepsTheRowsAndBlobsOfAFailedBatch() throws IOException {
+    var released = file("ab/cd", Duration.ZERO);
+    var failing = file("ef/01", Duration.ZERO);
+    due(new FileCleanupCandidate(1L, StorageUris.of(released), "AAAA-AAAA", true),
+        new FileCleanupCandidate(2L, StorageUris.of(failing), "BBBB-BBBB", true));
+    when(storedBlobRepo.release(anyString())).thenReturn(1);
+    when(storedBlobRepo.deleteUnreferenced(StorageUris.of(released))).thenReturn(1);
+    when(storedBlobRepo.deleteUnreferenced(StorageUris.of(failing)))
+        .thenThrow(new QueryTimeoutException("canceling statement due to statement timeout"))
+        .thenReturn(1);
+
+    assertThat(cleanup.cleanup(List.of(1L, 2L))).isZero();
+
+    // Rolled back: the blob that had lost its last reference is still there for its row
+    assertThat(transactionManager.rollbacks).isOne();
+    assertThat(released).exists();
+    assertThat(failing).exists();
+    verify(accessCodeIndex, never()).release(anyString());
+
+    assertThat(cleanup.cleanup(List.of(1L, 2L))).isEqualTo(2);
+
+    assertThat(transactionManager.commits).isOne();
+    assertThat(released).doesNotExist();
+    assertThat(failing).doesNotExist();
+  }
+
+  private void due(FileCleanupCandidate... candidates) {
+    when(fileMetadataRepo.findConsumedOrExpiredByIdIn(any(), anyCollection())).thenReturn(List.of(candidates));
+  }
+
+  private Path file(String shard, Duration age) throws IOException {
+    return file(shard, "", age);
+  }
+
+  private Path file(String shard, String suffix, Duration age) throws IOException {
+    var directory = Files.createDirectories(dir.resolve(shard));
+    var file = Files.writeString(directory.resolve(UUID.randomUUID() + suffix), "ciphertext");
+    Files.setLastModifiedTime(file, FileTime.from(NOW.minus(age)));
+    return file;
+  }
+
+  /**
+   * Holds no resources, but runs transaction synchronizations as a real one does.
+   */
+  private static class RecordingTransactionManager extends AbstractPlatformTransactionManager {
+    int commits;
+    int rollbacks;
+
+    @Override
+    protected Object doGetTransaction() {
+      return new Object();
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+    }
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+      commits++;
+    }
+
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) {
+      rollbacks++;
+    }
+  }
+
+  private static Answer<List<String>> referencedIn(Set<String> table) {
+    return invocation -> {
+      Collection<String> names = invocation.getArgument(0);
+      return names.stream().filter(table::contains).toList();
+    };
+  }
+}
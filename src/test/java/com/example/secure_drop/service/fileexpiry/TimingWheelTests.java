@@ -0,0 +1,205 @@
+package com.example.secure_drop.service.fileexpiry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Checks that {@link TimingWheel} fires every entry within one tick after its deadline and never
+ * before it: across cascades between levels, for deadlines beyond the top level, and when the
+ * clock jumps.
+ */
+class TimingWheelTests {
+  private static final long HOUR = 3_600_000;
+
+  @ParameterizedTest
+  @CsvSource({ "0", "37", "1700000000" })
+  void firesEveryDeadlineOfAllLevelsOneTickLater(long start) {
+    // Levels of 1, 4 and 16 ticks: 64 ticks in all
+    for (long deadline = start; deadline < start + 64; deadline++) {
+      var wheel = new TimingWheel<Long>(1, 4, 3, start);
+      var fired = new ArrayList<Long>();
+      assertThat(wheel.add(deadline, deadline)).isTrue();
+
+      for (long now = start + 1; now <= deadline; now++) {
+        wheel.advance(now, fired::add);
+        assertThat(fired).as("deadline %d at %d", deadline, now).isEmpty();
+      }
+      wheel.advance(deadline + 1, fired::add);
+
+      assertThat(fired).as("deadline %d", deadline).containsExactly(deadline);
+      assertThat(wheel.size()).isZero();
+    }
+  }
+
+  @Test
+  void cascadesEntriesAddedMidwayThroughALevel() {
+    var wheel = new TimingWheel<Long>(1, 4, 3, 0);
+    var fired = new ArrayList<Long>();
+    wheel.advance(13, fired::add);
+
+    // Lands in a higher level whose slot the clock has partly passed
+    for (long deadline = 13; deadline < 13 + 50; deadline++) {
+      wheel.add(deadline, deadline);
+    }
+    for (long now = 14; now <= 13 + 50; now++) {
+      wheel.advance(now, fired::add);
+      assertThat(fired).as("at %d", now).hasSize((int) (now - 13));
+      assertThat(fired.getLast()).isEqualTo(now - 1);
+    }
+  }
+
+  @Test
+  void parksDeadlinesBeyondTheTopLevelUntilTheyFit() {
+    // 16 ticks of range; the deadlines are up to 60 times that away
+    var wheel = new TimingWheel<Long>(1, 4, 2, 0);
+    var fired = new ArrayList<Long>();
+    long[] deadlines = { 16, 17, 63, 64, 100, 257, 960 };
+    for (long deadline : deadlines) {
+      wheel.add(deadline, deadline);
+    }
+
+    var firedAt = new HashMap<Long, Long>();
+    for (long now = 1; now <= 961; now++) {
+      long at = now;
+      wheel.advance(now, deadline -> firedAt.put(deadline, at));
+    }
+
+    for (long deadline : deadlines) {
+      assertThat(firedAt).containsEntry(deadline, deadline + 1);
+    }
+    assertThat(wheel.size()).isZero();
+  }
+
+  @Test
+  void clockJumpFiresEverythingDueInDeadlineOrder() {
+    var wheel = new TimingWheel<Long>(1000, 64, 4, 0);
+    var fired = new ArrayList<Long>();
+    for (long deadline : new long[] { 30 * HOUR, 5_000, HOUR, 90_000, 2 * HOUR + 1 }) {
+      wheel.add(deadline, deadline);
+    }
+
+    wheel.advance(2 * HOUR + 500, fired::add);
+
+    assertThat(fired).containsExactly(5_000L, 90_000L, HOUR);
+    wheel.advance(2 * HOUR + 2_000, fired::add);
+    assertThat(fired).containsExactly(5_000L, 90_000L, HOUR, 2 * HOUR + 1);
+    assertThat(wheel.size()).isEqualTo(1);
+  }
+
+  @Test
+  void clockGoingBackFiresNothing() {
+    var wheel = new TimingWheel<Long>(1000, 64, 4, 10 * HOUR);
+    var fired = new ArrayList<Long>();
+    wheel.add(10 * HOUR + 5_000, 1L);
+
+    wheel.advance(9 * HOUR, fired::add);
+    wheel.advance(10 * HOUR + 4_999, fired::add);
+    assertThat(fired).isEmpty();
+
+    wheel.advance(10 * HOUR + 6_000, fired::add);
+    assertThat(fired).containsExactly(1L);
+  }
+
+  @Test
+  void refusesDeadlinesBeforeTheCurrentTick() {
+    var wheel = new TimingWheel<Long>(1000, 64, 4, 10_500);
+    var fired = new ArrayList<Long>();
+
+    assertThat(wheel.add(9_999, 1L)).isFalse();
+    // Still within the current tick, so it fires on the next one
+    assertThat(wheel.add(10_000, 2L)).isTrue();
+    assertThat(wheel.size()).isEqualTo(1);
+
+    wheel.advance(11_000, fired::add);
+    assertThat(fired).containsExactly(2L);
+  }
+
+  @ParameterizedTest
+  @CsvSource({
+      // tick, wheel size, levels, simulated hours; the second wheel spans only 1h, so most
+      // deadlines overflow its top level
+      "1000, 64, 4, 400",
+      "1000, 8, 3, 400" })
+  void randomizedClockJumpsFireEveryEntryOnTime(long tick, int wheelSize, int levels, long hours) {
+    var random = new SplittableRandom(tick * wheelSize + levels);
+    long start = random.nextLong(1L << 40);
+    long end = start + hours * HOUR;
+    var wheel = new TimingWheel<Integer>(tick, wheelSize, levels, start);
+
+    Map<Integer, Long> deadlines = new HashMap<>();
+    var pending = new PriorityQueue<Long>();
+    int nextId = 0;
+    int firedCount = 0;
+    long now = start;
+    long clock = start;
+    List<Integer> fired = new ArrayList<>();
+
+    while (clock < end) {
+      for (int i = random.nextInt(4); i > 0; i--) {
+        long deadline = clock - tick + randomDelay(random);
+        int id = nextId++;
+        if (wheel.add(deadline, id)) {
+          deadlines.put(id, deadline);
+          pending.add(deadline);
+        } else {
+          // Only deadlines before the wheel's current tick are refused
+          assertThat(deadline / tick).isLessThan(now / tick);
+        }
+      }
+
+      clock += randomJump(random);
+      now = Math.max(now, clock);
+      fired.clear();
+      wheel.advance(clock, fired::add);
+
+      for (int id : fired) {
+        long deadline = deadlines.remove(id);
+        assertThat(deadline).as("entry %d fired early at %d", id, clock).isLessThan(clock);
+        pending.remove(deadline);
+      }
+      firedCount += fired.size();
+      if (!pending.isEmpty()) {
+        // Whatever still waits is due no earlier than the tick the clock is in
+        assertThat(pending.peek()).as("overdue at %d", now).isGreaterThanOrEqualTo(now / tick * tick);
+      }
+      assertThat(wheel.size()).isEqualTo(deadlines.size());
+    }
+
+    assertThat(firedCount).isGreaterThan(1000);
+  }
+
+  /**
+   * Mostly seconds to minutes ahead, some hours or days, a few more than a month.
+   */
+  private static long randomDelay(SplittableRandom random) {
+    return switch (random.nextInt(10)) {
+      case 0, 1, 2, 3 -> random.nextLong(120_000);
+      case 4, 5, 6 -> random.nextLong(HOUR);
+      case 7, 8 -> random.nextLong(48 * HOUR);
+      default -> random.nextLong(800 * HOUR);
+    };
+  }
+
+  /**
+   * Mostly a tick or a few, sometimes minutes or hours at once, as after a pause or a clock
+   * change, and sometimes backwards.
+   */
+  private static long randomJump(SplittableRandom random) {
+    return switch (random.nextInt(20)) {
+      case 0 -> -random.nextLong(10 * 60_000);
+      case 1 -> random.nextLong(3 * HOUR);
+      case 2, 3 -> random.nextLong(15 * 60_000);
+      default -> random.nextLong(1, 5_000);
+    };
+  }
+}
@@ -0,0 +1,291 @@
+package com.example.secure_drop.service.filestorage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.util.unit.DataSize;
+
+import com.example.secure_drop.config.CompressionProperties;
+import com.example.secure_drop.config.EncryptionProperties;
+import com.example.secure_drop.config.FileStorageProperties;
+import com.example.secure_drop.model.StoredBlob;
+import com.example.secure_drop.repo.StoredBlobRepo;
+import com.example.secure_drop.service.encryption.EncryptionServiceImpl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Deduplicated storage on local disk, with the blob table held in memory and each of its queries
+ * applied atomically, as a row lock makes them: a blob's file is only deleted with its last
+ * reference, however acquires and releases interleave.
+ */
+class LocalFileStorageServiceTests {
+  private static final int SEGMENT = 1024;
+
+  @TempDir
+  Path dir;
+
+  /** Blob rows by file name. */
+  private final Map<String, StoredBlob> blobs = new HashMap<>();
+  private EncryptionServiceImpl encryptionService;
+  private FileSync fileSync;
+  private LocalFileStorageService storage;
+
+  @BeforeEach
+  void setUp() {
+    var registry = new SimpleMeterRegistry();
+    var encryptionProperties = new EncryptionProperties();
+    encryptionProperties.setAlgorithm("AES/GCM/NoPadding");
+    encryptionProperties.setSecretKey("0123456789abcdef0123456789abcdef");
+    encryptionProperties.setSegmentSize(DataSize.ofBytes(SEGMENT));
+    encryptionProperties.setParallelism(1);
+    encryptionService = new EncryptionServiceImpl(encryptionProperties, registry);
+
+    var fileStorageProperties = new FileStorageProperties();
+    fileStorageProperties.setUploadDir(dir.toString());
+    fileStorageProperties.setFsync(FileStorageProperties.FsyncPolicy.NONE);
+    fileStorageProperties.setDedupEnabled(true);
+    fileSync = new FileSync(fileStorageProperties, registry);
+    storage = new LocalFileStorageService(fileStorageProperties, encryptionProperties, encryptionService,
+        storedBlobRepo(), new CompressionPolicy(new CompressionProperties()), fileSync, registry);
+    storage.init();
+  }
+
+  @AfterEach
+  void tearDown() {
+    encryptionService.shutdown();
+    fileSync.shutdown();
+  }
+
+  @Test
+  void freesABlobWithItsLastReference() throws Exception {
+    var content = content(1, 3 * SEGMENT + 7);
+
+    var first = store(content);
+    var second = store(content);
+    var third = store(content);
+
+    assertThat(second).isEqualTo(first);
+    assertThat(third).isEqualTo(first);
+    assertThat(storedFiles()).hasSize(1);
+    assertThat(refCount(first)).isEqualTo(3);
+
+    assertThat(storage.release(first)).isFalse();
+    assertThat(storage.release(first)).isFalse();
+    assertThat(read(first)).isEqualTo(content);
+
+    assertThat(storage.release(first)).isTrue();
+    assertThat(storedFiles()).isEmpty();
+    assertThat(blobs).isEmpty();
+
+    // Stored anew once it is gone
+    var again = store(content);
+    assertThat(again).isNotEqualTo(first);
+    assertThat(read(again)).isEqualTo(content);
+  }
+
+  @Test
+  void keepsDistinctContentApart() throws Exception {
+    var a = store(content(2, 100));
+    var b = store(content(3, 100));
+
+    assertThat(a).isNotEqualTo(b);
+    assertThat(storage.release(a)).isTrue();
+    assertThat(read(b)).isEqualTo(content(3, 100));
+  }
+
+  @Test
+  void releasesBlobsRegisteredUnderTheirFlatLayoutName() throws Exception {
+    var content = content(4, 500);
+    var stored = store(content);
+    store(content);
+    // As registered before sharding: the bare name of a file directly in the upload directory
+    var flat = dir.resolve(StorageUris.toPath(stored).getFileName());
+    Files.move(StorageUris.toPath(stored), flat);
+    var row = blobs.remove(stored);
+    row.setFileName(flat.getFileName().toString());
+    blobs.put(row.getFileName(), row);
+
+    assertThat(store(content)).isEqualTo(flat.toString());
+    assertThat(storage.release(flat.toString())).isFalse();
+    assertThat(storage.release(flat.toString())).isFalse();
+    assertThat(storage.release(flat.toString())).isTrue();
+    assertThat(flat).doesNotExist();
+  }
+
+  @Test
+  void concurrentAcquiresAndReleasesNeverLoseAHeldBlob() throws Exception {
+    var contents = List.of(content(5, 2 * SEGMENT), content(6, SEGMENT + 1), content(7, 10));
+    int threads = 8;
+    var start = new CountDownLatch(1);
+
+    try (var executor = Executors.newFixedThreadPool(threads)) {
+      var results = new ArrayList<Future<Integer>>();
+      for (int t = 0; t < threads; t++) {
+        var random = new SplittableRandom(t);
+        results.add(executor.submit(() -> {
+          start.await();
+          var held = new ArrayList<String>();
+          var heldContent = new ArrayList<byte[]>();
+          int checks = 0;
+          for (int i = 0; i < 150; i++) {
+            if (held.isEmpty() || (held.size() < 3 && random.nextBoolean())) {
+              var content = contents.get(random.nextInt(contents.size()));
+              held.add(store(content));
+              heldContent.add(content);
+            } else {
+              int pick = random.nextInt(held.size());
+              // Still there while referenced, whoever else shares it
+              assertThat(read(held.get(pick))).isEqualTo(heldContent.get(pick));
+              storage.release(held.remove(pick));
+              heldContent.remove(pick);
+              checks++;
+            }
+          }
+          for (var path : held) {
+            storage.release(path);
+          }
+          return checks;
+        }));
+      }
+      start.countDown();
+
+      int checks = 0;
+      for (var result : results) {
+        checks += result.get();
+      }
+      assertThat(checks).isGreaterThan(threads * 30);
+    }
+
+    assertThat(blobs).isEmpty();
+    assertThat(storedFiles()).isEmpty();
+  }
+
+  @Test
+  void deleteAllRemovesOnlyStoredFiles() throws Exception {
+    var stored = StorageUris.toPath(store(content(8, 100)));
+    var appendable = StorageUris.toPath(storage.create());
+    var part = Files.write(appendable.resolveSibling(appendable.getFileName() + ".part"), new byte[1]);
+    var foreign = List.of(Files.write(dir.resolve("notes.txt"), new byte[1]),
+        Files.write(stored.resolveSibling("README"), new byte[1]));
+
+    storage.deleteAll();
+
+    assertThat(stored).doesNotExist();
+    assertThat(appendable).doesNotExist();
+    assertThat(part).doesNotExist();
+    assertThat(storedFiles()).containsExactlyInAnyOrderElementsOf(foreign);
+  }
+
+  private String store(byte[] content) {
+    return storage.store(new ByteArrayInputStream(content), "notes.bin", "application/octet-stream",
+        content.length);
+  }
+
+  private byte[] read(String storagePath) throws Exception {
+    try (var in = storage.load(storagePath).getInputStream()) {
+      return in.readAllBytes();
+    }
+  }
+
+  private List<Path> storedFiles() throws Exception {
+    try (var files = Files.walk(dir)) {
+      return files.filter(Files::isRegularFile).toList();
+    }
+  }
+
+  private int refCount(String fileName) {
+    synchronized (blobs) {
+      return blobs.get(fileName).getRefCount();
+    }
+  }
+
+  private static byte[] content(int seed, int size) {
+    var content = new byte[size];
+    new SplittableRandom(seed).nextBytes(content);
+    return content;
+  }
+
+  /**
+   * The blob table in memory, each query run under one lock with the semantics of its JPQL.
+   */
+  private StoredBlobRepo storedBlobRepo() {
+    var repo = mock(StoredBlobRepo.class);
+    when(repo.acquire(anyString())).thenAnswer(invocation -> {
+      synchronized (blobs) {
+        var blob = byDigest(invocation.getArgument(0));
+        blob.ifPresent(b -> b.setRefCount(b.getRefCount() + 1));
+        return blob.isPresent() ? 1 : 0;
+      }
+    });
+    when(repo.findFileNameByDigest(anyString())).thenAnswer(invocation -> {
+      synchronized (blobs) {
+        return byDigest(invocation.getArgument(0)).map(StoredBlob::getFileName);
+      }
+    });
+    when(repo.save(any())).thenAnswer(invocation -> {
+      StoredBlob blob = invocation.getArgument(0);
+      synchronized (blobs) {
+        if (blobs.containsKey(blob.getFileName()) || byDigest(blob.getDigest()).isPresent()) {
+          throw new DataIntegrityViolationException("duplicate key value violates unique constraint");
+        }
+        blobs.put(blob.getFileName(), blob);
+        return blob;
+      }
+    });
+    when(repo.release(anyString())).thenAnswer(invocation -> {
+      synchronized (blobs) {
+        var blob = blobs.get((String) invocation.getArgument(0));
+        if (blob == null) {
+          return 0;
+        }
+        blob.setRefCount(blob.getRefCount() - 1);
+        return 1;
+      }
+    });
+    when(repo.deleteUnreferenced(anyString())).thenAnswer(invocation -> {
+      synchronized (blobs) {
+        var blob = blobs.get((String) invocation.getArgument(0));
+        if (blob == null || blob.getRefCount() > 0) {
+          return 0;
+        }
+        blobs.remove(blob.getFileName());
+        return 1;
+      }
+    });
+    when(repo.findFileNamesIn(anyCollection())).thenAnswer(invocation -> {
+      synchronized (blobs) {
+        Collection<String> fileNames = invocation.getArgument(0);
+        return fileNames.stream().filter(blobs::containsKey).toList();
+      }
+    });
+    return repo;
+  }
+
+  private Optional<StoredBlob> byDigest(String digest) {
+    return blobs.values().stream().filter(blob -> blob.getDigest().equals(digest)).findFirst();
+  }
+}
@@ -0,0 +1,577 @@
+package com.example.secure_drop.service.filestorage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.util.unit.DataSize;
+
+import com.example.secure_drop.config.AppConfig;
+import com.example.secure_drop.config.CompressionProperties;
+import com.example.secure_drop.config.EncryptionProperties;
+import com.example.secure_drop.config.FileStorageProperties;
+import com.example.secure_drop.config.S3Config;
+import com.example.secure_drop.config.S3StorageProperties;
+import com.example.secure_drop.exception.InvalidMultipartFileException;
+import com.example.secure_drop.exception.UploadConflictException;
+import com.example.secure_drop.repo.StoredBlobRepo;
+import com.example.secure_drop.service.encryption.EncryptionService;
+import com.example.secure_drop.service.encryption.EncryptionServiceImpl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CopyPartResult;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadBucketResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+/**
+ * Runs {@link S3FileStorageService} against an in-memory bucket that holds S3 to its rules for
+ * multipart uploads, so part sizes, ranges and staging are checked without a server.
+ */
+class S3FileStorageServiceTests {
+  private static final String BUCKET = "secure-drop-test";
+  private static final int SEGMENT_SIZE = 64 * 1024;
+  private static final int MB = 1024 * 1024;
+
+  private FakeS3Client s3;
+  private SimpleMeterRegistry meterRegistry;
+  private EncryptionServiceImpl encryptionService;
+  private S3FileStorageService storage;
+
+  @BeforeEach
+  void setUp() {
+    s3 = new FakeS3Client();
+    meterRegistry = new SimpleMeterRegistry();
+
+    var encryptionProperties = new EncryptionProperties();
+    encryptionProperties.setAlgorithm("AES/GCM/NoPadding");
+    encryptionProperties.setSecretKey("0123456789abcdef0123456789abcdef");
+    encryptionProperties.setSegmentSize(DataSize.ofBytes(SEGMENT_SIZE));
+    encryptionService = new EncryptionServiceImpl(encryptionProperties, meterRegistry);
+
+    var s3StorageProperties = new S3StorageProperties();
+    s3StorageProperties.setBucket(BUCKET);
+    s3StorageProperties.setPrefix("uploads/");
+    s3StorageProperties.setPartSize(DataSize.ofMegabytes(5));
+
+    storage = new S3FileStorageService(s3, s3StorageProperties, new FileStorageProperties(), encryptionProperties,
+        encryptionService, new CompressionPolicy(new CompressionProperties()), meterRegistry);
+    storage.init();
+  }
+
+  @AfterEach
+  void tearDown() {
+    storage.shutdown();
+    encryptionService.shutdown();
+  }
+
+  @Test
+  void storesLargeUploadInPartsAndLoadsIt() throws IOException {
+    var content = payload(12 * MB + 123);
+
+    var storagePath = storage.store(new ByteArrayInputStream(content), "big.bin", "application/octet-stream",
+        content.length);
+
+    assertThat(storagePath).startsWith("s3://" + BUCKET + "/uploads/");
+    assertThat(storage.owns(storagePath)).isTrue();
+    assertThat(s3.completedParts).containsExactly(3);
+    var resource = storage.load(storagePath);
+    assertThat(resource.contentLength()).isEqualTo(content.length);
+    try (var in = resource.getInputStream()) {
+      assertThat(in.readAllBytes()).isEqualTo(content);
+    }
+  }
+
+  @Test
+  void storesSmallUploadWithOneRequest() throws IOException {
+    var content = payload(1000);
+
+    var storagePath = storage.store(new ByteArrayInputStream(content), "small.bin", null, -1);
+
+    assertThat(s3.completedParts).isEmpty();
+    try (var in = storage.load(storagePath).getInputStream()) {
+      assertThat(in.readAllBytes()).isEqualTo(content);
+    }
+  }
+
+  @Test
+  void skippingReadsFromThePositionWithOneRangedGet() throws IOException {
+    var content = payload(3 * MB);
+    var storagePath = storage.store(new ByteArrayInputStream(content), "range.bin", null, content.length);
+    var resource = storage.load(storagePath);
+    s3.ranges.clear();
+
+    try (var in = resource.getInputStream()) {
+      in.skipNBytes(2 * MB + 5);
+      assertThat(in.readAllBytes()).isEqualTo(Arrays.copyOfRange(content, 2 * MB + 5, content.length));
+    }
+
+    // The header, then the segment holding the position to the end
+    assertThat(s3.ranges).hasSize(2);
+    assertThat(s3.ranges.getLast()).isNotEqualTo("bytes=0-").endsWith("-");
+  }
+
+  @Test
+  void emptyUploadIsNotStored() {
+    assertThatThrownBy(() -> storage.store(InputStream.nullInputStream(), "empty.bin", null, -1))
+        .isInstanceOf(InvalidMultipartFileException.class);
+
+    assertThat(s3.objects).isEmpty();
+  }
+
+  @Test
+  void storesAsIsAndLoadsTheSameBytes() throws IOException {
+    var content = payload(7 * MB);
+
+    var storagePath = storage.storeAsIs(new ByteArrayInputStream(content), "client.bin");
+
+    var resource = storage.loadAsIs(storagePath);
+    assertThat(resource.contentLength()).isEqualTo(content.length);
+    try (var in = resource.getInputStream()) {
+      in.skipNBytes(MB);
+      assertThat(in.readAllBytes()).isEqualTo(Arrays.copyOfRange(content, MB, content.length));
+    }
+  }
+
+  @Test
+  void assemblesLargeChunksByCopyingThem() throws IOException {
+    var content = payload(13 * MB + 77);
+    int chunkSize = 6 * MB;
+
+    var storagePath = writeInChunks(content, chunkSize);
+
+    assertThat(s3.copiedParts).isEqualTo(2);
+    assertThat(s3.keys()).containsExactly(key(storagePath));
+    try (var in = storage.load(storagePath).getInputStream()) {
+      assertThat(in.readAllBytes()).isEqualTo(content);
+    }
+  }
+
+  @Test
+  void assemblesSmallChunksByStreamingThem() throws IOException {
+    var content = payload(10 * SEGMENT_SIZE + 5);
+
+    var storagePath = writeInChunks(content, 3 * SEGMENT_SIZE);
+
+    assertThat(s3.copiedParts).isZero();
+    assertThat(s3.keys()).containsExactly(key(storagePath));
+    try (var in = storage.load(storagePath).getInputStream()) {
+      assertThat(in.readAllBytes()).isEqualTo(content);
+    }
+  }
+
+  @Test
+  void retriedChunksKeepWhatIsStaged() throws IOException {
+    var content = payload(8 * SEGMENT_SIZE + 10);
+    var storagePath = storage.create();
+
+    assertThat(write(storagePath, content, 0, 4 * SEGMENT_SIZE, false)).isEqualTo(4 * SEGMENT_SIZE);
+    var staged = s3.keys();
+    // The same chunk again, as after a lost response, and one overlapping it
+    assertThat(write(storagePath, content, 0, 4 * SEGMENT_SIZE, false)).isEqualTo(4 * SEGMENT_SIZE);
+    assertThat(s3.keys()).isEqualTo(staged);
+    assertThat(write(storagePath, content, 2 * SEGMENT_SIZE, content.length - 2 * SEGMENT_SIZE, true))
+        .isEqualTo(content.length - 2 * SEGMENT_SIZE);
+    // The last chunk again, once assembled
+    assertThat(write(storagePath, content, 4 * SEGMENT_SIZE, content.length - 4 * SEGMENT_SIZE, true))
+        .isEqualTo(content.length - 4 * SEGMENT_SIZE);
+
+    try (var in = storage.load(storagePath).getInputStream()) {
+      assertThat(in.readAllBytes()).isEqualTo(content);
+    }
+  }
+
+  @Test
+  void retriedChunksWithOtherContentAreRefused() {
+    var content = payload(8 * SEGMENT_SIZE + 10);
+    var changed = content.clone();
+    changed[SEGMENT_SIZE + 3] ^= 1;
+    changed[5 * SEGMENT_SIZE + 3] ^= 1;
+    var storagePath = storage.create();
+
+    write(storagePath, content, 0, 4 * SEGMENT_SIZE, false);
+    var staged = s3.keys();
+    assertThatThrownBy(() -> write(storagePath, changed, 0, 4 * SEGMENT_SIZE, false))
+        .isInstanceOf(UploadConflictException.class);
+    assertThat(s3.keys()).isEqualTo(staged);
+
+    write(storagePath, content, 4 * SEGMENT_SIZE, content.length - 4 * SEGMENT_SIZE, true);
+    assertThatThrownBy(() -> write(storagePath, changed, 4 * SEGMENT_SIZE, content.length - 4 * SEGMENT_SIZE, true))
+        .isInstanceOf(UploadConflictException.class);
+  }
+
+  @Test
+  void deleteRemovesTheObjectAndItsStagedChunks() {
+    var content = payload(4 * SEGMENT_SIZE);
+    var stored = storage.store(new ByteArrayInputStream(content), "a.bin", null, content.length);
+    var chunked = storage.create();
+    write(chunked, content, 0, 2 * SEGMENT_SIZE, false);
+
+    assertThat(storage.delete(stored)).isTrue();
+    assertThat(storage.delete(chunked)).isTrue();
+    assertThat(storage.delete(chunked)).isFalse();
+    assertThat(s3.objects).isEmpty();
+  }
+
+  @Test
+  void listsStoredFilesAndStagedChunksByTheirFile() {
+    var content = payload(4 * SEGMENT_SIZE);
+    var stored = storage.store(new ByteArrayInputStream(content), "a.bin", null, content.length);
+    var chunked = storage.create();
+    write(chunked, content, 0, 2 * SEGMENT_SIZE, false);
+    s3.objects.put("uploads/notes.txt", new StoredObject(new byte[1], Instant.now()));
+    s3.objects.put("elsewhere/" + UUID.randomUUID(), new StoredObject(new byte[1], Instant.now()));
+
+    try (var files = storage.list(Instant.now().plusSeconds(1))) {
+      assertThat(files).containsExactlyInAnyOrder(stored, chunked);
+    }
+    try (var files = storage.list(Instant.now().minusSeconds(60))) {
+      assertThat(files).isEmpty();
+    }
+  }
+
+  @Test
+  void deleteAllRemovesOnlyOurObjects() {
+    var content = payload(2 * SEGMENT_SIZE);
+    for (int i = 0; i < 3; i++) {
+      storage.store(new ByteArrayInputStream(content), "a.bin", null, content.length);
+    }
+    var chunked = storage.create();
+    write(chunked, content, 0, SEGMENT_SIZE, false);
+    var foreign = "elsewhere/" + UUID.randomUUID();
+    s3.objects.put("uploads/notes.txt", new StoredObject(new byte[1], Instant.now()));
+    s3.objects.put(foreign, new StoredObject(new byte[1], Instant.now()));
+
+    storage.deleteAll();
+
+    assertThat(s3.objects).containsOnlyKeys("uploads/notes.txt", foreign);
+    try (var files = storage.list(Instant.now().plusSeconds(1))) {
+      assertThat(files).isEmpty();
+    }
+  }
+
+  @Test
+  void switchingBackToLocalKeepsBucketFilesReadable(@TempDir Path dir) throws IOException {
+    var fileStorageProperties = new FileStorageProperties();
+    fileStorageProperties.setUploadDir(dir.toString());
+    fileStorageProperties.setFsync(FileStorageProperties.FsyncPolicy.NONE);
+    var fileSync = new FileSync(fileStorageProperties, meterRegistry);
+    var encryptionProperties = new EncryptionProperties();
+    encryptionProperties.setSecretKey("0123456789abcdef0123456789abcdef");
+    encryptionProperties.setSegmentSize(DataSize.ofBytes(SEGMENT_SIZE));
+    var local = new LocalFileStorageService(fileStorageProperties, encryptionProperties, encryptionService,
+        mock(StoredBlobRepo.class), new CompressionPolicy(new CompressionProperties()), fileSync, meterRegistry);
+    var content = payload(3 * SEGMENT_SIZE);
+
+    try {
+      fileStorageProperties.setBackend(FileStorageProperties.Backend.S3);
+      var inBucket = routing(fileStorageProperties, local)
+          .store(new ByteArrayInputStream(content), "a.bin", null, content.length);
+      assertThat(inBucket).startsWith("s3://" + BUCKET + "/");
+
+      fileStorageProperties.setBackend(FileStorageProperties.Backend.LOCAL);
+      var routing = routing(fileStorageProperties, local);
+      routing.init();
+      var onDisk = routing.store(new ByteArrayInputStream(content), "b.bin", null, content.length);
+
+      assertThat(onDisk).startsWith("file:");
+      try (var in = routing.load(inBucket).getInputStream()) {
+        assertThat(in.readAllBytes()).isEqualTo(content);
+      }
+      try (var files = routing.list(Instant.now().plusSeconds(1))) {
+        assertThat(files).containsExactlyInAnyOrder(inBucket, onDisk);
+      }
+      // Both backends count into one registry, each under its own tag
+      assertThat(meterRegistry.get("securedrop.storage.written").tag("backend", "s3").counter().count())
+          .isPositive();
+      assertThat(meterRegistry.get("securedrop.storage.written").tag("backend", "local").counter().count())
+          .isEqualTo(Files.size(StorageUris.toPath(onDisk)));
+      assertThat(routing.delete(inBucket)).isTrue();
+      assertThat(s3.objects).isEmpty();
+    } finally {
+      fileSync.shutdown();
+    }
+  }
+
+  @Test
+  void registeredWheneverABucketIsSet() {
+    var contextRunner = new ApplicationContextRunner()
+        .withUserConfiguration(AppConfig.class, S3FileStorageService.class)
+        .withBean(S3Client.class, FakeS3Client::new)
+        .withBean(EncryptionService.class, () -> encryptionService)
+        .withBean(CompressionPolicy.class, () -> new CompressionPolicy(new CompressionProperties()))
+        .withBean(MeterRegistry.class, SimpleMeterRegistry::new)
+        .withPropertyValues("file.backend=local", "s3.part-size=5MB");
+
+    contextRunner.withPropertyValues("s3.bucket=" + BUCKET)
+        .run(context -> assertThat(context).hasSingleBean(S3FileStorageService.class));
+    contextRunner.withPropertyValues("s3.bucket=")
+        .run(context -> assertThat(context).doesNotHaveBean(S3FileStorageService.class));
+    contextRunner
+        .run(context -> assertThat(context).doesNotHaveBean(S3FileStorageService.class));
+  }
+
+  @Test
+  void clientConfiguredWheneverABucketIsSet() {
+    var contextRunner = new ApplicationContextRunner()
+        .withUserConfiguration(AppConfig.class, S3Config.class)
+        .withPropertyValues("file.backend=local", "s3.access-key-id=key", "s3.secret-access-key=secret");
+
+    contextRunner.withPropertyValues("s3.bucket=" + BUCKET)
+        .run(context -> assertThat(context).hasSingleBean(S3Client.class));
+    contextRunner.withPropertyValues("s3.bucket= ")
+        .run(context -> assertThat(context).doesNotHaveBean(S3Client.class));
+  }
+
+  private RoutingFileStorageService routing(FileStorageProperties fileStorageProperties,
+      LocalFileStorageService local) {
+    return new RoutingFileStorageService(fileStorageProperties, local, new StaticListableBeanFactory(
+        Map.of("s3FileStorageService", storage)).getBeanProvider(S3FileStorageService.class));
+  }
+
+  private String writeInChunks(byte[] content, int chunkSize) {
+    var storagePath = storage.create();
+    for (int offset = 0; offset < content.length; offset += chunkSize) {
+      int length = Math.min(chunkSize, content.length - offset);
+      boolean last = offset + length == content.length;
+      assertThat(write(storagePath, content, offset, length, last)).isEqualTo(length);
+    }
+    return storagePath;
+  }
+
+  private long write(String storagePath, byte[] content, int offset, int length, boolean last) {
+    return storage.write(storagePath, offset, length, new ByteArrayInputStream(content, offset, length), last);
+  }
+
+  private static String key(String storagePath) {
+    return storagePath.substring(("s3://" + BUCKET + "/").length());
+  }
+
+  private static byte[] payload(int size) {
+    var bytes = new byte[size];
+    new SplittableRandom(size).nextBytes(bytes);
+    return bytes;
+  }
+
+  private record StoredObject(byte[] content, Instant lastModified) {
+  }
+
+  /**
+   * The part of S3 the service uses, kept in memory.
+   */
+  private static final class FakeS3Client implements S3Client {
+    private static final long MIN_PART_SIZE = 5L * MB;
+
+    final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+    final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    final List<Integer> completedParts = new CopyOnWriteArrayList<>();
+    final List<String> ranges = new CopyOnWriteArrayList<>();
+    volatile int copiedParts;
+
+    List<String> keys() {
+      return objects.keySet().stream().sorted().toList();
+    }
+
+    @Override
+    public HeadBucketResponse headBucket(HeadBucketRequest request) {
+      return HeadBucketResponse.builder().build();
+    }
+
+    @Override
+    public PutObjectResponse putObject(PutObjectRequest request, RequestBody body) {
+      objects.put(request.key(), new StoredObject(read(body), Instant.now()));
+      return PutObjectResponse.builder().build();
+    }
+
+    @Override
+    public CreateMultipartUploadResponse createMultipartUpload(CreateMultipartUploadRequest request) {
+      var uploadId = UUID.randomUUID().toString();
+      uploads.put(uploadId, new ConcurrentHashMap<>());
+      return CreateMultipartUploadResponse.builder().uploadId(uploadId).build();
+    }
+
+    @Override
+    public UploadPartResponse uploadPart(UploadPartRequest request, RequestBody body) {
+      var content = read(body);
+      upload(request.uploadId()).put(request.partNumber(), content);
+      return UploadPartResponse.builder().eTag("part-" + request.partNumber()).build();
+    }
+
+    @Override
+    public UploadPartCopyResponse uploadPartCopy(UploadPartCopyRequest request) {
+      var source = object(request.sourceKey());
+      upload(request.uploadId()).put(request.partNumber(), source.content());
+      copiedParts++;
+      return UploadPartCopyResponse.builder()
+          .copyPartResult(CopyPartResult.builder().eTag("part-" + request.partNumber()).build())
+          .build();
+    }
+
+    @Override
+    public CompleteMultipartUploadResponse completeMultipartUpload(CompleteMultipartUploadRequest request) {
+      var parts = new TreeMap<>(upload(request.uploadId()));
+      var listed = request.multipartUpload().parts();
+      assertThat(listed).extracting(part -> part.partNumber()).containsExactlyElementsOf(parts.keySet());
+
+      var content = new ByteArrayOutputStream();
+      parts.forEach((number, part) -> {
+        if (!number.equals(parts.lastKey()) && part.length < MIN_PART_SIZE) {
+          throw S3Exception.builder().statusCode(400).message("EntityTooSmall: part " + number).build();
+        }
+        content.writeBytes(part);
+      });
+      uploads.remove(request.uploadId());
+      objects.put(request.key(), new StoredObject(content.toByteArray(), Instant.now()));
+      completedParts.add(parts.size());
+      return CompleteMultipartUploadResponse.builder().build();
+    }
+
+    @Override
+    public AbortMultipartUploadResponse abortMultipartUpload(AbortMultipartUploadRequest request) {
+      uploads.remove(request.uploadId());
+      return AbortMultipartUploadResponse.builder().build();
+    }
+
+    @Override
+    public ResponseInputStream<GetObjectResponse> getObject(GetObjectRequest request) {
+      var content = object(request.key()).content();
+      int from = 0;
+      int to = content.length - 1;
+      var response = GetObjectResponse.builder();
+      if (request.range() != null) {
+        ranges.add(request.range());
+        var bounds = request.range().substring("bytes=".length()).split("-", -1);
+        from = Integer.parseInt(bounds[0]);
+        if (!bounds[1].isEmpty()) {
+          to = Math.min(to, Integer.parseInt(bounds[1]));
+        }
+        response.contentRange("bytes " + from + "-" + to + "/" + content.length);
+      }
+      var body = Arrays.copyOfRange(content, from, to + 1);
+      return new ResponseInputStream<>(response.contentLength((long) body.length).build(),
+          AbortableInputStream.create(new ByteArrayInputStream(body)));
+    }
+
+    @Override
+    public HeadObjectResponse headObject(HeadObjectRequest request) {
+      var object = object(request.key());
+      return HeadObjectResponse.builder()
+          .contentLength((long) object.content().length)
+          .lastModified(object.lastModified())
+          .build();
+    }
+
+    @Override
+    public DeleteObjectsResponse deleteObjects(DeleteObjectsRequest request) {
+      request.delete().objects().forEach(object -> objects.remove(object.key()));
+      return DeleteObjectsResponse.builder().build();
+    }
+
+    @Override
+    public ListObjectsV2Response listObjectsV2(ListObjectsV2Request request) {
+      // One page at a time, as S3 does past 1000 keys
+      var matching = new ArrayList<S3Object>();
+      objects.entrySet().stream()
+          .filter(entry -> entry.getKey().startsWith(request.prefix()))
+          .filter(entry -> request.continuationToken() == null
+              || entry.getKey().compareTo(request.continuationToken()) > 0)
+          .sorted(Map.Entry.comparingByKey())
+          .limit(2)
+          .forEach(entry -> matching.add(S3Object.builder()
+              .key(entry.getKey())
+              .size((long) entry.getValue().content().length)
+              .lastModified(entry.getValue().lastModified())
+              .build()));
+      boolean truncated = matching.size() == 2;
+      return ListObjectsV2Response.builder()
+          .contents(matching)
+          .isTruncated(truncated)
+          .nextContinuationToken(truncated ? matching.getLast().key() : null)
+          .build();
+    }
+
+    @Override
+    public String serviceName() {
+      return "s3";
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private StoredObject object(String key) {
+      var object = objects.get(key);
+      if (object == null) {
+        throw NoSuchKeyException.builder().statusCode(404).message("No such key: " + key).build();
+      }
+      return object;
+    }
+
+    private Map<Integer, byte[]> upload(String uploadId) {
+      var parts = uploads.get(uploadId);
+      if (parts == null) {
+        throw S3Exception.builder().statusCode(404).message("NoSuchUpload: " + uploadId).build();
+      }
+      return parts;
+    }
+
+    private static byte[] read(RequestBody body) {
+      try (var in = body.contentStreamProvider().newStream()) {
+        return in.readAllBytes();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}